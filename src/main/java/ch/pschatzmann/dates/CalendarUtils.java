@@ -1,15 +1,21 @@
 package ch.pschatzmann.dates;
 
 import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 public class CalendarUtils implements Serializable {
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private static volatile TimeZone timeZone = TimeZone.getDefault();
+	private static volatile ZoneId zoneId = timeZone.toZoneId();
 
 	/**
 	 * Converts the date to a calendar
@@ -23,6 +29,55 @@ public class CalendarUtils implements Serializable {
 		return cal;
 	}
 	
+	/**
+	 * Converts the date to the number of days since 1970-01-01 (in the local time
+	 * zone). We return TradingDay.NONE for null.
+	 * 
+	 * @param date
+	 * @return
+	 */
+	public static int toEpochDay(Date date) {
+		return date == null ? TradingDay.NONE : toEpochDay(date.getTime());
+	}
+
+	/**
+	 * Converts the milliseconds since 1970-01-01 UTC to the number of days since
+	 * 1970-01-01 (in the local time zone)
+	 * 
+	 * @param millis
+	 * @return
+	 */
+	public static int toEpochDay(long millis) {
+		return (int) Math.floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Converts the number of days since 1970-01-01 to a date (at midnight in the
+	 * local time zone). We return null for TradingDay.NONE.
+	 * 
+	 * @param epochDay
+	 * @return
+	 */
+	public static Date toDate(int epochDay) {
+		return epochDay == TradingDay.NONE ? null
+				: Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(zoneId).toInstant());
+	}
+
+	/**
+	 * Defines the time zone which is used to determine the days. The default is
+	 * the time zone of the JVM.
+	 * 
+	 * @param zone
+	 */
+	public static void setTimeZone(TimeZone zone) {
+		timeZone = (TimeZone) zone.clone();
+		zoneId = zone.toZoneId();
+	}
+
+	public static TimeZone getTimeZone() {
+		return (TimeZone) timeZone.clone();
+	}
+	
 	/**
 	 * Checks if the indicated calendar is a public holiday in the US
 	 * @param c
@@ -11,6 +11,8 @@ import java.util.Date;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import ch.pschatzmann.stocks.Context;
 
 /**
@@ -76,6 +78,7 @@ public class DateRange implements Serializable {
 		this.start = start;
 	}
 	
+	@JsonIgnore
 	public void setStart(ZonedDateTime start) {
 		Instant instant = start.toInstant();
 		this.start = Date.from(instant);
@@ -89,6 +92,7 @@ public class DateRange implements Serializable {
 		this.end = end;
 	}
 
+	@JsonIgnore
 	public void setEnd(ZonedDateTime end) {
 		Instant instant = end.toInstant();
 		this.end = Date.from(instant);
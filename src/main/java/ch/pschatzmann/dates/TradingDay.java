@@ -0,0 +1,160 @@
+package ch.pschatzmann.dates;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * A trading day is represented as int: the number of days since 1970-01-01 in
+ * the local time zone (epoch day). This class provides the conversion
+ * functions. Dates can be compared and looked up w/o any locks or object
+ * allocation.
+ *
+ * @author pschatzmann
+ *
+ */
+public class TradingDay {
+	/**
+	 * Value which represents a missing day
+	 */
+	public static final int NONE = Integer.MIN_VALUE;
+
+	private TradingDay() {
+	}
+
+	/**
+	 * Converts the date to an epoch day. We return NONE for null.
+	 *
+	 * @param date
+	 * @return
+	 */
+	public static int of(Date date) {
+		return CalendarUtils.toEpochDay(date);
+	}
+
+	/**
+	 * Converts the milliseconds since 1970-01-01 UTC to an epoch day
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public static int of(long millis) {
+		return CalendarUtils.toEpochDay(millis);
+	}
+
+	/**
+	 * Converts the date of the proleptic gregorian calendar to an epoch day
+	 *
+	 * @param year
+	 * @param month
+	 *            1-12
+	 * @param day
+	 *            1-31
+	 * @return
+	 */
+	public static int of(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Parses a date in the format yyyy-MM-dd. We return NONE if the string has a
+	 * different format.
+	 *
+	 * @param str
+	 * @return
+	 */
+	public static int parse(CharSequence str) {
+		if (str == null || str.length() != 10 || str.charAt(4) != '-' || str.charAt(7) != '-') {
+			return NONE;
+		}
+		int year = digits(str, 0, 4);
+		int month = digits(str, 5, 7);
+		int day = digits(str, 8, 10);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+			return NONE;
+		}
+		return of(year, month, day);
+	}
+
+	private static int digits(CharSequence str, int start, int end) {
+		int result = 0;
+		for (int j = start; j < end; j++) {
+			char c = str.charAt(j);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	/**
+	 * Converts the epoch day to a date at midnight in the local time zone
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public static Date toDate(int epochDay) {
+		return CalendarUtils.toDate(epochDay);
+	}
+
+	/**
+	 * Formats the epoch day as yyyy-MM-dd
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public static String toString(int epochDay) {
+		return epochDay == NONE ? "" : LocalDate.ofEpochDay(epochDay).toString();
+	}
+
+	/**
+	 * Returns the actual day
+	 *
+	 * @return
+	 */
+	public static int today() {
+		return of(System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the day of the week from 1 (Monday) to 7 (Sunday)
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public static int dayOfWeek(int epochDay) {
+		// 1970-01-01 was a Thursday
+		return Math.floorMod(epochDay + 3, 7) + 1;
+	}
+
+	/**
+	 * Checks if the day is a Saturday or Sunday
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public static boolean isWeekend(int epochDay) {
+		return dayOfWeek(epochDay) > 5;
+	}
+
+	/**
+	 * Defines the time zone which is used to determine the days. The default is
+	 * the time zone of the JVM.
+	 *
+	 * @param zone
+	 */
+	public static void setTimeZone(TimeZone zone) {
+		CalendarUtils.setTimeZone(zone);
+	}
+
+	public static TimeZone getTimeZone() {
+		return CalendarUtils.getTimeZone();
+	}
+
+}
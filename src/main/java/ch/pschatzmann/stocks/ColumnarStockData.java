@@ -0,0 +1,386 @@
+package ch.pschatzmann.stocks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ta4j.core.BarSeries;
+
+import ch.pschatzmann.dates.CalendarUtils;
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.StockData.DateMatching;
+import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.IReaderEx;
+import ch.pschatzmann.stocks.integration.StockTimeSeries;
+import ch.pschatzmann.stocks.utils.CSVWriter;
+
+/**
+ * Price history of an individual stock which is stored in primitive arrays
+ * (StockColumns). This needs considerably less memory than StockData because
+ * IStockRecord objects are only created on demand.
+ *
+ * @author pschatzmann
+ *
+ */
+public class ColumnarStockData implements Serializable, IStockColumnTarget, IStockData, IRefreshable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(ColumnarStockData.class);
+	private IStockID id;
+	private IReader reader;
+	private StockColumns columns;
+	private transient BarSeries timeSeries;
+	private transient Fingerprint fingerprint;
+
+	public ColumnarStockData() {
+	}
+
+	public ColumnarStockData(IStockID id) {
+		this(id, Context.getDefaultReader());
+	}
+
+	public ColumnarStockData(IStockID id, IReader reader) {
+		this.id = id;
+		this.reader = reader;
+	}
+
+	public ColumnarStockData(IStockID id, StockColumns columns) {
+		this.id = id;
+		this.columns = columns;
+	}
+
+	public ColumnarStockData(IStockData source) {
+		this.id = source.getStockID();
+		this.columns = new StockColumns(id, source.getHistory());
+	}
+
+	@Override
+	public IStockID getStockID() {
+		return id;
+	}
+
+	@Override
+	public String getTicker() {
+		return id == null ? null : id.getTicker();
+	}
+
+	@Override
+	public String getExchange() {
+		return id == null ? null : id.getExchange();
+	}
+
+	/**
+	 * Provides the loaded columns
+	 *
+	 * @return
+	 */
+	public synchronized StockColumns getColumns() {
+		if (columns == null) {
+			LOG.debug("getColumns " + this);
+			long start = System.nanoTime();
+			String key = this.getStockID() + "/" + StockData.getSimpleClassName(reader);
+			getColumnsFromCache(key);
+			if (columns == null) {
+				columns = new StockColumns(id);
+				if (reader != null) {
+					int count = reader.read(this);
+					columns.trimToSize();
+					LOG.info("Reading stock data for {} -> {} records", this.getStockID(), count);
+					putColumnsToCache(key);
+				}
+			}
+			if (Context.isStockDataRegistryActive()) {
+				Context.getStockDataRegistry().onLoaded(this, reader, columns.size(), System.nanoTime() - start);
+			}
+		}
+		return columns;
+	}
+
+	private void putColumnsToCache(String key) {
+		if (Context.isCacheActive()) {
+			Context.getCache().put(key, columns.asList());
+		}
+	}
+
+	private void getColumnsFromCache(String key) {
+		if (Context.isCacheActive()) {
+			try {
+				List<IStockRecord> history = Context.getCache().get(key);
+				if (history != null) {
+					columns = StockColumns.of(id, history);
+				}
+				if (columns != null) {
+					LOG.info(this.getStockID() + " loaded from cache");
+				}
+			} catch (Exception ex) {
+				LOG.warn("Could not load from cache for " + key, ex);
+				try {
+					Context.getCache().remove(key);
+				} catch (Exception ex1) {
+				}
+			}
+		}
+	}
+
+	@Override
+	public List<IStockRecord> getHistory() {
+		return getColumns().asList();
+	}
+
+	@Override
+	public List<IStockRecord> getHistory(Date start) {
+		return getHistory(start, new Date());
+	}
+
+	public List<IStockRecord> getHistory(DateRange range) {
+		return getHistory(range.getStart(), range.getEnd());
+	}
+
+	/**
+	 * Provides a view on the records between the indicated dates
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	@Override
+	public List<IStockRecord> getHistory(Date start, Date end) {
+		StockColumns columns = getColumns();
+		int from = start == null ? 0 : columns.lowerBound(firstDay(start));
+		int to = columns.upperBound(CalendarUtils.toEpochDay(end == null ? new Date() : end));
+		return columns.asList().subList(from, Math.max(from, to));
+	}
+
+	/**
+	 * Determines the first epoch day which is not before the indicated date. The
+	 * records are at midnight, so if the date contains a time we need to start
+	 * with the next day.
+	 *
+	 * @param date
+	 * @return
+	 */
+	private static int firstDay(Date date) {
+		int day = CalendarUtils.toEpochDay(date);
+		return CalendarUtils.toDate(day).getTime() < date.getTime() ? day + 1 : day;
+	}
+
+	@Override
+	public IStockRecord getValue(Date date) {
+		return getValue(date, DateMatching.Next);
+	}
+
+	@Override
+	public IStockRecord getValue(Date date, DateMatching dateMatching) {
+		StockColumns columns = getColumns();
+		int day = CalendarUtils.toEpochDay(date);
+		int pos = columns.indexOf(day, dateMatching);
+		if (pos < 0 || (dateMatching == DateMatching.Exact && columns.getEpochDay(pos) != day)) {
+			return null;
+		}
+		return columns.getRecord(pos);
+	}
+
+	/**
+	 * Returns the latest value
+	 *
+	 * @return
+	 */
+	@Override
+	public IStockRecord getValue() {
+		StockColumns columns = getColumns();
+		return columns.isEmpty() ? null : columns.getRecord(columns.size() - 1);
+	}
+
+	@Override
+	public DateRange getDateRange() {
+		StockColumns columns = getColumns();
+		if (columns.isEmpty()) {
+			return new DateRange(new Date(), new Date());
+		}
+		return new DateRange(columns.getDate(0), columns.getDate(columns.size() - 1));
+	}
+
+	@Override
+	public void addRecord(IStockRecord stockRecord) {
+		if (columns == null) {
+			columns = new StockColumns(id);
+		}
+		columns.add(stockRecord);
+	}
+
+	@Override
+	public void addRecord(int epochDay, double open, double high, double low, double closing, double volume,
+			double adjustmentFactor) {
+		if (columns == null) {
+			columns = new StockColumns(id);
+		}
+		columns.add(epochDay, open, high, low, closing, volume, adjustmentFactor);
+	}
+
+	@Override
+	public int getLastEpochDay() {
+		return columns == null ? Integer.MIN_VALUE : columns.getLastEpochDay();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return getColumns().isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return getColumns().size();
+	}
+
+	/**
+	 * Provides a ColumnarStockData which contains only the history in the
+	 * requested date range. The data is shared with this object.
+	 *
+	 * @param range
+	 * @return
+	 */
+	@Override
+	public ColumnarStockData filterDates(DateRange range) {
+		StockColumns columns = getColumns();
+		int from = range.getStart() == null ? 0 : columns.lowerBound(firstDay(range.getStart()));
+		int to = range.getEnd() == null ? columns.size() : columns.upperBound(CalendarUtils.toEpochDay(range.getEnd()));
+		ColumnarStockData result = new ColumnarStockData(id, columns.slice(from, Math.max(from, to)));
+		result.reader = this.reader;
+		return result;
+	}
+
+	@Override
+	public void writeCSV(OutputStream os) throws IOException {
+		new CSVWriter().write(this, os);
+	}
+
+	@Override
+	public BarSeries toTimeSeries() {
+		if (timeSeries == null) {
+			timeSeries = new StockTimeSeries(this);
+		}
+		return timeSeries;
+	}
+
+	@Override
+	public BarSeries toTimeSeries(DateRange dateRange) {
+		return new StockTimeSeries(this, dateRange);
+	}
+
+	@Override
+	public BarSeries toTimeSeries(Date startDate) {
+		return new StockTimeSeries(this, Context.getDateRanges(startDate).get(0));
+	}
+
+	/**
+	 * Returns the data as csv String
+	 *
+	 * @return
+	 */
+	@Override
+	public String csv() {
+		StockColumns columns = getColumns();
+		StringBuffer sb = new StringBuffer();
+		sb.append("date,volume,open,closing,low,high");
+		sb.append(System.lineSeparator());
+		for (int j = 0; j < columns.size(); j++) {
+			sb.append(Context.format(columns.getDate(j)));
+			sb.append(",");
+			sb.append(StockColumns.toNumber(columns.getVolume(j)));
+			sb.append(",");
+			sb.append(Context.format(columns.getOpen(j)));
+			sb.append(",");
+			sb.append(Context.format(columns.getClosing(j)));
+			sb.append(",");
+			sb.append(Context.format(columns.getLow(j)));
+			sb.append(",");
+			sb.append(Context.format(columns.getHigh(j)));
+			sb.append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads the records from the last available date and stores the updated
+	 * history in the cache. The last record is replaced if the reader provides
+	 * different values and the newer records are added. If the reader does not
+	 * support a start date we reload the full history.
+	 *
+	 * @return number of added or changed records
+	 */
+	@Override
+	public synchronized int refresh() {
+		if (columns == null || columns.isEmpty() || !(reader instanceof IReaderEx)) {
+			int oldSize = columns == null ? 0 : columns.size();
+			reset();
+			return Math.max(0, getColumns().size() - oldSize);
+		}
+		int lastPos = columns.size() - 1;
+		IStockRecord last = getHistory().get(lastPos);
+		int count = 0;
+		for (IStockRecord rec : StockData.readTail(id, (IReaderEx) reader, last.getDate())) {
+			if (addRecordIfNewer(rec)) {
+				count++;
+			} else if (rec.getEpochDay() == last.getEpochDay() && StockData.isChanged(last, rec)) {
+				columns.set(lastPos, rec);
+				fingerprint = null;
+				count++;
+			}
+		}
+		if (count > 0) {
+			timeSeries = null;
+			putColumnsToCache(this.getStockID() + "/" + StockData.getSimpleClassName(reader));
+		}
+		LOG.info("refresh {} -> {} new or changed records", this.getStockID(), count);
+		return count;
+	}
+
+	/**
+	 * Removes the price history in order to free up the memory. The missing data
+	 * is dynamically reloaded if it is needed.
+	 */
+	@Override
+	public synchronized void reset() {
+		LOG.info("reset " + this);
+		columns = null;
+		timeSeries = null;
+		fingerprint = null;
+	}
+
+	@Override
+	public synchronized String getFingerprint() {
+		StockColumns columns = getColumns();
+		if (fingerprint == null || !fingerprint.isValid(columns, columns.size())) {
+			Fingerprint result = new Fingerprint(columns, columns.size());
+			for (int j = 0; j < columns.size(); j++) {
+				result.add(columns.getEpochDay(j), columns.getOpen(j), columns.getHigh(j), columns.getLow(j),
+						columns.getClosing(j), columns.getVolume(j), columns.getAdjustmentFactor(j));
+			}
+			fingerprint = result;
+		}
+		return fingerprint.getValue();
+	}
+
+	public boolean isDataLoaded() {
+		return columns != null;
+	}
+
+	public IReader getReader() {
+		return reader;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(this.getStockID());
+		if (this.columns != null) {
+			sb.append(" size:");
+			sb.append(this.columns.size());
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,119 @@
+package ch.pschatzmann.stocks;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * End of day information of a stock which is provided as view on the
+ * StockColumns
+ *
+ * @author pschatzmann
+ *
+ */
+public class ColumnarStockRecord implements IStockRecord, Serializable {
+	private static final long serialVersionUID = 1L;
+	private StockColumns columns;
+	private int index;
+	private transient IStockID id;
+
+	public ColumnarStockRecord(StockColumns columns, int index) {
+		this.columns = columns;
+		this.index = index;
+	}
+
+	@Override
+	public Date getDate() {
+		return columns.getDate(index);
+	}
+
+	/**
+	 * Returns the date as number of days since 1970-01-01
+	 *
+	 * @return
+	 */
+	@JsonIgnore
+	@Override
+	public int getEpochDay() {
+		return columns.getEpochDay(index);
+	}
+
+	@Override
+	public Number getClosing() {
+		return StockColumns.toNumber(columns.getClosing(index));
+	}
+
+	@Override
+	@JsonIgnore
+	public boolean isValid() {
+		return columns.isValid(index);
+	}
+
+	@Override
+	public Number getVolume() {
+		return StockColumns.toNumber(columns.getVolume(index));
+	}
+
+	@Override
+	public Number getOpen() {
+		return StockColumns.toNumber(columns.getOpen(index));
+	}
+
+	@Override
+	public Number getHigh() {
+		return StockColumns.toNumber(columns.getHigh(index));
+	}
+
+	@Override
+	public Number getLow() {
+		return StockColumns.toNumber(columns.getLow(index));
+	}
+
+	@Override
+	public Number getAdjustmentFactor() {
+		return StockColumns.toNumber(columns.getAdjustmentFactor(index));
+	}
+
+	@JsonIgnore
+	@Override
+	public IStockID getStockID() {
+		return id != null ? id : columns.getStockID();
+	}
+
+	@JsonIgnore
+	@Override
+	public void setStockID(IStockID id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the position in the history
+	 *
+	 * @return
+	 */
+	@JsonIgnore
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public int compareTo(IStockRecord o) {
+		if (o instanceof ColumnarStockRecord) {
+			return Integer.compare(this.getEpochDay(), ((ColumnarStockRecord) o).getEpochDay());
+		}
+		return this.getDate().compareTo(o.getDate());
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(this.getStockID());
+		sb.append(" ");
+		sb.append(Context.format(this.getDate()));
+		sb.append(": ");
+		sb.append(this.getClosing());
+		return sb.toString();
+	}
+
+}
@@ -36,6 +36,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.pschatzmann.dates.DateRange;
 import ch.pschatzmann.dates.StandardDateRangeSource;
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
 import ch.pschatzmann.stocks.cache.CombinedCache;
 import ch.pschatzmann.stocks.cache.ICache;
@@ -70,9 +71,12 @@ public class Context implements Serializable {
 	private static long id = new Date().getTime();
 	private static Date defaultStartDate = date("1970-01-01");
 	private static boolean cachingActive = false;
+	private static boolean columnarStockData = false;
 	private static ICache cache = setCache();
 	private static Function<Number, Num> function = DoubleNum::valueOf;
 	private static Properties properties=null;
+	private static boolean stockDataRegistryActive = false;
+	private static volatile StockDataRegistry stockDataRegistry;
 
 
 	static {
@@ -89,7 +93,7 @@ public class Context implements Serializable {
 	 * @param exchange
 	 * @return
 	 */
-	public static synchronized IStockData getStockData(String symbol, String exchange) {
+	public static IStockData getStockData(String symbol, String exchange) {
 		return getStockData(new StockID(symbol, exchange), getDefaultReader());
 	}
 
@@ -100,7 +104,7 @@ public class Context implements Serializable {
 	 * @param symbol
 	 * @return
 	 */
-	public static synchronized IStockData getStockData(String symbol) {
+	public static IStockData getStockData(String symbol) {
 		return getStockData(new StockID(symbol, ""), getDefaultReader());
 	}
 	
@@ -111,7 +115,7 @@ public class Context implements Serializable {
 	 * @param id
 	 * @return
 	 */
-	public static synchronized IStockData getStockData(IStockID id) {
+	public static IStockData getStockData(IStockID id) {
 		return getStockData(id, getDefaultReader());
 	}
 
@@ -122,11 +126,75 @@ public class Context implements Serializable {
 	 * @param reader
 	 * @return
 	 */
-	public static synchronized IStockData getStockData(IStockID id, IReader reader) {
+	public static IStockData getStockData(IStockID id, IReader reader) {
 		if (reader == null) {
 			reader = defaultReader;
 		}
-		return new StockData(id,reader);
+		if (stockDataRegistryActive) {
+			return getStockDataRegistry().getStockData(id, reader, columnarStockData);
+		}
+		return columnarStockData ? new ColumnarStockData(id, reader) : new StockData(id,reader);
+	}
+
+	/**
+	 * Returns the process wide registry which makes sure that the same stock
+	 * data is shared and loaded only once
+	 * 
+	 * @return
+	 */
+	public static StockDataRegistry getStockDataRegistry() {
+		StockDataRegistry result = stockDataRegistry;
+		if (result == null) {
+			synchronized (Context.class) {
+				result = stockDataRegistry;
+				if (result == null) {
+					result = new StockDataRegistry();
+					stockDataRegistry = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Defines if getStockData provides the shared objects from the
+	 * StockDataRegistry. If it is deactivated (the default) we create a new
+	 * object with each call. Activate it only if the callers do not change the
+	 * returned objects (e.g. with reset, refresh or addRecord) because all
+	 * callers get the same instance.
+	 * 
+	 * @param active
+	 */
+	public static void setStockDataRegistryActive(boolean active) {
+		stockDataRegistryActive = active;
+	}
+
+	/**
+	 * Checks if the StockDataRegistry is used by getStockData
+	 * 
+	 * @return
+	 */
+	public static boolean isStockDataRegistryActive() {
+		return stockDataRegistryActive;
+	}
+
+	/**
+	 * Defines if getStockData provides the memory efficient ColumnarStockData
+	 * instead of StockData
+	 * 
+	 * @param active
+	 */
+	public static void setColumnarStockData(boolean active) {
+		columnarStockData = active;
+	}
+
+	/**
+	 * Checks if getStockData provides ColumnarStockData objects
+	 * 
+	 * @return
+	 */
+	public static boolean isColumnarStockData() {
+		return columnarStockData;
 	}
 
 	/**
@@ -142,14 +210,24 @@ public class Context implements Serializable {
 
 
 	/**
-	 * Converts the string to a date
+	 * Converts the string to a date. Dates in the format yyyy-MM-dd are parsed
+	 * w/o locking.
 	 * @param str
 	 * @return
 	 */
 	
-	public synchronized static Date date(String str) {
+	public static Date date(String str) {
+		if (str == null) {
+			return null;
+		}
+		int day = TradingDay.parse(str);
+		if (day != TradingDay.NONE) {
+			return TradingDay.toDate(day);
+		}
 		try {
-			return str == null ? null : dateFormat.parse(str);
+			synchronized (dateFormat) {
+				return dateFormat.parse(str);
+			}
 		} catch (ParseException e) {
 			throw new RuntimeException(e);
 		}
@@ -160,7 +238,7 @@ public class Context implements Serializable {
 	 * @param date
 	 * @return
 	 */
-	public synchronized static Date date(ZonedDateTime date) {
+	public static Date date(ZonedDateTime date) {
 		try {
 			return Date.from(date.toInstant());
 		} catch (Exception e) {
@@ -173,12 +251,8 @@ public class Context implements Serializable {
 	 * @param date
 	 * @return
 	 */
-	public synchronized static Date date(Date date) {
-		Date result = new Date(date.getTime());
-		result.setHours(0);
-		result.setMinutes(0);
-		result.setSeconds(0);
-		return result;
+	public static Date date(Date date) {
+		return TradingDay.toDate(TradingDay.of(date));
 	}
 
 	/**
@@ -187,7 +261,7 @@ public class Context implements Serializable {
 	 * @return
 	 */
 	public static String format(Date date) {
-		return date == null ? "" : getDateFormat().format(date);
+		return date == null ? "" : TradingDay.toString(TradingDay.of(date));
 	}
 
 	/**
@@ -326,7 +400,12 @@ public class Context implements Serializable {
 	 * Resets the cache
 	 */
 	public static void resetCache() {
-		StockData.resetCache();
+		if (stockDataRegistry != null) {
+			stockDataRegistry.clear();
+		}
+		if (cache != null) {
+			StockData.resetCache();
+		}
 	}
 
 
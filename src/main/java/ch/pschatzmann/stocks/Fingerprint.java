@@ -0,0 +1,83 @@
+package ch.pschatzmann.stocks;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 based fingerprint of a price history which is used to recognize
+ * changes of the data. We remember the history object and its size, so that
+ * the value only needs to be determined again if the history was reloaded or
+ * extended.
+ *
+ * @author pschatzmann
+ *
+ */
+class Fingerprint {
+	private Object history;
+	private int size;
+	private MessageDigest digest;
+	private ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 6 * Double.BYTES);
+	private String value;
+
+	Fingerprint(Object history, int size) {
+		this.history = history;
+		this.size = size;
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Checks if the fingerprint was determined for the indicated history
+	 *
+	 * @param history
+	 * @param size
+	 * @return
+	 */
+	boolean isValid(Object history, int size) {
+		return this.history == history && this.size == size;
+	}
+
+	void add(IStockRecord r) {
+		add(r.getEpochDay(), getDouble(r.getOpen()), getDouble(r.getHigh()), getDouble(r.getLow()),
+				getDouble(r.getClosing()), getDouble(r.getVolume()), getDouble(r.getAdjustmentFactor()));
+	}
+
+	void add(int epochDay, double open, double high, double low, double closing, double volume,
+			double adjustmentFactor) {
+		buffer.clear();
+		buffer.putInt(epochDay);
+		buffer.putDouble(open);
+		buffer.putDouble(high);
+		buffer.putDouble(low);
+		buffer.putDouble(closing);
+		buffer.putDouble(volume);
+		buffer.putDouble(adjustmentFactor);
+		digest.update(buffer.array());
+	}
+
+	/**
+	 * Returns the first 16 hex digits of the hash
+	 *
+	 * @return
+	 */
+	String getValue() {
+		if (value == null) {
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			value = sb.substring(0, 16);
+			digest = null;
+		}
+		return value;
+	}
+
+	private static double getDouble(Number value) {
+		return value == null ? Double.NaN : value.doubleValue();
+	}
+
+}
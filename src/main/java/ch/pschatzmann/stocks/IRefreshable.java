@@ -0,0 +1,20 @@
+package ch.pschatzmann.stocks;
+
+/**
+ * Stock data which can be updated with the new records w/o reloading the full
+ * history
+ * 
+ * @author pschatzmann
+ *
+ */
+public interface IRefreshable extends IResettable {
+
+	/**
+	 * Adds the records which are after the last available date and updates the
+	 * cache
+	 * 
+	 * @return number of added records
+	 */
+	public int refresh();
+
+}
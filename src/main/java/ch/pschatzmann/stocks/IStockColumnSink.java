@@ -0,0 +1,27 @@
+package ch.pschatzmann.stocks;
+
+/**
+ * Receiver of the values of a stock record as primitives, so that we do not
+ * need to create any objects
+ *
+ * @author pschatzmann
+ *
+ */
+@FunctionalInterface
+public interface IStockColumnSink {
+
+	/**
+	 * Adds a record. Missing values are represented as NaN.
+	 *
+	 * @param epochDay
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param closing
+	 * @param volume
+	 * @param adjustmentFactor
+	 */
+	public void addRecord(int epochDay, double open, double high, double low, double closing, double volume,
+			double adjustmentFactor);
+
+}
@@ -0,0 +1,39 @@
+package ch.pschatzmann.stocks;
+
+import ch.pschatzmann.dates.CalendarUtils;
+
+/**
+ * Interface to add stock data w/o creating any IStockRecord objects
+ *
+ * @author pschatzmann
+ *
+ */
+public interface IStockColumnTarget extends IStockTarget, IStockColumnSink {
+
+	/**
+	 * Returns the epoch day of the last record or Integer.MIN_VALUE if there are
+	 * no records
+	 *
+	 * @return
+	 */
+	public int getLastEpochDay();
+
+	/**
+	 * Adds the values of the record if it is after the last entry
+	 *
+	 * @param rec
+	 * @return true if the record has been added
+	 */
+	public default boolean addRecordIfNewer(IStockRecord rec) {
+		int day = CalendarUtils.toEpochDay(rec.getDate());
+		if (day > getLastEpochDay()) {
+			addRecord(day, StockColumns.toDouble(rec.getOpen()), StockColumns.toDouble(rec.getHigh()),
+					StockColumns.toDouble(rec.getLow()), StockColumns.toDouble(rec.getClosing()),
+					StockColumns.toDouble(rec.getVolume()),
+					rec.getAdjustmentFactor() == null ? 1.0 : rec.getAdjustmentFactor().doubleValue());
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -38,6 +38,17 @@ public interface IStockData {
 	 */
 	public List<IStockRecord> getHistory(Date startDate);
 
+	/**
+	 * Provides the history between the indicated dates (inclusive). If the start
+	 * date is null we start with the first record. If the end date is null we
+	 * use the current date. The result is a view on the history.
+	 * 
+	 * @param startDate
+	 * @param endDate
+	 * @return
+	 */
+	public List<IStockRecord> getHistory(Date startDate, Date endDate);
+
 	/**
 	 * Returns the date record for the indicated date. This is e.g. used to
 	 * determine the trading price
@@ -122,4 +133,13 @@ public interface IStockData {
 	 */
 	public String csv();
 
+	/**
+	 * Provides a hash of the history which changes if the history is updated.
+	 * The value is only determined again if the history was reloaded or
+	 * extended.
+	 * 
+	 * @return
+	 */
+	public String getFingerprint();
+
 }
@@ -2,6 +2,8 @@ package ch.pschatzmann.stocks;
 
 import java.util.Date;
 
+import ch.pschatzmann.dates.CalendarUtils;
+
  /***
  * Interface for End of day information of a stock
  * 
@@ -11,6 +13,13 @@ import java.util.Date;
 
 public interface IStockRecord extends Comparable<IStockRecord> {
 	public Date getDate();
+	/**
+	 * Returns the date as number of days since 1970-01-01 (see TradingDay)
+	 * @return
+	 */
+	public default int getEpochDay() {
+		return CalendarUtils.toEpochDay(getDate());
+	}
 	public Number getClosing();
 	public boolean isValid();
 	public Number getVolume();
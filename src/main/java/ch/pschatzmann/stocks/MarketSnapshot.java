@@ -0,0 +1,146 @@
+package ch.pschatzmann.stocks;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ta4j.core.BarSeries;
+
+import ch.pschatzmann.stocks.data.universe.IUniverse;
+import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.StockDataLoader;
+
+/**
+ * Immutable copy of the price histories of multiple stocks which can be shared
+ * by concurrent simulations. The data is loaded only once and kept in
+ * StockColumns, so that the stock data can not be changed by a refresh or
+ * reset.
+ *
+ * @author pschatzmann
+ *
+ */
+public class MarketSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private Map<IStockID, IStockData> stockData;
+
+	public MarketSnapshot(IStockData... stockData) {
+		this(Arrays.asList(stockData));
+	}
+
+	public MarketSnapshot(Collection<? extends IStockData> stockData) {
+		Map<IStockID, IStockData> map = new LinkedHashMap();
+		for (IStockData sd : stockData) {
+			map.put(sd.getStockID(), new FrozenStockData(sd));
+		}
+		this.stockData = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Loads the indicated stocks with the reader
+	 *
+	 * @param ids
+	 * @param reader
+	 * @return
+	 */
+	public static MarketSnapshot load(Collection<IStockID> ids, IReader reader) {
+		return new MarketSnapshot(new StockDataLoader(reader).load(ids).values());
+	}
+
+	/**
+	 * Loads all stocks of the universe with the reader
+	 *
+	 * @param universe
+	 * @param reader
+	 * @return
+	 */
+	public static MarketSnapshot load(IUniverse universe, IReader reader) {
+		return load(universe.list(), reader);
+	}
+
+	/**
+	 * Provides the stock data for the indicated id or null if the stock is not
+	 * part of the snapshot
+	 *
+	 * @param id
+	 * @return
+	 */
+	public IStockData getStockData(IStockID id) {
+		return stockData.get(id);
+	}
+
+	public Collection<IStockData> getStockData() {
+		return stockData.values();
+	}
+
+	public Collection<IStockID> getStockIDs() {
+		return stockData.keySet();
+	}
+
+	public boolean contains(IStockID id) {
+		return stockData.containsKey(id);
+	}
+
+	public int size() {
+		return stockData.size();
+	}
+
+	@Override
+	public String toString() {
+		return "MarketSnapshot " + stockData.keySet();
+	}
+
+	/**
+	 * ColumnarStockData which does not support any changes
+	 */
+	private static class FrozenStockData extends ColumnarStockData {
+		private static final long serialVersionUID = 1L;
+
+		FrozenStockData(IStockData source) {
+			super(source.getStockID(), copy(source));
+		}
+
+		/**
+		 * Copies the values so that the snapshot does not share any arrays with
+		 * the source
+		 * 
+		 * @param source
+		 * @return
+		 */
+		private static StockColumns copy(IStockData source) {
+			if (source instanceof ColumnarStockData) {
+				StockColumns columns = ((ColumnarStockData) source).getColumns();
+				return columns.copyOfRange(0, columns.size());
+			}
+			return new StockColumns(source.getStockID(), source.getHistory());
+		}
+
+		@Override
+		public void addRecord(IStockRecord stockRecord) {
+			throw new UnsupportedOperationException("The MarketSnapshot can not be changed");
+		}
+
+		@Override
+		public void addRecord(int epochDay, double open, double high, double low, double closing, double volume,
+				double adjustmentFactor) {
+			throw new UnsupportedOperationException("The MarketSnapshot can not be changed");
+		}
+
+		@Override
+		public synchronized int refresh() {
+			return 0;
+		}
+
+		@Override
+		public synchronized void reset() {
+		}
+
+		@Override
+		public synchronized BarSeries toTimeSeries() {
+			return super.toTimeSeries();
+		}
+	}
+
+}
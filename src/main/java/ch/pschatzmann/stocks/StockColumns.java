@@ -0,0 +1,482 @@
+package ch.pschatzmann.stocks;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+
+import ch.pschatzmann.dates.CalendarUtils;
+import ch.pschatzmann.stocks.StockData.DateMatching;
+
+/**
+ * Columnar storage of the price history of an individual stock. The dates are
+ * kept as epoch days and the values as primitive double arrays. Missing values
+ * are represented as NaN. IStockRecord objects are only created on demand as
+ * light weight views on the columns. Slices share the arrays with their source
+ * until they are modified.
+ *
+ * @author pschatzmann
+ *
+ */
+public class StockColumns implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int INITIAL_CAPACITY = 256;
+	private IStockID id;
+	private int offset;
+	private int size;
+	private boolean shared;
+	private int[] days;
+	private double[] open;
+	private double[] high;
+	private double[] low;
+	private double[] closing;
+	private double[] volume;
+	private double[] adjustmentFactor;
+
+	public StockColumns() {
+		this(null, INITIAL_CAPACITY);
+	}
+
+	public StockColumns(IStockID id) {
+		this(id, INITIAL_CAPACITY);
+	}
+
+	public StockColumns(IStockID id, int capacity) {
+		this.id = id;
+		this.days = new int[capacity];
+		this.open = new double[capacity];
+		this.high = new double[capacity];
+		this.low = new double[capacity];
+		this.closing = new double[capacity];
+		this.volume = new double[capacity];
+		this.adjustmentFactor = new double[capacity];
+	}
+
+	/**
+	 * Creates the columns from a list of records
+	 *
+	 * @param id
+	 * @param records
+	 */
+	public StockColumns(IStockID id, List<IStockRecord> records) {
+		this(id, Math.max(records.size(), 1));
+		for (IStockRecord rec : records) {
+			add(rec);
+		}
+	}
+
+	/**
+	 * Creates the columns from the indicated arrays which are used directly
+	 * (w/o copying them)
+	 *
+	 * @param id
+	 * @param days
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param closing
+	 * @param volume
+	 * @param adjustmentFactor
+	 */
+	public StockColumns(IStockID id, int[] days, double[] open, double[] high, double[] low, double[] closing,
+			double[] volume, double[] adjustmentFactor) {
+		this.id = id;
+		this.days = days;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.closing = closing;
+		this.volume = volume;
+		this.adjustmentFactor = adjustmentFactor;
+		this.size = days.length;
+	}
+
+	/**
+	 * Provides the columns for a list of records. If the list is a view on
+	 * StockColumns we return them directly.
+	 *
+	 * @param id
+	 * @param records
+	 * @return
+	 */
+	public static StockColumns of(IStockID id, List<IStockRecord> records) {
+		if (records instanceof RecordList) {
+			return ((RecordList) records).getColumns();
+		}
+		return new StockColumns(id, records);
+	}
+
+	public IStockID getStockID() {
+		return id;
+	}
+
+	public void setStockID(IStockID id) {
+		this.id = id;
+	}
+
+	/**
+	 * Adds a new record at the end
+	 *
+	 * @param epochDay
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param closing
+	 * @param volume
+	 * @param adjustmentFactor
+	 */
+	public void add(int epochDay, double open, double high, double low, double closing, double volume,
+			double adjustmentFactor) {
+		ensureCapacity(size + 1);
+		int pos = offset + size;
+		this.days[pos] = epochDay;
+		this.open[pos] = open;
+		this.high[pos] = high;
+		this.low[pos] = low;
+		this.closing[pos] = closing;
+		this.volume[pos] = volume;
+		this.adjustmentFactor[pos] = adjustmentFactor;
+		size++;
+	}
+
+	/**
+	 * Adds the values of the record at the end
+	 *
+	 * @param rec
+	 */
+	public void add(IStockRecord rec) {
+		add(CalendarUtils.toEpochDay(rec.getDate()), toDouble(rec.getOpen()), toDouble(rec.getHigh()),
+				toDouble(rec.getLow()), toDouble(rec.getClosing()), toDouble(rec.getVolume()),
+				rec.getAdjustmentFactor() == null ? 1.0 : rec.getAdjustmentFactor().doubleValue());
+	}
+
+	/**
+	 * Replaces the values of the record at the indicated position
+	 *
+	 * @param index
+	 * @param rec
+	 */
+	public void set(int index, IStockRecord rec) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+		// make sure that we do not change the arrays of an other object
+		ensureCapacity(size);
+		int pos = offset + index;
+		this.days[pos] = CalendarUtils.toEpochDay(rec.getDate());
+		this.open[pos] = toDouble(rec.getOpen());
+		this.high[pos] = toDouble(rec.getHigh());
+		this.low[pos] = toDouble(rec.getLow());
+		this.closing[pos] = toDouble(rec.getClosing());
+		this.volume[pos] = toDouble(rec.getVolume());
+		this.adjustmentFactor[pos] = rec.getAdjustmentFactor() == null ? 1.0 : rec.getAdjustmentFactor().doubleValue();
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (shared) {
+			unshare(capacity);
+		} else if (capacity > days.length) {
+			int newCapacity = Math.max(capacity, days.length + (days.length >> 1) + 1);
+			days = Arrays.copyOf(days, newCapacity);
+			open = Arrays.copyOf(open, newCapacity);
+			high = Arrays.copyOf(high, newCapacity);
+			low = Arrays.copyOf(low, newCapacity);
+			closing = Arrays.copyOf(closing, newCapacity);
+			volume = Arrays.copyOf(volume, newCapacity);
+			adjustmentFactor = Arrays.copyOf(adjustmentFactor, newCapacity);
+		}
+	}
+
+	/**
+	 * Copies the shared arrays so that we can modify them
+	 *
+	 * @param capacity
+	 */
+	private void unshare(int capacity) {
+		int newCapacity = Math.max(capacity, size);
+		days = Arrays.copyOfRange(days, offset, offset + newCapacity);
+		open = Arrays.copyOfRange(open, offset, offset + newCapacity);
+		high = Arrays.copyOfRange(high, offset, offset + newCapacity);
+		low = Arrays.copyOfRange(low, offset, offset + newCapacity);
+		closing = Arrays.copyOfRange(closing, offset, offset + newCapacity);
+		volume = Arrays.copyOfRange(volume, offset, offset + newCapacity);
+		adjustmentFactor = Arrays.copyOfRange(adjustmentFactor, offset, offset + newCapacity);
+		offset = 0;
+		shared = false;
+	}
+
+	/**
+	 * Releases the unused capacity
+	 */
+	public void trimToSize() {
+		if (shared) {
+			unshare(size);
+		} else if (days.length > size) {
+			days = Arrays.copyOf(days, size);
+			open = Arrays.copyOf(open, size);
+			high = Arrays.copyOf(high, size);
+			low = Arrays.copyOf(low, size);
+			closing = Arrays.copyOf(closing, size);
+			volume = Arrays.copyOf(volume, size);
+			adjustmentFactor = Arrays.copyOf(adjustmentFactor, size);
+		}
+	}
+
+	/**
+	 * Provides a copy which contains only the records between the indicated
+	 * positions (from inclusive, to exclusive)
+	 *
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public StockColumns copyOfRange(int from, int to) {
+		StockColumns result = slice(from, to);
+		result.unshare(result.size);
+		return result;
+	}
+
+	/**
+	 * Provides a view which contains only the records between the indicated
+	 * positions (from inclusive, to exclusive). The arrays are shared with this
+	 * object and are only copied when the slice is modified. This is a O(1)
+	 * operation.
+	 *
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public StockColumns slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+		}
+		StockColumns result = new StockColumns(id, 0);
+		result.days = days;
+		result.open = open;
+		result.high = high;
+		result.low = low;
+		result.closing = closing;
+		result.volume = volume;
+		result.adjustmentFactor = adjustmentFactor;
+		result.offset = offset + from;
+		result.size = to - from;
+		result.shared = true;
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getEpochDay(int index) {
+		return days[offset + index];
+	}
+
+	public Date getDate(int index) {
+		return CalendarUtils.toDate(days[offset + index]);
+	}
+
+	public double getOpen(int index) {
+		return open[offset + index];
+	}
+
+	public double getHigh(int index) {
+		return high[offset + index];
+	}
+
+	public double getLow(int index) {
+		return low[offset + index];
+	}
+
+	public double getClosing(int index) {
+		return closing[offset + index];
+	}
+
+	public double getVolume(int index) {
+		return volume[offset + index];
+	}
+
+	public double getAdjustmentFactor(int index) {
+		return adjustmentFactor[offset + index];
+	}
+
+	/**
+	 * Returns the epoch day of the last record or Integer.MIN_VALUE if there are
+	 * no records
+	 *
+	 * @return
+	 */
+	public int getLastEpochDay() {
+		return size == 0 ? Integer.MIN_VALUE : days[offset + size - 1];
+	}
+
+	/**
+	 * Checks if the closing price of the indicated record is available
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isValid(int index) {
+		return Double.isFinite(closing[offset + index]);
+	}
+
+	/**
+	 * Binary search for the epoch day. If the day is not found we return
+	 * (-(insertion point) - 1)
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public int search(int epochDay) {
+		int pos = Arrays.binarySearch(days, offset, offset + size, epochDay);
+		return pos >= 0 ? pos - offset : pos + offset;
+	}
+
+	/**
+	 * Determines the position of the record for the indicated day. If there is
+	 * no exact match we use the prior or next record. The result is -1 if there
+	 * are no records.
+	 *
+	 * @param epochDay
+	 * @param dateMatching
+	 * @return
+	 */
+	public int indexOf(int epochDay, DateMatching dateMatching) {
+		if (size == 0) {
+			return -1;
+		}
+		int pos = search(epochDay);
+		if (pos < 0) {
+			pos = -pos - 1;
+			if (dateMatching == DateMatching.Prior) {
+				pos--;
+			}
+		}
+		return Math.max(0, Math.min(pos, size - 1));
+	}
+
+	/**
+	 * Returns the position of the first record which is on or after the indicated
+	 * day
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public int lowerBound(int epochDay) {
+		int pos = search(epochDay);
+		if (pos < 0) {
+			return -pos - 1;
+		}
+		// make sure that we get the first entry in case of duplicates
+		while (pos > 0 && days[offset + pos - 1] == epochDay) {
+			pos--;
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the position after the last record which is on or before the
+	 * indicated day
+	 *
+	 * @param epochDay
+	 * @return
+	 */
+	public int upperBound(int epochDay) {
+		int pos = search(epochDay);
+		if (pos < 0) {
+			return -pos - 1;
+		}
+		while (pos < size && days[offset + pos] == epochDay) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Provides a IStockRecord view on the indicated position
+	 *
+	 * @param index
+	 * @return
+	 */
+	public IStockRecord getRecord(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return new ColumnarStockRecord(this, index);
+	}
+
+	/**
+	 * Provides the records as List. The IStockRecord objects are created on
+	 * demand.
+	 *
+	 * @return
+	 */
+	public List<IStockRecord> asList() {
+		return new RecordList(this);
+	}
+
+	/**
+	 * Converts a Number to a double. Null is represented as NaN
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static double toDouble(Number value) {
+		return value == null ? Double.NaN : value.doubleValue();
+	}
+
+	/**
+	 * Converts a double to a Number. NaN is represented as null
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static Number toNumber(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
+	@Override
+	public String toString() {
+		return id + " size:" + size;
+	}
+
+	/**
+	 * List view on the columns which creates the IStockRecord objects on demand
+	 */
+	static class RecordList extends AbstractList<IStockRecord> implements RandomAccess, Serializable {
+		private static final long serialVersionUID = 1L;
+		private StockColumns columns;
+
+		RecordList(StockColumns columns) {
+			this.columns = columns;
+		}
+
+		@Override
+		public IStockRecord get(int index) {
+			return columns.getRecord(index);
+		}
+
+		@Override
+		public int size() {
+			return columns.size();
+		}
+
+		@Override
+		public boolean add(IStockRecord rec) {
+			columns.add(rec);
+			modCount++;
+			return true;
+		}
+
+		StockColumns getColumns() {
+			return columns;
+		}
+	}
+
+}
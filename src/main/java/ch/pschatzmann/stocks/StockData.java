@@ -5,23 +5,28 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ta4j.core.BarSeries;
 
+import ch.pschatzmann.dates.CalendarUtils;
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.accounting.HistoricValue;
 import ch.pschatzmann.stocks.accounting.IHistoricValue;
 import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.IReaderEx;
 import ch.pschatzmann.stocks.integration.StockTimeSeries;
 import ch.pschatzmann.stocks.utils.CSVWriter;
 
@@ -32,7 +37,7 @@ import ch.pschatzmann.stocks.utils.CSVWriter;
  *
  */
 
-public class StockData implements Serializable, IStockTarget, IStockData, IResettable {
+public class StockData implements Serializable, IStockTarget, IStockData, IRefreshable {
 	public enum DateMatching {
 		Exact, Prior, Next
 	};
@@ -44,6 +49,8 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 	private transient Comparator<IStockRecord> dateComparator;
 	private transient DateFormat df;
 	private transient BarSeries timeSeries;
+	private transient Fingerprint fingerprint;
+	private boolean shared = false;
 	private IReader reader = null;
 
 	public StockData() {
@@ -102,6 +109,7 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		if (history == null) {
 			LOG.debug("getHistory " + this);
 			IReader r = this.getReader();
+			long start = System.nanoTime();
 
 			String key = this.getStockID() + "/" + getSimpleClassName(r);
 			getHistoryFromCache(key);
@@ -114,6 +122,9 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 					putHistoryToCache(key);
 				}
 			}
+			if (Context.isStockDataRegistryActive()) {
+				Context.getStockDataRegistry().onLoaded(this, r, history.size(), System.nanoTime() - start);
+			}
 		}
 		return history;
 	}
@@ -153,18 +164,62 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		return getHistory(start, new Date());
 	}
 
+	/**
+	 * Provides a view on the history between the indicated dates. Because the
+	 * history is sorted we can determine the range with a binary search. The
+	 * view stays valid when new records are added to this object.
+	 */
+	@Override
 	public List<IStockRecord> getHistory(Date start, Date end) {
-		List<IStockRecord> result = new ArrayList();
-		if (end == null) {
-			end = new Date();
+		List<IStockRecord> history = getHistory();
+		long endTime = end == null ? System.currentTimeMillis() : end.getTime();
+		int from = start == null ? 0 : lowerBound(history, start.getTime());
+		int to = upperBound(history, endTime);
+		return new HistoryRange(history, from, Math.max(from, to));
+	}
+
+	/**
+	 * Determines the position of the first record which is on or after the
+	 * indicated time
+	 * 
+	 * @param list
+	 * @param time
+	 * @return
+	 */
+	private static int lowerBound(List<IStockRecord> list, long time) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (list.get(mid).getDate().getTime() < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
 		}
+		return low;
+	}
 
-		for (IStockRecord r : getHistory()) {
-			if ((start != null && !(r.getDate().before(start)) || r.getDate().after(end))) {
-				result.add(r);
+	/**
+	 * Determines the position after the last record which is on or before the
+	 * indicated time
+	 * 
+	 * @param list
+	 * @param time
+	 * @return
+	 */
+	private static int upperBound(List<IStockRecord> list, long time) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (list.get(mid).getDate().getTime() <= time) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
-		return result;
+		return low;
 	}
 
 	@Override
@@ -174,11 +229,14 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 
 	@Override
 	public IStockRecord getValue(Date date, DateMatching dateMatching) {
-		Date normalizedDate = Context.date(date);
+		int day = TradingDay.of(date);
 		List<IStockRecord> result = getHistory();
-		int pos = this.getPos(normalizedDate, result, dateMatching);
-		IStockRecord rec = result.isEmpty() ? null : result.get(pos);
-		if (rec != null && dateMatching.equals(DateMatching.Exact) && !Context.date(rec.getDate()).equals(normalizedDate)) {
+		if (result.isEmpty()) {
+			return null;
+		}
+		int pos = getPos(day, result, dateMatching);
+		IStockRecord rec = result.get(pos);
+		if (dateMatching == DateMatching.Exact && rec.getEpochDay() != day) {
 			rec = null;
 		}
 		return rec;
@@ -215,7 +273,7 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		List<String> result = new ArrayList();
 		List<IStockRecord> history = this.getHistory();
 		for (int j = 0; j < history.size(); j++) {
-			StockRecord rec = (StockRecord) history.get(j);
+			StockRecord rec = toStockRecord(history.get(j));
 			if (j == 0) {
 				result.add(rec.getHeader());
 			}
@@ -232,7 +290,7 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		StringBuffer result = new StringBuffer();
 		List<IStockRecord> history = this.getHistory();
 		for (int j = 0; j < history.size(); j++) {
-			StockRecord rec = (StockRecord) history.get(j);
+			StockRecord rec = toStockRecord(history.get(j));
 			if (j == 0) {
 				result.append(rec.getHeader());
 				result.append(System.lineSeparator());
@@ -244,6 +302,10 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		
 	}
 
+	private static StockRecord toStockRecord(IStockRecord rec) {
+		return rec instanceof StockRecord ? (StockRecord) rec : new StockRecord(rec);
+	}
+
 	public List<IStockRecord> getHistory(String year) {
 		List<IStockRecord> result = new ArrayList();
 		for (IStockRecord rec : getHistory()) {
@@ -270,6 +332,10 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 	public void addRecord(IStockRecord stockRecord) {
 		if (history==null ) {
 			history = new ArrayList();
+		} else if (shared) {
+			// the history is a view on the history of an other object
+			history = new ArrayList(history);
+			shared = false;
 		}
 
 		if (stockRecord.getStockID() == null) {
@@ -280,10 +346,10 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 	}
 
 	/**
-	 * Resets the history to contain only values between the indicated dates
+	 * Provides a copy which contains only values between the indicated dates.
+	 * The history of the copy is a view on the history of this object.
 	 * 
-	 * @param start
-	 * @param end
+	 * @param range
 	 * @return
 	 */
 	@Override
@@ -291,28 +357,36 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 		LOG.debug("filterDates");
 		StockData filteredCopy = new StockData(this);
 		filteredCopy.setHistory(this.getHistory(range.getStart(), range.getEnd()));
+		filteredCopy.shared = true;
 		LOG.debug(this + ": " + this.getHistory().size());
 		return filteredCopy;
 	}
 
-	private int getPos(Date d, List<IStockRecord> list, DateMatching dateMatching) {
-		StockRecord sr = new StockRecord();
-		sr.setDate(d);
-		int pos = Collections.binarySearch(list, sr);
-		if (pos > 0) {
-		} else {
-			pos = Math.abs(pos) - 1;
-			if (dateMatching.equals(DateMatching.Prior)) {
-				pos--;
-			}
-			if (pos >= list.size() - 1) {
-				pos = list.size() - 1;
-			}
-			if (pos < 0) {
-				pos = 0;
+	/**
+	 * Binary search on the epoch days of the sorted records. If there is no exact
+	 * match we return the next or prior record
+	 * 
+	 * @param day
+	 * @param list
+	 * @param dateMatching
+	 * @return
+	 */
+	private static int getPos(int day, List<IStockRecord> list, DateMatching dateMatching) {
+		int low = 0;
+		int high = list.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midDay = list.get(mid).getEpochDay();
+			if (midDay < day) {
+				low = mid + 1;
+			} else if (midDay > day) {
+				high = mid - 1;
+			} else {
+				return mid;
 			}
 		}
-		return pos;
+		int pos = dateMatching == DateMatching.Prior ? low - 1 : low;
+		return Math.max(0, Math.min(pos, list.size() - 1));
 	}
 
 	/**
@@ -349,6 +423,98 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 				.map(hv -> (IHistoricValue) new HistoricValue(hv.getDate(), hv.getVolume().doubleValue())).sorted();
 	}
 
+	/**
+	 * Reads the records from the last available date and stores the updated
+	 * history in the cache. The last record is replaced if the reader provides
+	 * different values (e.g. because it was loaded before the close) and the
+	 * newer records are added. If the reader does not support a start date we
+	 * reload the full history.
+	 * 
+	 * @return number of added or changed records
+	 */
+	@Override
+	public synchronized int refresh() {
+		IReader r = this.getReader();
+		IStockRecord last = history == null || history.isEmpty() ? null : history.get(history.size() - 1);
+		if (last == null || !(r instanceof IReaderEx)) {
+			int oldSize = history == null ? 0 : history.size();
+			reset();
+			return Math.max(0, getHistory().size() - oldSize);
+		}
+		int count = 0;
+		for (IStockRecord rec : readTail(this.getStockID(), (IReaderEx) r, last.getDate())) {
+			if (rec.getEpochDay() > last.getEpochDay()) {
+				addRecord(rec);
+				count++;
+			} else if (isChanged(last, rec)) {
+				if (shared) {
+					history = new ArrayList(history);
+					shared = false;
+				}
+				if (rec.getStockID() == null) {
+					rec.setStockID(this.getStockID());
+				}
+				history.set(history.size() - 1, rec);
+				fingerprint = null;
+				count++;
+			}
+		}
+		if (count > 0) {
+			timeSeries = null;
+			putHistoryToCache(this.getStockID() + "/" + getSimpleClassName(r));
+		}
+		LOG.info("refresh {} -> {} new or changed records", this.getStockID(), count);
+		return count;
+	}
+
+	/**
+	 * Reads the records which are on or after the day of the indicated date
+	 * 
+	 * @param id
+	 * @param reader
+	 * @param lastDate
+	 * @return sorted records with distinct days
+	 */
+	static List<IStockRecord> readTail(IStockID id, IReaderEx reader, Date lastDate) {
+		StockData tmp = new StockData(id, (IReader) null);
+		tmp.history = new ArrayList();
+		int lastDay = CalendarUtils.toEpochDay(lastDate);
+		// some readers only provide the records after the start date
+		reader.read(tmp, CalendarUtils.toDate(lastDay - 1));
+		List<IStockRecord> result = new ArrayList();
+		int day = lastDay - 1;
+		for (IStockRecord rec : tmp.getHistory().stream().filter(rec -> rec.getDate() != null)
+				.sorted(Comparator.comparing(IStockRecord::getDate)).collect(Collectors.toList())) {
+			if (rec.getEpochDay() > day) {
+				result.add(rec);
+				day = rec.getEpochDay();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the values of the records are different
+	 * 
+	 * @param r1
+	 * @param r2
+	 * @return
+	 */
+	static boolean isChanged(IStockRecord r1, IStockRecord r2) {
+		return !isEqual(r1.getOpen(), r2.getOpen()) || !isEqual(r1.getHigh(), r2.getHigh())
+				|| !isEqual(r1.getLow(), r2.getLow()) || !isEqual(r1.getClosing(), r2.getClosing())
+				|| !isEqual(r1.getVolume(), r2.getVolume())
+				|| !isEqual(getAdjustmentFactor(r1), getAdjustmentFactor(r2));
+	}
+
+	private static Number getAdjustmentFactor(IStockRecord rec) {
+		return rec.getAdjustmentFactor() == null ? 1.0 : rec.getAdjustmentFactor();
+	}
+
+	private static boolean isEqual(Number n1, Number n2) {
+		return Double.compare(StockColumns.toDouble(n1), StockColumns.toDouble(n2)) == 0;
+	}
+
 	/**
 	 * Removes the price history in order to free up the memory. The missing data is
 	 * dynamically reloaded if it is needed.
@@ -357,6 +523,57 @@ public class StockData implements Serializable, IStockTarget, IStockData, IReset
 	public void reset() {
 		LOG.info("reset "+this);
 		history = null;
+		fingerprint = null;
+	}
+
+	@Override
+	public synchronized String getFingerprint() {
+		List<IStockRecord> history = getHistory();
+		if (fingerprint == null || !fingerprint.isValid(history, history.size())) {
+			Fingerprint result = new Fingerprint(history, history.size());
+			for (IStockRecord r : history) {
+				result.add(r);
+			}
+			fingerprint = result;
+		}
+		return fingerprint.getValue();
+	}
+
+	/**
+	 * Read only view on a range of the history. Unlike subList it only depends on
+	 * the positions, so it is not invalidated if records are appended to the
+	 * history.
+	 */
+	private static class HistoryRange extends AbstractList<IStockRecord> implements RandomAccess, Serializable {
+		private static final long serialVersionUID = 1L;
+		private List<IStockRecord> history;
+		private int from;
+		private int size;
+
+		HistoryRange(List<IStockRecord> history, int from, int to) {
+			if (history instanceof HistoryRange) {
+				HistoryRange range = (HistoryRange) history;
+				history = range.history;
+				from += range.from;
+				to += range.from;
+			}
+			this.history = history;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		public IStockRecord get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+			}
+			return history.get(from + index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
 	}
 
 	@Override
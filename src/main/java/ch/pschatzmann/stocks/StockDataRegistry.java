@@ -0,0 +1,277 @@
+package ch.pschatzmann.stocks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.input.IReader;
+
+/**
+ * Process wide registry of the loaded stock data. The entries are keyed by the
+ * IStockID and the reader instance, so that all callers which use the same
+ * reader share the same IStockData object. Readers of the same class with a
+ * different configuration (e.g. two MarketArchiveFileReaders for different
+ * files) get separate entries. Because the loading of the history is
+ * synchronized on the object, concurrent requests for the same ticker share
+ * one read.
+ *
+ * The memory budget can be defined with the property StockDataRegistryMaxMB.
+ * If the estimated size of the loaded data exceeds the budget, the least
+ * recently used entries are removed from the registry until we are below 90% of
+ * the budget. The removed objects stay valid for the callers which still hold a
+ * reference to them.
+ *
+ * @author pschatzmann
+ *
+ */
+public class StockDataRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(StockDataRegistry.class);
+	private static final long BYTES_PER_RECORD = 160;
+	private static final long BYTES_PER_COLUMNAR_RECORD = 52;
+	private static final double LOW_WATER_MARK = 0.9;
+	private Map<Key, Entry> entries = new ConcurrentHashMap();
+	private long maxBytes;
+	private AtomicLong usedBytes = new AtomicLong();
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong loads = new AtomicLong();
+	private AtomicLong loadTimeNanos = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Registered stock data with the information which is needed for the
+	 * eviction
+	 */
+	static class Entry {
+		final Key key;
+		final IStockData stockData;
+		volatile long lastAccess = System.nanoTime();
+		volatile long bytes;
+
+		Entry(Key key, IStockData stockData) {
+			this.key = key;
+			this.stockData = stockData;
+		}
+	}
+
+	/**
+	 * Key of an entry: the stock id, the identity of the reader and the type of
+	 * the stock data
+	 */
+	static class Key {
+		private final String id;
+		private final IReader reader;
+		private final boolean columnar;
+
+		Key(IStockID id, IReader reader, boolean columnar) {
+			this.id = id.toString();
+			this.reader = reader;
+			this.columnar = columnar;
+		}
+
+		@Override
+		public int hashCode() {
+			return (id.hashCode() * 31 + System.identityHashCode(reader)) * 31 + (columnar ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return id.equals(other.id) && reader == other.reader && columnar == other.columnar;
+		}
+
+		@Override
+		public String toString() {
+			return id + "/" + StockData.getSimpleClassName(reader) + "@"
+					+ Integer.toHexString(System.identityHashCode(reader)) + (columnar ? "/columnar" : "");
+		}
+	}
+
+	public StockDataRegistry() {
+		this(Long.parseLong(Context.getProperty("StockDataRegistryMaxMB", "512")) * 1024 * 1024);
+	}
+
+	public StockDataRegistry(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the shared stock data for the indicated id and reader. The history
+	 * is loaded lazily on the first access.
+	 *
+	 * @param id
+	 * @param reader
+	 * @param columnar
+	 * @return
+	 */
+	public IStockData getStockData(IStockID id, IReader reader, boolean columnar) {
+		Key key = new Key(id, reader, columnar);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			Entry[] created = new Entry[1];
+			entry = entries.computeIfAbsent(key, k -> {
+				created[0] = new Entry(k, columnar ? new ColumnarStockData(id, reader) : new StockData(id, reader));
+				return created[0];
+			});
+			if (entry == created[0]) {
+				misses.incrementAndGet();
+			} else {
+				hits.incrementAndGet();
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+		entry.lastAccess = System.nanoTime();
+		return entry.stockData;
+	}
+
+	/**
+	 * Called by the stock data after the history has been loaded: we update the
+	 * statistics and evict entries if we exceed the memory budget
+	 *
+	 * @param stockData
+	 * @param reader
+	 * @param records
+	 * @param nanos
+	 */
+	void onLoaded(IStockData stockData, IReader reader, int records, long nanos) {
+		loads.incrementAndGet();
+		loadTimeNanos.addAndGet(nanos);
+		Key key = new Key(stockData.getStockID(), reader, stockData instanceof ColumnarStockData);
+		long bytes = records * (stockData instanceof ColumnarStockData ? BYTES_PER_COLUMNAR_RECORD : BYTES_PER_RECORD);
+		synchronized (this) {
+			// the accounting is synchronized with evict and clear so that we
+			// only count the entries which are still registered
+			Entry entry = entries.get(key);
+			if (entry != null && entry.stockData == stockData) {
+				usedBytes.addAndGet(bytes - entry.bytes);
+				entry.bytes = bytes;
+				entry.lastAccess = System.nanoTime();
+				if (usedBytes.get() > maxBytes) {
+					evict(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used entries until we are below the low water
+	 * mark of the memory budget. So we do not need to sort the entries again
+	 * with each subsequent load.
+	 *
+	 * @param keep
+	 */
+	protected synchronized void evict(Entry keep) {
+		long target = (long) (maxBytes * LOW_WATER_MARK);
+		List<Entry> candidates = new ArrayList(entries.values());
+		candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+		for (Entry e : candidates) {
+			if (usedBytes.get() <= target) {
+				break;
+			}
+			if (e != keep && e.bytes > 0 && entries.remove(e.key, e)) {
+				usedBytes.addAndGet(-e.bytes);
+				evictions.incrementAndGet();
+				LOG.debug("evicted {}", e.key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries. The removed objects stay valid for the callers which
+	 * still hold a reference to them but they are no longer accounted.
+	 */
+	public synchronized void clear() {
+		for (Entry e : entries.values()) {
+			if (entries.remove(e.key, e)) {
+				usedBytes.addAndGet(-e.bytes);
+			}
+		}
+	}
+
+	/**
+	 * Resets the hit, miss, load and eviction counters
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		loads.set(0);
+		loadTimeNanos.set(0);
+		evictions.set(0);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of histories which have been loaded from the cache or the reader
+	 *
+	 * @return
+	 */
+	public long getLoads() {
+		return loads.get();
+	}
+
+	/**
+	 * Total time in milliseconds which has been spent to load the histories
+	 *
+	 * @return
+	 */
+	public double getLoadTimeMs() {
+		return loadTimeNanos.get() / 1000000.0;
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Estimated memory in bytes which is used by the loaded histories
+	 *
+	 * @return
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Defines the memory budget in bytes
+	 *
+	 * @param maxBytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		if (usedBytes.get() > maxBytes) {
+			evict(null);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "entries:" + size() + " hits:" + getHits() + " misses:" + getMisses() + " loads:" + getLoads()
+				+ " loadTimeMs:" + getLoadTimeMs() + " evictions:" + getEvictions() + " usedBytes:" + getUsedBytes();
+	}
+
+}
@@ -1,11 +1,11 @@
 package ch.pschatzmann.stocks;
 
 import java.io.Serializable;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import org.ta4j.core.Bar;
 
+import ch.pschatzmann.dates.TradingDay;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 
@@ -27,7 +27,6 @@ public class StockRecord implements IStockRecord, Serializable  {
 	private Number closing;
 	private Number adjustmentFactor;
 	private Number volume;
-	private DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
 	private transient IStockID id;
 	
 	public StockRecord() {
@@ -41,6 +40,7 @@ public class StockRecord implements IStockRecord, Serializable  {
 		this.high = sr.getHigh();
 		this.closing = sr.getClosing();
 		this.volume = sr.getVolume();
+		this.adjustmentFactor = sr.getAdjustmentFactor();
 	}
 
 	public StockRecord(Bar tick, IStockID parent, int index) {
@@ -61,7 +61,18 @@ public class StockRecord implements IStockRecord, Serializable  {
 	}
 	
 	public void setDate(Date date) {
-		this.date = Context.date(Context.format(date));
+		this.date = Context.date(date);
+	}
+
+	/**
+	 * Returns the date as number of days since 1970-01-01
+	 *
+	 * @return
+	 */
+	@JsonIgnore
+	@Override
+	public int getEpochDay() {
+		return TradingDay.of(date);
 	}
 	@Override
 	public Number getLow() {
@@ -124,7 +135,7 @@ public class StockRecord implements IStockRecord, Serializable  {
 		StringBuffer sb = new StringBuffer();
 		sb.append(this.getStockID());
 		sb.append(" ");
-		sb.append(df.format(this.getDate()));
+		sb.append(Context.format(this.getDate()));
 		sb.append(": ");
 		sb.append(this.getClosing());
 		return sb.toString();
@@ -150,7 +161,7 @@ public class StockRecord implements IStockRecord, Serializable  {
 	@JsonIgnore
 	public String getData() {
 		StringBuffer sb = new StringBuffer();
-		sb.append(df.format(this.getDate()));
+		sb.append(Context.format(this.getDate()));
 		sb.append(",");
 		sb.append(this.getVolume());
 		sb.append(",");
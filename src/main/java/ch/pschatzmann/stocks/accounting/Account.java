@@ -2,7 +2,9 @@ package ch.pschatzmann.stocks.accounting;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -10,6 +12,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -19,19 +22,18 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.IStockID;
 import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.accounting.Transaction.Status;
-import ch.pschatzmann.stocks.accounting.kpi.DrawDown;
 import ch.pschatzmann.stocks.accounting.kpi.IKPICollector;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.accounting.kpi.KPIAccumulator;
 import ch.pschatzmann.stocks.accounting.kpi.KPIValue;
 import ch.pschatzmann.stocks.accounting.kpi.NumberOfTrades;
-import ch.pschatzmann.stocks.accounting.kpi.Return;
-import ch.pschatzmann.stocks.accounting.kpi.SharpeRatio;
 import ch.pschatzmann.stocks.execution.fees.IFeesModel;
 import ch.pschatzmann.stocks.input.IReader;
 
@@ -95,6 +97,22 @@ public class Account implements IKPICollector, IAccount, Serializable {
 
 	}
 
+	/**
+	 * Provides the running totals of the transactions if they are supported by
+	 * the basic account
+	 * 
+	 * @return
+	 */
+	@JsonIgnore
+	public Ledger getLedger() {
+		if (account instanceof BasicAccount) {
+			return ((BasicAccount) account).getLedger();
+		} else if (account instanceof Account) {
+			return ((Account) account).getLedger();
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the amout of cash which is currently available
 	 * 
@@ -102,6 +120,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	@Override
 	public double getCash() {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getCash();
+		}
 		return this.getTransactions()
 			.stream()
 			.mapToDouble(o -> o.getImpactOnCash())
@@ -135,6 +157,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public double getPurchasedValue() {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getCostBasis();
+		}
 		return this.getPortfolio().getPurchasedValue();
 	}
 
@@ -164,6 +190,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public double getTotalFees() {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getTotalFees();
+		}
 		return this.getTransactions().stream().filter(t -> !t.isCashTransfer()).mapToDouble(t -> t.getFees()).sum();
 	}
 
@@ -173,6 +203,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public double getRealizedGain() {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getRealizedGains();
+		}
 		return this.getPortfolio().getRealizedGains();
 	}
 
@@ -211,19 +245,7 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	public Stream<Portfolio> getTradingPortfolioHistory() {
 		List<Portfolio> result = new ArrayList();
-		Portfolio lastPortfolio = null;
-		Date currentDate = new Date();
-		for (Date date : getAllTransactionDates()) {
-			Portfolio portfolio = this.getPortfolio(date);
-			if (portfolio == null) {
-				Portfolio temp = new Portfolio(this, date, lastPortfolio);
-				getTransactionsForDate(date).forEach(t -> temp.recordOrder(t, date));
-				temp.updateActualPrices();
-				portfolio = temp;
-			}
-			result.add(portfolio);
-			lastPortfolio = portfolio;
-		}
+		sweepPortfolio(getAllTransactionDates(), true, portfolio -> result.add(portfolio));
 		return result.stream();
 	}
 
@@ -234,20 +256,55 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	public Stream<Portfolio> getPortfolioHistory() {
 		List<Portfolio> result = new ArrayList();
-		Portfolio lastPortfolio = null;
-		Date currentDate = new Date();
-		for (Date date : getAllDates()) {
-			Portfolio portfolio = this.getPortfolio(date);
-			if (portfolio == null) {
-				Portfolio temp = new Portfolio(this, date, lastPortfolio);
-				getTransactionsForDate(date).forEach(t -> temp.recordOrder(t, date));
-				temp.updateActualPrices();
-				portfolio = temp;
+		sweepPortfolio(getAllDates(), true, portfolio -> result.add(portfolio));
+		return result.stream();
+	}
+
+	/**
+	 * Gets the totals of the portfolio over all dates
+	 * 
+	 * @return
+	 */
+	@JsonIgnore
+	public PortfolioHistory getPortfolioValueHistory() {
+		List<Date> dates = getAllDates();
+		PortfolioHistory result = new PortfolioHistory(dates.size());
+		sweepPortfolio(dates, false, portfolio -> result.add(portfolio));
+		return result;
+	}
+
+	/**
+	 * Rolls the portfolio forward over the sorted dates in a single pass: for
+	 * each date we record only the transactions up to this date which have not
+	 * been processed yet and update the actual prices with a price cursor per
+	 * stock. If copy is false the same Portfolio object is passed for all dates.
+	 * 
+	 * @param dates
+	 * @param copy
+	 * @param consumer
+	 */
+	protected void sweepPortfolio(Collection<Date> dates, boolean copy, Consumer<Portfolio> consumer) {
+		List<Transaction> transactions = new ArrayList(this.getTransactions());
+		// stable sort: the transactions of a day stay in their sequence
+		transactions.sort(Comparator.comparingInt(t -> TradingDay.of(t.getDate())));
+		int[] days = transactions.stream().mapToInt(t -> TradingDay.of(t.getDate())).toArray();
+		Map<IStockID, PriceCursor> cursors = new HashMap();
+		Portfolio portfolio = null;
+		int pos = 0;
+		for (Date date : dates) {
+			if (portfolio == null || copy) {
+				portfolio = new Portfolio(this, date, portfolio);
+			} else {
+				portfolio.setDate(date);
+			}
+			int day = TradingDay.of(date);
+			while (pos < days.length && days[pos] <= day) {
+				portfolio.recordOrder(transactions.get(pos), date);
+				pos++;
 			}
-			result.add(portfolio);
-			lastPortfolio = portfolio;
+			portfolio.updateActualPrices(cursors);
+			consumer.accept(portfolio);
 		}
-		return result.stream();
 	}
 
 	/**
@@ -300,7 +357,7 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	@JsonIgnore
 	public Portfolio getPortfolio() {
 		// Date lastDate = getOrderDates().stream().max(Date::compareTo).get();
-		return getPortfolio(this.getCloseDate()!=null ? this.getCloseDate() : Context.date(Context.format(new Date())));
+		return getPortfolio(this.getCloseDate()!=null ? this.getCloseDate() : TradingDay.toDate(TradingDay.today()));
 	}
 
 	/**
@@ -321,12 +378,12 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	@Override
 	public Portfolio getPortfolio(Date forDate) {
-		LOG.debug("getPortfolio "+forDate);
+		LOG.debug("getPortfolio {}", forDate);
 		Portfolio portfolio = new Portfolio(this, forDate);
-		for (Date d : getOrderDates()) {
-			if (d.getTime() <= forDate.getTime()) {
-				Portfolio temp = portfolio;
-				getTransactionsForDate(d).forEach(t -> temp.recordOrder(t, forDate));
+		int forDay = TradingDay.of(forDate);
+		for (int day : getOrderDays()) {
+			if (day <= forDay) {
+				getTransactionsForDay(day).forEach(t -> portfolio.recordOrder(t, forDate));
 				// portfolio.setDate(d);
 			}
 		}
@@ -341,7 +398,17 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public synchronized Set<Date> getOrderDates() {
-		return new TreeSet<>(this.getTransactions().stream().map(o -> Context.date(o.getDate())).collect(Collectors.toSet()));
+		return Arrays.stream(getOrderDays()).mapToObj(TradingDay::toDate).collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	/**
+	 * Returns all days (see TradingDay) on which we executed orders sorted
+	 * ascending
+	 * 
+	 * @return
+	 */
+	public synchronized int[] getOrderDays() {
+		return this.getTransactions().stream().mapToInt(o -> TradingDay.of(o.getDate())).distinct().sorted().toArray();
 	}
 
 	/**
@@ -351,7 +418,17 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public Stream<Transaction> getTransactionsForDate(Date forDate) {
-		return this.getTransactions().stream().filter(ol -> Context.date(ol.getDate()).equals(Context.date(forDate)));
+		return getTransactionsForDay(TradingDay.of(forDate));
+	}
+
+	/**
+	 * Returns all transactions for the indicated day (see TradingDay)
+	 * 
+	 * @param day
+	 * @return
+	 */
+	public Stream<Transaction> getTransactionsForDay(int day) {
+		return this.getTransactions().stream().filter(ol -> TradingDay.of(ol.getDate()) == day);
 	}
 
 	/**
@@ -419,6 +496,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	@Override
 	public Long getQuantity(IStockID id) {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getQuantity(id);
+		}
 		return this.getTransactions().stream().
 				filter(t -> t.getStatus()!=Status.Cancelled && t.getStockID().equals(id)).
 				mapToLong(t -> t.getQuantity()).
@@ -437,12 +518,11 @@ public class Account implements IKPICollector, IAccount, Serializable {
 		if (!transactionsList.isEmpty()) {
 			Date startDate = transactionsList.iterator().next().getDate();
 			dates.add(startDate);
+			DateRange range = this.getDateRange();
 			for (IStockID id : this.getStockIDs()) {
 				IStockData data = this.getStockData(id);
-				for (IStockRecord sr : data.getHistory()) {
-					if (this.getDateRange().isValid(sr.getDate())) {
-						dates.add(sr.getDate());
-					}
+				for (IStockRecord sr : data.getHistory(range.getStart(), range.getEnd())) {
+					dates.add(sr.getDate());
 				}
 			}
 		}
@@ -465,10 +545,11 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public List<Date> getTradingDates() {
+		DateRange range = getDateRange();
 		List<Date> result = this.getTransactions().stream().filter(t -> !t.isCashTransfer()).map(t -> t.getStockID()).distinct()
-				.map(id -> Context.getStockData(id)).map(stockData -> stockData.getHistory())
+				.map(id -> Context.getStockData(id)).map(stockData -> stockData.getHistory(range.getStart(), range.getEnd()))
 				.flatMap(stockRecordCollection -> stockRecordCollection.stream())
-				.map(stockRecord -> stockRecord.getDate()).filter(d -> getDateRange().isValid(d)).sorted().distinct()
+				.map(stockRecord -> stockRecord.getDate()).sorted().distinct()
 				.collect(Collectors.toList());
 		return result;
 	}
@@ -490,6 +571,10 @@ public class Account implements IKPICollector, IAccount, Serializable {
 
 	@Override
 	public List<IStockID> getStockIDs() {
+		Ledger ledger = getLedger();
+		if (ledger != null) {
+			return ledger.getStockIDs();
+		}
 		List<IStockID> result = this.getTransactions().stream().filter(t -> !t.isCashTransfer()).map(t -> t.getStockID())
 				.sorted().distinct().collect(Collectors.toList());
 		return result;
@@ -522,16 +607,28 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 	@Override
 	public List<KPIValue> getKPIValues() {
-		List<IHistoricValue> historyList = getTotalValueHistory().sorted().collect(Collectors.toList());
 		List<KPIValue> result = new ArrayList();
-		new Return(historyList).collectKPIValues(result);
-		new SharpeRatio(historyList, riskFreeReturnInPercent).collectKPIValues(result);
-		new DrawDown(historyList).collectKPIValues(result);
+		getKPIAccumulator().collectKPIValues(result);
 		new NumberOfTrades(this.getAccount()).collectKPIValues(result);
 		new Account(this).collectKPIValues(result);
 		return result;
 	}
 	
+	/**
+	 * Calculates the Return, SharpeRatio and DrawDown KPIs in one pass over the
+	 * total value history
+	 * 
+	 * @return
+	 */
+	public KPIAccumulator getKPIAccumulator() {
+		PortfolioHistory history = getPortfolioValueHistory();
+		KPIAccumulator result = new KPIAccumulator(riskFreeReturnInPercent);
+		for (int j = 0; j < history.size(); j++) {
+			result.add(history.getTime(j), history.getTotalValue(j));
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the KPI values as Map
 	 * @return
@@ -553,11 +650,8 @@ public class Account implements IKPICollector, IAccount, Serializable {
 		Account oneStockAccount = new Account(this);	
 		
 		this.getTransactions(id).forEach(t -> oneStockAccount.addTransaction(t));
-		List<IHistoricValue> historyList = oneStockAccount.getTotalValueHistory().sorted().collect(Collectors.toList());
 		List<KPIValue> result = new ArrayList();
-		new Return(historyList).collectKPIValues(result);
-		new SharpeRatio(historyList, riskFreeReturnInPercent).collectKPIValues(result);
-		new DrawDown(historyList).collectKPIValues(result);
+		oneStockAccount.getKPIAccumulator().collectKPIValues(result);
 		new NumberOfTrades(this.getAccount()).collectKPIValues(result);
 		new Account(this).collectKPIValues(result);
 		return result;
@@ -672,8 +766,7 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 */
 
 	public Stream<IHistoricValue> getActualValueHistory() {
-		return getPortfolioHistory().map(p -> new HistoricValue(p.getDate(), p.getActualValue()))
-				.map(i -> (IHistoricValue) i).sorted();
+		return getPortfolioValueHistory().getActualValueHistory().sorted();
 	}
 
 	/**
@@ -693,8 +786,7 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public Stream<IHistoricValue> getTotalValueHistory() {
-		return getPortfolioHistory().map(p -> new HistoricValue(p.getDate(), p.getTotalValue()))
-				.map(i -> (IHistoricValue) i).sorted();
+		return getPortfolioValueHistory().getTotalValueHistory().sorted();
 	}
 
 	/**
@@ -703,8 +795,7 @@ public class Account implements IKPICollector, IAccount, Serializable {
 	 * @return
 	 */
 	public Stream<IHistoricValue> getPurchasedValueHistory() {
-		return getPortfolioHistory().map(p -> new HistoricValue(p.getDate(), p.getPurchasedValue()))
-				.map(i -> (IHistoricValue) i).sorted();
+		return getPortfolioValueHistory().getPurchasedValueHistory().sorted();
 	}
 
 	@Override
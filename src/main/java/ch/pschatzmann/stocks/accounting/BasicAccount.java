@@ -7,6 +7,7 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -35,7 +36,8 @@ public class BasicAccount implements Serializable, IBasicAccount {
 	private List<Transaction> transactionsList = new ArrayList();
 	private IFeesModel fees;
 	private boolean margin = false;
-	private DateRange period;
+	private DateRange period = new DateRange();
+	private transient Ledger ledger;
 
 	
 	public BasicAccount() {
@@ -81,9 +83,12 @@ public class BasicAccount implements Serializable, IBasicAccount {
 	 * @see ch.pschatzmann.stocks.accounting.IAccount#addTransaction(ch.pschatzmann.stocks.accounting.Transaction)
 	 */
 	@Override
-	public void addTransaction(Transaction order) {
+	public synchronized void addTransaction(Transaction order) {
 		LOG.debug("addTransaction " + order);
 		transactionsList.add(order);
+		if (ledger != null) {
+			ledger.add(order);
+		}
 	}
 
 	/**
@@ -106,6 +111,32 @@ public class BasicAccount implements Serializable, IBasicAccount {
 
 	public synchronized void setTransactions(List<Transaction>transactions) {
 		this.transactionsList = transactions;
+		resetLedger();
+	}
+
+	/**
+	 * Provides the running totals of the transactions. The ledger is rebuilt if
+	 * the transaction list has been changed directly.
+	 * 
+	 * @return
+	 */
+	@JsonIgnore
+	public synchronized Ledger getLedger() {
+		if (ledger == null || ledger.size() != transactionsList.size()) {
+			resetLedger();
+			ledger = new Ledger(transactionsList);
+		}
+		if (Ledger.isConsistencyCheck()) {
+			ledger.check(transactionsList);
+		}
+		return ledger;
+	}
+
+	private void resetLedger() {
+		if (ledger != null) {
+			ledger.clear();
+			ledger = null;
+		}
 	}
 
 
@@ -194,8 +225,9 @@ public class BasicAccount implements Serializable, IBasicAccount {
 	 * Resets the account to the inital state. Removes all simmulated stock trades
 	 */
 	@Override
-	public void reset() {
+	public synchronized void reset() {
 		this.transactionsList.clear();
+		resetLedger();
 		this.addTransaction(new Transaction(this.getOpenDate(), initialCash));
 	}
 
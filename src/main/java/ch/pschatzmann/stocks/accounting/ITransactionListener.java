@@ -0,0 +1,14 @@
+package ch.pschatzmann.stocks.accounting;
+
+/**
+ * Callback which is informed when the values of a transaction have changed
+ * (e.g. because it was filled or cancelled)
+ * 
+ * @author pschatzmann
+ *
+ */
+public interface ITransactionListener {
+
+	void onChange(Transaction transaction);
+
+}
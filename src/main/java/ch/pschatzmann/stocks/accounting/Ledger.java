@@ -0,0 +1,430 @@
+package ch.pschatzmann.stocks.accounting;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.TradingDay;
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.accounting.Transaction.Status;
+
+/**
+ * Running totals of the transactions of an account: cash, quantity per stock,
+ * fees, cost basis and realized gains. The totals are updated when a
+ * transaction is added or changed (e.g. by a fill), so that we do not need to
+ * process the full transaction list for each query.
+ *
+ * The cost basis is calculated with the average purchase price of the filled
+ * transactions in the sequence of their dates. If a transaction is filled
+ * before a transaction which has already been considered, the cost basis is
+ * recalculated on the next request.
+ *
+ * In the consistency check mode (property LedgerConsistencyCheck) each query
+ * compares the running totals with a full recalculation.
+ *
+ * @author pschatzmann
+ *
+ */
+public class Ledger implements ITransactionListener {
+	private static final Logger LOG = LoggerFactory.getLogger(Ledger.class);
+	private static final double TOLERANCE = 0.000001;
+	private static boolean consistencyCheck = Boolean
+			.parseBoolean(Context.getProperty("LedgerConsistencyCheck", "false"));
+	private Map<Transaction, Entry> entries = new IdentityHashMap();
+	private Map<IStockID, Position> positions = new TreeMap();
+	private List<Transaction> transactions = new ArrayList();
+	private double cash;
+	private double fees;
+	private int sequence;
+	private boolean costBasisValid = true;
+	private int lastCostDay = TradingDay.NONE;
+	private int lastCostSequence = -1;
+
+	public Ledger() {
+	}
+
+	/**
+	 * Creates the ledger for the indicated transactions
+	 *
+	 * @param transactions
+	 */
+	public Ledger(List<Transaction> transactions) {
+		for (Transaction t : transactions) {
+			add(t);
+		}
+	}
+
+	/**
+	 * Records a new transaction
+	 *
+	 * @param t
+	 */
+	public void add(Transaction t) {
+		synchronized (this) {
+			if (entries.containsKey(t)) {
+				onChange(t);
+				return;
+			}
+			Entry entry = new Entry(sequence++);
+			entries.put(t, entry);
+			transactions.add(t);
+			apply(t, entry);
+		}
+		t.addListener(this);
+	}
+
+	/**
+	 * Removes all transactions
+	 */
+	public void clear() {
+		List<Transaction> removed;
+		synchronized (this) {
+			removed = new ArrayList(transactions);
+			entries.clear();
+			positions.clear();
+			transactions.clear();
+			cash = 0.0;
+			fees = 0.0;
+			invalidateCostBasis();
+		}
+		for (Transaction t : removed) {
+			t.removeListener(this);
+		}
+	}
+
+	/**
+	 * Updates the totals for a changed transaction
+	 */
+	@Override
+	public synchronized void onChange(Transaction t) {
+		Entry entry = entries.get(t);
+		if (entry != null) {
+			revert(entry);
+			apply(t, entry);
+		}
+	}
+
+	private void apply(Transaction t, Entry entry) {
+		entry.id = t.getStockID();
+		entry.cash = t.getImpactOnCash();
+		entry.quantity = t.getStatus() != Status.Cancelled ? t.getQuantity() : 0L;
+		entry.fees = t.isCashTransfer() ? 0.0 : t.getFees();
+		entry.trade = !t.isCashTransfer();
+		cash += entry.cash;
+		fees += entry.fees;
+		Position position = getPosition(entry.id, true);
+		position.quantity += entry.quantity;
+		if (entry.trade) {
+			position.transactions++;
+		}
+
+		boolean isCost = entry.trade && t.isFilled() && t.isActive();
+		if (entry.cost || (isCost && !isAfterLastCost(t, entry))) {
+			// the sequence has changed: we need to recalculate the cost basis
+			invalidateCostBasis();
+		} else if (isCost && costBasisValid) {
+			recordCost(position, t);
+			lastCostDay = TradingDay.of(t.getDate());
+			lastCostSequence = entry.sequence;
+		}
+		entry.cost = isCost;
+	}
+
+	private void revert(Entry entry) {
+		cash -= entry.cash;
+		fees -= entry.fees;
+		Position position = getPosition(entry.id, false);
+		if (position != null) {
+			position.quantity -= entry.quantity;
+			if (entry.trade) {
+				position.transactions--;
+			}
+		}
+	}
+
+	private boolean isAfterLastCost(Transaction t, Entry entry) {
+		int day = TradingDay.of(t.getDate());
+		return day > lastCostDay || (day == lastCostDay && entry.sequence > lastCostSequence);
+	}
+
+	private void invalidateCostBasis() {
+		costBasisValid = false;
+		lastCostDay = TradingDay.NONE;
+		lastCostSequence = -1;
+	}
+
+	/**
+	 * Updates the average cost basis and the realized gains
+	 *
+	 * @param position
+	 * @param t
+	 */
+	private static void recordCost(Position position, Transaction t) {
+		long qty = t.getQuantity();
+		if (qty > 0 || position.costQuantity <= 0) {
+			// buying or opening a short position: no realized gains
+			position.costBasis += qty * t.getFilledPrice();
+		} else if (qty < 0) {
+			double avgPrice = position.costBasis / position.costQuantity;
+			position.realizedGains += (t.getFilledPrice() - avgPrice) * -qty;
+			position.costBasis += qty * avgPrice;
+		}
+		position.costQuantity += qty;
+	}
+
+	/**
+	 * Recalculates the cost basis from the filled transactions sorted by date
+	 */
+	private void updateCostBasis() {
+		if (!costBasisValid) {
+			for (Position p : positions.values()) {
+				p.costBasis = 0.0;
+				p.costQuantity = 0;
+				p.realizedGains = 0.0;
+			}
+			List<Transaction> filled = new ArrayList();
+			for (Transaction t : transactions) {
+				if (entries.get(t).cost) {
+					filled.add(t);
+				}
+			}
+			// stable sort by day: transactions of the same day stay in their sequence
+			filled.sort((a, b) -> Integer.compare(TradingDay.of(a.getDate()), TradingDay.of(b.getDate())));
+			for (Transaction t : filled) {
+				recordCost(getPosition(t.getStockID(), true), t);
+			}
+			if (!filled.isEmpty()) {
+				Transaction last = filled.get(filled.size() - 1);
+				lastCostDay = TradingDay.of(last.getDate());
+				lastCostSequence = -1;
+				for (Transaction t : filled) {
+					if (TradingDay.of(t.getDate()) == lastCostDay) {
+						lastCostSequence = Math.max(lastCostSequence, entries.get(t).sequence);
+					}
+				}
+			}
+			costBasisValid = true;
+		}
+	}
+
+	private Position getPosition(IStockID id, boolean create) {
+		Position result = positions.get(id);
+		if (result == null && create) {
+			result = new Position();
+			positions.put(id, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sum of the impacts on cash of all transactions
+	 *
+	 * @return
+	 */
+	public synchronized double getCash() {
+		return cash;
+	}
+
+	/**
+	 * Returns the quantity of all transactions which are not cancelled
+	 *
+	 * @param id
+	 * @return
+	 */
+	public synchronized long getQuantity(IStockID id) {
+		Position p = positions.get(id);
+		return p == null ? 0L : p.quantity;
+	}
+
+	/**
+	 * Returns the fees of all trades
+	 *
+	 * @return
+	 */
+	public synchronized double getTotalFees() {
+		return fees;
+	}
+
+	/**
+	 * Returns the sorted list of the traded stocks
+	 *
+	 * @return
+	 */
+	public synchronized List<IStockID> getStockIDs() {
+		List<IStockID> result = new ArrayList();
+		for (Map.Entry<IStockID, Position> e : positions.entrySet()) {
+			if (e.getValue().transactions > 0) {
+				result.add(e.getKey());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of all trades (w/o cash transfers)
+	 *
+	 * @return
+	 */
+	public synchronized long getNumberOfTrades() {
+		long result = 0;
+		for (Position p : positions.values()) {
+			result += p.transactions;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the purchase value of the filled quantity of the indicated stock
+	 *
+	 * @param id
+	 * @return
+	 */
+	public synchronized double getCostBasis(IStockID id) {
+		updateCostBasis();
+		Position p = positions.get(id);
+		return p == null ? 0.0 : p.costBasis;
+	}
+
+	/**
+	 * Returns the purchase value of the filled quantity of all stocks
+	 *
+	 * @return
+	 */
+	public synchronized double getCostBasis() {
+		updateCostBasis();
+		double result = 0.0;
+		for (Position p : positions.values()) {
+			result += p.costBasis;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the realized gains of the indicated stock w/o the fees
+	 *
+	 * @param id
+	 * @return
+	 */
+	public synchronized double getRealizedGains(IStockID id) {
+		updateCostBasis();
+		Position p = positions.get(id);
+		return p == null ? 0.0 : p.realizedGains;
+	}
+
+	/**
+	 * Returns the realized gains of all stocks w/o the fees
+	 *
+	 * @return
+	 */
+	public synchronized double getRealizedGains() {
+		updateCostBasis();
+		double result = 0.0;
+		for (Position p : positions.values()) {
+			result += p.realizedGains;
+		}
+		return result;
+	}
+
+	/**
+	 * Number of recorded transactions
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return transactions.size();
+	}
+
+	/**
+	 * Compares the running totals with a recalculation from the indicated
+	 * transactions.
+	 *
+	 * @param transactions
+	 * @throws IllegalStateException
+	 *             if the values are different
+	 */
+	public synchronized void check(List<Transaction> transactions) {
+		Ledger expected = new Ledger();
+		for (Transaction t : transactions) {
+			Entry entry = new Entry(expected.sequence++);
+			expected.entries.put(t, entry);
+			expected.transactions.add(t);
+			expected.apply(t, entry);
+		}
+		expected.invalidateCostBasis();
+		expected.updateCostBasis();
+		updateCostBasis();
+
+		check("size", expected.size(), size());
+		check("cash", expected.cash, cash);
+		check("fees", expected.fees, fees);
+		check("stockIDs", expected.getStockIDs(), getStockIDs());
+		for (Map.Entry<IStockID, Position> e : expected.positions.entrySet()) {
+			Position actual = getPosition(e.getKey(), true);
+			check("quantity " + e.getKey(), e.getValue().quantity, actual.quantity);
+			check("cost basis " + e.getKey(), e.getValue().costBasis, actual.costBasis);
+			check("realized gains " + e.getKey(), e.getValue().realizedGains, actual.realizedGains);
+		}
+	}
+
+	private static void check(String name, Object expected, Object actual) {
+		if (!expected.equals(actual)) {
+			throw new IllegalStateException("Inconsistent ledger " + name + ": " + actual + " instead of " + expected);
+		}
+	}
+
+	private static void check(String name, double expected, double actual) {
+		if (Math.abs(expected - actual) > TOLERANCE * Math.max(1.0, Math.abs(expected))) {
+			throw new IllegalStateException("Inconsistent ledger " + name + ": " + actual + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * If this is activated the ledger is compared with a full recalculation for
+	 * each query
+	 *
+	 * @param active
+	 */
+	public static void setConsistencyCheck(boolean active) {
+		consistencyCheck = active;
+		LOG.info("LedgerConsistencyCheck: {}", active);
+	}
+
+	public static boolean isConsistencyCheck() {
+		return consistencyCheck;
+	}
+
+	/**
+	 * Values which have been recorded for a transaction
+	 */
+	private static class Entry {
+		private int sequence;
+		private IStockID id;
+		private double cash;
+		private long quantity;
+		private double fees;
+		private boolean trade;
+		private boolean cost;
+
+		Entry(int sequence) {
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Running totals for a stock
+	 */
+	private static class Position {
+		private long quantity;
+		private int transactions;
+		private double costBasis;
+		private long costQuantity;
+		private double realizedGains;
+	}
+
+}
@@ -1,14 +1,24 @@
 package ch.pschatzmann.stocks.accounting;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -17,18 +27,30 @@ import ch.pschatzmann.stocks.execution.fees.IFeesModel;
 
 /**
  * 
- * Account that supports the saving and loading of the account information 
+ * Account that supports the saving and loading of the account information.
+ * 
+ * The account is stored in a snapshot file (accounts/id.json) and the changes
+ * since the snapshot are appended to a journal (accounts/id.journal). When the
+ * journal gets bigger than the journalSnapshotInterval property we write a new
+ * snapshot and clear the journal. So the loading time depends only on the size
+ * of the snapshot and the last changes.
  * 
  * @author pschatzmann
  *
  */
 
-public class ManagedAccount extends Account {
+public class ManagedAccount extends Account implements ITransactionListener {
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOG = LoggerFactory.getLogger(ManagedAccount.class);
+	private transient TransactionJournal journal;
+	private transient Set<Transaction> changed;
+	private transient List<Transaction> knownTransactions;
+	private transient Transaction lastKnownTransaction;
+	private transient int knownCount;
+	private transient String header;
 
 	/**
 	 * Loads the account information if it exists otherwise it creates a new account
@@ -40,6 +62,7 @@ public class ManagedAccount extends Account {
 	 */
 	public ManagedAccount(String id, String currency, Double cash, Date openDate, IFeesModel fees) {
 		super(getBasicAccount(id,currency,cash,openDate,fees));
+		registerTransactions();
 	}
 	
 	/**
@@ -51,23 +74,123 @@ public class ManagedAccount extends Account {
 	 */
 	public ManagedAccount(String id) throws JsonParseException, JsonMappingException, IOException {
 		super(getBasicAccount(id));
+		registerTransactions();
 	}
 	
 	/**
-	 * Saves the basicAccount to a json file
+	 * Saves the changes of the account to the journal. If there are too many
+	 * changes or if the account has been reset we write a new snapshot.
 	 * @throws JsonGenerationException
 	 * @throws JsonMappingException
 	 * @throws IOException
 	 */
-	public void save() throws JsonGenerationException, JsonMappingException, IOException {
+	public synchronized void save() throws JsonGenerationException, JsonMappingException, IOException {
 		resetStockData();
-		
-		String path = Context.getProperty("accountPath", "accounts");
-		String fileName = path+File.separator +this.getId()+".json";
-		new File(path).mkdirs();
+		List<Transaction> transactions = this.getAccount().getTransactions();
+		if (isSnapshotRequired(transactions)) {
+			saveSnapshot();
+		} else {
+			List<Transaction> records = new ArrayList();
+			for (Transaction t : changed) {
+				changed.remove(t);
+				records.add(t);
+			}
+			for (; knownCount < transactions.size(); knownCount++) {
+				Transaction t = transactions.get(knownCount);
+				t.addListener(this);
+				records.add(t);
+			}
+			lastKnownTransaction = knownCount > 0 ? transactions.get(knownCount - 1) : null;
+			getJournal().append(records);
+			getJournal().sync();
+			LOG.info("Saved {} changes of the account {} to the journal", records.size(), this.getId());
+		}
+	}
+
+	/**
+	 * Saves the basicAccount to a json file and clears the journal
+	 * @throws IOException
+	 */
+	public synchronized void saveSnapshot() throws IOException {
+		resetStockData();
+		File file = getSnapshotFile(this.getId());
+		File tmp = new File(file.getPath() + ".tmp");
+		file.getParentFile().mkdirs();
 		
 		ObjectMapper mapper = new ObjectMapper();
-		mapper.writeValue(new File(fileName),this.getAccount());
+		try (FileOutputStream os = new FileOutputStream(tmp)) {
+			os.write(mapper.writeValueAsBytes(this.getAccount()));
+			os.getChannel().force(true);
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		// if we crash before the journal is cleared the replay does not change the snapshot
+		getJournal().clear();
+		registerTransactions();
+		LOG.info("Saved the snapshot of the account {}", this.getId());
+	}
+
+	private boolean isSnapshotRequired(List<Transaction> transactions) throws IOException {
+		int snapshotInterval = Integer.parseInt(Context.getProperty("journalSnapshotInterval", "1000"));
+		return changed == null || knownTransactions != transactions || transactions.size() < knownCount
+				|| (knownCount > 0 && transactions.get(knownCount - 1) != lastKnownTransaction)
+				|| !getHeader().equals(header) || !getSnapshotFile(this.getId()).exists()
+				|| getJournal().size() + changed.size() + transactions.size() - knownCount > snapshotInterval;
+	}
+
+	/**
+	 * Registers the account as listener to all transactions, so that we can
+	 * determine the changes for the journal
+	 */
+	private void registerTransactions() {
+		List<Transaction> transactions = this.getAccount().getTransactions();
+		for (Transaction t : transactions) {
+			t.addListener(this);
+		}
+		changed = Collections.newSetFromMap(new ConcurrentHashMap());
+		knownTransactions = transactions;
+		knownCount = transactions.size();
+		lastKnownTransaction = knownCount > 0 ? transactions.get(knownCount - 1) : null;
+		header = getHeader();
+	}
+
+	/**
+	 * Information of the account which is only saved in the snapshot
+	 * @return
+	 */
+	private String getHeader() {
+		return this.getOpenDate() + "|" + this.getCloseDate() + "|" + this.getAccount().isMargin();
+	}
+
+	/**
+	 * Records the changed transaction for the next save
+	 */
+	@Override
+	public void onChange(Transaction transaction) {
+		Set<Transaction> current = changed;
+		if (current != null) {
+			current.add(transaction);
+		}
+	}
+
+	private TransactionJournal getJournal() {
+		if (journal == null) {
+			journal = new TransactionJournal(getJournalFile(this.getId()));
+		}
+		return journal;
+	}
+
+	private static File getSnapshotFile(String id) {
+		String path = Context.getProperty("accountPath", "accounts");
+		return new File(path + File.separator + id + ".json");
+	}
+
+	private static File getJournalFile(String id) {
+		String path = Context.getProperty("accountPath", "accounts");
+		return new File(path + File.separator + id + ".journal");
 	}
 	
 	private static BasicAccount getBasicAccount(String id, String currency, Double cash, Date openDate, IFeesModel fees) {
@@ -83,10 +206,16 @@ public class ManagedAccount extends Account {
 
 	private static BasicAccount getBasicAccount(String id) throws IOException, JsonParseException, JsonMappingException {
 		BasicAccount account;
-		ObjectMapper mapper = new ObjectMapper();
-		String path = Context.getProperty("accountPath", "accounts");
-		String fileName = path+File.separator +id+".json";
-		account = mapper.readValue(new File(fileName), BasicAccount.class);
+		// calculated values (e.g. active) are written but can not be read back
+		ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		account = mapper.readValue(getSnapshotFile(id), BasicAccount.class);
+		// apply the changes since the snapshot
+		List<Transaction> transactions = new ArrayList(account.getTransactions());
+		int records = new TransactionJournal(getJournalFile(id)).replay(transactions);
+		if (records > 0) {
+			account.setTransactions(transactions);
+			LOG.info("Replayed {} journal records for the account {}", records, id);
+		}
 		return account;
 	}
 
@@ -10,6 +10,7 @@ import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockID;
 
@@ -33,7 +34,7 @@ public class Portfolio implements Serializable {
 	 * @param date
 	 */
 	public Portfolio(IAccount ta, Date date) {
-		LOG.debug("Portfolio new "+Context.format(date));
+		LOG.debug("Portfolio new {}", date);
 		this.ta = ta;
 		this.date = date;
 	}
@@ -75,6 +76,23 @@ public class Portfolio implements Serializable {
 		}
 	}
 	
+	/**
+	 * We update the value of the stock with the price cursors. The portfolio
+	 * dates must be processed in ascending order.
+	 *
+	 * @param cursors
+	 */
+	protected void updateActualPrices(Map<IStockID, PriceCursor> cursors) {
+		int day = this.getEpochDay();
+		for (PortfolioStockInfo line : data.values()) {
+			if (!line.isCash()) {
+				PriceCursor cursor = cursors.computeIfAbsent(line.getStockID(),
+						id -> new PriceCursor(ta.getStockData(id)));
+				line.setActualValue(line.getQuantity() * cursor.getClosing(day));
+			}
+		}
+	}
+
 	/**
 	 * Update the date
 	 * @param date
@@ -90,6 +108,15 @@ public class Portfolio implements Serializable {
 	public Date getDate() {
 		return this.date;
 	}
+
+	/**
+	 * Determines the day (see TradingDay) for which the portfolio totals and
+	 * prices are updated
+	 * @return
+	 */
+	public int getEpochDay() {
+		return TradingDay.of(this.date);
+	}
 	
 	/**
 	 * Total of all values of all stocks valuated at actual rates
@@ -222,7 +249,7 @@ public class Portfolio implements Serializable {
 		}
 		
 		// collect the related transactions
-		LOG.debug("recordOrder "+order +" realized gains: "+line.getRealizedGains());
+		LOG.debug("recordOrder {} realized gains: {}", order, line.getRealizedGains());
 
 		line.addTransaction(order);
 	}
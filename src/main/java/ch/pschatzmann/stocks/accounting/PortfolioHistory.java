@@ -0,0 +1,136 @@
+package ch.pschatzmann.stocks.accounting;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compact time series of the portfolio values which is used to calculate the
+ * KPIs. We keep only the totals of each date in primitive arrays instead of the
+ * full Portfolio objects.
+ *
+ * @author pschatzmann
+ *
+ */
+public class PortfolioHistory implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private long[] times;
+	private double[] actualValues;
+	private double[] purchasedValues;
+	private double[] totalValues;
+	private int size;
+
+	public PortfolioHistory() {
+		this(16);
+	}
+
+	public PortfolioHistory(int capacity) {
+		capacity = Math.max(1, capacity);
+		times = new long[capacity];
+		actualValues = new double[capacity];
+		purchasedValues = new double[capacity];
+		totalValues = new double[capacity];
+	}
+
+	/**
+	 * Records the totals of the portfolio
+	 *
+	 * @param portfolio
+	 */
+	public void add(Portfolio portfolio) {
+		add(portfolio.getDate(), portfolio.getActualValue(), portfolio.getPurchasedValue(),
+				portfolio.getTotalValue());
+	}
+
+	public void add(Date date, double actualValue, double purchasedValue, double totalValue) {
+		if (size == times.length) {
+			int capacity = size * 2;
+			times = Arrays.copyOf(times, capacity);
+			actualValues = Arrays.copyOf(actualValues, capacity);
+			purchasedValues = Arrays.copyOf(purchasedValues, capacity);
+			totalValues = Arrays.copyOf(totalValues, capacity);
+		}
+		times[size] = date.getTime();
+		actualValues[size] = actualValue;
+		purchasedValues[size] = purchasedValue;
+		totalValues[size] = totalValue;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Date getDate(int pos) {
+		return new Date(times[pos]);
+	}
+
+	/**
+	 * Date in milliseconds
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public long getTime(int pos) {
+		return times[pos];
+	}
+
+	/**
+	 * Value of the stocks at actual rates
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public double getActualValue(int pos) {
+		return actualValues[pos];
+	}
+
+	/**
+	 * Value of the stocks at purchased rates
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public double getPurchasedValue(int pos) {
+		return purchasedValues[pos];
+	}
+
+	/**
+	 * Value of the stocks at actual rates including the cash
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public double getTotalValue(int pos) {
+		return totalValues[pos];
+	}
+
+	public Stream<IHistoricValue> getActualValueHistory() {
+		return toHistoricValues(pos -> actualValues[pos]);
+	}
+
+	public Stream<IHistoricValue> getPurchasedValueHistory() {
+		return toHistoricValues(pos -> purchasedValues[pos]);
+	}
+
+	public Stream<IHistoricValue> getTotalValueHistory() {
+		return toHistoricValues(pos -> totalValues[pos]);
+	}
+
+	private Stream<IHistoricValue> toHistoricValues(IntToDoubleFunction values) {
+		return IntStream.range(0, size).mapToObj(pos -> new HistoricValue(getDate(pos), values.applyAsDouble(pos)));
+	}
+
+	@Override
+	public String toString() {
+		return "PortfolioHistory: " + size + " dates";
+	}
+
+}
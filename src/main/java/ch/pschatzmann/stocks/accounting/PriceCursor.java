@@ -0,0 +1,55 @@
+package ch.pschatzmann.stocks.accounting;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockRecord;
+
+/**
+ * Provides the closing prices of a stock for ascending days. The position in
+ * the history is kept between the calls, so that a sweep over all dates needs
+ * only one pass over the history. Like IStockData.getValue(date) we use the
+ * next available record if there is no price for the requested day.
+ *
+ * @author pschatzmann
+ *
+ */
+class PriceCursor {
+	private static final Logger LOG = LoggerFactory.getLogger(PriceCursor.class);
+	private IStockData stockData;
+	private List<IStockRecord> history;
+	private int pos = 0;
+	private int lastDay = Integer.MIN_VALUE;
+
+	PriceCursor(IStockData stockData) {
+		this.stockData = stockData;
+		this.history = stockData.getHistory();
+	}
+
+	/**
+	 * Determines the closing price for the indicated day (see TradingDay)
+	 *
+	 * @param day
+	 * @return
+	 */
+	double getClosing(int day) {
+		if (history.isEmpty()) {
+			LOG.warn("No rate found for " + stockData + " " + day);
+			return 0.0;
+		}
+		if (day < lastDay) {
+			// the days are not ascending: we need to start again
+			pos = 0;
+		}
+		lastDay = day;
+		int last = history.size() - 1;
+		while (pos < last && history.get(pos).getEpochDay() < day) {
+			pos++;
+		}
+		return history.get(pos).getClosing().doubleValue();
+	}
+
+}
@@ -2,6 +2,8 @@ package ch.pschatzmann.stocks.accounting;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +65,7 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 	private String comment = "";
 	private String id = null;
 	private Status status = Status.Planned;
+	private transient volatile List<ITransactionListener> listeners;
 
 	public Transaction() {
 	}
@@ -136,6 +139,7 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 	 */
 	public void setRequestedPriceType(Type t) {
 		this.transactionType = t;
+		changed();
 	}
 
 	/**
@@ -154,6 +158,7 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 
 	public void setFees(double fees) {
 		this.fees = fees;
+		changed();
 	}
 
 	public double getFilledPrice() {
@@ -207,7 +212,8 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 		this.filledPrice = fillPrice;
 		this.date = date;
 		this.fees = account.getAccount().getFeesModel().getFeesPerTrade(quantity, fillPrice * quantity);
-		this.setStatus(Status.Filled);
+		this.status = Status.Filled;
+		changed();
 		LOG.debug("-> fill " + this.getStockID() + " " + Context.format(this.getDate()) + " " + this.quantity + " * "
 				+ fillPrice);
 	}
@@ -225,7 +231,8 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 		this.quantity = quantity;
 		this.filledPrice = fillPrice;
 		this.fees = fees;
-		this.setStatus(Status.Filled);
+		this.status = Status.Filled;
+		changed();
 	}
 
 	/**
@@ -241,6 +248,7 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 
 	public void setImpactOnCash(double value) {
 		this.cash = value;
+		changed();
 	}
 
 	@JsonIgnore
@@ -332,17 +340,19 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 
 	public void cancel() {
 		LOG.info("cancel "+this);
-		this.setStatus(Status.Cancelled);
+		this.status = Status.Cancelled;
 		this.fees = 0;
 		this.filledPrice = 0.0;
+		changed();
 	}
 	
 	public void cancel(String comment) {
 		LOG.info("cancel "+this);
-		this.setStatus(Status.Cancelled);
+		this.status = Status.Cancelled;
 		this.setComment(comment);
 		this.fees = 0;
 		this.filledPrice = 0.0;
+		changed();
 	}
 	
 
@@ -360,6 +370,7 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 
 	public void setQuantity(long total) {
 		this.quantity = total;
+		changed();
 	}
 
 	public String getID() {
@@ -379,6 +390,39 @@ public class Transaction implements Serializable, Comparable<Transaction> {
 
 	public void setStatus(Status status) {
 		this.status = status;
+		changed();
+	}
+
+	/**
+	 * Registers a listener which is informed about changes of the transaction
+	 * 
+	 * @param listener
+	 */
+	public synchronized void addListener(ITransactionListener listener) {
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList();
+		}
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	public synchronized void removeListener(ITransactionListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Informs the listeners about a change
+	 */
+	protected void changed() {
+		List<ITransactionListener> current = listeners;
+		if (current != null) {
+			for (ITransactionListener listener : current) {
+				listener.onChange(this);
+			}
+		}
 	}
 
 }
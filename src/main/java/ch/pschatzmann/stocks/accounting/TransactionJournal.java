@@ -0,0 +1,277 @@
+package ch.pschatzmann.stocks.accounting;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.pschatzmann.stocks.Context;
+
+/**
+ * Append-only journal of transactions. Each record is a transaction in JSON
+ * format on a separate line. A transaction which has been changed (e.g.
+ * because it was filled) is appended again, so that the last record with the
+ * same ID wins when the journal is replayed.
+ *
+ * The records are buffered and written to the disk with fsync after the
+ * number of records which is defined by the property journalSyncInterval or
+ * when sync() is called. A partial record at the end of the file (e.g. from a
+ * crash during the write) is ignored and removed. Invalid complete records are
+ * skipped but they are never removed.
+ *
+ * @author pschatzmann
+ *
+ */
+public class TransactionJournal implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(TransactionJournal.class);
+	private static final ObjectMapper mapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private File file;
+	private FileOutputStream fileOutputStream;
+	private OutputStream out;
+	private int syncInterval = Integer.parseInt(Context.getProperty("journalSyncInterval", "100"));
+	private int unsynced;
+	private long size = -1;
+
+	public TransactionJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Appends the transaction to the end of the journal
+	 *
+	 * @param transaction
+	 * @throws IOException
+	 */
+	public synchronized void append(Transaction transaction) throws IOException {
+		OutputStream os = getOutputStream();
+		os.write(mapper.writeValueAsBytes(transaction));
+		os.write('\n');
+		if (size >= 0) {
+			size++;
+		}
+		if (++unsynced >= syncInterval) {
+			sync();
+		}
+	}
+
+	public void append(Collection<Transaction> transactions) throws IOException {
+		for (Transaction t : transactions) {
+			append(t);
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the disk
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		if (out != null) {
+			out.flush();
+			fileOutputStream.getChannel().force(false);
+		}
+		unsynced = 0;
+	}
+
+	/**
+	 * Reads all complete records of the journal. An incomplete record at the end
+	 * is removed from the file.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized List<Transaction> read() throws IOException {
+		close();
+		List<Transaction> result = new ArrayList();
+		if (file.exists()) {
+			byte[] data = Files.readAllBytes(file.toPath());
+			int start = 0;
+			for (int pos = 0; pos < data.length; pos++) {
+				if (data[pos] == '\n') {
+					if (pos > start) {
+						try {
+							result.add(mapper.readValue(data, start, pos - start, Transaction.class));
+						} catch (IOException ex) {
+							LOG.warn("Skipping the invalid journal record in " + file + ": " + ex);
+						}
+					}
+					start = pos + 1;
+				}
+			}
+			if (start < data.length) {
+				removeIncompleteRecord(start);
+			}
+		}
+		size = result.size();
+		return result;
+	}
+
+	/**
+	 * Applies the records of the journal to the indicated transactions. Changed
+	 * transactions are replaced and new transactions are added at the end.
+	 *
+	 * @param transactions
+	 * @return number of processed records
+	 * @throws IOException
+	 */
+	public int replay(List<Transaction> transactions) throws IOException {
+		List<Transaction> records = read();
+		if (!records.isEmpty()) {
+			Map<String, Integer> index = new HashMap();
+			for (int j = 0; j < transactions.size(); j++) {
+				index.put(transactions.get(j).getID(), j);
+			}
+			for (Transaction t : records) {
+				Integer pos = index.get(t.getID());
+				if (pos != null) {
+					transactions.set(pos, t);
+				} else {
+					index.put(t.getID(), transactions.size());
+					transactions.add(t);
+				}
+			}
+		}
+		return records.size();
+	}
+
+	/**
+	 * Removes all records. This is done after the full information has been
+	 * saved in a snapshot.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void clear() throws IOException {
+		close();
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.getChannel().force(true);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Number of records in the journal
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized long size() throws IOException {
+		if (size < 0) {
+			read();
+		}
+		return size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getSyncInterval() {
+		return syncInterval;
+	}
+
+	/**
+	 * Defines the number of records after which the data is written to the disk
+	 *
+	 * @param syncInterval
+	 */
+	public void setSyncInterval(int syncInterval) {
+		this.syncInterval = Math.max(1, syncInterval);
+	}
+
+	private OutputStream getOutputStream() throws IOException {
+		if (out == null) {
+			// make sure that we do not append to an incomplete record
+			removeIncompleteRecord();
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			fileOutputStream = new FileOutputStream(file, true);
+			out = new BufferedOutputStream(fileOutputStream);
+		}
+		return out;
+	}
+
+	/**
+	 * Removes the incomplete record at the end of the file. The file ends with a
+	 * newline if the last record is complete, so we usually only need to check
+	 * the last byte.
+	 *
+	 * @throws IOException
+	 */
+	private void removeIncompleteRecord() throws IOException {
+		if (file.exists()) {
+			long end;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				end = raf.length();
+				if (end == 0) {
+					return;
+				}
+				raf.seek(end - 1);
+				if (raf.read() == '\n') {
+					return;
+				}
+				// search the end of the last complete record
+				byte[] buffer = new byte[4096];
+				while (end > 0) {
+					int len = (int) Math.min(buffer.length, end);
+					raf.seek(end - len);
+					raf.readFully(buffer, 0, len);
+					int pos = len - 1;
+					while (pos >= 0 && buffer[pos] != '\n') {
+						pos--;
+					}
+					end = end - len + pos + 1;
+					if (pos >= 0) {
+						break;
+					}
+				}
+			}
+			removeIncompleteRecord(end);
+		}
+	}
+
+	private void removeIncompleteRecord(long length) throws IOException {
+		LOG.warn("Removing the incomplete journal record at the end of " + file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length);
+		}
+	}
+
+	/**
+	 * Writes the pending records and closes the file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			try {
+				sync();
+				out.close();
+			} finally {
+				out = null;
+				fileOutputStream = null;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TransactionJournal " + file;
+	}
+
+}
@@ -136,7 +136,7 @@ public class DrawDown implements IKPICollector, Serializable {
 	@Override
 	public void collectKPIValues(Collection<KPIValue> result) {
 		result.add(new KPIValue(KPI.MaxDrawDownPercent, "Max Draw Down %", getMaxDrowDownPercent()));
-		result.add(new KPIValue(KPI.MaxDrawDownPercent, "Max Draw Down Absolute", getMaxDrowDownValue()));
+		result.add(new KPIValue(KPI.MaxDrawDownAbsolute, "Max Draw Down Absolute", getMaxDrowDownValue()));
 		result.add(new KPIValue(KPI.MaxDrawDownNumberOfDays, "Max Draw Down - Number of days",
 				getMaxDrowDownNumberOfDays()));
 		result.add(new KPIValue(KPI.MaxDrawDownHighValue, "Max Draw Down - High", getMaxDrowDownMaxValue()));
@@ -0,0 +1,297 @@
+package ch.pschatzmann.stocks.accounting.kpi;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.accounting.IHistoricValue;
+
+/**
+ * Calculates the Return, SharpeRatio and DrawDown KPIs in one pass over the
+ * value history. The values must be added in ascending date order. We keep
+ * only running totals (the mean and variance are updated with Welford's
+ * algorithm), so that the KPIs can also be requested while a backtest is
+ * running.
+ *
+ * The results are the same as with the individual Return, SharpeRatio and
+ * DrawDown classes.
+ *
+ * @author pschatzmann
+ *
+ */
+public class KPIAccumulator implements IKPICollector, Serializable {
+	private static final long serialVersionUID = 1L;
+	private int tradingDays;
+	private double riskFreeReturnPerDay;
+	private int count;
+	private double firstValue;
+	private double lastValue;
+	private long lastTime;
+	private Moments returns = new Moments();
+	private Moments absoluteReturns = new Moments();
+	// current draw down
+	private double peak;
+	private double trough;
+	private long peakTime;
+	private long troughTime;
+	private int drawDownDays;
+	// max draw down
+	private boolean hasMaxDrawDown;
+	private double maxPeak;
+	private double maxTrough;
+	private long maxPeakTime;
+	private long maxTroughTime;
+	private int maxDrawDownDays;
+
+	public KPIAccumulator() {
+		this(0.0);
+	}
+
+	public KPIAccumulator(double riskFreeReturnInPercent) {
+		this(riskFreeReturnInPercent, 252);
+	}
+
+	public KPIAccumulator(double riskFreeReturnInPercent, int tradingDays) {
+		this.tradingDays = tradingDays;
+		this.riskFreeReturnPerDay = (riskFreeReturnInPercent / 100) / tradingDays;
+	}
+
+	/**
+	 * Adds the next value
+	 *
+	 * @param value
+	 */
+	public void add(IHistoricValue value) {
+		add(value.getDate(), value.getValue());
+	}
+
+	public void add(Date date, double value) {
+		add(date.getTime(), value);
+	}
+
+	/**
+	 * Adds the value for the indicated time in milliseconds
+	 *
+	 * @param time
+	 * @param value
+	 */
+	public void add(long time, double value) {
+		if (count > 0 && time < lastTime) {
+			throw new IllegalArgumentException("The values must be added in ascending date order");
+		}
+		if (count == 0) {
+			firstValue = value;
+		} else {
+			absoluteReturns.add(value - lastValue);
+			if (lastValue != 0) {
+				returns.add((value - lastValue) / lastValue);
+			}
+		}
+		updateDrawDown(time, value);
+		lastValue = value;
+		lastTime = time;
+		count++;
+	}
+
+	private void updateDrawDown(long time, double value) {
+		if (count == 0 || value > peak) {
+			// new maximum
+			recordDrawDown();
+			peak = value;
+			trough = value;
+			peakTime = time;
+			troughTime = time;
+			drawDownDays = 0;
+		} else {
+			drawDownDays++;
+			if (value < trough) {
+				trough = value;
+				troughTime = time;
+			}
+		}
+	}
+
+	private void recordDrawDown() {
+		if (count > 0 && isCurrentDrawDownMax()) {
+			hasMaxDrawDown = true;
+			maxPeak = peak;
+			maxTrough = trough;
+			maxPeakTime = peakTime;
+			maxTroughTime = troughTime;
+			maxDrawDownDays = drawDownDays;
+		}
+	}
+
+	private boolean isCurrentDrawDownMax() {
+		return trough < peak && (!hasMaxDrawDown || percent(peak, trough) > percent(maxPeak, maxTrough));
+	}
+
+	private static double percent(double max, double min) {
+		return (max - min) / max * 100;
+	}
+
+	/**
+	 * Number of processed values
+	 *
+	 * @return
+	 */
+	public int size() {
+		return count;
+	}
+
+	public double getLastValue() {
+		return lastValue;
+	}
+
+	public double getReturnPercent() {
+		return (lastValue - firstValue) / firstValue * 100;
+	}
+
+	public double getReturnPercentAnnulized() {
+		return getReturnPercent() / count * tradingDays;
+	}
+
+	public double getAbsoluteReturn() {
+		return lastValue - firstValue;
+	}
+
+	public double getAbsoluteReturnAveragePerDay() {
+		return absoluteReturns.getMean();
+	}
+
+	public double getAbsoluteReturnStdDev() {
+		return absoluteReturns.getStdDev();
+	}
+
+	public double getReturnPercentStdDev() {
+		return returns.getStdDev();
+	}
+
+	public double getSharpeRatio() {
+		return Math.sqrt(tradingDays) * (returns.getMean() - riskFreeReturnPerDay) / returns.getStdDev();
+	}
+
+	/**
+	 * Returns the biggest % draw down up to the last value or null if there was
+	 * no draw down
+	 *
+	 * @return
+	 */
+	public DrawDownValue getMaxDrawDown() {
+		DrawDownValue result = null;
+		if (count > 0 && isCurrentDrawDownMax()) {
+			result = drawDownValue(peak, trough, peakTime, troughTime, drawDownDays);
+		} else if (hasMaxDrawDown) {
+			result = drawDownValue(maxPeak, maxTrough, maxPeakTime, maxTroughTime, maxDrawDownDays);
+		}
+		return result;
+	}
+
+	private static DrawDownValue drawDownValue(double max, double min, long start, long end, int days) {
+		DrawDownValue result = new DrawDownValue();
+		result.setMax(max);
+		result.setMin(min);
+		result.setRange(new DateRange(new Date(start), new Date(end)));
+		result.numberOfDays = days;
+		return result;
+	}
+
+	public Double getMaxDrawDownPercent() {
+		DrawDownValue r = getMaxDrawDown();
+		return r == null ? null : r.getPercent();
+	}
+
+	/**
+	 * Provides the value of the indicated KPI or null if it is not calculated by
+	 * this class
+	 *
+	 * @param kpi
+	 * @return
+	 */
+	public Double getValue(KPI kpi) {
+		switch (kpi) {
+		case AbsoluteReturn:
+			return getAbsoluteReturn();
+		case AbsoluteReturnAveragePerDay:
+			return getAbsoluteReturnAveragePerDay();
+		case AbsoluteReturnStdDev:
+			return getAbsoluteReturnStdDev();
+		case ReturnPercent:
+			return getReturnPercent();
+		case ReturnPercentAnualized:
+			return getReturnPercentAnnulized();
+		case ReturnPercentStdDev:
+			return getReturnPercentStdDev();
+		case SharpeRatio:
+			return getSharpeRatio();
+		case MaxDrawDownPercent:
+			return getMaxDrawDownPercent();
+		default:
+			DrawDownValue r = getMaxDrawDown();
+			if (r != null) {
+				switch (kpi) {
+				case MaxDrawDownAbsolute:
+					return r.getValue();
+				case MaxDrawDownNumberOfDays:
+					return (double) r.getNumberOfDays();
+				case MaxDrawDownHighValue:
+					return r.getMax();
+				case MaxDrawDownLowValue:
+					return r.getMin();
+				default:
+					break;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public void collectKPIValues(Collection<KPIValue> result) {
+		result.add(new KPIValue(KPI.AbsoluteReturn, "Absolute Return", getAbsoluteReturn()));
+		result.add(new KPIValue(KPI.AbsoluteReturnAveragePerDay, "Absolute Return Average per day",
+				getAbsoluteReturnAveragePerDay()));
+		result.add(new KPIValue(KPI.AbsoluteReturnStdDev, "Absolute Return StdDev", getAbsoluteReturnStdDev()));
+		result.add(new KPIValue(KPI.ReturnPercent, "Return %", getReturnPercent()));
+		result.add(new KPIValue(KPI.ReturnPercentAnualized, "Return % per year", getReturnPercentAnnulized()));
+		result.add(new KPIValue(KPI.ReturnPercentStdDev, "Return % StdDev", getReturnPercentStdDev()));
+
+		result.add(new KPIValue(KPI.SharpeRatio, "Sharp Ratio", getSharpeRatio()));
+
+		DrawDownValue r = getMaxDrawDown();
+		result.add(new KPIValue(KPI.MaxDrawDownPercent, "Max Draw Down %", r == null ? null : r.getPercent()));
+		result.add(new KPIValue(KPI.MaxDrawDownAbsolute, "Max Draw Down Absolute", r == null ? null : r.getValue()));
+		result.add(new KPIValue(KPI.MaxDrawDownNumberOfDays, "Max Draw Down - Number of days",
+				r == null ? null : r.getNumberOfDays()));
+		result.add(new KPIValue(KPI.MaxDrawDownHighValue, "Max Draw Down - High", r == null ? null : r.getMax()));
+		result.add(new KPIValue(KPI.MaxDrawDownLowValue, "Max Draw Down - Low", r == null ? null : r.getMin()));
+		result.add(new KPIValue(KPI.MaxDrawDownPeriod, "Max Draw Down - Period", r == null ? null : r.getPeriod()));
+	}
+
+	/**
+	 * Running mean and variance (population) with Welford's algorithm
+	 */
+	private static class Moments implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long n;
+		private double mean;
+		private double m2;
+
+		void add(double x) {
+			n++;
+			double delta = x - mean;
+			mean += delta / n;
+			m2 += delta * (x - mean);
+		}
+
+		double getMean() {
+			return n == 0 ? Double.NaN : mean;
+		}
+
+		double getStdDev() {
+			return n == 0 ? Double.NaN : Math.sqrt(m2 / n);
+		}
+	}
+
+}
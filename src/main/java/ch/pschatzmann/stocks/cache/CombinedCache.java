@@ -9,7 +9,9 @@ import org.slf4j.LoggerFactory;
 import ch.pschatzmann.stocks.IStockRecord;
 
 /**
- * Combined local and redis cache to improve the performance
+ * Combined local and redis cache to improve the performance. The first tier is
+ * a MemoryCache which keeps the decoded histories, so that repeated requests
+ * do not need to deserialize the data.
  * 
  * @author pschatzmann
  *
@@ -17,9 +19,12 @@ import ch.pschatzmann.stocks.IStockRecord;
 public class CombinedCache implements ICache {
 	private static final Logger LOG = LoggerFactory.getLogger(CombinedCache.class);
 	private static List<ICache> caches = new ArrayList();
+	private static MemoryCache memoryCache;
 
 	public CombinedCache() {
 		if (caches.isEmpty()) {
+			memoryCache = new MemoryCache();
+			caches.add(memoryCache);
 			try {
 				caches.add(new JcsCache());
 			} catch(Exception ex) {
@@ -36,13 +41,13 @@ public class CombinedCache implements ICache {
 
 	@Override
 	public void put(String key, List<IStockRecord> records) {
-		LOG.info("put {}",key);
+		LOG.debug("put {}",key);
 		caches.stream().forEach(c -> c.put(key, records));
 	}
 
 	@Override
 	public List<IStockRecord> get(String key) {
-		LOG.info("get {}", key);
+		LOG.debug("get {}", key);
 		List<ICache> visitedCaches = new ArrayList();
 		for (ICache c : caches) {
 			try {
@@ -66,6 +71,15 @@ public class CombinedCache implements ICache {
 		return null;
 	}
 
+	/**
+	 * Provides the in memory tier e.g. to access the hit ratio
+	 * 
+	 * @return
+	 */
+	public static MemoryCache getMemoryCache() {
+		return memoryCache;
+	}
+
 	@Override
 	public void remove(String key) {
 		caches.stream().forEach(c -> c.remove(key));
@@ -2,6 +2,7 @@ package ch.pschatzmann.stocks.cache;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Properties;
@@ -17,14 +18,15 @@ import ch.pschatzmann.stocks.IStockRecord;
 /**
  * Cache implementation using JCS. JCS behaves badly if we have objects from
  * different JVM instance. To prevent these issues we add an instance dependent
- * key to our object keys.
+ * key to our object keys. The history is stored in the compact format of the
+ * StockHistoryCodec.
  * 
  * @author pschatzmann
  *
  */
 public class JcsCache implements ICache {
 	private static final Logger LOG = LoggerFactory.getLogger(JcsCache.class);
-	public static CacheAccess<String, List<IStockRecord>> cache;
+	public static CacheAccess<String, byte[]> cache;
 
 	public JcsCache() {
 		try {
@@ -52,8 +54,8 @@ public class JcsCache implements ICache {
 	@Override
 	public void put(String key, List<IStockRecord> records) {
 		if (cache != null && key != null && records != null) {
-			LOG.info("put {}",key);
-			cache.put(Context.getID() + "/" + key, records);
+			LOG.debug("put {}",key);
+			cache.put(Context.getID() + "/" + key, StockHistoryCodec.encode(records));
 		}
 	}
 
@@ -64,8 +66,16 @@ public class JcsCache implements ICache {
 	 */
 	@Override
 	public List<IStockRecord> get(String key) {
-		LOG.info("get {}", key);
-		return key == null || cache == null ? null : cache.get(Context.getID() + "/" + key);
+		LOG.debug("get {}", key);
+		if (key == null || cache == null) {
+			return null;
+		}
+		byte[] data = cache.get(Context.getID() + "/" + key);
+		try {
+			return data == null ? null : StockHistoryCodec.decode(data);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
 	}
 
 	/*
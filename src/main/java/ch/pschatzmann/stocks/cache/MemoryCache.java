@@ -0,0 +1,235 @@
+package ch.pschatzmann.stocks.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockColumns;
+
+/**
+ * In memory cache which keeps the decoded histories, so that a hit does not
+ * need any deserialization. The size is limited by the estimated memory of the
+ * entries which can be defined with the property MemoryCacheMaxMB.
+ *
+ * We use a LRU eviction with a frequency based admission (TinyLFU): if the
+ * cache is full a new entry is only added if it has been requested more often
+ * than the entry which would need to be evicted.
+ *
+ * @author pschatzmann
+ *
+ */
+public class MemoryCache implements ICache {
+	private static final Logger LOG = LoggerFactory.getLogger(MemoryCache.class);
+	private static final long BYTES_PER_RECORD = 52;
+	private static final long BYTES_PER_ENTRY = 128;
+	private LinkedHashMap<String, StockColumns> map = new LinkedHashMap(16, 0.75f, true);
+	private FrequencySketch sketch = new FrequencySketch(4096);
+	private long maxBytes;
+	private long usedBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long rejections;
+
+	public MemoryCache() {
+		this(Long.parseLong(Context.getProperty("MemoryCacheMaxMB", "64")) * 1024 * 1024);
+	}
+
+	public MemoryCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public synchronized void put(String key, List<IStockRecord> records) {
+		if (key == null || records == null) {
+			return;
+		}
+		// we keep a slice so that later changes of the caller are not visible
+		StockColumns columns = StockColumns.of(records.isEmpty() ? null : records.get(0).getStockID(), records);
+		columns = columns.slice(0, columns.size());
+		long weight = weight(columns);
+		if (weight > maxBytes) {
+			rejections++;
+			return;
+		}
+
+		StockColumns old = map.remove(key);
+		if (old != null) {
+			usedBytes -= weight(old);
+		}
+
+		// make space if the new entry is more popular than the eviction candidates
+		List<String> victims = new ArrayList();
+		long free = maxBytes - usedBytes;
+		int frequency = sketch.frequency(key);
+		Iterator<Map.Entry<String, StockColumns>> it = map.entrySet().iterator();
+		while (free < weight && it.hasNext()) {
+			Map.Entry<String, StockColumns> victim = it.next();
+			if (old == null && sketch.frequency(victim.getKey()) >= frequency) {
+				rejections++;
+				LOG.debug("rejected {}", key);
+				return;
+			}
+			victims.add(victim.getKey());
+			free += weight(victim.getValue());
+		}
+		for (String victim : victims) {
+			usedBytes -= weight(map.remove(victim));
+			evictions++;
+		}
+		map.put(key, columns);
+		usedBytes += weight;
+	}
+
+	/**
+	 * Returns the history as copy on write view. The requests are counted to
+	 * determine the popularity of the key.
+	 */
+	@Override
+	public synchronized List<IStockRecord> get(String key) {
+		if (key == null) {
+			return null;
+		}
+		sketch.increment(key);
+		StockColumns columns = map.get(key);
+		if (columns == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return columns.slice(0, columns.size()).asList();
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		StockColumns old = map.remove(key);
+		if (old != null) {
+			usedBytes -= weight(old);
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		map.clear();
+		usedBytes = 0;
+	}
+
+	private static long weight(StockColumns columns) {
+		return BYTES_PER_ENTRY + columns.size() * BYTES_PER_RECORD;
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the share of the requests which could be served from the cache
+	 *
+	 * @return
+	 */
+	public synchronized double getHitRatio() {
+		long total = hits + misses;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Number of entries which have not been added because they were less
+	 * popular than the existing entries
+	 *
+	 * @return
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "entries:" + map.size() + " usedBytes:" + usedBytes + " hitRatio:" + getHitRatio() + " evictions:"
+				+ evictions + " rejections:" + rejections;
+	}
+
+	/**
+	 * Count min sketch with 4 bit counters which estimates how often a key has
+	 * been requested. The counters are halved periodically, so that old
+	 * requests are aging out.
+	 */
+	static class FrequencySketch {
+		private static final int DEPTH = 4;
+		private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+		private byte[][] table;
+		private int mask;
+		private int samples;
+		private int sampleSize;
+
+		FrequencySketch(int width) {
+			int size = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+			this.table = new byte[DEPTH][size];
+			this.mask = size - 1;
+			this.sampleSize = size * 10;
+		}
+
+		void increment(String key) {
+			int hash = key.hashCode();
+			for (int j = 0; j < DEPTH; j++) {
+				int pos = index(hash, j);
+				if (table[j][pos] < 15) {
+					table[j][pos]++;
+				}
+			}
+			if (++samples >= sampleSize) {
+				age();
+			}
+		}
+
+		int frequency(String key) {
+			int hash = key.hashCode();
+			int result = Integer.MAX_VALUE;
+			for (int j = 0; j < DEPTH; j++) {
+				result = Math.min(result, table[j][index(hash, j)]);
+			}
+			return result;
+		}
+
+		private int index(int hash, int row) {
+			int h = hash * SEEDS[row];
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		private void age() {
+			for (byte[] row : table) {
+				for (int j = 0; j < row.length; j++) {
+					row[j] >>= 1;
+				}
+			}
+			samples /= 2;
+		}
+	}
+
+}
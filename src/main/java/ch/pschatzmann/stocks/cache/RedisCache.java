@@ -1,11 +1,15 @@
 package ch.pschatzmann.stocks.cache;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.redisson.Redisson;
 import org.redisson.api.RMapCache;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
 import org.redisson.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,18 +19,19 @@ import ch.pschatzmann.stocks.IStockRecord;
 
 /**
  * Cache which is using Redis as caching system. The following parameters are
- * supported: RedisCacheAddress, RedisCacheMaxSize, RedisCacheTTLInHours
+ * supported: RedisCacheAddress, RedisCacheMaxSize, RedisCacheTTLInHours. The
+ * history is stored in the compact format of the StockHistoryCodec.
  */
 public class RedisCache implements ICache {
 	private static final Logger LOG = LoggerFactory.getLogger(RedisCache.class);
 	private RedissonClient client;
-	private RMapCache<String, List<IStockRecord>> map;
+	private RMapCache<String, byte[]> map;
 
 	public RedisCache() {
 		Config config = new Config();
 		config.useSingleServer().setAddress(Context.getPropertyMandatory("RedisCacheAddress"))
 				.setConnectTimeout(1000).setTimeout(20000);
-		config.setCodec(new org.redisson.codec.SnappyCodec());
+		config.setCodec(new CompositeCodec(StringCodec.INSTANCE, ByteArrayCodec.INSTANCE));
 
 		RedissonClient client = Redisson.create(config);
 		map = client.getMapCache("stocks");
@@ -36,16 +41,21 @@ public class RedisCache implements ICache {
 	@Override
 	public void put(String key, List<IStockRecord> records) {
 		if (map != null && key != null && records != null) {
-			LOG.info("put {}", key);
-			map.put(key, records, Integer.parseInt(Context.getProperty("RedisCacheTTLInHours", "6")), TimeUnit.HOURS);
+			LOG.debug("put {}", key);
+			map.put(key, StockHistoryCodec.encode(records), Integer.parseInt(Context.getProperty("RedisCacheTTLInHours", "6")), TimeUnit.HOURS);
 		}
 	}
 
 	@Override
 	public List<IStockRecord> get(String key) {
 		if (map != null && key != null) {
-			LOG.info("get {}", key);
-			return map.get(key);
+			LOG.debug("get {}", key);
+			byte[] data = map.get(key);
+			try {
+				return data == null ? null : StockHistoryCodec.decode(data);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
 		}
 		return null;
 	}
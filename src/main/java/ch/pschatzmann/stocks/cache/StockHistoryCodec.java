@@ -0,0 +1,269 @@
+package ch.pschatzmann.stocks.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockID;
+
+/**
+ * Compact binary representation of a stock history which is used by the
+ * ICache implementations instead of the Java serialization. The data is stored
+ * by column:
+ *
+ * - the dates as epoch day of the first record followed by the day deltas
+ * - the values as deltas of scaled longs if all values can be represented with
+ * max 8 decimals, as floats if this is possible w/o loss of precision,
+ * otherwise as raw doubles
+ *
+ * All integers are stored as zigzag encoded variable length numbers. The data
+ * starts with a magic number and the version, so that we can detect entries
+ * which have been written with a different format.
+ *
+ * @author pschatzmann
+ *
+ */
+public class StockHistoryCodec {
+	public static final int MAGIC = 0x49534843; // ISHC
+	public static final byte VERSION = 1;
+	private static final byte RAW = -1;
+	private static final byte FLOAT = -2;
+	private static final int MAX_DECIMALS = 8;
+	private static final double MAX_SCALED = 1L << 53;
+
+	/**
+	 * Converts the records to a byte array
+	 *
+	 * @param records
+	 * @return
+	 */
+	public static byte[] encode(List<IStockRecord> records) {
+		IStockID id = records.isEmpty() ? null : records.get(0).getStockID();
+		StockColumns columns = StockColumns.of(id, records);
+		if (columns.getStockID() != null) {
+			id = columns.getStockID();
+		}
+		int size = columns.size();
+		Output out = new Output(16 + size * 8);
+		out.writeInt(MAGIC);
+		out.write(VERSION);
+		byte[] idBytes = id == null ? new byte[0] : id.toString().getBytes(StandardCharsets.UTF_8);
+		out.writeVarLong(idBytes.length);
+		out.write(idBytes, 0, idBytes.length);
+		out.writeVarLong(size);
+
+		long last = 0;
+		for (int j = 0; j < size; j++) {
+			int day = columns.getEpochDay(j);
+			out.writeVarLong(zigzag(day - last));
+			last = day;
+		}
+
+		double[] values = new double[size];
+		for (int col = 0; col < 6; col++) {
+			for (int j = 0; j < size; j++) {
+				values[j] = getValue(columns, col, j);
+			}
+			writeColumn(out, values);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Converts the byte array back to a list of records. The result is a view on
+	 * StockColumns.
+	 *
+	 * @param data
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<IStockRecord> decode(byte[] data) throws IOException {
+		return decodeColumns(data).asList();
+	}
+
+	/**
+	 * Converts the byte array to StockColumns
+	 *
+	 * @param data
+	 * @return
+	 * @throws IOException
+	 */
+	public static StockColumns decodeColumns(byte[] data) throws IOException {
+		ByteBuffer in = ByteBuffer.wrap(data);
+		if (data.length < 5 || in.getInt() != MAGIC) {
+			throw new IOException("The data is not a stock history");
+		}
+		byte version = in.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+		int idLen = (int) readVarLong(in);
+		IStockID id = null;
+		if (idLen > 0) {
+			id = StockID.parse(new String(data, in.position(), idLen, StandardCharsets.UTF_8));
+			in.position(in.position() + idLen);
+		}
+		int size = (int) readVarLong(in);
+		int[] days = new int[size];
+		long last = 0;
+		for (int j = 0; j < size; j++) {
+			last += unzigzag(readVarLong(in));
+			days[j] = (int) last;
+		}
+		double[][] values = new double[6][];
+		for (int col = 0; col < 6; col++) {
+			values[col] = readColumn(in, size);
+		}
+		return new StockColumns(id, days, values[0], values[1], values[2], values[3], values[4], values[5]);
+	}
+
+	private static double getValue(StockColumns columns, int col, int index) {
+		switch (col) {
+		case 0:
+			return columns.getOpen(index);
+		case 1:
+			return columns.getHigh(index);
+		case 2:
+			return columns.getLow(index);
+		case 3:
+			return columns.getClosing(index);
+		case 4:
+			return columns.getVolume(index);
+		default:
+			return columns.getAdjustmentFactor(index);
+		}
+	}
+
+	private static void writeColumn(Output out, double[] values) {
+		int decimals = getDecimals(values);
+		if (decimals < 0 && isFloat(values)) {
+			out.write(FLOAT);
+			ByteBuffer bb = ByteBuffer.allocate(values.length * 4);
+			for (double v : values) {
+				bb.putFloat((float) v);
+			}
+			out.write(bb.array(), 0, bb.capacity());
+		} else if (decimals < 0) {
+			out.write(RAW);
+			ByteBuffer bb = ByteBuffer.allocate(values.length * 8);
+			bb.asDoubleBuffer().put(values);
+			out.write(bb.array(), 0, bb.capacity());
+		} else {
+			out.write((byte) decimals);
+			double scale = Math.pow(10, decimals);
+			long last = 0;
+			for (double v : values) {
+				long scaled = Math.round(v * scale);
+				out.writeVarLong(zigzag(scaled - last));
+				last = scaled;
+			}
+		}
+	}
+
+	private static double[] readColumn(ByteBuffer in, int size) {
+		double[] result = new double[size];
+		byte decimals = in.get();
+		if (decimals == RAW) {
+			in.asDoubleBuffer().get(result);
+			in.position(in.position() + size * 8);
+		} else if (decimals == FLOAT) {
+			for (int j = 0; j < size; j++) {
+				result[j] = in.getFloat();
+			}
+		} else {
+			double scale = Math.pow(10, decimals);
+			long last = 0;
+			for (int j = 0; j < size; j++) {
+				last += unzigzag(readVarLong(in));
+				result[j] = last / scale;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the smallest number of decimals which represents all values
+	 * exactly. We return -1 if this is not possible
+	 *
+	 * @param values
+	 * @return
+	 */
+	private static int getDecimals(double[] values) {
+		int decimals = 0;
+		double scale = 1;
+		for (double v : values) {
+			while (!isExact(v, scale)) {
+				if (decimals == MAX_DECIMALS || !Double.isFinite(v)) {
+					return -1;
+				}
+				decimals++;
+				scale *= 10;
+			}
+		}
+		return decimals;
+	}
+
+	private static boolean isFloat(double[] values) {
+		for (double v : values) {
+			if ((float) v != v && !Double.isNaN(v)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isExact(double value, double scale) {
+		double scaled = value * scale;
+		return Math.abs(scaled) < MAX_SCALED && Math.round(scaled) / scale == value;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(ByteBuffer in) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			result |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * ByteArrayOutputStream with support for variable length numbers
+	 */
+	private static class Output extends ByteArrayOutputStream {
+		Output(int size) {
+			super(size);
+		}
+
+		void writeInt(int value) {
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		void writeVarLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+	}
+
+}
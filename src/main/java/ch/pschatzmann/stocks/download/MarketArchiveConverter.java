@@ -0,0 +1,86 @@
+package ch.pschatzmann.stocks.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.ColumnarStockData;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.data.universe.MarketDirectoryUniverse;
+import ch.pschatzmann.stocks.errors.UniverseException;
+import ch.pschatzmann.stocks.input.BinaryPriceStore;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
+import ch.pschatzmann.stocks.input.parser.CsvStreamReader;
+import ch.pschatzmann.stocks.input.parser.MarketArchiveParser;
+
+/**
+ * Converts the MarketArchive csv files into the BinaryPriceStore (one file per
+ * exchange). If the store already exists we only append the days which are
+ * not available yet.
+ *
+ * @author pschatzmann
+ *
+ */
+public class MarketArchiveConverter {
+	private static final Logger LOG = LoggerFactory.getLogger(MarketArchiveConverter.class);
+
+	/**
+	 * Converts all csv files in the indicated directory
+	 *
+	 * @param csvDirectory
+	 * @param binaryDirectory
+	 * @return number of added records
+	 * @throws UniverseException
+	 */
+	public static long convert(File csvDirectory, File binaryDirectory) throws UniverseException {
+		long total = 0;
+		for (IStockID id : new MarketDirectoryUniverse(csvDirectory).list()) {
+			try {
+				total += convert(id, new File(csvDirectory, id.getExchange() + "/" + id.getTicker() + ".csv"),
+						binaryDirectory);
+			} catch (Exception ex) {
+				LOG.error("Could not convert " + id, ex);
+			}
+		}
+		LOG.info("{} records added to {}", total, binaryDirectory);
+		return total;
+	}
+
+	/**
+	 * Appends the new records of the indicated csv file to the binary store
+	 *
+	 * @param id
+	 * @param csvFile
+	 * @param binaryDirectory
+	 * @return number of added records
+	 * @throws IOException
+	 */
+	public static int convert(IStockID id, File csvFile, File binaryDirectory) throws IOException {
+		MarketArchiveParser parser = new MarketArchiveFileReader().getMarketArchiveParser();
+		ColumnarStockData target = new ColumnarStockData(id, new StockColumns(id));
+		try (Reader in = Files.newBufferedReader(csvFile.toPath())) {
+			// the files are sorted from new to old
+			CsvStreamReader.addRecords(new CsvStreamReader(in).read(parser, id), Integer.MIN_VALUE, target);
+		}
+		StockColumns columns = target.getColumns();
+		return BinaryPriceStore.getInstance(binaryDirectory, id.getExchange()).append(id, columns);
+	}
+
+	public static void main(String[] args) throws UniverseException {
+		String path = "/var/www/stock-data";
+		String binaryPath = "/var/www/stock-data-bin";
+		if (args.length > 0) {
+			path = args[0];
+		}
+		if (args.length > 1) {
+			binaryPath = args[1];
+		}
+		convert(new File(path), new File(binaryPath));
+	}
+
+}
@@ -13,7 +13,8 @@ import ch.pschatzmann.stocks.data.universe.MarketDirectoryUniverse;
 import ch.pschatzmann.stocks.errors.UniverseException;
 
 /**
- * Creates the stocks.csv form the existing csv files
+ * Creates the stocks.csv form the existing csv files. Optionally the new days
+ * are appended to the BinaryPriceStore.
  * 
  * @author pschatzmann
  *
@@ -42,12 +43,25 @@ public class UpdateStocksCSV {
 
 	}
 	
+	/**
+	 * Appends the new days from the csv files to the binary store
+	 * @param path
+	 * @param binaryPath
+	 * @throws UniverseException
+	 */
+	public static void updateBinaryStore(File path, File binaryPath) throws  UniverseException{
+		MarketArchiveConverter.convert(path, binaryPath);
+	}
+	
 	public static void main(String[] args) throws UniverseException  {
 		String path = "/var/www/stocks-data";
 		if (args.length>0) {
 			path = args[0];
 		}
 		createCSVUniverse(new File(path));
+		if (args.length>1) {
+			updateBinaryStore(new File(path), new File(args[1]));
+		}
 	}
 
 }
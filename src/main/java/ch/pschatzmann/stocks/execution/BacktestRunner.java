@@ -0,0 +1,297 @@
+package ch.pschatzmann.stocks.execution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.MarketSnapshot;
+import ch.pschatzmann.stocks.accounting.IAccount;
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.accounting.kpi.KPIValue;
+import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+import ch.pschatzmann.stocks.strategy.IVectorizedStrategy;
+import ch.pschatzmann.stocks.strategy.TradingStrategyFactory;
+import ch.pschatzmann.stocks.strategy.allocation.IAllocationStrategy;
+import ch.pschatzmann.stocks.strategy.optimization.IOptimizableTradingStrategy;
+
+/**
+ * Executes multiple BacktestScenarios concurrently. Each scenario gets its own
+ * account and trader. The price history is taken from the shared
+ * MarketSnapshot, so that it needs to be loaded only once. Stocks which are not
+ * part of the snapshot are taken from the stock data of the trading strategies.
+ *
+ * The ta4j strategies are not thread safe: each scenario is executed with its
+ * own copy of the trading strategies (see TradingStrategyFactory.copy) which
+ * uses the stock data of the snapshot. Scenarios which share a trading strategy
+ * object that can not be copied are executed one after the other. The number of
+ * threads is defined by the property BacktestRunnerParallelism (the default is
+ * the number of processors).
+ *
+ * Scenarios with a single vectorized strategy can be executed with the
+ * VectorizedBacktest instead of the StrategyExecutor if this is activated with
+ * setVectorized() or with the property BacktestRunnerVectorized.
+ *
+ * @author pschatzmann
+ *
+ */
+public class BacktestRunner {
+	private static final Logger LOG = LoggerFactory.getLogger(BacktestRunner.class);
+	private MarketSnapshot snapshot;
+	private int parallelism;
+	private boolean vectorized = Boolean.parseBoolean(Context.getProperty("BacktestRunnerVectorized", "false"));
+
+	public BacktestRunner() {
+		this(null);
+	}
+
+	public BacktestRunner(MarketSnapshot snapshot) {
+		this(snapshot, Integer.parseInt(Context.getProperty("BacktestRunnerParallelism",
+				String.valueOf(Runtime.getRuntime().availableProcessors()))));
+	}
+
+	public BacktestRunner(MarketSnapshot snapshot, int parallelism) {
+		this.snapshot = snapshot;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Executes all scenarios
+	 *
+	 * @param scenarios
+	 * @return the KPIs in the sequence of the scenarios (null for failed
+	 *         scenarios)
+	 */
+	public List<Map<KPI, Double>> run(List<BacktestScenario> scenarios) {
+		List<List<ITradingStrategy>> strategies = scenarios.stream().map(scenario -> getStrategies(scenario))
+				.collect(Collectors.toList());
+		Collection<List<Integer>> groups = getGroups(strategies);
+		int threads = Math.min(parallelism, groups.size());
+		if (threads <= 1) {
+			for (int j = 0; j < scenarios.size(); j++) {
+				run(scenarios.get(j), strategies.get(j));
+			}
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "BacktestRunner");
+				t.setDaemon(true);
+				return t;
+			});
+			try {
+				List<Future<?>> futures = new ArrayList();
+				for (List<Integer> group : groups) {
+					futures.add(executor.submit(() -> group.forEach(j -> run(scenarios.get(j), strategies.get(j)))));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(ex);
+			} catch (ExecutionException ex) {
+				throw new RuntimeException(ex.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		return scenarios.stream().map(scenario -> scenario.getResult()).collect(Collectors.toList());
+	}
+
+	/**
+	 * Executes the scenario with a new account
+	 *
+	 * @param scenario
+	 * @return the KPIs or null if the execution failed
+	 */
+	public Map<KPI, Double> run(BacktestScenario scenario) {
+		return run(scenario, new PaperTrader(scenario.createAccount()));
+	}
+
+	private Map<KPI, Double> run(BacktestScenario scenario, List<ITradingStrategy> strategies) {
+		return run(scenario, new PaperTrader(scenario.createAccount()), strategies);
+	}
+
+	/**
+	 * Executes the scenario with the indicated trader. The transactions are added
+	 * to the account of the trader.
+	 *
+	 * @param scenario
+	 * @param trader
+	 * @return the KPIs or null if the execution failed
+	 */
+	public Map<KPI, Double> run(BacktestScenario scenario, ITrader trader) {
+		return run(scenario, trader, getStrategies(scenario));
+	}
+
+	private Map<KPI, Double> run(BacktestScenario scenario, ITrader trader, List<ITradingStrategy> strategies) {
+		IAccount account = trader.getAccount();
+		scenario.setAccount(account);
+		scenario.setResult(null);
+		scenario.setError(null);
+		scenario.setPruned(false);
+		try {
+			if (snapshot != null) {
+				for (ITradingStrategy strategy : strategies) {
+					IStockData sd = snapshot.getStockData(strategy.getStockData().getStockID());
+					if (sd != null) {
+						account.putStockData(sd);
+					}
+				}
+			}
+			IAllocationStrategy allocationStrategy = scenario.getAllocationStrategy().apply(trader);
+			if (isVectorized(scenario, strategies, trader, allocationStrategy)) {
+				IVectorizedStrategy strategy = (IVectorizedStrategy) strategies.get(0);
+				new VectorizedBacktest((PaperTrader) trader, allocationStrategy).run(strategy, scenario.getPeriod());
+				scenario.setResult(toMap(account.getKPIValues()));
+				return scenario.getResult();
+			}
+			StrategyExecutor executor = new StrategyExecutor(trader, allocationStrategy);
+			executor.addStrategy(strategies);
+			executor.setPruningPolicy(scenario.getPruningPolicy());
+			executor.run(scenario.getPeriod());
+			if (executor.isPruned()) {
+				// we report only the KPIs which were calculated during the execution
+				List<KPIValue> values = new ArrayList();
+				executor.getPruningState().getKPIs().collectKPIValues(values);
+				scenario.setPruned(true);
+				scenario.setResult(toMap(values));
+			} else {
+				scenario.setResult(toMap(account.getKPIValues()));
+				if (scenario.getPruningPolicy() != null) {
+					scenario.getPruningPolicy().onCompleted(scenario.getResult());
+				}
+			}
+		} catch (Exception ex) {
+			LOG.error("Could not execute " + scenario + ": " + ex, ex);
+			scenario.setError(ex);
+		}
+		return scenario.getResult();
+	}
+
+	/**
+	 * Checks if the scenario can be executed with the VectorizedBacktest
+	 *
+	 * @param scenario
+	 * @param strategies
+	 * @param trader
+	 * @param allocationStrategy
+	 * @return
+	 */
+	protected boolean isVectorized(BacktestScenario scenario, List<ITradingStrategy> strategies, ITrader trader,
+			IAllocationStrategy allocationStrategy) {
+		return vectorized && trader instanceof PaperTrader && scenario.getPruningPolicy() == null
+				&& strategies.size() == 1 && VectorizedBacktest.isSupported(strategies.get(0), allocationStrategy);
+	}
+
+	/**
+	 * Provides the trading strategies which are used to execute the scenario: a
+	 * copy of each strategy of the scenario which uses the stock data of the
+	 * snapshot. Strategies which can not be copied are used directly.
+	 *
+	 * @param scenario
+	 * @return
+	 */
+	protected List<ITradingStrategy> getStrategies(BacktestScenario scenario) {
+		List<ITradingStrategy> result = new ArrayList();
+		for (ITradingStrategy strategy : scenario.getStrategies()) {
+			result.add(copy(strategy));
+		}
+		return result;
+	}
+
+	private ITradingStrategy copy(ITradingStrategy strategy) {
+		if (strategy instanceof IOptimizableTradingStrategy) {
+			IStockData sd = snapshot == null ? null : snapshot.getStockData(strategy.getStockData().getStockID());
+			try {
+				return TradingStrategyFactory.copy((IOptimizableTradingStrategy) strategy,
+						sd != null ? sd : strategy.getStockData());
+			} catch (IllegalArgumentException ex) {
+				LOG.debug("{}", ex.getMessage());
+			}
+		}
+		return strategy;
+	}
+
+	/**
+	 * Scenarios which share a trading strategy object need to be executed in the
+	 * same thread. We return the groups of the scenario indexes.
+	 *
+	 * @param strategies
+	 *            trading strategies of each scenario
+	 * @return
+	 */
+	protected Collection<List<Integer>> getGroups(List<List<ITradingStrategy>> strategies) {
+		int[] parent = new int[strategies.size()];
+		Map<ITradingStrategy, Integer> firstScenario = new IdentityHashMap();
+		for (int j = 0; j < parent.length; j++) {
+			parent[j] = j;
+			for (ITradingStrategy strategy : strategies.get(j)) {
+				Integer other = firstScenario.putIfAbsent(strategy, j);
+				if (other != null) {
+					parent[root(parent, j)] = root(parent, other);
+				}
+			}
+		}
+		Map<Integer, List<Integer>> groups = new LinkedHashMap();
+		for (int j = 0; j < parent.length; j++) {
+			groups.computeIfAbsent(root(parent, j), k -> new ArrayList()).add(j);
+		}
+		return groups.values();
+	}
+
+	private static int root(int[] parent, int j) {
+		while (parent[j] != j) {
+			parent[j] = parent[parent[j]];
+			j = parent[j];
+		}
+		return j;
+	}
+
+	private static Map<KPI, Double> toMap(List<KPIValue> values) {
+		Map<KPI, Double> result = new TreeMap();
+		if (values != null) {
+			for (KPIValue v : values) {
+				result.put(v.getKpi(), v.getDoubleValue());
+			}
+		}
+		return result;
+	}
+
+	public MarketSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public boolean isVectorized() {
+		return vectorized;
+	}
+
+	/**
+	 * Defines if the scenarios with a single vectorized strategy are executed
+	 * with the VectorizedBacktest
+	 *
+	 * @param vectorized
+	 * @return
+	 */
+	public BacktestRunner setVectorized(boolean vectorized) {
+		this.vectorized = vectorized;
+		return this;
+	}
+
+}
@@ -0,0 +1,184 @@
+package ch.pschatzmann.stocks.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.accounting.BasicAccount;
+import ch.pschatzmann.stocks.accounting.IAccount;
+import ch.pschatzmann.stocks.accounting.IBasicAccount;
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.execution.fees.IFeesModel;
+import ch.pschatzmann.stocks.execution.pruning.IPruningPolicy;
+import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+import ch.pschatzmann.stocks.strategy.allocation.IAllocationStrategy;
+import ch.pschatzmann.stocks.strategy.allocation.SimpleAllocationStrategy;
+
+/**
+ * Definition of a simulation which is executed by the BacktestRunner: the
+ * trading strategies, the allocation strategy, the fees model and the period.
+ * The account is created from the template account (currency, initial cash and
+ * open date) when the scenario is executed.
+ *
+ * @author pschatzmann
+ *
+ */
+public class BacktestScenario {
+	private IBasicAccount accountTemplate;
+	private Collection<ITradingStrategy> strategies;
+	private DateRange period;
+	private IFeesModel feesModel;
+	private Function<ITrader, IAllocationStrategy> allocationStrategy = trader -> new SimpleAllocationStrategy(trader);
+	private double riskFreeReturnInPercent = 0.0;
+	private IPruningPolicy pruningPolicy;
+	private boolean pruned;
+	private IAccount account;
+	private Map<KPI, Double> result;
+	private Exception error;
+
+	public BacktestScenario(IBasicAccount accountTemplate, ITradingStrategy strategy, DateRange period) {
+		this(accountTemplate, Arrays.asList(strategy), period);
+	}
+
+	public BacktestScenario(IBasicAccount accountTemplate, Collection<ITradingStrategy> strategies,
+			DateRange period) {
+		this.accountTemplate = accountTemplate;
+		this.strategies = new ArrayList(strategies);
+		this.period = period;
+		this.feesModel = accountTemplate.getFeesModel();
+	}
+
+	/**
+	 * Creates a new account for the simulation
+	 *
+	 * @return
+	 */
+	protected Account createAccount() {
+		Account result = new Account(new BasicAccount(accountTemplate.getId(), accountTemplate.getCurrency(),
+				accountTemplate.getInitialCash(), accountTemplate.getOpenDate(), feesModel));
+		result.setRiskFreeReturnInPercent(riskFreeReturnInPercent);
+		return result;
+	}
+
+	public Collection<ITradingStrategy> getStrategies() {
+		return strategies;
+	}
+
+	public DateRange getPeriod() {
+		return period;
+	}
+
+	public IFeesModel getFeesModel() {
+		return feesModel;
+	}
+
+	public BacktestScenario setFeesModel(IFeesModel feesModel) {
+		this.feesModel = feesModel;
+		return this;
+	}
+
+	public Function<ITrader, IAllocationStrategy> getAllocationStrategy() {
+		return allocationStrategy;
+	}
+
+	/**
+	 * Defines how the allocation strategy is created for the trader of the
+	 * scenario. The default is the SimpleAllocationStrategy.
+	 *
+	 * @param allocationStrategy
+	 * @return
+	 */
+	public BacktestScenario setAllocationStrategy(Function<ITrader, IAllocationStrategy> allocationStrategy) {
+		this.allocationStrategy = allocationStrategy;
+		return this;
+	}
+
+	public double getRiskFreeReturnInPercent() {
+		return riskFreeReturnInPercent;
+	}
+
+	public BacktestScenario setRiskFreeReturnInPercent(double riskFreeReturnInPercent) {
+		this.riskFreeReturnInPercent = riskFreeReturnInPercent;
+		return this;
+	}
+
+	public IPruningPolicy getPruningPolicy() {
+		return pruningPolicy;
+	}
+
+	/**
+	 * Defines the policy to stop the execution early if the scenario can not
+	 * deliver a good result
+	 * 
+	 * @param pruningPolicy
+	 * @return
+	 */
+	public BacktestScenario setPruningPolicy(IPruningPolicy pruningPolicy) {
+		this.pruningPolicy = pruningPolicy;
+		return this;
+	}
+
+	/**
+	 * Returns true if the last execution was stopped by the pruning policy. In
+	 * this case the result contains only the KPIs up to the date when we stopped.
+	 * 
+	 * @return
+	 */
+	public boolean isPruned() {
+		return pruned;
+	}
+
+	void setPruned(boolean pruned) {
+		this.pruned = pruned;
+	}
+
+	/**
+	 * Provides the account of the last execution
+	 *
+	 * @return
+	 */
+	public IAccount getAccount() {
+		return account;
+	}
+
+	void setAccount(IAccount account) {
+		this.account = account;
+	}
+
+	/**
+	 * Provides the KPIs of the last execution or null if the execution has
+	 * failed
+	 *
+	 * @return
+	 */
+	public Map<KPI, Double> getResult() {
+		return result;
+	}
+
+	void setResult(Map<KPI, Double> result) {
+		this.result = result;
+	}
+
+	/**
+	 * Provides the error of the last execution
+	 *
+	 * @return
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	void setError(Exception error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		return strategies + " " + period;
+	}
+
+}
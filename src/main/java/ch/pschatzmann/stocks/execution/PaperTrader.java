@@ -2,6 +2,9 @@ package ch.pschatzmann.stocks.execution;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,10 @@ public class PaperTrader implements Serializable, ITrader {
 	private ITradingDelayModel delay = new NoDelay();
 	private IPriceLogic priceLogic = new ClosePrice();
 	private IOrderCreator orderCreator = null;
+	private transient Map<Transaction, PendingOrder> pendingOrders;
+	private transient List<Transaction> knownTransactions;
+	private transient Transaction lastKnownTransaction;
+	private transient int knownCount;
 	
 	/**
 	 * Setup a Trading simulation for an account using the indicated fees.
@@ -83,15 +90,39 @@ public class PaperTrader implements Serializable, ITrader {
 		this.orderCreator = new OrderCreator(this.account);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Executes the planned orders. We keep the planned orders in a queue, so that
+	 * we only need to process the new transactions of the account and the orders
+	 * which are still pending. The orders are executed in the sequence of their
+	 * dates because the available cash depends on the prior fills.
 	 * 
 	 * @see stocks.accounting.execution.ITrader#execute()
 	 */
 	@Override
 	public synchronized void execute() {
-		// execute orders
-		this.account.getAccount().getTransactions().stream().sorted().filter(l -> l.getStatus() == Status.Planned && !l.isCashTransfer()).forEach(l -> execute(l));
+		updatePendingOrders();
+		pendingOrders.values().removeIf(order -> execute(order));
+	}
+
+	/**
+	 * Adds the new planned orders of the account to the queue. If the
+	 * transactions of the account were replaced or removed we rebuild the queue.
+	 */
+	protected void updatePendingOrders() {
+		List<Transaction> transactions = this.account.getAccount().getTransactions();
+		if (pendingOrders == null || transactions != knownTransactions || transactions.size() < knownCount
+				|| (knownCount > 0 && transactions.get(knownCount - 1) != lastKnownTransaction)) {
+			pendingOrders = new TreeMap();
+			knownTransactions = transactions;
+			knownCount = 0;
+		}
+		for (; knownCount < transactions.size(); knownCount++) {
+			Transaction t = transactions.get(knownCount);
+			if (t.getStatus() == Status.Planned && !t.isCashTransfer()) {
+				pendingOrders.put(t, new PendingOrder(t));
+			}
+		}
+		lastKnownTransaction = knownCount > 0 ? transactions.get(knownCount - 1) : null;
 	}
 
 	/**
@@ -101,41 +132,57 @@ public class PaperTrader implements Serializable, ITrader {
 	 * @throws TradingException 
 	 */
 	protected synchronized void execute(Transaction l)  {
-		//LOG.info("execute "+l);
-		if (!l.isCashTransfer()) {
-			IStockData sd = this.account.getStockData(l.getStockID());
-			Date start = new Date(l.getDate().getTime() + delay.getDelayInMs());
-			for (IStockRecord sr : sd.getHistory()) {
-				if (this.account.getDateRange().isValid(start)
-				&& (sr.getDate().getTime()>=start.getTime())) {
-					if (!l.isFilled()) {
-						try {
-						switch (l.getRequestedPriceType()) {
-							case Market:
-								double price = priceLogic.getPrice(sr, l.getQuantity() > 0.0).doubleValue();
-								submitOrder(l, sr, price);
-								break;
-							case Limit:
-								executeLimitOrder(l, sr);
-								break;
-							case Stop:
-								executeStopOrder(l, sr);
-								break;
-							}
-						} catch(Exception ex) {
-							throw new RuntimeException(ex);
-						}
+		execute(new PendingOrder(l));
+	}
 
-						if (l.getQuantity() == 0l) {
-							l.cancel("Cancelled because quantity was 0");
-						}
-					}
-					if (l.isFilled()) {
-						return;
+	/**
+	 * Checks the order against the prices which have not been considered yet. We
+	 * continue after the last checked price, so that limit and stop orders are
+	 * only compared with the new records.
+	 * 
+	 * @param order
+	 * @return true if the order is not pending any more
+	 */
+	protected boolean execute(PendingOrder order) {
+		Transaction l = order.transaction;
+		if (l.getStatus() != Status.Planned || l.isCashTransfer()) {
+			return true;
+		}
+		Date start = new Date(l.getDate().getTime() + delay.getDelayInMs());
+		if (!this.account.getDateRange().isValid(start)) {
+			return false;
+		}
+		IStockData sd = this.account.getStockData(l.getStockID());
+		Date from = order.checkedUntil < start.getTime() ? start : new Date(order.checkedUntil + 1);
+		for (IStockRecord sr : sd.getHistory(from, null)) {
+			if (sr.getDate().getTime() >= start.getTime()) {
+				order.checkedUntil = sr.getDate().getTime();
+				try {
+					switch (l.getRequestedPriceType()) {
+					case Market:
+						double price = priceLogic.getPrice(sr, l.getQuantity() > 0.0).doubleValue();
+						submitOrder(l, sr, price);
+						break;
+					case Limit:
+						executeLimitOrder(l, sr);
+						break;
+					case Stop:
+						executeStopOrder(l, sr);
+						break;
 					}
+				} catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+
+				if (l.getQuantity() == 0l) {
+					l.cancel("Cancelled because quantity was 0");
+				}
+				if (l.getStatus() != Status.Planned) {
+					return true;
 				}
 			}
 		}
+		return false;
 	}
 
 	/**
@@ -259,5 +306,21 @@ public class PaperTrader implements Serializable, ITrader {
 	public String toString() {
 		return "PaperTrader for "+this.getAccount();
 	}
+
+	/**
+	 * Planned order with the date of the last price which has been checked
+	 */
+	protected static class PendingOrder {
+		private Transaction transaction;
+		private long checkedUntil = Long.MIN_VALUE;
+
+		PendingOrder(Transaction transaction) {
+			this.transaction = transaction;
+		}
+
+		public Transaction getTransaction() {
+			return transaction;
+		}
+	}
 	
 }
@@ -2,7 +2,6 @@ package ch.pschatzmann.stocks.execution;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -24,16 +23,16 @@ import org.quartz.impl.StdSchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-
 import ch.pschatzmann.dates.CalendarUtils;
 import ch.pschatzmann.dates.DateRange;
 import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IRefreshable;
+import ch.pschatzmann.stocks.IResettable;
+import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.ManagedAccount;
 import ch.pschatzmann.stocks.accounting.Transaction;
+import ch.pschatzmann.stocks.accounting.TransactionJournal;
 
 /**
  * 
@@ -100,12 +99,21 @@ public class ScheduledExecutor {
 	}
 
 	/**
-	 * Reset all strategies to trigger a recalculation
+	 * Reset all strategies to trigger a recalculation. The stock data is
+	 * refreshed so that we only need to load the days which are missing.
 	 */
 	public void reset() {
-		Context.resetCache();
+		executor.getTradingStrategies().stream().map(s -> s.getStockData()).distinct().forEach(sd -> refresh(sd));
 		// reset strategies to trigger a new evaluation at the next run			
-		executor.getTradingStrategies().forEach(s -> s.resetHistory());			
+		executor.getTradingStrategies().forEach(s -> s.reset());			
+	}
+
+	protected void refresh(IStockData sd) {
+		if (sd instanceof IRefreshable) {
+			((IRefreshable) sd).refresh();
+		} else if (sd instanceof IResettable) {
+			((IResettable) sd).reset();
+		}
 	}
 	
 	/**
@@ -205,14 +213,11 @@ public class ScheduledExecutor {
 
 		private void saveTransactions(ScheduledExecutor executor, Collection<Transaction> transactions)
 				throws JobExecutionException {
+			// we append the trades of all runs to one journal file
 			String path = Context.getProperty("tadingPath", "trades");
-			String fileName = path + File.separator + executor.getAccount().getId()
-					+ new SimpleDateFormat("yyyy-MM-dd-hh.mm").format(new Date()) + ".json";
-			new File(path).mkdirs();
-			ObjectMapper mapper = new ObjectMapper();
-			ObjectWriter writer = mapper.writer(new DefaultPrettyPrinter());
-			try {
-				writer.writeValue(new File(fileName), transactions);
+			String fileName = path + File.separator + executor.getAccount().getId() + ".journal";
+			try (TransactionJournal journal = new TransactionJournal(new File(fileName))) {
+				journal.append(transactions);
 			} catch (Exception e) {
 				throw new JobExecutionException(e);
 			}
@@ -9,8 +9,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -19,16 +22,21 @@ import org.ta4j.core.Bar;
 import org.ta4j.core.Strategy;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockID;
 import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.StockRecord;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.Transaction;
 import ch.pschatzmann.stocks.errors.DateException;
+import ch.pschatzmann.stocks.execution.pruning.IPruningPolicy;
+import ch.pschatzmann.stocks.execution.pruning.PruningState;
 import ch.pschatzmann.stocks.integration.StockBar;
 import ch.pschatzmann.stocks.strategy.ITradeEvent;
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+import ch.pschatzmann.stocks.strategy.TradingAction;
 import ch.pschatzmann.stocks.strategy.allocation.DistributedAllocationStrategy;
 import ch.pschatzmann.stocks.strategy.allocation.IAllocationStrategy;
 
@@ -47,9 +55,16 @@ public class StrategyExecutor implements Serializable {
 	private IAllocationStrategy allocationStrategy;
 	private ITrader trader;
 	private Date lastDate;
+	private int lastDay = TradingDay.NONE;
 	private List<IStockData> discontinuedStocks = new ArrayList();
 	private boolean isImmediateLiquidationOfDiscontinuedStocks = false;
 	private boolean hasValidTicks = false;
+	private int parallelism = Integer.parseInt(Context.getProperty("StrategyExecutorParallelism", "1"));
+	private transient ExecutorService executorService;
+	private transient boolean isOwnExecutorService;
+	private IPruningPolicy pruningPolicy;
+	private transient PruningState pruningState;
+	private boolean pruned = false;
 
 	/**
 	 * Simple Constructor
@@ -139,40 +154,45 @@ public class StrategyExecutor implements Serializable {
 	}
 
 	/**
-	 * Execute the strategies for the indicated period
+	 * Execute the strategies for the indicated period. The ticks of all
+	 * strategies are processed in the sequence of their dates with a k-way merge
+	 * over one cursor per strategy, so that we only need to keep one tick per
+	 * strategy in memory.
 	 * 
 	 * @param period
 	 */
 	public void run(DateRange period) {
-		LOG.debug("run {}", period.toString());
+		LOG.debug("run {}", period);
 		hasValidTicks = false;
+		pruned = false;
+		pruningState = pruningPolicy != null ? new PruningState(getAccount(), period) : null;
 		
 		if (this.allocationStrategy instanceof IExecutorAware) {
 			((IExecutorAware) allocationStrategy).setExecutor(this);
 		}
 
-		Set<TradingTick> records = new TreeSet();
+		PriorityQueue<TradingTick> ticks = new PriorityQueue();
+		int seq = 0;
 		for (ITradingStrategy o : this.getTradingStrategies()) {
-			int index = 0;
-			// make sure that we have a strategy setup up
-			o.getStrategy();
-			for (IStockRecord r : o.getStockData().getHistory()) {
-				try {
-					if (r.isValid()) {
-						LOG.debug("-> {}", r);
-						records.add(new TradingTick(r.getDate(), o, r, index));
-						index++;
-					}
-				} catch (Exception ex) {
-					LOG.error("Error in the evaluation " + ex, ex);
+			try {
+				// make sure that we have a strategy setup up
+				o.getStrategy();
+				TradingTick tt = new TradingTick(o, period, seq++);
+				if (tt.next()) {
+					ticks.add(tt);
 				}
+			} catch (Exception ex) {
+				LOG.error("Error in the evaluation " + ex, ex);
 			}
 		}
 
 		try {
-			run(records, period);
+			run(ticks, period);
 		} catch (Exception ex) {
 			LOG.error("Error in the evaluation " + ex, ex);
+		} finally {
+			// we do not keep idle threads between the runs
+			shutdownOwnExecutorService();
 		}
 		
 		if (!hasValidTicks) {
@@ -202,37 +222,158 @@ public class StrategyExecutor implements Serializable {
 	}
 
 	/**
-	 * Execute the trades for the indicated stock
+	 * Execute the trades for the ticks of all strategies in the period. We report
+	 * a date change for each date in the period: the first date is also reported
+	 * if there are records before the period. The dates before and after the
+	 * period are not processed. If there are multiple strategies for the same
+	 * stock we execute only the first one per day.
 	 * 
-	 * @param stockData
+	 * @param ticks
+	 * @param period
 	 */
 
-	protected void run(Set<TradingTick> records, DateRange period) {
+	protected void run(PriorityQueue<TradingTick> ticks, DateRange period) {
 		LOG.debug("run");
-		for (TradingTick tt : records) {
+		if (this.lastDay == TradingDay.NONE) {
+			for (TradingTick tt : ticks) {
+				this.lastDay = Math.max(this.lastDay, tt.dayBeforeStart);
+			}
+		}
+		List<TradingTick> dayTicks = new ArrayList();
+		List<TradingTick> executedTicks = new ArrayList();
+		while (!ticks.isEmpty()) {
+			// all ticks of the day in the sequence of the stock ids
+			dayTicks.clear();
+			dayTicks.add(ticks.poll());
+			while (!ticks.isEmpty() && ticks.peek().day == dayTicks.get(0).day) {
+				dayTicks.add(ticks.poll());
+			}
+
+			TradingTick first = dayTicks.get(0);
 			try {
-				if (onDateChange(tt.date)) {
-					allocationStrategy.onEndOfDate(this.getAccount(), tt.date);
+				Date priorDate = this.lastDate;
+				if (onDateChange(first.day, first.date)) {
+					allocationStrategy.onEndOfDate(this.getAccount(), first.date);
 					trader.execute();
+					if (isPruned(priorDate, period)) {
+						return;
+					}
+				}
+				// the ticks of the same stock are adjacent: we keep the first one
+				executedTicks.clear();
+				IStockID priorID = null;
+				for (TradingTick tt : dayTicks) {
+					if (!tt.getStockID().equals(priorID)) {
+						executedTicks.add(tt);
+						priorID = tt.getStockID();
+					}
 				}
-				runTradingTick(tt, period);
+				runTradingTicks(executedTicks, period);
 			} catch (Exception ex) {
 				LOG.error(ex.getLocalizedMessage(), ex);
 			}
+
+			for (TradingTick tt : dayTicks) {
+				if (tt.next()) {
+					ticks.add(tt);
+				}
+			}
 		}
+
 		allocationStrategy.onEndOfDate(this.getAccount(), this.lastDate);
 		trader.execute();
 
 	}
 
-	protected boolean onDateChange(Date date) {
-		boolean result = lastDate != null && !date.equals(lastDate);
+	/**
+	 * Records the total value at the end of the indicated date and checks if the
+	 * execution should be stopped by the pruning policy
+	 * 
+	 * @param date
+	 * @param period
+	 * @return
+	 */
+	protected boolean isPruned(Date date, DateRange period) {
+		if (pruningState != null && date != null && (period == null || period.isValid(date))) {
+			pruningState.update(date);
+			if (pruningPolicy.isPruned(pruningState)) {
+				LOG.debug("The execution was stopped by {} at {}", pruningPolicy, date);
+				pruned = true;
+			}
+		}
+		return pruned;
+	}
+
+	protected boolean onDateChange(int day, Date date) {
+		boolean result = lastDay != TradingDay.NONE && day != lastDay;
+		lastDay = day;
 		lastDate = date;
 		return result;
 	}
 
+	/**
+	 * Executes the ticks of one day. In the parallel mode the signals of the
+	 * strategies are evaluated concurrently. The resulting actions are always
+	 * applied in the sequence of the ticks, so that we get the same result as
+	 * with the serial execution.
+	 * 
+	 * @param dayTicks
+	 * @param period
+	 */
+	protected void runTradingTicks(List<TradingTick> dayTicks, DateRange period) throws InterruptedException {
+		if (dayTicks.size() < 2 || !isParallel()) {
+			for (TradingTick tt : dayTicks) {
+				try {
+					runTradingTick(tt, period);
+				} catch (Exception ex) {
+					LOG.error(ex.getLocalizedMessage(), ex);
+				}
+			}
+			return;
+		}
+
+		List<TradingTick> validTicks = new ArrayList();
+		for (TradingTick tt : dayTicks) {
+			if (beforeTradingTick(tt, period)) {
+				validTicks.add(tt);
+			}
+		}
+		List<Future<TradingAction>> actions = new ArrayList();
+		for (TradingTick tt : validTicks) {
+			actions.add(getExecutorService().submit(
+					() -> evaluate(tt.tradingStrategy, tt.tradingStrategy.getStockData(), tt.index)));
+		}
+		for (int j = 0; j < validTicks.size(); j++) {
+			TradingTick tt = validTicks.get(j);
+			try {
+				TradingAction action = actions.get(j).get();
+				execute(tt.tradingStrategy, tt.tradingStrategy.getStockData(), trader.getAccount(), tt.getTick(),
+						tt.index, action);
+			} catch (ExecutionException ex) {
+				LOG.error(ex.getCause().getLocalizedMessage(), ex.getCause());
+			} catch (Exception ex) {
+				LOG.error(ex.getLocalizedMessage(), ex);
+			}
+		}
+	}
+
 	protected void runTradingTick(TradingTick tt, DateRange period) {
-		Date date = Date.from(tt.tick.getEndTime().toInstant());
+		if (beforeTradingTick(tt, period)) {
+			executeTick(tt.tradingStrategy, tt.tradingStrategy.getStockData(), trader.getAccount(), tt.getTick(),
+					tt.index);
+		}
+	}
+
+	/**
+	 * Checks if the tick is in the period and informs the strategy about the
+	 * trade
+	 * 
+	 * @param tt
+	 * @param period
+	 * @return true if the tick needs to be executed
+	 */
+	protected boolean beforeTradingTick(TradingTick tt, DateRange period) {
+		Date date = tt.date;
 		if (LOG.isDebugEnabled()) {
 			LOG.debug(tt.tradingStrategy.getStrategy() + " index " + tt.index + " " + date);
 		}
@@ -241,17 +382,29 @@ public class StrategyExecutor implements Serializable {
 			if (tt.tradingStrategy instanceof ITradeEvent) {
 				((ITradeEvent) tt.tradingStrategy).beforeTrade(date);
 			}
-			executeTick(tt.tradingStrategy, tt.tradingStrategy.getStockData(), trader.getAccount(), tt.tick, tt.index);
 			hasValidTicks = true;
+			return true;
 		} else {
 			LOG.debug("-> is not valid");
+			return false;
 		}
 	}
 
 	protected void executeTick(ITradingStrategy tradingStrategy, IStockData stockData, IAccount account, Bar newTick,
 			int index) {
-		IStockRecord sr = new StockRecord(newTick, stockData.getStockID(), index);
+		execute(tradingStrategy, stockData, account, newTick, index, evaluate(tradingStrategy, stockData, index));
+	}
 
+	/**
+	 * Determines the signal of the strategy. This does not change any state of
+	 * the executor, so it can be called for different strategies in parallel.
+	 * 
+	 * @param tradingStrategy
+	 * @param stockData
+	 * @param index
+	 * @return
+	 */
+	protected TradingAction evaluate(ITradingStrategy tradingStrategy, IStockData stockData, int index) {
 		Strategy strategy = tradingStrategy.getStrategy();
 		boolean shouldEnter = false;
 		boolean shouldExit = false;
@@ -274,8 +427,23 @@ public class StrategyExecutor implements Serializable {
 		} catch (Exception ex) {
 			LOG.error(ex.getLocalizedMessage(), ex);
 		}
+		return shouldEnter ? TradingAction.buy : shouldExit ? TradingAction.sell : TradingAction.hold;
+	}
 
-		if (shouldEnter) {
+	/**
+	 * Creates the orders for the signal of the strategy
+	 * 
+	 * @param tradingStrategy
+	 * @param stockData
+	 * @param account
+	 * @param newTick
+	 * @param index
+	 * @param action
+	 */
+	protected void execute(ITradingStrategy tradingStrategy, IStockData stockData, IAccount account, Bar newTick,
+			int index, TradingAction action) {
+		IStockRecord sr = new StockRecord(newTick, stockData.getStockID(), index);
+		if (action == TradingAction.buy) {
 			LOG.debug(tradingStrategy + " " + index + " -> should enter");
 			// Entering...
 			Long qty = allocationStrategy.onBuy(account, sr, tradingStrategy);
@@ -284,7 +452,7 @@ public class StrategyExecutor implements Serializable {
 				account.getAccount().addTransaction(new Transaction(sr.getDate(), stockData.getStockID(), qty));
 			}
 
-		} else if (shouldExit) {
+		} else if (action == TradingAction.sell) {
 			LOG.debug(tradingStrategy + " " + index + " -> should exit");
 			// Exiting...
 			Long qty = allocationStrategy.onSell(account, sr, tradingStrategy);
@@ -321,6 +489,64 @@ public class StrategyExecutor implements Serializable {
 		return this.trader.getAccount();
 	}
 
+	/**
+	 * Defines the number of threads which are used to evaluate the signals of
+	 * the strategies of a day. With 1 (the default) the signals are evaluated
+	 * sequentially. The default can be defined with the property
+	 * StrategyExecutorParallelism.
+	 * 
+	 * @param parallelism
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+		shutdownOwnExecutorService();
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the thread pool which is used to evaluate the signals of the
+	 * strategies in parallel. If this is not defined we create a pool with the
+	 * indicated parallelism which is shut down at the end of each run.
+	 * 
+	 * @param executorService
+	 */
+	public synchronized void setExecutorService(ExecutorService executorService) {
+		shutdownOwnExecutorService();
+		this.executorService = executorService;
+	}
+
+	private synchronized void shutdownOwnExecutorService() {
+		if (isOwnExecutorService) {
+			executorService.shutdown();
+			executorService = null;
+			isOwnExecutorService = false;
+		}
+	}
+
+	protected synchronized ExecutorService getExecutorService() {
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(parallelism, r -> {
+				Thread t = new Thread(r, "StrategyExecutor");
+				t.setDaemon(true);
+				return t;
+			});
+			isOwnExecutorService = true;
+		}
+		return executorService;
+	}
+
+	/**
+	 * Returns true if the signals are evaluated in parallel
+	 * 
+	 * @return
+	 */
+	public synchronized boolean isParallel() {
+		return parallelism > 1 || (executorService != null && !isOwnExecutorService);
+	}
+
 	/**
 	 * If true the system will not wait for the next sell signal but will sell
 	 * immediatly
@@ -342,32 +568,179 @@ public class StrategyExecutor implements Serializable {
 	}
 
 	/**
-	 * Tick data sorted by dates
+	 * Defines the policy which is checked at the end of each trading day to stop
+	 * hopeless executions early. Use null (the default) to process the full
+	 * period.
+	 * 
+	 * @param pruningPolicy
+	 */
+	public void setPruningPolicy(IPruningPolicy pruningPolicy) {
+		this.pruningPolicy = pruningPolicy;
+	}
+
+	public IPruningPolicy getPruningPolicy() {
+		return pruningPolicy;
+	}
+
+	/**
+	 * Returns true if the last execution was stopped by the pruning policy
+	 * 
+	 * @return
+	 */
+	public boolean isPruned() {
+		return pruned;
+	}
+
+	/**
+	 * Provides the state which was used by the pruning policy in the last
+	 * execution or null if no pruning policy is defined
+	 * 
+	 * @return
+	 */
+	public PruningState getPruningState() {
+		return pruningState;
+	}
+
+	/**
+	 * Cursor on the valid ticks of a trading strategy in the period. The cursors
+	 * are sorted by the date of the actual tick, the stock id and the sequence in
+	 * which the strategies were added.
 	 * 
 	 * @author pschatzmann
 	 *
 	 */
 	protected class TradingTick implements Comparable<TradingTick> {
+		private List<IStockRecord> history;
+		private int pos;
+		private int endPos;
+		private int day = TradingDay.NONE;
 		private Date date;
 		private Bar tick;
 		private ITradingStrategy tradingStrategy;
+		private int seq;
 		private IStockRecord stockRecord;
-		private int index;
+		private int index = -1;
+		private int dayBeforeStart = TradingDay.NONE;
 
-		TradingTick(Date date, ITradingStrategy eo, IStockRecord stockRecord, int index) {
-			this.date = date;
+		TradingTick(ITradingStrategy eo, DateRange period, int seq) {
 			this.tradingStrategy = eo;
-			this.stockRecord = stockRecord;
-			this.tick = new StockBar(stockRecord);
-			this.index = index;
+			this.seq = seq;
+			this.history = eo.getStockData().getHistory();
+			this.endPos = history.size();
+			if (period != null) {
+				// we start at the first record in the period: the index counts the valid records
+				this.pos = lowerBound(period.getStart().getTime());
+				this.index = pos - 1;
+				for (int j = pos - 1; j >= 0; j--) {
+					IStockRecord r = history.get(j);
+					if (r.isValid()) {
+						if (dayBeforeStart == TradingDay.NONE) {
+							dayBeforeStart = r.getEpochDay();
+							day = dayBeforeStart;
+						}
+					} else {
+						index--;
+					}
+				}
+				this.endPos = Math.max(pos, upperBound(period.getEnd().getTime()));
+			}
+		}
+
+		/**
+		 * Position of the first record which is on or after the indicated time
+		 * 
+		 * @param time
+		 * @return
+		 */
+		private int lowerBound(long time) {
+			int low = 0;
+			int high = history.size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (history.get(mid).getDate().getTime() < time) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Position after the last record which is on or before the indicated time
+		 * 
+		 * @param time
+		 * @return
+		 */
+		private int upperBound(long time) {
+			int low = 0;
+			int high = history.size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (history.get(mid).getDate().getTime() <= time) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Moves to the next valid record in the period. Records with the same
+		 * date as the prior record are skipped but they are counted in the index.
+		 * 
+		 * @return false if there are no more records
+		 */
+		boolean next() {
+			tick = null;
+			while (pos < endPos) {
+				IStockRecord r = history.get(pos++);
+				try {
+					if (r.isValid()) {
+						index++;
+						int recordDay = r.getEpochDay();
+						if (recordDay != day) {
+							day = recordDay;
+							date = r.getDate();
+							stockRecord = r;
+							LOG.debug("-> {}", r);
+							return true;
+						}
+					}
+				} catch (Exception ex) {
+					LOG.error("Error in the evaluation " + ex, ex);
+				}
+			}
+			stockRecord = null;
+			return false;
+		}
+
+		/**
+		 * Provides the bar of the actual record. We create it only for the ticks
+		 * which are executed.
+		 * 
+		 * @return
+		 */
+		Bar getTick() {
+			if (tick == null && stockRecord != null) {
+				tick = new StockBar(stockRecord);
+			}
+			return tick;
+		}
+
+		IStockID getStockID() {
+			return tradingStrategy.getStockData().getStockID();
 		}
 
 		@Override
 		public int compareTo(TradingTick o) {
-			int result = date.compareTo(o.date);
+			int result = Integer.compare(day, o.day);
+			if (result == 0) {
+				result = getStockID().compareTo(o.getStockID());
+			}
 			if (result == 0) {
-				result = tradingStrategy.getStockData().getStockID()
-						.compareTo(o.tradingStrategy.getStockData().getStockID());
+				result = Integer.compare(seq, o.seq);
 			}
 			return result;
 		}
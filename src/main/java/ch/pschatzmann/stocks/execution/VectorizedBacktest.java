@@ -0,0 +1,179 @@
+package ch.pschatzmann.stocks.execution;
+
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.dates.TradingDay;
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockRecord;
+import ch.pschatzmann.stocks.accounting.IAccount;
+import ch.pschatzmann.stocks.accounting.Transaction;
+import ch.pschatzmann.stocks.integration.StockBar;
+import ch.pschatzmann.stocks.strategy.ITradeEvent;
+import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+import ch.pschatzmann.stocks.strategy.IVectorizedStrategy;
+import ch.pschatzmann.stocks.strategy.Signals;
+import ch.pschatzmann.stocks.strategy.TradingAction;
+import ch.pschatzmann.stocks.strategy.allocation.IAllocationStrategy;
+import ch.pschatzmann.stocks.strategy.allocation.SimpleAllocationStrategy;
+
+/**
+ * Alternative to the StrategyExecutor for a single trading strategy which can
+ * provide its signals for the whole time series at once. We do not need to
+ * evaluate the ta4j rules for each tick, so that a backtest is much faster.
+ *
+ * The result is the same as with the StrategyExecutor: the orders are created
+ * by the allocation strategy with the same ticks and indexes and they are
+ * filled by the PaperTrader at the next date change, so that market, limit and
+ * stop orders are processed with the same logic. The transactions are added to
+ * the account of the trader, so that the KPIs can be determined from the
+ * account. Allocation strategies which need access to the executor are not
+ * supported.
+ *
+ * @author pschatzmann
+ *
+ */
+public class VectorizedBacktest {
+	private static final Logger LOG = LoggerFactory.getLogger(VectorizedBacktest.class);
+	private PaperTrader trader;
+	private IAllocationStrategy allocationStrategy;
+	private int lastDay = TradingDay.NONE;
+	private Date lastDate;
+
+	public VectorizedBacktest(PaperTrader trader) {
+		this(trader, new SimpleAllocationStrategy(trader));
+	}
+
+	public VectorizedBacktest(PaperTrader trader, IAllocationStrategy allocationStrategy) {
+		if (allocationStrategy instanceof IExecutorAware) {
+			throw new IllegalArgumentException(
+					"The allocation strategy is not supported: " + allocationStrategy.getClass().getSimpleName());
+		}
+		this.trader = trader;
+		this.allocationStrategy = allocationStrategy;
+	}
+
+	/**
+	 * Returns true if the strategy can be executed with the VectorizedBacktest
+	 *
+	 * @param strategy
+	 * @param allocationStrategy
+	 * @return
+	 */
+	public static boolean isSupported(ITradingStrategy strategy, IAllocationStrategy allocationStrategy) {
+		return strategy instanceof IVectorizedStrategy && !(strategy instanceof ITradeEvent)
+				&& !(allocationStrategy instanceof IExecutorAware);
+	}
+
+	/**
+	 * Executes the strategy for the indicated period. Like in the
+	 * StrategyExecutor the index counts the valid records and records with the
+	 * same date as the prior record are skipped.
+	 *
+	 * @param strategy
+	 * @param period
+	 */
+	public void run(IVectorizedStrategy strategy, DateRange period) {
+		IAccount account = trader.getAccount();
+		IStockData stockData = strategy.getStockData();
+		account.putStockData(stockData);
+		Signals signals = strategy.getSignals();
+		long start = period == null || period.getStart() == null ? Long.MIN_VALUE : period.getStart().getTime();
+		long end = period == null || period.getEnd() == null ? Long.MAX_VALUE : period.getEnd().getTime();
+
+		int index = -1;
+		int day = TradingDay.NONE;
+		int lastValidDay = TradingDay.NONE;
+		Date lastValidDate = null;
+		int dayAfterEnd = TradingDay.NONE;
+		Date dateAfterEnd = null;
+		for (IStockRecord r : stockData.getHistory()) {
+			if (!r.isValid()) {
+				continue;
+			}
+			Date date = r.getDate();
+			int recordDay = r.getEpochDay();
+			lastValidDay = recordDay;
+			lastValidDate = date;
+			if (date.getTime() > end) {
+				if (dateAfterEnd == null) {
+					dayAfterEnd = recordDay;
+					dateAfterEnd = date;
+				}
+				continue;
+			}
+			index++;
+			if (recordDay == day) {
+				continue;
+			}
+			day = recordDay;
+			if (date.getTime() < start) {
+				lastDay = recordDay;
+				lastDate = date;
+				continue;
+			}
+
+			try {
+				if (onDateChange(recordDay, date)) {
+					allocationStrategy.onEndOfDate(account, date);
+					trader.execute();
+				}
+				TradingAction action = signals.getAction(index);
+				if (action != TradingAction.hold) {
+					execute(strategy, stockData, account, new StockRecord(new StockBar(r), stockData.getStockID(), index),
+							action);
+				}
+			} catch (Exception ex) {
+				LOG.error(ex.getLocalizedMessage(), ex);
+			}
+		}
+
+		if (dateAfterEnd != null && onDateChange(dayAfterEnd, dateAfterEnd)) {
+			allocationStrategy.onEndOfDate(account, dateAfterEnd);
+			trader.execute();
+		}
+		if (lastValidDate != null) {
+			onDateChange(lastValidDay, lastValidDate);
+		}
+		allocationStrategy.onEndOfDate(account, lastDate);
+		trader.execute();
+	}
+
+	protected boolean onDateChange(int day, Date date) {
+		boolean result = lastDay != TradingDay.NONE && day != lastDay;
+		lastDay = day;
+		lastDate = date;
+		return result;
+	}
+
+	/**
+	 * Creates the order for the signal of the strategy
+	 *
+	 * @param strategy
+	 * @param stockData
+	 * @param account
+	 * @param sr
+	 * @param action
+	 */
+	protected void execute(ITradingStrategy strategy, IStockData stockData, IAccount account, IStockRecord sr,
+			TradingAction action) {
+		Long qty = action == TradingAction.buy ? allocationStrategy.onBuy(account, sr, strategy)
+				: -allocationStrategy.onSell(account, sr, strategy);
+		if (qty != 0L) {
+			account.getAccount().addTransaction(new Transaction(sr.getDate(), stockData.getStockID(), qty));
+		}
+	}
+
+	public PaperTrader getTrader() {
+		return trader;
+	}
+
+	public IAllocationStrategy getAllocationStrategy() {
+		return allocationStrategy;
+	}
+
+}
@@ -0,0 +1,71 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+import java.util.Map;
+
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+
+/**
+ * Stops the backtest if the actual value of the KPI is lower than the best
+ * result of all completed backtests minus the indicated margin. The check
+ * starts after the indicated share of the period. The margin should cover what
+ * can still be gained in the remaining period.
+ * 
+ * Only the KPIs which are provided by the KPIAccumulator (Return, SharpeRatio
+ * and DrawDown) are supported.
+ * 
+ * @author pschatzmann
+ *
+ */
+public class BestResultPruning implements IPruningPolicy {
+	private KPI kpi;
+	private double margin;
+	private double elapsedShare;
+	private volatile Double bestValue;
+
+	public BestResultPruning(KPI kpi, double margin, double elapsedShare) {
+		this.kpi = kpi;
+		this.margin = margin;
+		this.elapsedShare = elapsedShare;
+	}
+
+	@Override
+	public boolean isPruned(PruningState state) {
+		Double best = bestValue;
+		if (best == null || state.getElapsedShare() < elapsedShare) {
+			return false;
+		}
+		Double value = state.getKPIs().getValue(kpi);
+		return value != null && !value.isNaN() && value < best - margin;
+	}
+
+	@Override
+	public synchronized void onCompleted(Map<KPI, Double> kpis) {
+		Double value = kpis.get(kpi);
+		if (value != null && !value.isNaN() && (bestValue == null || value > bestValue)) {
+			bestValue = value;
+		}
+	}
+
+	/**
+	 * Best value of all completed backtests
+	 * 
+	 * @return
+	 */
+	public Double getBestValue() {
+		return bestValue;
+	}
+
+	/**
+	 * Defines the best known value, e.g. from a prior optimization
+	 * 
+	 * @param bestValue
+	 */
+	public synchronized void setBestValue(Double bestValue) {
+		this.bestValue = bestValue;
+	}
+
+	public KPI getKPI() {
+		return kpi;
+	}
+
+}
@@ -0,0 +1,49 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+
+/**
+ * Stops the backtest if any of the policies is requesting it
+ * 
+ * @author pschatzmann
+ *
+ */
+public class CompositePruningPolicy implements IPruningPolicy {
+	private List<IPruningPolicy> policies = new ArrayList();
+
+	public CompositePruningPolicy(IPruningPolicy... policies) {
+		this.policies.addAll(Arrays.asList(policies));
+	}
+
+	public CompositePruningPolicy add(IPruningPolicy policy) {
+		this.policies.add(policy);
+		return this;
+	}
+
+	@Override
+	public boolean isPruned(PruningState state) {
+		for (IPruningPolicy policy : policies) {
+			if (policy.isPruned(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void onCompleted(Map<KPI, Double> kpis) {
+		for (IPruningPolicy policy : policies) {
+			policy.onCompleted(kpis);
+		}
+	}
+
+	public List<IPruningPolicy> getPolicies() {
+		return policies;
+	}
+
+}
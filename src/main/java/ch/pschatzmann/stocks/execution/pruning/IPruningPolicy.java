@@ -0,0 +1,30 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+import java.util.Map;
+
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+
+/**
+ * Decides at the end of each trading day if a backtest should be aborted
+ * because it can not deliver a good result any more.
+ * 
+ * @author pschatzmann
+ *
+ */
+public interface IPruningPolicy {
+	/**
+	 * Returns true if the execution should be stopped
+	 * 
+	 * @param state
+	 * @return
+	 */
+	boolean isPruned(PruningState state);
+
+	/**
+	 * Informs the policy about the KPIs of a backtest which was not pruned
+	 * 
+	 * @param kpis
+	 */
+	default void onCompleted(Map<KPI, Double> kpis) {
+	}
+}
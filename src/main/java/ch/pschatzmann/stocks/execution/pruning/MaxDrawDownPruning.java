@@ -0,0 +1,27 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+/**
+ * Stops the backtest if the draw down of the total value exceeds the indicated
+ * percentage
+ * 
+ * @author pschatzmann
+ *
+ */
+public class MaxDrawDownPruning implements IPruningPolicy {
+	private double maxDrawDownPercent;
+
+	public MaxDrawDownPruning(double maxDrawDownPercent) {
+		this.maxDrawDownPercent = maxDrawDownPercent;
+	}
+
+	@Override
+	public boolean isPruned(PruningState state) {
+		Double drawDown = state.getKPIs().getMaxDrawDownPercent();
+		return drawDown != null && drawDown > maxDrawDownPercent;
+	}
+
+	public double getMaxDrawDownPercent() {
+		return maxDrawDownPercent;
+	}
+
+}
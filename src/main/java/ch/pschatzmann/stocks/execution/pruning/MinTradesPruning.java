@@ -0,0 +1,32 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+/**
+ * Stops the backtest if there are less then the indicated number of trades
+ * after the indicated share of the period (e.g. 0.5 for the first half).
+ * 
+ * @author pschatzmann
+ *
+ */
+public class MinTradesPruning implements IPruningPolicy {
+	private long minTrades;
+	private double elapsedShare;
+
+	public MinTradesPruning(long minTrades, double elapsedShare) {
+		this.minTrades = minTrades;
+		this.elapsedShare = elapsedShare;
+	}
+
+	@Override
+	public boolean isPruned(PruningState state) {
+		return state.getElapsedShare() >= elapsedShare && state.getNumberOfTrades() < minTrades;
+	}
+
+	public long getMinTrades() {
+		return minTrades;
+	}
+
+	public double getElapsedShare() {
+		return elapsedShare;
+	}
+
+}
@@ -0,0 +1,125 @@
+package ch.pschatzmann.stocks.execution.pruning;
+
+import java.util.Date;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.dates.TradingDay;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.accounting.IAccount;
+import ch.pschatzmann.stocks.accounting.Ledger;
+import ch.pschatzmann.stocks.accounting.kpi.KPIAccumulator;
+
+/**
+ * Information about a running backtest which is used by the IPruningPolicy.
+ * The StrategyExecutor records the total value of the account at the end of
+ * each trading day, so that the Return, SharpeRatio and DrawDown KPIs are
+ * available while the backtest is running.
+ * 
+ * @author pschatzmann
+ *
+ */
+public class PruningState {
+	private IAccount account;
+	private DateRange period;
+	private KPIAccumulator kpis;
+	private Date date;
+	private double totalValue;
+
+	public PruningState(IAccount account, DateRange period) {
+		this.account = account;
+		this.period = period;
+		double riskFreeReturn = account instanceof Account ? ((Account) account).getRiskFreeReturnInPercent() : 0.0;
+		this.kpis = new KPIAccumulator(riskFreeReturn);
+	}
+
+	/**
+	 * Records the total value of the account (cash and stocks at the closing
+	 * price) at the end of the indicated date
+	 * 
+	 * @param date
+	 */
+	public void update(Date date) {
+		double value = account.getCash();
+		for (IStockID id : account.getStockIDs()) {
+			long qty = account.getQuantity(id);
+			if (qty != 0L) {
+				value += qty * account.getStockPrice(id, date);
+			}
+		}
+		this.date = date;
+		this.totalValue = value;
+		this.kpis.add(date, value);
+	}
+
+	public IAccount getAccount() {
+		return account;
+	}
+
+	public DateRange getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Date of the last update
+	 * 
+	 * @return
+	 */
+	public Date getDate() {
+		return date;
+	}
+
+	/**
+	 * Total value of the account at the last update
+	 * 
+	 * @return
+	 */
+	public double getTotalValue() {
+		return totalValue;
+	}
+
+	/**
+	 * The KPIs which are calculated from the history of the total values
+	 * 
+	 * @return
+	 */
+	public KPIAccumulator getKPIs() {
+		return kpis;
+	}
+
+	/**
+	 * Determines the share of the period (0.0 to 1.0) which has been processed
+	 * 
+	 * @return
+	 */
+	public double getElapsedShare() {
+		if (period == null || date == null) {
+			return 0.0;
+		}
+		double start = TradingDay.of(period.getStart());
+		double end = TradingDay.of(period.getEnd());
+		if (end <= start) {
+			return 1.0;
+		}
+		return Math.max(0.0, Math.min(1.0, (TradingDay.of(date) - start) / (end - start)));
+	}
+
+	/**
+	 * Determines the number of trades up to now
+	 * 
+	 * @return
+	 */
+	public long getNumberOfTrades() {
+		Ledger ledger = account instanceof Account ? ((Account) account).getLedger() : null;
+		if (ledger != null) {
+			return ledger.getNumberOfTrades();
+		}
+		return account.getTransactions().stream().filter(t -> !t.isCashTransfer()).count();
+	}
+
+	@Override
+	public String toString() {
+		return "PruningState " + date + " " + totalValue;
+	}
+
+}
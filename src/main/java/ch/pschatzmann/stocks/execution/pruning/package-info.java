@@ -0,0 +1,7 @@
+/**
+ *  Early termination of backtests which can not deliver a good result
+ * 
+ * @author pschatzmann
+ *
+ */
+package ch.pschatzmann.stocks.execution.pruning;
@@ -44,6 +44,7 @@ public class AlphaVantageReader extends HttpReader  {
 		return Context.getPropertyMandatory("AlphaVantageAPIKey");
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false ;
@@ -0,0 +1,69 @@
+package ch.pschatzmann.stocks.input;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.CalendarUtils;
+import ch.pschatzmann.stocks.ColumnarStockData;
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockColumnTarget;
+import ch.pschatzmann.stocks.IStockTarget;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockRecord;
+
+/**
+ * Reader to load the stock history from the memory mapped BinaryPriceStore.
+ * The directory can be defined with the property BinaryStoreDirectory. Use
+ * MarketArchiveConverter to create the store from the MarketArchive csv files.
+ *
+ * @author pschatzmann
+ *
+ */
+public class BinaryFileReader implements IReaderEx, Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(BinaryFileReader.class);
+	private File directory;
+
+	public BinaryFileReader() {
+		this(new File(Context.getProperty("BinaryStoreDirectory", "/var/www/stock-data-bin")));
+	}
+
+	public BinaryFileReader(File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public int read(IStockTarget sd) {
+		return read(sd, null);
+	}
+
+	@Override
+	public int read(IStockTarget sd, Date fromDate) {
+		try {
+			BinaryPriceStore store = BinaryPriceStore.getInstance(directory, sd.getStockID().getExchange());
+			int afterDay = fromDate == null ? Integer.MIN_VALUE : CalendarUtils.toEpochDay(fromDate);
+			int count;
+			if (sd instanceof IStockColumnTarget) {
+				count = store.read(sd.getStockID().getTicker(), afterDay, (IStockColumnTarget) sd);
+			} else {
+				// we need to provide individual records
+				ColumnarStockData tmp = new ColumnarStockData(sd.getStockID(), new StockColumns(sd.getStockID()));
+				count = store.read(sd.getStockID().getTicker(), afterDay, tmp);
+				tmp.getHistory().forEach(rec -> sd.addRecord(new StockRecord(rec)));
+			}
+			LOG.debug("{} -> {} records", sd.getStockID(), count);
+			return count;
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+}
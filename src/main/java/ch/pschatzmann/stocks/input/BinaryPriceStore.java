@@ -0,0 +1,344 @@
+package ch.pschatzmann.stocks.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.IStockColumnTarget;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.StockColumns;
+
+/**
+ * Fixed width binary store of the price history of all stocks of an exchange.
+ * The data is kept in the file &lt;exchange&gt;.bin which is accessed via
+ * MappedByteBuffers. Because a single buffer can not address more than 2 GB
+ * the file is mapped in chunks which contain a whole number of records. The
+ * file &lt;exchange&gt;.idx contains for each ticker the
+ * list of segments (offset and number of records) in the data file.
+ *
+ * Each record has the following layout: epoch day (int), open, high, low,
+ * closing, volume, adjustment factor (double). New days are appended as
+ * additional segment at the end of the data file, so existing data is never
+ * rewritten.
+ *
+ * @author pschatzmann
+ *
+ */
+public class BinaryPriceStore {
+	private static final Logger LOG = LoggerFactory.getLogger(BinaryPriceStore.class);
+	public static final int RECORD_SIZE = 4 + 6 * 8;
+	private static final int INDEX_MAGIC = 0x49505331; // IPS1
+	private static final long DEFAULT_CHUNK_SIZE = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+	private static Map<String, BinaryPriceStore> stores = new ConcurrentHashMap();
+	private File dataFile;
+	private File indexFile;
+	private Map<String, List<Segment>> index = new TreeMap();
+	private long chunkSize;
+	private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+	/**
+	 * Segment of consecutive records of a ticker in the data file
+	 */
+	static class Segment {
+		long offset;
+		int count;
+		int lastDay;
+
+		Segment(long offset, int count, int lastDay) {
+			this.offset = offset;
+			this.count = count;
+			this.lastDay = lastDay;
+		}
+	}
+
+	protected BinaryPriceStore(File directory, String exchange) throws IOException {
+		this(directory, exchange, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor with the maximum size of the mapped chunks. The size is
+	 * rounded down to a multiple of the record size.
+	 *
+	 * @param directory
+	 * @param exchange
+	 * @param chunkSize
+	 * @throws IOException
+	 */
+	protected BinaryPriceStore(File directory, String exchange, long chunkSize) throws IOException {
+		this.chunkSize = Math.max(1, Math.min(chunkSize, DEFAULT_CHUNK_SIZE) / RECORD_SIZE) * RECORD_SIZE;
+		directory.mkdirs();
+		this.dataFile = new File(directory, exchange + ".bin");
+		this.indexFile = new File(directory, exchange + ".idx");
+		loadIndex();
+	}
+
+	/**
+	 * Provides the shared store for the indicated directory and exchange
+	 *
+	 * @param directory
+	 * @param exchange
+	 * @return
+	 * @throws IOException
+	 */
+	public static BinaryPriceStore getInstance(File directory, String exchange) throws IOException {
+		String key = new File(directory, exchange).getAbsolutePath();
+		BinaryPriceStore result = stores.get(key);
+		if (result == null) {
+			synchronized (stores) {
+				result = stores.get(key);
+				if (result == null) {
+					result = new BinaryPriceStore(directory, exchange);
+					stores.put(key, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the tickers which are available in the store
+	 *
+	 * @return
+	 */
+	public synchronized Collection<String> getTickers() {
+		return new ArrayList(index.keySet());
+	}
+
+	/**
+	 * Returns the number of records which are available for the ticker
+	 *
+	 * @param ticker
+	 * @return
+	 */
+	public synchronized int size(String ticker) {
+		int result = 0;
+		for (Segment s : getSegments(ticker)) {
+			result += s.count;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the epoch day of the last stored record or Integer.MIN_VALUE if
+	 * there is no data for the ticker
+	 *
+	 * @param ticker
+	 * @return
+	 */
+	public synchronized int getLastEpochDay(String ticker) {
+		List<Segment> segments = getSegments(ticker);
+		return segments.isEmpty() ? Integer.MIN_VALUE : segments.get(segments.size() - 1).lastDay;
+	}
+
+	/**
+	 * Appends all records which are after the last stored date
+	 *
+	 * @param id
+	 * @param columns
+	 * @return number of appended records
+	 * @throws IOException
+	 */
+	public synchronized int append(IStockID id, StockColumns columns) throws IOException {
+		int lastDay = getLastEpochDay(id.getTicker());
+		int start = columns.upperBound(lastDay);
+		int count = columns.size() - start;
+		if (count > 0) {
+			ByteBuffer bb = ByteBuffer.allocate(count * RECORD_SIZE);
+			for (int j = start; j < columns.size(); j++) {
+				bb.putInt(columns.getEpochDay(j));
+				bb.putDouble(columns.getOpen(j));
+				bb.putDouble(columns.getHigh(j));
+				bb.putDouble(columns.getLow(j));
+				bb.putDouble(columns.getClosing(j));
+				bb.putDouble(columns.getVolume(j));
+				bb.putDouble(columns.getAdjustmentFactor(j));
+			}
+			bb.flip();
+			long offset;
+			try (FileChannel fc = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE)) {
+				offset = fc.size();
+				fc.position(offset);
+				while (bb.hasRemaining()) {
+					fc.write(bb);
+				}
+				fc.force(false);
+			}
+			List<Segment> segments = index.computeIfAbsent(id.getTicker(), k -> new ArrayList());
+			Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+			if (last != null && last.offset + (long) last.count * RECORD_SIZE == offset) {
+				// extend the last segment if it is at the end of the file
+				last.count += count;
+				last.lastDay = columns.getLastEpochDay();
+			} else {
+				segments.add(new Segment(offset, count, columns.getLastEpochDay()));
+			}
+			saveIndex();
+		}
+		return Math.max(count, 0);
+	}
+
+	/**
+	 * Reads the records of the ticker which are after the indicated epoch day
+	 * into the target
+	 *
+	 * @param ticker
+	 * @param afterDay
+	 * @param target
+	 * @return number of added records
+	 * @throws IOException
+	 */
+	public int read(String ticker, int afterDay, IStockColumnTarget target) throws IOException {
+		// work on a snapshot because append might extend the segments
+		List<Segment> segments = new ArrayList();
+		synchronized (this) {
+			for (Segment s : getSegments(ticker)) {
+				segments.add(new Segment(s.offset, s.count, s.lastDay));
+			}
+		}
+		if (segments.isEmpty()) {
+			return 0;
+		}
+		int count = 0;
+		for (Segment s : segments) {
+			if (s.lastDay <= afterDay) {
+				continue;
+			}
+			long end = s.offset + (long) s.count * RECORD_SIZE;
+			MappedByteBuffer bb = null;
+			long chunkStart = 0;
+			for (long offset = s.offset; offset < end; offset += RECORD_SIZE) {
+				if (bb == null || offset >= chunkStart + chunkSize) {
+					// records never span two chunks because the chunk size is a
+					// multiple of the record size
+					int chunk = (int) (offset / chunkSize);
+					chunkStart = chunk * chunkSize;
+					bb = getChunk(chunk, Math.min(end - chunkStart, chunkSize));
+				}
+				int pos = (int) (offset - chunkStart);
+				int day = bb.getInt(pos);
+				if (day > afterDay && day > target.getLastEpochDay()) {
+					target.addRecord(day, bb.getDouble(pos + 4), bb.getDouble(pos + 12), bb.getDouble(pos + 20),
+							bb.getDouble(pos + 28), bb.getDouble(pos + 36), bb.getDouble(pos + 44));
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Provides the mapped buffer of the indicated chunk with at least the
+	 * requested capacity. If the file has grown since the last mapping of the
+	 * chunk we map it again.
+	 *
+	 * @param chunk
+	 * @param capacity
+	 * @return
+	 * @throws IOException
+	 */
+	protected MappedByteBuffer getChunk(int chunk, long capacity) throws IOException {
+		MappedByteBuffer[] current = chunks;
+		MappedByteBuffer result = chunk < current.length ? current[chunk] : null;
+		if (result == null || result.capacity() < capacity) {
+			synchronized (this) {
+				current = chunks;
+				result = chunk < current.length ? current[chunk] : null;
+				if (result == null || result.capacity() < capacity) {
+					try (FileChannel fc = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+						long start = chunk * chunkSize;
+						long size = Math.min(fc.size() - start, chunkSize);
+						if (size < capacity) {
+							throw new IOException("The file is too short: " + dataFile);
+						}
+						LOG.info("mapping chunk {} of {} with {} bytes", chunk, dataFile, size);
+						result = fc.map(FileChannel.MapMode.READ_ONLY, start, size);
+						MappedByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, chunk + 1));
+						updated[chunk] = result;
+						chunks = updated;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<Segment> getSegments(String ticker) {
+		List<Segment> result = index.get(ticker);
+		return result == null ? Collections.emptyList() : result;
+	}
+
+	private void loadIndex() throws IOException {
+		index.clear();
+		if (indexFile.exists()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+				if (in.readInt() != INDEX_MAGIC) {
+					throw new IOException("Invalid index file " + indexFile);
+				}
+				int tickers = in.readInt();
+				for (int j = 0; j < tickers; j++) {
+					String ticker = in.readUTF();
+					int segmentCount = in.readInt();
+					List<Segment> segments = new ArrayList(segmentCount);
+					for (int i = 0; i < segmentCount; i++) {
+						segments.add(new Segment(in.readLong(), in.readInt(), in.readInt()));
+					}
+					index.put(ticker, segments);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The index is written to a temporary file which replaces the old index, so
+	 * that we never end up with a partially written index
+	 *
+	 * @throws IOException
+	 */
+	private void saveIndex() throws IOException {
+		File tmp = new File(indexFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(index.size());
+			for (Map.Entry<String, List<Segment>> e : index.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeInt(e.getValue().size());
+				for (Segment s : e.getValue()) {
+					out.writeLong(s.offset);
+					out.writeInt(s.count);
+					out.writeInt(s.lastDay);
+				}
+			}
+		}
+		Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return dataFile.getAbsolutePath();
+	}
+
+}
@@ -33,6 +33,7 @@ public class FinancialContentReader extends HttpReader {
 		((CsvParser)this.getInputParser()).setTargetLength(9);
 	}
 	
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false;
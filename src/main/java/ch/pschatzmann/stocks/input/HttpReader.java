@@ -1,29 +1,27 @@
 package ch.pschatzmann.stocks.input;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.net.URL;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.List;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockID;
-import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.IStockTarget;
-import ch.pschatzmann.stocks.StockRecord;
+import ch.pschatzmann.stocks.StockColumns;
 import ch.pschatzmann.stocks.input.parser.CsvParser;
+import ch.pschatzmann.stocks.input.parser.CsvStreamReader;
 import ch.pschatzmann.stocks.input.parser.IInputParser;
 
 /**
- * Reader to load the stock history via HTTP from a url 
+ * Reader to load the stock history via HTTP from a url. The response is
+ * parsed while it is streamed. 
  * 
  * @author pschatzmann
  *
@@ -52,47 +50,11 @@ abstract public class HttpReader implements IReaderEx, Serializable  {
 				String urlString = getPrefix(sd.getStockID())+getSuffix(sd.getStockID(), startDate);
 				is =  new URL(urlString).openStream();
 				if (is!=null) {
-					List<String> lines = IOUtils.readLines(new BufferedReader(new InputStreamReader(is)));
-
-					if (lines != null && !lines.isEmpty()) {
-						LOG.info("Reading "+urlString+": Number of lines: "+lines.size());
-						
-						String header = lines.get(0);
-						while (!parser.isValid(header) && !lines.isEmpty()) {
-							parser.setup(header);
-							lines.remove(0);
-							if (!lines.isEmpty()) {
-								header = lines.get(0);
-							}
-						}
-						
-						if (!isOldToNew()) {
-							Collections.reverse(lines);
-							LOG.info("lines are reordered");
-						}
-						
-						for (String line : lines) {
-							if (parser.isValid(line)) {
-								try {
-									StockRecord r = parser.parse(line);
-									if (r != null && r.isValid()) {
-										IStockRecord latest = sd.getValue();
-										Date recordDate = r.getDate();
-										if (recordDate != null && isValidDate(startDate, recordDate)) {
-											if (latest == null || recordDate.after(latest.getDate())) {
-												sd.addRecord(r);
-												r.setIndex(count);
-												count++;
-											}
-										}
-									}
-								} catch (Exception ex) {
-									LOG.error(ex.getMessage(), ex);
-								}
-							} 
-						}
-						LOG.debug(sd.getStockID().getTicker() + Thread.currentThread().getName());
-					}
+					CsvStreamReader csv = new CsvStreamReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+					StockColumns columns = csv.read(parser, sd.getStockID());
+					count = CsvStreamReader.addRecords(columns, CsvStreamReader.firstDay(startDate), sd);
+					LOG.info("Reading "+urlString+": Number of lines: "+csv.getLines());
+					LOG.debug(sd.getStockID().getTicker() + Thread.currentThread().getName());
 				} else {
 					LOG.info(urlString+"- not found");	
 				}
@@ -111,14 +73,6 @@ abstract public class HttpReader implements IReaderEx, Serializable  {
 	}
 
 
-	private boolean isValidDate(Date startDate, Date recordDate) {
-		boolean valid = true;
-		if (startDate !=null && recordDate.before(startDate)) {
-			valid = false;
-		}
-		return valid;
-	}
-
 	public IInputParser getInputParser() {
 		return parser;
 	}
@@ -132,7 +86,17 @@ abstract public class HttpReader implements IReaderEx, Serializable  {
 	
 	abstract protected String getSuffix(IStockID id, Date startDate);
 		
-	abstract protected boolean isOldToNew();
+	/**
+	 * Defines the sort order of the records in the response
+	 * 
+	 * @return
+	 * @deprecated The order is detected from the data and this information is
+	 *             not used any more
+	 */
+	@Deprecated
+	protected boolean isOldToNew() {
+		return false;
+	}
 	
 	public Date getStartDate() {
 		return this.startDate;
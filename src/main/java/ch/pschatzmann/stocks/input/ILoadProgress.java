@@ -0,0 +1,25 @@
+package ch.pschatzmann.stocks.input;
+
+import ch.pschatzmann.stocks.IStockID;
+
+/**
+ * Callback which is informed by the StockDataLoader after each ticker
+ * 
+ * @author pschatzmann
+ *
+ */
+@FunctionalInterface
+public interface ILoadProgress {
+
+	/**
+	 * Called after the history of a ticker has been loaded or the loading has
+	 * failed
+	 * 
+	 * @param id
+	 * @param processed number of processed tickers
+	 * @param total     number of requested tickers
+	 * @param error     null if the loading was successful
+	 */
+	public void progress(IStockID id, int processed, int total, Exception error);
+
+}
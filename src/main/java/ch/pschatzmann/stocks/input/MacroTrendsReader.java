@@ -51,6 +51,7 @@ public class MacroTrendsReader extends HttpReader {
 		return parameters;
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return true;
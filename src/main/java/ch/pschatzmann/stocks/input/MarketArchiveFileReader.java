@@ -1,19 +1,21 @@
 package ch.pschatzmann.stocks.input;
 
 import java.io.File;
+import java.io.Reader;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
 import java.util.Date;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.pschatzmann.dates.CalendarUtils;
 import ch.pschatzmann.stocks.IStockID;
-import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.IStockTarget;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.input.parser.CsvStreamReader;
 import ch.pschatzmann.stocks.input.parser.MarketArchiveParser;
 
 /**
@@ -58,29 +60,12 @@ public class MarketArchiveFileReader implements IReaderEx, Serializable {
 			parser.parseFileName(fileName);
 			Path path = Paths.get(fileName);
 			if (path.toFile().isFile()) {
-				Collection<String> lines = Files.readAllLines(path);
-				if (lines != null) {
-					for (String line : lines) {
-						if (!line.startsWith("Date") && !line.isEmpty()) {
-							try {
-								IStockRecord r = parser.parse(line);
-								if (r != null) {
-									IStockRecord latest = sd.getValue();
-									Date recordDate = r.getDate();
-									if (recordDate != null && isValid(recordDate, fromDate)) {
-										if (latest == null || recordDate.after(latest.getDate())) {
-											sd.addRecord(r);
-											count++;
-										}
-									}
-								}
-							} catch (Exception ex) {
-								LOG.error(ex.getLocalizedMessage(), ex);
-							}
-						}
-					}
-					LOG.info(sd.getStockID().getTicker() + ":"  + Thread.currentThread().getName());
+				try (Reader in = Files.newBufferedReader(path)) {
+					StockColumns columns = new CsvStreamReader(in).read(parser, sd.getStockID());
+					int firstDay = fromDate == null ? Integer.MIN_VALUE : CalendarUtils.toEpochDay(fromDate) + 1;
+					count = CsvStreamReader.addRecords(columns, firstDay, sd);
 				}
+				LOG.info(sd.getStockID().getTicker() + ":"  + Thread.currentThread().getName());
 			}
 			return count;
 		} catch (Exception ex) {
@@ -88,10 +73,6 @@ public class MarketArchiveFileReader implements IReaderEx, Serializable {
 		}
 	}
 
-	private boolean isValid(Date recordDate, Date fromDate) {
-		return fromDate == null || recordDate.after(fromDate);
-	}
-
 	public static Path getStockDataFile(IStockID id) {
 		String fileName = direcotry + "/" + id.getExchange() + "/" + id.getTicker() + ".csv";
 		return new File(fileName).toPath();
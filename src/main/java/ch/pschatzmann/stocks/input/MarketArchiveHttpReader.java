@@ -41,6 +41,7 @@ public class MarketArchiveHttpReader extends HttpReader implements Serializable
 		return "";
 	}
 	
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false ;
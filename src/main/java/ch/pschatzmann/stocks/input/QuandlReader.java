@@ -48,6 +48,7 @@ public class QuandlReader extends HttpReader {
 		return sb.toString();
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false ;
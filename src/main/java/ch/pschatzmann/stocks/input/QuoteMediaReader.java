@@ -49,6 +49,7 @@ public class QuoteMediaReader extends HttpReader  {
 		return suffix;
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false;
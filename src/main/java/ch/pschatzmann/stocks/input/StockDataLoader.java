@@ -0,0 +1,275 @@
+package ch.pschatzmann.stocks.input;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.StockData;
+import ch.pschatzmann.stocks.data.universe.IUniverse;
+
+/**
+ * Loads the history of multiple stocks concurrently. The number of parallel
+ * requests can be limited per reader class with setParallelism(); the default
+ * is defined by the property StockDataLoaderParallelism. The limit is shared by
+ * all loaders, so that concurrent loaders do not multiply the number of
+ * requests to rate limited sources.
+ * 
+ * If the loading of a ticker fails, the error is recorded and the ticker is
+ * not part of the result.
+ * 
+ * @author pschatzmann
+ *
+ */
+public class StockDataLoader {
+	private static final Logger LOG = LoggerFactory.getLogger(StockDataLoader.class);
+	private static Map<String, Integer> parallelismMap = new ConcurrentHashMap();
+	private static Map<String, Semaphore> permitsMap = new ConcurrentHashMap();
+	private IReader reader;
+	private ILoadProgress progress;
+	private Map<IStockID, Exception> errors = new ConcurrentHashMap();
+
+	public StockDataLoader(IReader reader) {
+		this.reader = reader != null ? reader : Context.getDefaultReader();
+	}
+
+	public StockDataLoader(IReader reader, ILoadProgress progress) {
+		this(reader);
+		this.progress = progress;
+	}
+
+	/**
+	 * Defines the maximum number of parallel requests for the indicated reader
+	 * class
+	 * 
+	 * @param readerClass
+	 * @param parallelism
+	 */
+	public static void setParallelism(Class<? extends IReader> readerClass, int parallelism) {
+		parallelismMap.put(readerClass.getSimpleName(), Math.max(1, parallelism));
+		// running requests release the permits of the prior limit
+		permitsMap.remove(readerClass.getSimpleName());
+	}
+
+	/**
+	 * Determines the maximum number of parallel requests for the indicated reader
+	 * 
+	 * @param reader
+	 * @return
+	 */
+	public static int getParallelism(IReader reader) {
+		Integer result = parallelismMap.get(StockData.getSimpleClassName(reader));
+		if (result == null) {
+			result = Integer.parseInt(Context.getProperty("StockDataLoaderParallelism", "8"));
+		}
+		return result;
+	}
+
+	/**
+	 * Provides the permits for the parallel requests which are shared by all
+	 * loaders of the reader class
+	 * 
+	 * @param reader
+	 * @return
+	 */
+	protected static Semaphore getPermits(IReader reader) {
+		return permitsMap.computeIfAbsent(StockData.getSimpleClassName(reader),
+				k -> new Semaphore(getParallelism(reader)));
+	}
+
+	/**
+	 * Loads all stocks of the universe
+	 * 
+	 * @param universe
+	 * @return map with the stock data in the sequence of the universe
+	 */
+	public Map<IStockID, IStockData> load(IUniverse universe) {
+		return load(universe.list());
+	}
+
+	/**
+	 * Loads the indicated stocks
+	 * 
+	 * @param ids
+	 * @return map with the stock data in the sequence of the ids
+	 */
+	public Map<IStockID, IStockData> load(Collection<IStockID> ids) {
+		Map<IStockID, IStockData> loaded = new ConcurrentHashMap();
+		stream(ids).forEach(sd -> loaded.put(sd.getStockID(), sd));
+		Map<IStockID, IStockData> result = new LinkedHashMap();
+		for (IStockID id : ids) {
+			IStockData sd = loaded.get(id);
+			if (sd != null) {
+				result.put(id, sd);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Provides the loaded stock data in the sequence in which the loading is
+	 * completed
+	 * 
+	 * @param universe
+	 * @return
+	 */
+	public Stream<IStockData> stream(IUniverse universe) {
+		return stream(universe.list());
+	}
+
+	/**
+	 * Provides the loaded stock data in the sequence in which the loading is
+	 * completed
+	 * 
+	 * @param ids
+	 * @return
+	 */
+	public Stream<IStockData> stream(Collection<IStockID> ids) {
+		return stream(ids, false);
+	}
+
+	/**
+	 * Provides the loaded stock data in the sequence of the ids or in the
+	 * sequence in which the loading is completed
+	 * 
+	 * @param ids
+	 * @param inSequence
+	 * @return
+	 */
+	public Stream<IStockData> stream(Collection<IStockID> ids, boolean inSequence) {
+		List<IStockID> list = new ArrayList(ids);
+		int threads = Math.max(1, Math.min(getParallelism(reader), list.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "StockDataLoader");
+			t.setDaemon(true);
+			return t;
+		});
+		CompletionService<IStockData> service = new ExecutorCompletionService(executor);
+		List<Future<IStockData>> futures = new ArrayList();
+		AtomicInteger processed = new AtomicInteger();
+		for (IStockID id : list) {
+			futures.add(service.submit(() -> load(id, processed, list.size())));
+		}
+		executor.shutdown();
+
+		Iterator<IStockData> it = new Iterator<IStockData>() {
+			private int open = list.size();
+			private IStockData next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && open > 0) {
+					open--;
+					next = inSequence ? get(futures.get(list.size() - open - 1)) : take(service);
+				}
+				return next != null;
+			}
+
+			@Override
+			public IStockData next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				IStockData result = next;
+				next = null;
+				return result;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliterator(it, list.size(), Spliterator.NONNULL), false)
+				.onClose(() -> executor.shutdownNow());
+	}
+
+	private IStockData take(CompletionService<IStockData> service) {
+		try {
+			return get(service.take());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private IStockData get(Future<IStockData> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			// errors are handled in load()
+			return null;
+		}
+	}
+
+	private IStockData load(IStockID id, AtomicInteger processed, int total) {
+		IStockData result = null;
+		Exception error = null;
+		Semaphore permits = getPermits(reader);
+		try {
+			permits.acquire();
+			try {
+				IStockData sd = Context.getStockData(id, reader);
+				sd.getHistory();
+				result = sd;
+			} finally {
+				permits.release();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			errors.put(id, ex);
+			error = ex;
+		} catch (Exception ex) {
+			LOG.warn("Could not load {}: {}", id, ex.getMessage());
+			errors.put(id, ex);
+			error = ex;
+		}
+		int count = processed.incrementAndGet();
+		if (progress != null) {
+			try {
+				progress.progress(id, count, total, error);
+			} catch (Exception ex) {
+				LOG.warn("Progress callback failed", ex);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the tickers which could not be loaded with the related exception
+	 * 
+	 * @return
+	 */
+	public Map<IStockID, Exception> getErrors() {
+		return errors;
+	}
+
+	public IReader getReader() {
+		return reader;
+	}
+
+	public void setProgress(ILoadProgress progress) {
+		this.progress = progress;
+	}
+
+}
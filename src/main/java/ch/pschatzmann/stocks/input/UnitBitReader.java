@@ -41,6 +41,7 @@ public class UnitBitReader extends HttpReader  {
 		return Context.getPropertyMandatory("UnitBitAPIKey");
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false ;
@@ -43,6 +43,7 @@ public class WallstreetJournalReader extends HttpReader {
 		return parameters;
 	}
 
+	@Deprecated
 	@Override
 	protected boolean isOldToNew() {
 		return false;
@@ -0,0 +1,368 @@
+package ch.pschatzmann.stocks.input.parser;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import ch.pschatzmann.dates.CalendarUtils;
+import ch.pschatzmann.dates.TradingDay;
+import ch.pschatzmann.stocks.IStockColumnSink;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockRecord;
+
+/**
+ * Describes the positions of the values in a csv line and parses the lines
+ * w/o creating any intermediate objects: The field boundaries are determined
+ * in one pass, ISO dates (yyyy-MM-dd) are converted directly to epoch days and
+ * the decimals are parsed by hand. The result is written into a
+ * IStockColumnSink.
+ *
+ * Dates in other formats and numbers with more than 15 significant digits are
+ * parsed with the standard Java classes.
+ *
+ * @author pschatzmann
+ *
+ */
+public class CsvLayout implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private static final long MAX_EXACT = 1L << 53;
+	private static final ThreadLocal<int[]> BOUNDS = ThreadLocal.withInitial(() -> new int[64]);
+	private char separator = ',';
+	private int fieldCount;
+	private int posDate = 0;
+	private int posOpen = -1;
+	private int posHigh = -1;
+	private int posLow = -1;
+	private int posClosing = -1;
+	private int posVolume = -1;
+	private int posAdjusted = -1;
+	private int posUnadjusted = -1;
+	private int posRequired = -1;
+	private boolean scaled;
+	private transient DateFormat dateFormat;
+	private String datePattern;
+	private boolean iso = true;
+
+	public CsvLayout(int fieldCount) {
+		this.fieldCount = fieldCount;
+	}
+
+	/**
+	 * Defines the positions of the date and price columns. Use -1 for missing
+	 * columns.
+	 *
+	 * @param date
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param closing
+	 * @param volume
+	 * @return
+	 */
+	public CsvLayout setPrices(int date, int open, int high, int low, int closing, int volume) {
+		this.posDate = date;
+		this.posOpen = open;
+		this.posHigh = high;
+		this.posLow = low;
+		this.posClosing = closing;
+		this.posVolume = volume;
+		return this;
+	}
+
+	/**
+	 * The adjustment factor is calculated as value[adjusted] / value[unadjusted].
+	 * If scaled is true, the prices are multiplied by the factor.
+	 *
+	 * @param adjusted
+	 * @param unadjusted
+	 * @param scaled
+	 * @return
+	 */
+	public CsvLayout setAdjustment(int adjusted, int unadjusted, boolean scaled) {
+		this.posAdjusted = adjusted;
+		this.posUnadjusted = unadjusted;
+		this.scaled = scaled;
+		return this;
+	}
+
+	/**
+	 * Lines where the indicated field is empty are ignored
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public CsvLayout setRequired(int pos) {
+		this.posRequired = pos;
+		return this;
+	}
+
+	/**
+	 * Defines a date format which is used instead of the ISO format
+	 *
+	 * @param dateFormat
+	 * @return
+	 */
+	public CsvLayout setDateFormat(DateFormat dateFormat) {
+		this.dateFormat = dateFormat;
+		this.iso = dateFormat == null;
+		this.datePattern = dateFormat instanceof SimpleDateFormat ? ((SimpleDateFormat) dateFormat).toPattern()
+				: null;
+		return this;
+	}
+
+	public CsvLayout setFieldCount(int fieldCount) {
+		this.fieldCount = fieldCount;
+		return this;
+	}
+
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	public char getSeparator() {
+		return separator;
+	}
+
+	public CsvLayout setSeparator(char separator) {
+		this.separator = separator;
+		return this;
+	}
+
+	/**
+	 * Parses the line and passes the values to the sink. Missing values are
+	 * represented as NaN.
+	 *
+	 * @param line
+	 * @param sink
+	 * @return false if the line does not contain a record
+	 * @throws ParseException
+	 */
+	public boolean parse(CharSequence line, IStockColumnSink sink) throws ParseException {
+		int[] bounds = split(line);
+		if (bounds == null) {
+			return false;
+		}
+		if (posRequired >= 0 && bounds[posRequired * 2] == bounds[posRequired * 2 + 1]) {
+			return false;
+		}
+		int dateStart = bounds[posDate * 2];
+		int dateEnd = bounds[posDate * 2 + 1];
+		if (dateStart == dateEnd || !isDigit(line.charAt(dateStart))) {
+			// header or comment
+			return false;
+		}
+		int epochDay = parseDate(line, dateStart, dateEnd);
+
+		double factor = 1.0;
+		if (posAdjusted >= 0) {
+			try {
+				double value = value(line, bounds, posAdjusted) / value(line, bounds, posUnadjusted);
+				if (!Double.isNaN(value)) {
+					factor = value;
+				}
+			} catch (NumberFormatException ex) {
+			}
+		}
+		double priceFactor = scaled ? factor : 1.0;
+		sink.addRecord(epochDay, value(line, bounds, posOpen) * priceFactor,
+				value(line, bounds, posHigh) * priceFactor, value(line, bounds, posLow) * priceFactor,
+				value(line, bounds, posClosing) * priceFactor, value(line, bounds, posVolume), factor);
+		return true;
+	}
+
+	/**
+	 * Parses the line into a new StockRecord. If the line does not contain a
+	 * record we return an empty StockRecord.
+	 *
+	 * @param line
+	 * @return
+	 * @throws ParseException
+	 */
+	public StockRecord parseRecord(CharSequence line) throws ParseException {
+		StockRecord sr = new StockRecord();
+		parse(line, (epochDay, open, high, low, closing, volume, factor) -> {
+			sr.setDate(CalendarUtils.toDate(epochDay));
+			sr.setOpen(StockColumns.toNumber(open));
+			sr.setHigh(StockColumns.toNumber(high));
+			sr.setLow(StockColumns.toNumber(low));
+			sr.setClosing(StockColumns.toNumber(closing));
+			sr.setVolume(StockColumns.toNumber(volume));
+			sr.setAdjustmentFactor(factor);
+		});
+		return sr;
+	}
+
+	/**
+	 * Determines the start and end of the fields. Like with String.split()
+	 * trailing empty fields are not counted. We return null if the number of
+	 * fields does not match.
+	 *
+	 * @param line
+	 * @return
+	 */
+	private int[] split(CharSequence line) {
+		int[] bounds = BOUNDS.get();
+		if (bounds.length < fieldCount * 2 + 2) {
+			bounds = new int[fieldCount * 2 + 2];
+			BOUNDS.set(bounds);
+		}
+		int len = line.length();
+		int field = 0;
+		int start = 0;
+		int lastNonEmpty = -1;
+		for (int j = 0; j <= len; j++) {
+			if (j == len || line.charAt(j) == separator) {
+				if (j > start) {
+					if (field >= fieldCount) {
+						return null;
+					}
+					lastNonEmpty = field;
+				}
+				if (field < fieldCount) {
+					bounds[field * 2] = start;
+					bounds[field * 2 + 1] = j;
+				}
+				field++;
+				start = j + 1;
+			}
+		}
+		return lastNonEmpty + 1 == fieldCount ? bounds : null;
+	}
+
+	private double value(CharSequence line, int[] bounds, int pos) {
+		return pos < 0 ? Double.NaN : parseDouble(line, bounds[pos * 2], bounds[pos * 2 + 1]);
+	}
+
+	/**
+	 * Converts the date to the number of days since 1970-01-01
+	 *
+	 * @param line
+	 * @param start
+	 * @param end
+	 * @return
+	 * @throws ParseException
+	 */
+	private int parseDate(CharSequence line, int start, int end) throws ParseException {
+		if (iso && end - start == 10 && line.charAt(start + 4) == '-'
+				&& line.charAt(start + 7) == '-') {
+			int year = digits(line, start, start + 4);
+			int month = digits(line, start + 5, start + 7);
+			int day = digits(line, start + 8, start + 10);
+			if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+				return TradingDay.of(year, month, day);
+			}
+		}
+		return CalendarUtils.toEpochDay(parseDate(line.subSequence(start, end).toString()));
+	}
+
+	private synchronized java.util.Date parseDate(String date) throws ParseException {
+		if (dateFormat == null) {
+			dateFormat = new SimpleDateFormat(datePattern == null ? "yyyy-MM-dd" : datePattern);
+		}
+		return dateFormat.parse(date);
+	}
+
+	private static int digits(CharSequence line, int start, int end) {
+		int result = 0;
+		for (int j = start; j < end; j++) {
+			char c = line.charAt(j);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Parses a decimal number. Empty values and "null" are returned as NaN. If
+	 * the value can not be converted exactly with a double multiplication or
+	 * division we use Double.parseDouble().
+	 *
+	 * @param line
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	static double parseDouble(CharSequence line, int start, int end) {
+		while (start < end && line.charAt(start) == ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) == ' ') {
+			end--;
+		}
+		if (start == end || (end - start == 4 && line.charAt(start) == 'n' && line.charAt(start + 1) == 'u'
+				&& line.charAt(start + 2) == 'l' && line.charAt(start + 3) == 'l')) {
+			return Double.NaN;
+		}
+
+		int pos = start;
+		boolean negative = false;
+		char c = line.charAt(pos);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		boolean digits = false;
+		boolean fraction = false;
+		for (; pos < end; pos++) {
+			c = line.charAt(pos);
+			if (isDigit(c)) {
+				digits = true;
+				if (significant > 0 || c != '0') {
+					if (++significant > 15) {
+						return fallback(line, start, end);
+					}
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (fraction) {
+					exponent--;
+				}
+			} else if (c == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (pos < end) {
+			if (!digits || (c != 'e' && c != 'E')) {
+				return fallback(line, start, end);
+			}
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+				negativeExponent = line.charAt(pos) == '-';
+				pos++;
+			}
+			int exp = 0;
+			int expStart = pos;
+			for (; pos < end && isDigit(line.charAt(pos)) && exp < 1000; pos++) {
+				exp = exp * 10 + (line.charAt(pos) - '0');
+			}
+			if (pos < end || pos == expStart) {
+				return fallback(line, start, end);
+			}
+			exponent += negativeExponent ? -exp : exp;
+		}
+		if (!digits || mantissa >= MAX_EXACT || exponent < -22 || exponent > 22) {
+			return fallback(line, start, end);
+		}
+		double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -result : result;
+	}
+
+	private static double fallback(CharSequence line, int start, int end) {
+		return Double.parseDouble(line.subSequence(start, end).toString());
+	}
+
+}
@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockColumnSink;
 import ch.pschatzmann.stocks.StockRecord;
 
 /**
@@ -19,11 +20,14 @@ import ch.pschatzmann.stocks.StockRecord;
  * 
  * Date,	Open,	High,	Low,	Close,	Volume,	Adj Close
  * 
+ * The positions are determined from the header and the lines are parsed with
+ * a CsvLayout.
+ * 
  * @author pschatzmann
  *
  */
 
-public class CsvParser implements IInputParser, Serializable {
+public class CsvParser implements IColumnParser, Serializable {
 	private static final Logger LOG = LoggerFactory.getLogger(CsvParser.class);
 	private static final long serialVersionUID = 1L;
 	private transient SimpleDateFormat df = null;
@@ -37,13 +41,15 @@ public class CsvParser implements IInputParser, Serializable {
 	private int posVolume = 6;
 	private List<String> fields = new ArrayList();
 	private int targetLength = 7;
+	private CsvLayout layout;
 
 	public CsvParser() {
+		updateLayout();
 	}
 
 	public CsvParser(boolean corrected) {
-		this();
 		this.corrected = corrected;
+		updateLayout();
 	}
 	
 
@@ -64,37 +70,36 @@ public class CsvParser implements IInputParser, Serializable {
 			posAdjClosing =  fields.indexOf("adjclose");			
 		}
 		posVolume =  fields.indexOf("volume");;
-		
+		updateLayout();
 	}
 	
+	/**
+	 * Defines the CsvLayout from the positions of the fields
+	 */
+	protected void updateLayout() {
+		CsvLayout layout = new CsvLayout(targetLength).setPrices(Math.max(posDate, 0), posOpen, posHigh, posLow,
+				posClosing, posVolume);
+		if (corrected && posAdjClosing >= 0 && posClosing >= 0) {
+			layout.setAdjustment(posAdjClosing, posClosing, true);
+		}
+		if (df != null) {
+			layout.setDateFormat(df);
+		}
+		this.layout = layout;
+	}
+
 	@Override
 	public StockRecord parse(String line) throws ParseException {
-		StockRecord sr = new StockRecord();
-		String[] sa = line.split(getSeparator());
-		if (sa.length==this.targetLength) {
-			double adjustmentFactor = 1.0;
-			if (corrected) {
-				try {
-					Double div = toDouble(sa[posClosing],1.0);
-					if (div!=null) {
-						adjustmentFactor = toDouble(sa[posAdjClosing],1.0) / div;
-					}
-				} catch(Exception ex){
-				}
-			}
-			sr.setAdjustmentFactor(adjustmentFactor);;
-
-			sr.setDate(this.getDate(sa[posDate]));
-			sr.setOpen(toDouble(sa[posOpen],adjustmentFactor));
-			sr.setHigh(toDouble(sa[posHigh],adjustmentFactor));
-			sr.setLow(toDouble(sa[posLow],adjustmentFactor));
-			sr.setClosing(toDouble(sa[posClosing],adjustmentFactor));
-			String volume = sa[posVolume];
-			if (!Context.isEmpty(volume)) {
-				sr.setVolume(toDouble(volume,1.0));
-			}
-		}
-		return sr;
+		return layout.parseRecord(line);
+	}
+
+	@Override
+	public boolean parse(CharSequence line, IStockColumnSink sink) throws ParseException {
+		return layout.parse(line, sink);
+	}
+
+	public CsvLayout getLayout() {
+		return layout;
 	}
 	
 	protected Double toDouble(String v, double adjustmentFactor) {
@@ -122,20 +127,32 @@ public class CsvParser implements IInputParser, Serializable {
 	}
 
 	public synchronized String getString(Date date) {
-		return df.format(date);
+		return getDateFormat().format(date);
 	}
 
 	@Override
 	public boolean isValid(String line) {
-		return !line.toLowerCase().startsWith("date") && !line.trim().isEmpty() && !line.startsWith("\"") && !line.toLowerCase().startsWith("symbol");
+		return !line.regionMatches(true, 0, "date", 0, 4) && !isBlank(line) && !line.startsWith("\"")
+				&& !line.regionMatches(true, 0, "symbol", 0, 6);
+	}
+
+	private static boolean isBlank(String line) {
+		for (int j = 0; j < line.length(); j++) {
+			if (line.charAt(j) > ' ') {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public void setDateFormat(SimpleDateFormat simpleDateFormat) {
 		this.df = simpleDateFormat;		
+		updateLayout();
 	}
 	
 	public void setTargetLength(int len) {
 		this.targetLength = len;
+		updateLayout();
 	}
 
 }
@@ -0,0 +1,229 @@
+package ch.pschatzmann.stocks.input.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.CalendarUtils;
+import ch.pschatzmann.stocks.IStockColumnSink;
+import ch.pschatzmann.stocks.IStockColumnTarget;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.IStockTarget;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockRecord;
+
+/**
+ * Streaming reader for csv stock data: The lines are provided as CharSequence
+ * views on a reusable buffer, so that we do not need to create any String for
+ * the data lines if the parser implements IColumnParser. Other parsers are
+ * supported as well but they need a String and a StockRecord per line.
+ *
+ * The records can be sorted from old to new or from new to old. The result is
+ * always sorted from old to new.
+ *
+ * @author pschatzmann
+ *
+ */
+public class CsvStreamReader {
+	private static final Logger LOG = LoggerFactory.getLogger(CsvStreamReader.class);
+	private Reader reader;
+	private char[] buffer;
+	private CharBuffer view;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private int lines;
+	private int errors;
+
+	public CsvStreamReader(Reader reader) {
+		this(reader, 64 * 1024);
+	}
+
+	public CsvStreamReader(Reader reader, int bufferSize) {
+		this.reader = reader;
+		this.buffer = new char[Math.max(bufferSize, 16)];
+		this.view = CharBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Provides the next line w/o the line terminator or null at the end of the
+	 * input. The result is only valid until the next call.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public CharSequence readLine() throws IOException {
+		int start = pos;
+		int scan = pos;
+		while (true) {
+			for (; scan < limit; scan++) {
+				if (buffer[scan] == '\n') {
+					pos = scan + 1;
+					return line(start, scan);
+				}
+			}
+			if (eof) {
+				pos = limit;
+				return start < limit ? line(start, limit) : null;
+			}
+			// move the incomplete line to the start of the buffer and read more data
+			int len = limit - start;
+			if (start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, len);
+			} else if (len == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				view = CharBuffer.wrap(buffer);
+			}
+			start = 0;
+			scan = len;
+			limit = len;
+			int n = reader.read(buffer, limit, buffer.length - limit);
+			if (n < 0) {
+				eof = true;
+			} else {
+				limit += n;
+			}
+		}
+	}
+
+	private CharSequence line(int start, int end) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		lines++;
+		view.clear();
+		view.position(start);
+		view.limit(end);
+		return view;
+	}
+
+	/**
+	 * Parses all lines into StockColumns. The header lines (which are not valid)
+	 * are passed to the parser setup. Records w/o closing price are ignored.
+	 *
+	 * @param parser
+	 * @param id
+	 * @return
+	 * @throws IOException
+	 */
+	public StockColumns read(IInputParser parser, IStockID id) throws IOException {
+		StockColumns columns = new StockColumns(id);
+		IStockColumnSink sink = (day, open, high, low, closing, volume, factor) -> {
+			if (Double.isFinite(closing)) {
+				columns.add(day, open, high, low, closing, volume, factor);
+			}
+		};
+		boolean header = true;
+		CharSequence line;
+		while ((line = readLine()) != null) {
+			try {
+				if (header) {
+					String str = line.toString();
+					if (!parser.isValid(str)) {
+						parser.setup(str);
+						continue;
+					}
+					header = false;
+				}
+				if (parser instanceof IColumnParser) {
+					((IColumnParser) parser).parse(line, sink);
+				} else {
+					String str = line.toString();
+					if (parser.isValid(str)) {
+						StockRecord r = parser.parse(str);
+						if (r != null && r.isValid()) {
+							columns.add(r);
+						}
+					}
+				}
+			} catch (Exception ex) {
+				errors++;
+				LOG.error("Could not parse '{}': {}", line, ex.getMessage());
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Adds the records which are on or after the first day and newer then the
+	 * last record of the target
+	 *
+	 * @param columns
+	 * @param firstDay
+	 * @param target
+	 * @return number of added records
+	 */
+	public static int addRecords(StockColumns columns, int firstDay, IStockTarget target) {
+		int size = columns.size();
+		boolean descending = size > 1 && columns.getEpochDay(0) > columns.getEpochDay(size - 1);
+		int count = 0;
+		if (target instanceof IStockColumnTarget) {
+			IStockColumnTarget columnTarget = (IStockColumnTarget) target;
+			int last = columnTarget.getLastEpochDay();
+			for (int k = 0; k < size; k++) {
+				int j = descending ? size - 1 - k : k;
+				int day = columns.getEpochDay(j);
+				if (day >= firstDay && day > last) {
+					columnTarget.addRecord(day, columns.getOpen(j), columns.getHigh(j), columns.getLow(j),
+							columns.getClosing(j), columns.getVolume(j), columns.getAdjustmentFactor(j));
+					last = day;
+					count++;
+				}
+			}
+		} else {
+			IStockRecord latest = target.getValue();
+			int last = latest == null ? Integer.MIN_VALUE : CalendarUtils.toEpochDay(latest.getDate());
+			for (int k = 0; k < size; k++) {
+				int j = descending ? size - 1 - k : k;
+				int day = columns.getEpochDay(j);
+				if (day >= firstDay && day > last) {
+					StockRecord r = new StockRecord(columns.getRecord(j));
+					r.setIndex(count);
+					target.addRecord(r);
+					last = day;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Determines the first epoch day which is not before the indicated date.
+	 *
+	 * @param date
+	 * @return
+	 */
+	public static int firstDay(Date date) {
+		if (date == null) {
+			return Integer.MIN_VALUE;
+		}
+		int day = CalendarUtils.toEpochDay(date);
+		return CalendarUtils.toDate(day).getTime() < date.getTime() ? day + 1 : day;
+	}
+
+	/**
+	 * Number of lines which have been read
+	 *
+	 * @return
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * Number of lines which could not be parsed
+	 *
+	 * @return
+	 */
+	public int getErrors() {
+		return errors;
+	}
+
+}
@@ -0,0 +1,26 @@
+package ch.pschatzmann.stocks.input.parser;
+
+import java.text.ParseException;
+
+import ch.pschatzmann.stocks.IStockColumnSink;
+
+/**
+ * Parser which can pass the values of a line directly to a IStockColumnSink
+ * w/o creating any StockRecord
+ *
+ * @author pschatzmann
+ *
+ */
+public interface IColumnParser extends IInputParser {
+
+	/**
+	 * Parses the line and passes the values to the sink
+	 *
+	 * @param line
+	 * @param sink
+	 * @return false if the line does not contain a record
+	 * @throws ParseException
+	 */
+	public boolean parse(CharSequence line, IStockColumnSink sink) throws ParseException;
+
+}
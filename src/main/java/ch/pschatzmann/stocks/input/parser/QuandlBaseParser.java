@@ -6,12 +6,45 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
-public abstract class QuandlBaseParser implements IInputParser, Serializable  {
+import ch.pschatzmann.stocks.IStockColumnSink;
+import ch.pschatzmann.stocks.StockRecord;
+
+/**
+ * Common functionality for the Quandl parsers: The subclasses define the
+ * CsvLayout of their lines
+ * 
+ * @author pschatzmann
+ *
+ */
+public abstract class QuandlBaseParser implements IColumnParser, Serializable  {
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
 	private DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+	private CsvLayout layout;
+
+	protected QuandlBaseParser(CsvLayout layout) {
+		this.layout = layout;
+	}
+
+	@Override
+	public StockRecord parse(String line) throws ParseException {
+		return layout.parseRecord(line);
+	}
+
+	@Override
+	public boolean parse(CharSequence line, IStockColumnSink sink) throws ParseException {
+		return layout.parse(line, sink);
+	}
+
+	@Override
+	public void setup(String line) {
+	}
+
+	public CsvLayout getLayout() {
+		return layout;
+	}
 
 	public String getSeparator() {
 		return ",";
@@ -7,6 +7,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
 import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockColumnSink;
 import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.StockRecord;
 
@@ -19,11 +20,12 @@ import ch.pschatzmann.stocks.StockRecord;
  *
  */
 
-public class SixParser implements IInputParser, Serializable {
+public class SixParser implements IColumnParser, Serializable {
 	private static final long serialVersionUID = 1L;
 	private DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
 	private String path;
 	private StockID id;
+	private CsvLayout layout = new CsvLayout(3).setPrices(0, 1, 1, 1, 1, 2);
 
 	public SixParser() {
 	}
@@ -35,20 +37,12 @@ public class SixParser implements IInputParser, Serializable {
 	
 	@Override
 	public StockRecord parse(String line) throws ParseException {
-		StockRecord sr = new StockRecord();
-		String[] sa = line.split(getSeparator());
-		if (sa.length==3) {
-			sr.setDate(this.getDate(sa[0]));
-			sr.setOpen(toDouble(sa[1],1.0));
-			sr.setHigh(toDouble(sa[1],1.0));
-			sr.setLow(toDouble(sa[1],1.0));
-			sr.setClosing(toDouble(sa[1],1.0));
-			String volume = sa[2];
-			if (!Context.isEmpty(volume)) {
-				sr.setVolume(Double.parseDouble(volume));
-			}
-		}
-		return sr;
+		return layout.parseRecord(line);
+	}
+
+	@Override
+	public boolean parse(CharSequence line, IStockColumnSink sink) throws ParseException {
+		return layout.parse(line, sink);
 	}
 	
 	Double toDouble(String v, double adjustmentFactor) {
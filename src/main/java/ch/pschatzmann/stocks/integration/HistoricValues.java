@@ -2,14 +2,11 @@ package ch.pschatzmann.stocks.integration;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -17,8 +14,11 @@ import java.util.stream.Stream;
 import org.ta4j.core.Indicator;
 import org.ta4j.core.num.Num;
 
+import ch.pschatzmann.dates.TradingDay;
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.StockColumns;
 import ch.pschatzmann.stocks.accounting.HistoricValue;
 import ch.pschatzmann.stocks.accounting.IHistoricValue;
 import ch.pschatzmann.stocks.ta4j.indicator.IndicatorFromData;
@@ -35,8 +35,8 @@ import ch.pschatzmann.stocks.ta4j.indicator.Name;
 public class HistoricValues implements Serializable, Name {
 	private static final long serialVersionUID = 1L;
 	private List<IHistoricValue> values;
-	private Map<Date, IHistoricValue> map;
-	private List<Date> dates;
+	private int[] days;
+	private IHistoricValue[] sortedValues;
 	private String name;
 
 	/**
@@ -75,9 +75,16 @@ public class HistoricValues implements Serializable, Name {
 	 */
 	public HistoricValues(IStockData stockData, String name) {
 		this.name = name;
-		this.values = stockData.getHistory().stream()
-				.map(rec -> new HistoricValue(rec.getDate(), rec.getClosing().doubleValue()))
-				.collect(Collectors.toList());
+		if (stockData instanceof ColumnarStockData) {
+			StockColumns columns = ((ColumnarStockData) stockData).getColumns();
+			this.values = IntStream.range(0, columns.size())
+					.mapToObj(i -> (IHistoricValue) new HistoricValue(columns.getDate(i), columns.getClosing(i)))
+					.collect(Collectors.toList());
+		} else {
+			this.values = stockData.getHistory().stream()
+					.map(rec -> new HistoricValue(rec.getDate(), rec.getClosing().doubleValue()))
+					.collect(Collectors.toList());
+		}
 	}
 
 	public List<IHistoricValue> list() {
@@ -117,8 +124,8 @@ public class HistoricValues implements Serializable, Name {
 	 */
 	public Double getValue(Date date) {
 		setupMap();
-		IHistoricValue hv = map.get(Context.date(date));
-		return hv == null ? null : hv.getValue();
+		int pos = Arrays.binarySearch(days, TradingDay.of(date));
+		return pos < 0 ? null : sortedValues[pos].getValue();
 	}
 	
 	/**
@@ -127,15 +134,12 @@ public class HistoricValues implements Serializable, Name {
 	 * @return
 	 */
 	public IHistoricValue getNextValue(Date date) {
-		Date searchDate = date;
 		setupMap();
-		IHistoricValue hv = map.get(Context.date(searchDate));
-		if (hv==null) {
-			int pos = Math.abs(Collections.binarySearch(dates, date));
-			searchDate = dates.get(pos);
-			hv = map.get(Context.date(searchDate));
+		int pos = Arrays.binarySearch(days, TradingDay.of(date));
+		if (pos < 0) {
+			pos = -pos - 1;
 		}
-		return hv;		
+		return pos < sortedValues.length ? sortedValues[pos] : null;
 	}
 	
 	/**
@@ -158,20 +162,38 @@ public class HistoricValues implements Serializable, Name {
 		return dates.stream().filter(date -> !isValid(date)).collect(Collectors.toList());
 	}
 
-	private void setupMap() {
-		if (map == null) {
-			map = new TreeMap();
-			this.values.forEach(v -> map.put(Context.date(v.getDate()), v));
-			this.dates = new ArrayList(map.keySet());
+	/**
+	 * Sets up the values sorted by day, so that we can find them with a binary
+	 * search. If there are multiple values for a day we use the last one.
+	 */
+	private synchronized void setupMap() {
+		if (days == null) {
+			List<IHistoricValue> sorted = new ArrayList(values);
+			sorted.sort((a, b) -> Integer.compare(TradingDay.of(a.getDate()), TradingDay.of(b.getDate())));
+			int[] days = new int[sorted.size()];
+			IHistoricValue[] sortedValues = new IHistoricValue[sorted.size()];
+			int size = 0;
+			for (IHistoricValue v : sorted) {
+				int day = TradingDay.of(v.getDate());
+				if (size > 0 && days[size - 1] == day) {
+					size--;
+				}
+				days[size] = day;
+				sortedValues[size] = v;
+				size++;
+			}
+			this.sortedValues = Arrays.copyOf(sortedValues, size);
+			this.days = Arrays.copyOf(days, size);
 		}
 	}
 	
 	public void delete(Date date) {
 		setupMap();
-		IHistoricValue hv = map.get(Context.date(date));
-		map.remove(Context.date(date), hv);
-		if (hv!=null) {
-			values.remove(hv);
+		int pos = Arrays.binarySearch(days, TradingDay.of(date));
+		if (pos >= 0) {
+			values.remove(sortedValues[pos]);
+			days = null;
+			sortedValues = null;
 		}
 	}
 
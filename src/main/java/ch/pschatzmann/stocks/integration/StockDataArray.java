@@ -9,8 +9,10 @@ import java.util.List;
 import org.ta4j.core.Bar;
 import org.ta4j.core.BarSeries;
 
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockColumns;
 import ch.pschatzmann.stocks.StockData;
 
 /**
@@ -39,6 +41,28 @@ public class StockDataArray implements Serializable {
 		name = data.getStockID().toString();
 	}
 
+	public StockDataArray(ColumnarStockData data) {
+		this(data.getColumns(), true);
+		name = data.getStockID().toString();
+	}
+
+	public StockDataArray(StockColumns data, boolean adjusted) {
+		int size = data.size();
+		values = new double[5][size];
+		dates = new Date[size];
+		datesFormatted = new String[size];
+		for (int j = 0; j < size; j++) {
+			double factor = adjusted ? data.getAdjustmentFactor(j) : 1.0;
+			values[FieldName.Open.ordinal()][j] = data.getOpen(j) * factor;
+			values[FieldName.Closing.ordinal()][j] = data.getClosing(j) * factor;
+			values[FieldName.Low.ordinal()][j] = data.getLow(j) * factor;
+			values[FieldName.High.ordinal()][j] = data.getHigh(j) * factor;
+			values[FieldName.Volume.ordinal()][j] = data.getVolume(j) * factor;
+			dates[j] = data.getDate(j);
+			datesFormatted[j] = Context.format(dates[j]);
+		}
+	}
+
 	public StockDataArray(List<IStockRecord> data) {
 		this(data, true);
 	}
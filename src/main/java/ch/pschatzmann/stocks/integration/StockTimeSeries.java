@@ -12,9 +12,11 @@ import org.ta4j.core.BaseBarSeries;
 import org.ta4j.core.BarSeries;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockColumns;
 
 /**
  * Class which implements org.ta4j.core TimeSeries
@@ -40,18 +42,46 @@ public class StockTimeSeries extends BaseBarSeries implements BarSeries, Seriali
 
 	public StockTimeSeries(IStockData stockData, DateRange dateRange) {
 		super(stockData.getStockID().toString(),new ArrayList(),Context.getNumberImplementation());
-		for (IStockRecord sr :stockData.getHistory()) {
-			if (sr.isValid() && dateRange.isValid(sr.getDate())) {
-				addBar(new StockBar(sr));
+		if (stockData instanceof ColumnarStockData) {
+			addBars(((ColumnarStockData) stockData).filterDates(dateRange).getColumns());
+		} else {
+			for (IStockRecord sr :stockData.getHistory(dateRange.getStart(), dateRange.getEnd())) {
+				if (sr.isValid()) {
+					addBar(new StockBar(sr));
+				}
 			}
 		}
 	}
 
 	public StockTimeSeries(IStockData stockData) {
 		super(stockData.getStockID().toString(),new ArrayList(),Context.getNumberImplementation());
-		for (IStockRecord sr :stockData.getHistory()) {
-			if (sr.isValid()) {
-				addBar(new StockBar(sr));
+		if (stockData instanceof ColumnarStockData) {
+			addBars(((ColumnarStockData) stockData).getColumns());
+		} else {
+			for (IStockRecord sr :stockData.getHistory()) {
+				if (sr.isValid()) {
+					addBar(new StockBar(sr));
+				}
+			}
+		}
+	}
+
+	public StockTimeSeries(String ticker, StockColumns columns) {
+		super(ticker,new ArrayList(),Context.getNumberImplementation());
+		addBars(columns);
+	}
+
+	/**
+	 * Adds the valid records directly from the columns w/o creating any
+	 * intermediate IStockRecord objects
+	 * 
+	 * @param columns
+	 */
+	protected void addBars(StockColumns columns) {
+		for (int j = 0; j < columns.size(); j++) {
+			if (columns.isValid(j)) {
+				addBar(new StockBar(columns.getDate(j), columns.getOpen(j), columns.getHigh(j), columns.getLow(j),
+						columns.getClosing(j), columns.getVolume(j)));
 			}
 		}
 	}
@@ -1,6 +1,7 @@
 package ch.pschatzmann.stocks.parameters;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.utils.Calculations;
@@ -87,5 +88,9 @@ public class ParameterValue<T extends Number> implements Cloneable, Serializable
 	public Number random() {
 		return Calculations.round(this.range.random(), this.decimals);
 	}
+
+	public Number random(Random random) {
+		return Calculations.round(this.range.random(random), this.decimals);
+	}
 	
 }
@@ -21,12 +21,14 @@ public class State implements Cloneable, Serializable {
 	private static final long serialVersionUID = 1L;
 	private Parameters<InputParameterName> input = new Parameters();
 	private Parameters<KPI> result = new Parameters();
+	private boolean pruned;
 
 	public State() {}
 	
 	public State(State state) {
 		this.input = state.input;
 		this.result = state.result;
+		this.pruned = state.pruned;
 	}
 	
 	public Parameters<InputParameterName> input() {
@@ -49,6 +51,19 @@ public class State implements Cloneable, Serializable {
 		this.result = result;
 	}
 	
+	/**
+	 * Returns true if the evaluation was stopped early by a pruning policy. The
+	 * result contains only the KPIs up to the date when it was stopped.
+	 * @return
+	 */
+	public boolean isPruned() {
+		return pruned;
+	}
+
+	public void setPruned(boolean pruned) {
+		this.pruned = pruned;
+	}
+
 	/**
 	 * Retrns the parameter values as a map
 	 * @return
@@ -87,6 +102,7 @@ public class State implements Cloneable, Serializable {
 		State result = new State();
 		this.input.getMap().entrySet().forEach(entry -> result.input.addValue(entry.getKey(), entry.getValue().clone()));
 		this.result.getMap().entrySet().forEach(entry -> result.result.addValue(entry.getKey(), entry.getValue().clone()));
+		result.pruned = this.pruned;
 		return result;
 	}
 	
@@ -42,6 +42,10 @@ public class StateComparator implements Comparator<State>, Serializable {
 	
 	@Override
 	public int compare(State o1, State o2) {
+		// we prefer strategies which were evaluated for the full period
+		if (o1.isPruned() != o2.isPruned()) {
+			return factor * (o1.isPruned() ? -1 : 1);
+		}
 		// we prefer strategies with the higher indicated KPI
 		int result = ((Double) o1.getResult().getDouble(kpi)).compareTo(o2.getResult().getDouble(kpi));
 		if (result == 0) {
@@ -36,6 +36,7 @@ import org.ta4j.core.trading.rules.UnderIndicatorRule;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
+import ch.pschatzmann.stocks.ta4j.indicator.VectorIndicators;
 
 /**
  * CCI Correction Strategy
@@ -43,7 +44,7 @@ import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
  * 
  * see http://stockcharts.com/school/doku.php?id=chart_school:trading_strategies:cci_correction
  */
-public class CCICorrectionStrategy extends CommonTradingStrategy {
+public class CCICorrectionStrategy extends CommonTradingStrategy implements IVectorizedStrategy {
 
 	/**
 	 * 
@@ -86,6 +87,26 @@ public class CCICorrectionStrategy extends CommonTradingStrategy {
 		return strategy;
 	}
 
+	/**
+	 * Same rules as in buildStrategy calculated for the whole time series
+	 */
+	@Override
+	public Signals getSignals() {
+		BarSeries series = getBarSeries();
+		double[] shortCci = VectorIndicators.cci(series, getInteger(InputParameterName.ShortCCIPeriod));
+		double[] longCci = VectorIndicators.cci(series, getInteger(InputParameterName.LongCCIPeriod));
+		double[] plus100 = VectorIndicators.constant(100.0, shortCci.length);
+		double[] minus100 = VectorIndicators.constant(-getInteger(InputParameterName.Signal), shortCci.length);
+		int unstablePeriod = getInteger(InputParameterName.ShortCCIPeriod);
+
+		boolean[] entry = VectorIndicators.and(VectorIndicators.over(longCci, plus100),
+				VectorIndicators.under(shortCci, minus100));
+		boolean[] exit = VectorIndicators.and(VectorIndicators.under(longCci, minus100),
+				VectorIndicators.over(shortCci, plus100));
+		return new Signals(VectorIndicators.unstable(entry, unstablePeriod),
+				VectorIndicators.unstable(exit, unstablePeriod));
+	}
+
 	@Override
 	public List<InputParameterName> getParameterOptimizationSequence() {
 		return Arrays.asList(InputParameterName.ShortCCIPeriod, InputParameterName.LongCCIPeriod,
@@ -30,6 +30,7 @@ public abstract class CommonTradingStrategy implements IOptimizableTradingStrate
 	private State state = new State();
 	private Strategy strategy = null;
 	private BarSeries ts;
+	private int tsSize;
 	private List<InputParameterName> parameterOptimizationSequence;
 
 	/**
@@ -53,7 +54,9 @@ public abstract class CommonTradingStrategy implements IOptimizableTradingStrate
 	abstract public Strategy buildStrategy(BarSeries timeSeries) ;
 
 	protected BarSeries getBarSeries() {
-		if (ts==null) {
+		// rebuild the time series if new records have been added to the stock data
+		if (ts==null || tsSize != this.getStockData().size()) {
+			tsSize = this.getStockData().size();
 			ts = new StockTimeSeries(this.getStockData());
 		}
 		return ts;
@@ -0,0 +1,21 @@
+package ch.pschatzmann.stocks.strategy;
+
+/**
+ * Trading strategy which can provide the entry and exit signals for the whole
+ * time series at once. This is used by the VectorizedBacktest which does not
+ * need to evaluate the ta4j rules for each tick. The signals must be the same
+ * as the result of shouldEnter and shouldExit of the ta4j strategy.
+ * 
+ * @author pschatzmann
+ *
+ */
+public interface IVectorizedStrategy extends ITradingStrategy {
+
+	/**
+	 * Determines the entry and exit signals for all indexes of the time series
+	 * 
+	 * @return
+	 */
+	Signals getSignals();
+
+}
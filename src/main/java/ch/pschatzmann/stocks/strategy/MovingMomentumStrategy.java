@@ -18,6 +18,7 @@ import org.ta4j.core.trading.rules.UnderIndicatorRule;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
+import ch.pschatzmann.stocks.ta4j.indicator.VectorIndicators;
 
 
 /**
@@ -27,7 +28,7 @@ import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
  * see http://stockcharts.com/help/doku.php?id=chart_school:trading_strategies:
  *      moving_momentum
  */
-public class MovingMomentumStrategy extends CommonTradingStrategy  {
+public class MovingMomentumStrategy extends CommonTradingStrategy implements IVectorizedStrategy {
 
 	
 	/**
@@ -85,6 +86,30 @@ public class MovingMomentumStrategy extends CommonTradingStrategy  {
 		return new NamedStrategy(entryRule, exitRule, this.getName());
 	}
 
+	/**
+	 * Same rules as in buildStrategy calculated for the whole time series
+	 */
+	@Override
+	public Signals getSignals() {
+		BarSeries series = getBarSeries();
+		double[] closePrice = VectorIndicators.close(series);
+		double[] shortEma = VectorIndicators.ema(closePrice, getInteger(InputParameterName.ShortEMAPeriod));
+		double[] longEma = VectorIndicators.ema(closePrice, getInteger(InputParameterName.LongEMAPeriod));
+		double[] stochasticOscillK = VectorIndicators.stochasticOscillatorK(series,
+				getInteger(InputParameterName.StochasticOscillatorKIndicator));
+		double[] macd = VectorIndicators.macd(closePrice, getInteger(InputParameterName.ShortEMAPeriod),
+				getInteger(InputParameterName.LongEMAPeriod));
+		double[] emaMacd = VectorIndicators.ema(macd, getInteger(InputParameterName.SignalEMA));
+		double[] entrySignal = VectorIndicators.constant(getDouble(InputParameterName.EntrySignal), closePrice.length);
+		double[] exitSignal = VectorIndicators.constant(getDouble(InputParameterName.ExitSignal), closePrice.length);
+
+		boolean[] entry = VectorIndicators.and(VectorIndicators.over(shortEma, longEma),
+				VectorIndicators.crossedDown(stochasticOscillK, entrySignal), VectorIndicators.over(macd, emaMacd));
+		boolean[] exit = VectorIndicators.and(VectorIndicators.under(shortEma, longEma),
+				VectorIndicators.crossedUp(stochasticOscillK, exitSignal), VectorIndicators.under(macd, emaMacd));
+		return new Signals(entry, exit);
+	}
+
 	@Override
 	public List<InputParameterName> getParameterOptimizationSequence() {
 		return Arrays.asList(InputParameterName.EntrySignal,InputParameterName.EntrySignal,InputParameterName.ShortEMAPeriod, InputParameterName.LongEMAPeriod,InputParameterName.StochasticOscillatorKIndicator,InputParameterName.SignalEMA );
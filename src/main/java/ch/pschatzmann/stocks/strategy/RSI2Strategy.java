@@ -18,6 +18,7 @@ import org.ta4j.core.trading.rules.UnderIndicatorRule;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
+import ch.pschatzmann.stocks.ta4j.indicator.VectorIndicators;
 
 
 /**
@@ -25,7 +26,7 @@ import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
  * 
  * see http://stockcharts.com/school/doku.php?id=chart_school:trading_strategies:rsi2
  */
-public class RSI2Strategy extends CommonTradingStrategy  {
+public class RSI2Strategy extends CommonTradingStrategy implements IVectorizedStrategy {
 
 	/**
 	 * 
@@ -76,6 +77,26 @@ public class RSI2Strategy extends CommonTradingStrategy  {
         return new NamedStrategy(entryRule, exitRule,"RSI2Strategy");
     }
 
+    /**
+     * Same rules as in buildStrategy calculated for the whole time series
+     */
+    @Override
+    public Signals getSignals() {
+        BarSeries series = getBarSeries();
+        double[] closePrice = VectorIndicators.close(series);
+        double[] shortSma = VectorIndicators.sma(closePrice, getInteger(InputParameterName.ShortSMAPeriod));
+        double[] longSma = VectorIndicators.sma(closePrice, getInteger(InputParameterName.LongSMAPeriod));
+        double[] rsi = VectorIndicators.rsi(closePrice, getInteger(InputParameterName.RSIPeriod));
+        double[] entryLimit = VectorIndicators.constant(getDouble(InputParameterName.EntryLimit), closePrice.length);
+        double[] exitLimit = VectorIndicators.constant(getDouble(InputParameterName.ExitLimit), closePrice.length);
+
+        boolean[] entry = VectorIndicators.and(VectorIndicators.over(shortSma, longSma),
+                VectorIndicators.crossedDown(rsi, entryLimit), VectorIndicators.over(shortSma, closePrice));
+        boolean[] exit = VectorIndicators.and(VectorIndicators.under(shortSma, longSma),
+                VectorIndicators.crossedUp(rsi, exitLimit), VectorIndicators.under(shortSma, closePrice));
+        return new Signals(entry, exit);
+    }
+
 	@Override
 	public List<InputParameterName> getParameterOptimizationSequence() {
 		return Arrays.asList(InputParameterName.EntryLimit,InputParameterName.ExitLimit,InputParameterName.ShortSMAPeriod, InputParameterName.LongSMAPeriod,InputParameterName.RSIPeriod);
@@ -0,0 +1,53 @@
+package ch.pschatzmann.stocks.strategy;
+
+import java.io.Serializable;
+
+/**
+ * Entry and exit signals of a trading strategy for all indexes of a time
+ * series. Like in the StrategyExecutor an entry signal has priority over an
+ * exit signal.
+ * 
+ * @author pschatzmann
+ *
+ */
+public class Signals implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private boolean[] entry;
+	private boolean[] exit;
+
+	public Signals(boolean[] entry, boolean[] exit) {
+		if (entry.length != exit.length) {
+			throw new IllegalArgumentException("The entry and exit signals must have the same length");
+		}
+		this.entry = entry;
+		this.exit = exit;
+	}
+
+	public boolean shouldEnter(int index) {
+		return index >= 0 && index < entry.length && entry[index];
+	}
+
+	public boolean shouldExit(int index) {
+		return index >= 0 && index < exit.length && exit[index];
+	}
+
+	/**
+	 * Determines the action for the indicated index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public TradingAction getAction(int index) {
+		return shouldEnter(index) ? TradingAction.buy : shouldExit(index) ? TradingAction.sell : TradingAction.hold;
+	}
+
+	public int size() {
+		return entry.length;
+	}
+
+	@Override
+	public String toString() {
+		return "Signals: " + size();
+	}
+
+}
@@ -7,6 +7,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -25,6 +26,7 @@ import ch.pschatzmann.stocks.data.universe.RandomUniverse;
 import ch.pschatzmann.stocks.errors.CommonException;
 import ch.pschatzmann.stocks.errors.UniverseException;
 import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.StockDataLoader;
 import ch.pschatzmann.stocks.strategy.optimization.IOptimizableTradingStrategy;
 import ch.pschatzmann.stocks.utils.FileUtils;
 
@@ -104,6 +106,31 @@ public class TradingStrategyFactory {
 		};		
 	}
 
+	/**
+	 * Creates a new instance of the trading strategy for the indicated stock data
+	 * with a copy of the parameters. The strategy class needs to provide a single
+	 * constructor with the stock data as argument.
+	 * 
+	 * @param strategy
+	 * @param stockData
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the strategy can not be copied
+	 */
+	public static IOptimizableTradingStrategy copy(IOptimizableTradingStrategy strategy, IStockData stockData) {
+		Constructor[] ca = strategy.getClass().getDeclaredConstructors();
+		if (ca.length != 1 || ca[0].getParameterCount() != 1 || !ca[0].getParameterTypes()[0].isInstance(stockData)) {
+			throw new IllegalArgumentException("The strategy can not be copied: " + strategy);
+		}
+		try {
+			IOptimizableTradingStrategy result = (IOptimizableTradingStrategy) ca[0].newInstance(stockData);
+			result.setParameters(strategy.getParameters().clone());
+			return result;
+		} catch (InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+			throw new IllegalArgumentException("The strategy can not be copied: " + strategy, ex);
+		}
+	}
+
 	/**
 	 * Returns a detailed description for the strategy name
 	 * @param strategy
@@ -199,9 +226,10 @@ public class TradingStrategyFactory {
 	 * @throws UniverseException
 	 */
 	public static List<ITradingStrategy> getRandomStrategies(IUniverse universe, IReader reader, int number) {
-		return new RandomUniverse(universe, number).list().
-			stream().
-			map(id -> Context.getStockData(id, reader)).
+		List<IStockID> ids = new RandomUniverse(universe, number).list();
+		Map<IStockID, IStockData> loaded = new StockDataLoader(reader).load(ids);
+		return ids.stream().
+			map(id -> loaded.containsKey(id) ? loaded.get(id) : Context.getStockData(id, reader)).
 			map(stockData -> create(getRandomStrategyName(), stockData)).
 			collect(Collectors.toList());			  
 	}
@@ -1,9 +1,9 @@
 package ch.pschatzmann.stocks.strategy.allocation;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
 
@@ -16,7 +16,7 @@ import ch.pschatzmann.stocks.strategy.ITradingStrategy;
  */
 public class RandomDistributor extends Distributor {
 	private static final long serialVersionUID = 1L;
-	private static Map<ITradingStrategy,Random> randomMap = new HashMap();
+	private static Map<ITradingStrategy,Random> randomMap = new ConcurrentHashMap();
 
 	public RandomDistributor(){
 	}
@@ -39,12 +39,7 @@ public class RandomDistributor extends Distributor {
 
 	
 	private Random getRandom(ITradingStrategy id) {
-		Random result = randomMap.get(id);
-		if (result==null) {
-			result = new Random();
-			randomMap.put(id, result);
-		}
-		return result;
+		return randomMap.computeIfAbsent(id, k -> new Random());
 	}
 	
 	
@@ -1,13 +1,17 @@
 package ch.pschatzmann.stocks.strategy.allocation;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import ch.pschatzmann.dates.DateRange;
-import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.MarketSnapshot;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
-import ch.pschatzmann.stocks.execution.PaperTrader;
-import ch.pschatzmann.stocks.execution.StrategyExecutor;
+import ch.pschatzmann.stocks.execution.BacktestRunner;
+import ch.pschatzmann.stocks.execution.BacktestScenario;
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
 
 /**
@@ -33,31 +37,36 @@ public class RandomOptimizationDistributor extends Distributor {
 	public RandomOptimizationDistributor(IAccount account, DateRange period, KPI kpi, int maxCount,
 			Collection<ITradingStrategy> strategies) {
 		if (strategies.size()>=1) {
-			Account simulationAccount = new Account(account);
+			List<RandomDistributor> distributors = new ArrayList();
+			List<BacktestScenario> scenarios = new ArrayList();
+			for (int j = 0; j < maxCount; j++) {
+				RandomDistributor distributor = new RandomDistributor();
+				distributors.add(distributor);
+				scenarios.add(new BacktestScenario(account, strategies, period)
+						.setAllocationStrategy(trader -> new DistributedAllocationStrategy(trader, distributor)));
+			}
+			List<Map<KPI, Double>> results = new BacktestRunner(getSnapshot(strategies)).run(scenarios);
+
 			maxKPIValue = -Double.MAX_VALUE;
 			RandomDistributor maxDistributor = null;
 			for (int j = 0; j < maxCount; j++) {
-				PaperTrader trader = new PaperTrader(account);
-				RandomDistributor distributor = new RandomDistributor();
-				DistributedAllocationStrategy allocationStrategy = new DistributedAllocationStrategy(trader, distributor);
-				StrategyExecutor executor = new StrategyExecutor(trader, allocationStrategy);
-				strategies.forEach(s -> executor.addStrategy(s));
-				executor.run(period);
-	
-				Double kpiValue = simulationAccount.getKPIValue(kpi);
-				if (kpiValue > maxKPIValue) {
+				Double kpiValue = results.get(j) == null ? null : results.get(j).get(kpi);
+				if (kpiValue != null && kpiValue > maxKPIValue) {
 					maxKPIValue = kpiValue;
-					maxDistributor = distributor;
+					maxDistributor = distributors.get(j);
 				}
 			}
 			if (maxDistributor!=null){
 				this.getDistribution().putAll(maxDistributor.getDistribution());
 				this.getActualDistribution().putAll(maxDistributor.getDistribution());
 			}
-			account.reset();
 		} 
 
 	}
+
+	private static MarketSnapshot getSnapshot(Collection<ITradingStrategy> strategies) {
+		return new MarketSnapshot(strategies.stream().map(s -> s.getStockData()).collect(Collectors.toList()));
+	}
 	
 	/**
 	 * We provide the KPI value so that we get the possibility to sort and optimize
@@ -2,16 +2,16 @@ package ch.pschatzmann.stocks.strategy.allocation;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Map;
 
 import ch.pschatzmann.dates.DateRange;
 import ch.pschatzmann.stocks.Context;
-import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.accounting.BasicAccount;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
-import ch.pschatzmann.stocks.execution.PaperTrader;
-import ch.pschatzmann.stocks.parameters.State;
+import ch.pschatzmann.stocks.execution.BacktestRunner;
+import ch.pschatzmann.stocks.execution.BacktestScenario;
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
-import ch.pschatzmann.stocks.strategy.optimization.Fitness;
 
 /**
  * Distribution by Sharpe Ration of the Strategy
@@ -45,11 +45,12 @@ public class SharpeRatioDistributor extends Distributor implements Serializable
 
 	private double getSharpeRatio(ITradingStrategy strategy, Date date) {
 		DateRange dr = new DateRange(Context.getDateWithOffsetDays(date, -evaluationPeriods),date);
-		Account simulationAccount = new Account("Sharpe Ratio",account.getCurrency(), account.getInitialCash(),Context.getDateWithOffsetDays(date, -365) , account.getFeesModel());
-		simulationAccount.setRiskFreeReturnInPercent(riskFreeReturnInPercent);
-		PaperTrader trader = new PaperTrader(simulationAccount);
-		State state = new Fitness(trader).getFitness(strategy, dr);
-		return state.getResult().getDouble(KPI.SharpeRatio);
+		BasicAccount simulationAccount = new BasicAccount("Sharpe Ratio",account.getCurrency(), account.getInitialCash(),Context.getDateWithOffsetDays(date, -365) , account.getFeesModel());
+		BacktestScenario scenario = new BacktestScenario(simulationAccount, strategy, dr)
+				.setRiskFreeReturnInPercent(riskFreeReturnInPercent);
+		Map<KPI, Double> result = new BacktestRunner().run(scenario);
+		Double value = result == null ? null : result.get(KPI.SharpeRatio);
+		return value == null ? 0.0 : value;
 	}
 
 	public int getEvaluationPeriods() {
@@ -2,14 +2,17 @@ package ch.pschatzmann.stocks.strategy.optimization;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
 import ch.pschatzmann.stocks.parameters.ParameterValue;
-import ch.pschatzmann.stocks.parameters.Parameters;
 import ch.pschatzmann.stocks.parameters.State;
 
 /**
@@ -18,16 +21,26 @@ import ch.pschatzmann.stocks.parameters.State;
  * other. If suffers from combinatorial explosion and takes very long if there
  * are more then 2 parameters to optimize. By default we increment the parameters
  * by the smallest defined digit.
- * 
- * In order to speed up the processing you can indicate the maximum number of steps.  
- * 
+ *
+ * In order to speed up the processing you can indicate the maximum number of steps.
+ *
+ * The combinations are enumerated with a ParameterGrid and evaluated
+ * concurrently in a work stealing pool. Each worker thread uses its own copy of
+ * the trading strategy and of the simulation account. The number of threads is
+ * defined by the property BruteForceOptimizerParallelism (the default is the
+ * number of processors). The result does not depend on the sequence of the
+ * evaluations: for equal values we use the combination with the lowest index.
+ * Only the pruning with the BestResultPruning policy depends on the sequence.
+ * If the strategy or the fitness can not be copied we evaluate the grid
+ * sequentially.
+ *
  * @author pschatzmann
  *
  */
 
 public class BruteForceOptimizer implements IOptimizer, Serializable {
 	/**
-	 * 
+	 *
 	 */
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOG = LoggerFactory.getLogger(BruteForceOptimizer.class);
@@ -35,6 +48,13 @@ public class BruteForceOptimizer implements IOptimizer, Serializable {
 	private KPI optimizationParameter;
 	private IFitness fitness;
 	private Integer maxNumberOfSteps;
+	private int parallelism = Integer.parseInt(Context.getProperty("BruteForceOptimizerParallelism",
+			String.valueOf(Runtime.getRuntime().availableProcessors())));
+	private transient ForkJoinPool pool;
+	private transient AtomicLong evaluations = new AtomicLong();
+	private long gridSize;
+	private long startTime;
+	private long endTime;
 
 	public BruteForceOptimizer(IFitness fitness, KPI optimizationParameter) throws IOException {
 		this.optimizationParameter = optimizationParameter;
@@ -43,72 +63,93 @@ public class BruteForceOptimizer implements IOptimizer, Serializable {
 
 	@Override
 	public State optimize(IOptimizableTradingStrategy ts, DateRange period) {
-		if (ts.getParameters().input().names().size() > 5) {
-			throw new RuntimeException("Only 5 parameters are supported to be optimized");
-		}
 		this.fitness.getTrader().getAccount().putStockData(ts.getStockData());
-
-		ParameterValue p1 = getParameterValueForIndex(ts, 0);
-		ParameterValue p2 = getParameterValueForIndex(ts, 1);
-		ParameterValue p3 = getParameterValueForIndex(ts, 2);
-		ParameterValue p4 = getParameterValueForIndex(ts, 3);
-		ParameterValue p5 = getParameterValueForIndex(ts, 4);
+		ParameterGrid grid = new ParameterGrid(ts.getParameters().input(), p -> getStep(p));
+		LOG.info("{}", grid);
+		this.maxResult = null;
+		this.gridSize = grid.size() + 1;
+		this.evaluations = new AtomicLong();
+		this.startTime = System.currentTimeMillis();
+		this.endTime = 0;
 
 		// use standard parameters
 		determineMaxResult(ts, period);
+		onEvaluated();
 
-		for (double d1 = p1.getRange().getMin().doubleValue(); d1 <= p1.getRange().getMax().doubleValue(); d1 += this
-				.getStep(p1)) {
-			p1.setValue(d1);
-			for (double d2 = p2.getRange().getMin().doubleValue(); d2 <= p2.getRange().getMax()
-					.doubleValue(); d2 += this.getStep(p2)) {
-				p2.setValue(d2);
-				for (double d3 = p3.getRange().getMin().doubleValue(); d3 <= p3.getRange().getMax()
-						.doubleValue(); d3 += this.getStep(p3)) {
-					p3.setValue(d3);
-					for (double d4 = p4.getRange().getMin().doubleValue(); d4 <= p4.getRange().getMax()
-							.doubleValue(); d4 += this.getStep(p4)) {
-						p4.setValue(d4);
-						for (double d5 = p5.getRange().getMin().doubleValue(); d5 <= p5.getRange().getMax()
-								.doubleValue(); d5 += this.getStep(p5)) {
-							p4.setValue(d5);
-							determineMaxResult(ts, period);
-						}
-					}
+		FitnessWorkers workers = new FitnessWorkers(fitness, ts);
+		if (parallelism > 1 && grid.size() > 1 && workers.isSupported()) {
+			ForkJoinPool pool = this.pool != null ? this.pool : new ForkJoinPool(parallelism);
+			try {
+				Candidate best = pool.invoke(new GridTask(grid, period, workers, 0, grid.size()));
+				if (best != null && isBetter(best.state, maxResult)) {
+					maxResult = best.state;
 				}
+			} finally {
+				if (pool != this.pool) {
+					pool.shutdown();
+				}
+			}
+		} else {
+			LOG.info("The parameters are evaluated sequentially");
+			for (long index = 0; index < grid.size(); index++) {
+				grid.apply(index, ts.getParameters().input());
+				determineMaxResult(ts, period);
+				onEvaluated();
 			}
 		}
+		this.endTime = System.currentTimeMillis();
+		LOG.info("{} evaluations in {} ms: {} per second", getNumberOfEvaluations(), endTime - startTime,
+				getEvaluationsPerSecond());
 
-		ts.getParameters().input().setParameters(maxResult.getInput().getParameters());	
+		ts.getParameters().input().setParameters(maxResult.getInput().getParameters());
 		return maxResult;
 	}
 
 	protected void determineMaxResult(IOptimizableTradingStrategy ts, DateRange period) {
 		ts.reset();
 		State fitnessState = fitness.getFitness(ts, period);
-		double value = fitnessState.result().getDouble(optimizationParameter);
 		LOG.info("{}",fitnessState);
-		if (maxResult == null || value > maxResult.result().getDouble(optimizationParameter)) {
+		if (isBetter(fitnessState, maxResult)) {
 			maxResult = fitnessState;
 			LOG.info("*** New maximum -> " + maxResult.result().getDouble(optimizationParameter));
 		}
 	}
 
-	protected ParameterValue getParameterValueForIndex(IOptimizableTradingStrategy ts, int index) {
-		ParameterValue result;
-		Parameters p = ts.getParameters().input();
-		if (index < p.names().size()) {
-			result = (ParameterValue) p.values().get(index);
-		} else {
-			result = new ParameterValue(0.0, 0.0, 0.0, 0);
+	/**
+	 * Compares the results: pruned results are only used if we do not have
+	 * anything better and undefined values are the worst.
+	 *
+	 * @param state
+	 * @param max
+	 * @return true if state is better then max
+	 */
+	protected boolean isBetter(State state, State max) {
+		if (max == null) {
+			return true;
+		}
+		if (state.isPruned() || max.isPruned()) {
+			return max.isPruned() && !state.isPruned();
+		}
+		double value = state.result().getDouble(optimizationParameter);
+		double maxValue = max.result().getDouble(optimizationParameter);
+		return value > maxValue || (Double.isNaN(maxValue) && !Double.isNaN(value));
+	}
+
+	/**
+	 * Records the progress
+	 */
+	protected void onEvaluated() {
+		long count = evaluations.incrementAndGet();
+		if (count * 100 / gridSize != (count - 1) * 100 / gridSize) {
+			LOG.info("{}% - {} of {} evaluations: {} per second", count * 100 / gridSize, count, gridSize,
+					getEvaluationsPerSecond());
 		}
-		return result;
 	}
 
 	/**
 	 * Determines the increment in which we increase the values E.g if we have 2
 	 * decimals we perform the iteration in steps of 0.01
-	 * 
+	 *
 	 * @param s
 	 * @return
 	 */
@@ -116,26 +157,86 @@ public class BruteForceOptimizer implements IOptimizer, Serializable {
 		double result =  1.0 / Math.pow(10, s.decimals());
 		if (this.getMaxNumberOfSteps()!=null) {
 			result = Double.max(result, (s.getRange().getMax().doubleValue()-s.getRange().getMin().doubleValue())/maxNumberOfSteps.doubleValue());
-		}		
+		}
 		return result;
 	}
-	
+
 	public Integer getMaxNumberOfSteps() {
 		return maxNumberOfSteps;
 	}
 
 	/**
-	 * In order to minimize the number of checks we can indicate the maximum number of steps for each parameter 
+	 * In order to minimize the number of checks we can indicate the maximum number of steps for each parameter
 	 * @param maxNumberOfSteps
 	 */
 	public void setMaxNumberOfSteps(Integer maxNumberOfSteps) {
 		this.maxNumberOfSteps = maxNumberOfSteps;
 	}
-	
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the number of threads. With 1 the combinations are evaluated
+	 * sequentially.
+	 *
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Defines the pool which is used for the evaluation. If this is not defined
+	 * we create a pool with the indicated parallelism for each optimization.
+	 *
+	 * @param pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		if (pool != null) {
+			this.parallelism = pool.getParallelism();
+		}
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Number of combinations of the last optimization (including the standard
+	 * parameters)
+	 *
+	 * @return
+	 */
+	public long getGridSize() {
+		return gridSize;
+	}
+
+	/**
+	 * Number of evaluated combinations of the actual or last optimization
+	 *
+	 * @return
+	 */
+	public long getNumberOfEvaluations() {
+		return evaluations == null ? 0 : evaluations.get();
+	}
+
+	/**
+	 * Throughput of the actual or last optimization
+	 *
+	 * @return
+	 */
+	public double getEvaluationsPerSecond() {
+		long end = endTime > 0 ? endTime : System.currentTimeMillis();
+		return getNumberOfEvaluations() * 1000.0 / Math.max(1, end - startTime);
+	}
+
 	@Override
 	public IFitness getFitness() {
 		return this.fitness;
-		
+
 	}
 
 	@Override
@@ -143,5 +244,72 @@ public class BruteForceOptimizer implements IOptimizer, Serializable {
 		return optimizationParameter;
 	}
 
+	/**
+	 * Result of an evaluation with the index of the combination
+	 */
+	private static class Candidate {
+		private State state;
+		private long index;
+
+		Candidate(State state, long index) {
+			this.state = state;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Evaluates a range of the grid by splitting it into halves and returns the
+	 * best result
+	 */
+	private class GridTask extends RecursiveTask<Candidate> {
+		private static final long serialVersionUID = 1L;
+		private ParameterGrid grid;
+		private DateRange period;
+		private FitnessWorkers workers;
+		private long from;
+		private long to;
+
+		GridTask(ParameterGrid grid, DateRange period, FitnessWorkers workers, long from, long to) {
+			this.grid = grid;
+			this.period = period;
+			this.workers = workers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Candidate compute() {
+			if (to - from <= 1) {
+				return from < to ? evaluate(from) : null;
+			}
+			long mid = (from + to) >>> 1;
+			GridTask left = new GridTask(grid, period, workers, from, mid);
+			GridTask right = new GridTask(grid, period, workers, mid, to);
+			left.fork();
+			Candidate rightResult = right.compute();
+			Candidate leftResult = left.join();
+			return best(leftResult, rightResult);
+		}
+
+		private Candidate evaluate(long index) {
+			try {
+				State state = workers.getFitness(p -> grid.apply(index, p), period);
+				LOG.info("{}", state);
+				return new Candidate(state, index);
+			} finally {
+				onEvaluated();
+			}
+		}
+
+		private Candidate best(Candidate a, Candidate b) {
+			if (a == null || b == null) {
+				return a == null ? b : a;
+			}
+			// on equal values we keep the lower index
+			Candidate first = a.index < b.index ? a : b;
+			Candidate second = first == a ? b : a;
+			return isBetter(second.state, first.state) ? second : first;
+		}
+	}
 
 }
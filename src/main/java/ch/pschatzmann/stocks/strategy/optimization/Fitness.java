@@ -1,18 +1,21 @@
 package ch.pschatzmann.stocks.strategy.optimization;
 
 import java.io.Serializable;
-import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.accounting.BasicAccount;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
-import ch.pschatzmann.stocks.accounting.kpi.KPIValue;
+import ch.pschatzmann.stocks.execution.BacktestRunner;
+import ch.pschatzmann.stocks.execution.BacktestScenario;
 import ch.pschatzmann.stocks.execution.ITrader;
-import ch.pschatzmann.stocks.execution.StrategyExecutor;
+import ch.pschatzmann.stocks.execution.PaperTrader;
+import ch.pschatzmann.stocks.execution.pruning.IPruningPolicy;
 import ch.pschatzmann.stocks.parameters.Parameters;
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
-import ch.pschatzmann.stocks.strategy.allocation.IAllocationStrategy;
-import ch.pschatzmann.stocks.strategy.allocation.SimpleAllocationStrategy;
 import ch.pschatzmann.stocks.strategy.selection.SelectionState;
 
 /**
@@ -21,6 +24,10 @@ import ch.pschatzmann.stocks.strategy.selection.SelectionState;
  * 
  * The trading accound is updated by adding the resulting transactions
  * 
+ * If a FitnessMemo is defined, the KPIs of evaluations which have been
+ * calculated before are taken from the memo. In this case the account does
+ * not contain any transactions.
+ * 
  * @author pschatzmann
  *
  */
@@ -31,10 +38,17 @@ public class Fitness implements IFitness, Serializable {
 	 */
 	private static final long serialVersionUID = 1L;
 	private ITrader trader;
+	private IPruningPolicy pruningPolicy;
+	private transient FitnessMemo memo = FitnessMemo.getDefault();
 
 	public Fitness(ITrader trader) {
 		this.trader = trader;
 	}
+
+	public Fitness(ITrader trader, IPruningPolicy pruningPolicy) {
+		this.trader = trader;
+		this.pruningPolicy = pruningPolicy;
+	}
 	
 	@Override
 	public ITrader getTrader() {
@@ -46,31 +60,93 @@ public class Fitness implements IFitness, Serializable {
 		IAccount account =  trader.getAccount();
 		ts.reset();
 		account.getAccount().reset();
-		IAllocationStrategy allocationStrategy = new SimpleAllocationStrategy(trader);
+		FitnessMemo.Key key = memo != null ? memo.getKey(trader, ts, period) : null;
+		Map<KPI, Double> kpis = key != null ? memo.get(key) : null;
+		if (kpis != null) {
+			return getState(ts, kpis);
+		}
+		BacktestScenario scenario = new BacktestScenario(account, ts, period).setPruningPolicy(pruningPolicy);
+		new BacktestRunner().run(scenario, trader);
+		SelectionState result = getState(ts, scenario.getResult());
+		result.setPruned(scenario.isPruned());
+		// pruned results are incomplete
+		if (key != null && !scenario.isPruned() && scenario.getResult() != null) {
+			memo.put(key, scenario.getResult());
+		}
+		return result;
+	}
 
-		StrategyExecutor executor = new StrategyExecutor(trader, allocationStrategy);
-		executor.addStrategy(ts);
-		executor.run(period);
+	/**
+	 * Creates a new Fitness with a separate simulation account and a paper
+	 * trader with the same settings, so that the fitness can be calculated
+	 * concurrently.
+	 * 
+	 * @return null if the trader is not a PaperTrader
+	 */
+	public Fitness copy() {
+		if (!(trader instanceof PaperTrader)) {
+			return null;
+		}
+		PaperTrader paperTrader = (PaperTrader) trader;
+		Account account = new Account(new BasicAccount(trader.getAccount().getAccount()));
+		if (trader.getAccount() instanceof Account) {
+			account.setRiskFreeReturnInPercent(((Account) trader.getAccount()).getRiskFreeReturnInPercent());
+		}
+		PaperTrader copy = new PaperTrader(account, paperTrader.getDelay());
+		copy.setPrice(paperTrader.getPrice());
+		Fitness result = new Fitness(copy, pruningPolicy);
+		result.setMemo(memo);
+		return result;
+	}
 
-		setResult(account, ts);
-		return new SelectionState(ts.getParameters().clone(),ts.getStockData().getStockID(),ts.getName(),false);
+	public IPruningPolicy getPruningPolicy() {
+		return pruningPolicy;
+	}
+
+	/**
+	 * Defines the policy to stop the evaluation of hopeless parameters early.
+	 * The resulting state is marked as pruned.
+	 * 
+	 * @param pruningPolicy
+	 */
+	public void setPruningPolicy(IPruningPolicy pruningPolicy) {
+		this.pruningPolicy = pruningPolicy;
 	}
 
-	private void setResult(IAccount account, ITradingStrategy ts) {
-		if (ts != null) {
-			List<KPIValue> result = account.getKPIValues();
-			if (result != null) {
-				for (KPIValue v : result) {
-					Double dv = v.getDoubleValue();
-					if (dv != null) {
-						Parameters<KPI> p = ts.getParameters().result();
-						if (p != null) {
-							p.setValue(v.getKpi(), dv);
-						}
+	public FitnessMemo getMemo() {
+		return memo;
+	}
+
+	/**
+	 * Defines the store for the results of the evaluations. By default we use
+	 * FitnessMemo.getDefault(). With null the results are not stored.
+	 * 
+	 * @param memo
+	 */
+	public void setMemo(FitnessMemo memo) {
+		this.memo = memo;
+	}
+
+	/**
+	 * Stores the KPIs in the result parameters of the strategy and returns the
+	 * resulting state
+	 * 
+	 * @param ts
+	 * @param kpis
+	 * @return
+	 */
+	public static SelectionState getState(ITradingStrategy ts, Map<KPI, Double> kpis) {
+		if (kpis != null) {
+			Parameters<KPI> p = ts.getParameters().result();
+			if (p != null) {
+				for (Entry<KPI, Double> e : kpis.entrySet()) {
+					if (e.getValue() != null) {
+						p.setValue(e.getKey(), e.getValue());
 					}
 				}
 			}
 		}
+		return new SelectionState(ts.getParameters().clone(),ts.getStockData().getStockID(),ts.getName(),false);
 	}
 	
 }
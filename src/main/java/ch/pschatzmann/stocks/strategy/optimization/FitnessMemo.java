@@ -0,0 +1,422 @@
+package ch.pschatzmann.stocks.strategy.optimization;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockID;
+import ch.pschatzmann.stocks.accounting.Account;
+import ch.pschatzmann.stocks.accounting.IBasicAccount;
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.execution.ITrader;
+import ch.pschatzmann.stocks.execution.PaperTrader;
+import ch.pschatzmann.stocks.execution.price.RandomPrice;
+import ch.pschatzmann.stocks.parameters.Parameters;
+import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+
+/**
+ * Store for the KPIs which have been determined by the Fitness, so that the
+ * same evaluation does not need to be repeated. The key is a SHA-256 hash of
+ * the strategy class, the input parameters, the period, the setup of the
+ * trader and account and a fingerprint of the stock history. If the history
+ * changes we get a different key, so that outdated results are never used.
+ *
+ * The entries are kept in memory with a LRU eviction (the maximum number of
+ * entries can be defined with the property FitnessMemoMaxEntries). If a
+ * directory is defined, the entries are also appended to a file per stock and
+ * history fingerprint, so that they survive a restart. Different histories of
+ * the same stock (e.g. filtered copies or other readers) are kept side by side.
+ * We keep only the most recently used files per stock (the maximum can be
+ * defined with the property FitnessMemoMaxFiles).
+ *
+ * The default store is used by all Fitness objects if the property
+ * FitnessMemoActive is true. It stores the files in the directory which is
+ * defined by the property FitnessMemoPath.
+ *
+ * @author pschatzmann
+ *
+ */
+public class FitnessMemo {
+	private static final Logger LOG = LoggerFactory.getLogger(FitnessMemo.class);
+	private static final String EXTENSION = ".jsonl";
+	private static final ObjectMapper mapper = new ObjectMapper()
+			.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+	private static FitnessMemo defaultMemo;
+	private File directory;
+	private int maxEntries;
+	private LinkedHashMap<String, Map<KPI, Double>> entries = new LinkedHashMap(16, 0.75f, true);
+	private int maxFiles = Integer.parseInt(Context.getProperty("FitnessMemoMaxFiles", "10"));
+	private Set<String> loadedFiles = new HashSet();
+	private long hits;
+	private long misses;
+
+	/**
+	 * Store which keeps the entries only in memory
+	 */
+	public FitnessMemo() {
+		this(null);
+	}
+
+	/**
+	 * Store which keeps the entries in memory and in the indicated directory
+	 *
+	 * @param directory
+	 */
+	public FitnessMemo(File directory) {
+		this(directory, Integer.parseInt(Context.getProperty("FitnessMemoMaxEntries", "100000")));
+	}
+
+	public FitnessMemo(File directory, int maxEntries) {
+		this.directory = directory;
+		this.maxEntries = maxEntries;
+		if (directory != null) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	 * Returns the shared store
+	 *
+	 * @return null if the property FitnessMemoActive is not true
+	 */
+	public static synchronized FitnessMemo getDefault() {
+		if (defaultMemo == null && Boolean.parseBoolean(Context.getProperty("FitnessMemoActive", "false"))) {
+			defaultMemo = new FitnessMemo(new File(Context.getProperty("FitnessMemoPath", "fitness")));
+		}
+		return defaultMemo;
+	}
+
+	/**
+	 * Determines the key for the evaluation of the strategy with the trader
+	 *
+	 * @param trader
+	 * @param ts
+	 * @param period
+	 * @return null if the result can not be reused
+	 */
+	public Key getKey(ITrader trader, ITradingStrategy ts, DateRange period) {
+		IStockData stockData = ts.getStockData();
+		if (stockData == null || ts.getParameters() == null) {
+			return null;
+		}
+		// random prices give a different result for each evaluation
+		if (trader instanceof PaperTrader && ((PaperTrader) trader).getPrice() instanceof RandomPrice) {
+			return null;
+		}
+		try {
+			StringBuilder sb = new StringBuilder();
+			sb.append(ts.getClass().getName()).append('|');
+			sb.append(stockData.getStockID()).append('|');
+			Parameters<InputParameterName> input = ts.getParameters().input();
+			List<InputParameterName> names = input.names();
+			Collections.sort(names);
+			for (InputParameterName name : names) {
+				sb.append(name).append('=').append(input.getDouble(name)).append(';');
+			}
+			sb.append('|');
+			sb.append(getTime(period == null ? null : period.getStart())).append('-');
+			sb.append(getTime(period == null ? null : period.getEnd())).append('|');
+			sb.append(trader.getClass().getName()).append(';');
+			if (trader instanceof PaperTrader) {
+				PaperTrader paperTrader = (PaperTrader) trader;
+				sb.append(describe(paperTrader.getDelay())).append(describe(paperTrader.getPrice()));
+			}
+			IBasicAccount account = trader.getAccount().getAccount();
+			sb.append('|').append(account.getCurrency()).append(';').append(account.getInitialCash()).append(';');
+			sb.append(getTime(account.getOpenDate())).append(';').append(getTime(account.getCloseDate())).append(';');
+			sb.append(describe(account.getFeesModel()));
+			if (trader.getAccount() instanceof Account) {
+				sb.append(((Account) trader.getAccount()).getRiskFreeReturnInPercent());
+			}
+
+			String fingerprint = stockData.getFingerprint();
+			return new Key(stockData.getStockID(), fingerprint, hash(sb + "|" + fingerprint));
+		} catch (Exception ex) {
+			LOG.warn("The key could not be determined: " + ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the stored KPIs
+	 *
+	 * @param key
+	 * @return null if the evaluation was not stored
+	 */
+	public synchronized Map<KPI, Double> get(Key key) {
+		load(key);
+		Map<KPI, Double> result = entries.get(key.getHash());
+		if (result == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return new HashMap(result);
+	}
+
+	/**
+	 * Stores the KPIs of an evaluation
+	 *
+	 * @param key
+	 * @param kpis
+	 */
+	public synchronized void put(Key key, Map<KPI, Double> kpis) {
+		load(key);
+		Map<KPI, Double> values = new HashMap();
+		for (Entry<KPI, Double> e : kpis.entrySet()) {
+			if (e.getValue() != null) {
+				values.put(e.getKey(), e.getValue());
+			}
+		}
+		add(key.getHash(), values);
+		if (directory != null) {
+			Map<String, Object> record = new LinkedHashMap();
+			record.put("key", key.getHash());
+			record.put("kpis", values);
+			try (OutputStream os = new FileOutputStream(getFile(key.getStockID(), key.getFingerprint()), true)) {
+				os.write(mapper.writeValueAsBytes(record));
+				os.write('\n');
+			} catch (IOException ex) {
+				LOG.warn("The result could not be saved: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Loads the stored entries of the stock with the actual fingerprint from
+	 * the disk. The file is marked as used and the least recently used files of
+	 * the stock are deleted if there are more than the maximum number of files.
+	 *
+	 * @param key
+	 */
+	protected void load(Key key) {
+		if (directory == null) {
+			return;
+		}
+		File file = getFile(key.getStockID(), key.getFingerprint());
+		if (!loadedFiles.add(file.getName())) {
+			return;
+		}
+		if (file.exists()) {
+			file.setLastModified(System.currentTimeMillis());
+		}
+		evict(getPrefix(key.getStockID()), file);
+		if (file.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					try {
+						JsonNode node = mapper.readTree(line);
+						Map<KPI, Double> values = new HashMap();
+						Iterator<Entry<String, JsonNode>> it = node.get("kpis").fields();
+						while (it.hasNext()) {
+							Entry<String, JsonNode> e = it.next();
+							values.put(KPI.valueOf(e.getKey()), e.getValue().asDouble());
+						}
+						add(node.get("key").asText(), values);
+					} catch (Exception ex) {
+						// e.g. partial record from a crash
+						LOG.warn("The record is ignored: " + line);
+					}
+				}
+			} catch (IOException ex) {
+				LOG.warn("The file could not be read: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files of the stock, so that we keep the
+	 * maximum number of files including the actual file
+	 *
+	 * @param prefix
+	 * @param actual
+	 */
+	private void evict(String prefix, File actual) {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION)
+				&& !name.equals(actual.getName()));
+		if (files != null && files.length >= maxFiles) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+			for (int j = Math.max(0, maxFiles - 1); j < files.length; j++) {
+				LOG.info("We delete the least recently used file {}", files[j]);
+				files[j].delete();
+				loadedFiles.remove(files[j].getName());
+			}
+		}
+	}
+
+	private void add(String hash, Map<KPI, Double> values) {
+		entries.put(hash, values);
+		Iterator<String> it = entries.keySet().iterator();
+		while (entries.size() > maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	protected File getFile(IStockID id, String fingerprint) {
+		return new File(directory, getPrefix(id) + fingerprint + EXTENSION);
+	}
+
+	/**
+	 * The exchange and ticker are encoded, so that different ids never share a
+	 * prefix. The prefix is terminated with a '-' which is not used by the
+	 * encoding.
+	 *
+	 * @param id
+	 * @return
+	 */
+	private static String getPrefix(IStockID id) {
+		return encode(id.getExchange()) + "_" + encode(id.getTicker()) + "-";
+	}
+
+	private static String encode(String str) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : String.valueOf(str).getBytes(StandardCharsets.UTF_8)) {
+			char c = (char) (b & 0xff);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.') {
+				sb.append(c);
+			} else {
+				sb.append(String.format("%%%02X", b & 0xff));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String describe(Object obj) throws IOException {
+		return obj == null ? "null;" : obj.getClass().getName() + mapper.writeValueAsString(obj) + ";";
+	}
+
+	private static long getTime(Date date) {
+		return date == null ? 0 : date.getTime();
+	}
+
+	private static String hash(String str) throws NoSuchAlgorithmException {
+		return toHex(MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Removes all entries from the memory and from the disk
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		loadedFiles.clear();
+		File[] files = directory == null ? null : directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		for (File file : files == null ? new File[0] : files) {
+			file.delete();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the share of the requests which could be served from the store
+	 *
+	 * @return
+	 */
+	public synchronized double getHitRatio() {
+		long total = hits + misses;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public synchronized int getMaxFiles() {
+		return maxFiles;
+	}
+
+	/**
+	 * Defines the maximum number of files which are kept per stock
+	 *
+	 * @param maxFiles
+	 */
+	public synchronized void setMaxFiles(int maxFiles) {
+		this.maxFiles = Math.max(1, maxFiles);
+	}
+
+	/**
+	 * Identification of an evaluation
+	 */
+	public static class Key {
+		private IStockID stockID;
+		private String fingerprint;
+		private String hash;
+
+		Key(IStockID stockID, String fingerprint, String hash) {
+			this.stockID = stockID;
+			this.fingerprint = fingerprint;
+			this.hash = hash;
+		}
+
+		public IStockID getStockID() {
+			return stockID;
+		}
+
+		/**
+		 * Fingerprint of the stock history
+		 *
+		 * @return
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return hash;
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package ch.pschatzmann.stocks.strategy.optimization;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.parameters.Parameters;
+import ch.pschatzmann.stocks.parameters.State;
+import ch.pschatzmann.stocks.strategy.TradingStrategyFactory;
+
+/**
+ * Calculates the fitness of different parameters concurrently. Each thread uses
+ * its own copy of the trading strategy and of the fitness (with a separate
+ * simulation account). The copies are reused by the subsequent calculations.
+ *
+ * @author pschatzmann
+ *
+ */
+public class FitnessWorkers {
+	private static final Logger LOG = LoggerFactory.getLogger(FitnessWorkers.class);
+	private IFitness fitness;
+	private IOptimizableTradingStrategy strategy;
+	private Queue<Worker> workers = new ConcurrentLinkedQueue();
+
+	public FitnessWorkers(IFitness fitness, IOptimizableTradingStrategy strategy) {
+		this.fitness = fitness;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Checks if the strategy and the fitness can be copied
+	 *
+	 * @return
+	 */
+	public boolean isSupported() {
+		if (workers.isEmpty()) {
+			Worker worker = newWorker();
+			if (worker == null) {
+				return false;
+			}
+			workers.add(worker);
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates the fitness with a copy of the strategy
+	 *
+	 * @param setup
+	 *            defines the input parameters of the copy
+	 * @param period
+	 * @return
+	 */
+	public State getFitness(Consumer<Parameters<InputParameterName>> setup, DateRange period) {
+		Worker worker = workers.poll();
+		if (worker == null) {
+			worker = newWorker();
+			if (worker == null) {
+				throw new IllegalStateException("The strategy can not be copied: " + strategy);
+			}
+		}
+		try {
+			setup.accept(worker.strategy.getParameters().input());
+			worker.strategy.reset();
+			return worker.fitness.getFitness(worker.strategy, period);
+		} finally {
+			workers.add(worker);
+		}
+	}
+
+	/**
+	 * Creates a copy of the strategy and of the fitness
+	 *
+	 * @return null if this is not supported
+	 */
+	protected Worker newWorker() {
+		try {
+			IFitness workerFitness = fitness instanceof Fitness ? ((Fitness) fitness).copy() : null;
+			if (workerFitness != null) {
+				IOptimizableTradingStrategy copy = TradingStrategyFactory.copy(strategy, strategy.getStockData());
+				return new Worker(copy, workerFitness);
+			}
+		} catch (Exception ex) {
+			LOG.warn("The strategy can not be copied: " + ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Copy of the trading strategy and of the fitness which is used by one
+	 * thread at a time
+	 */
+	protected static class Worker {
+		private IOptimizableTradingStrategy strategy;
+		private IFitness fitness;
+
+		Worker(IOptimizableTradingStrategy strategy, IFitness fitness) {
+			this.strategy = strategy;
+			this.fitness = fitness;
+		}
+	}
+
+}
@@ -2,15 +2,22 @@ package ch.pschatzmann.stocks.strategy.optimization;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
-import ch.pschatzmann.stocks.parameters.ParameterValue;
+import ch.pschatzmann.stocks.parameters.Parameters;
 import ch.pschatzmann.stocks.parameters.State;
 import ch.pschatzmann.stocks.strategy.optimization.genetics.Algorithm;
 import ch.pschatzmann.stocks.strategy.optimization.genetics.Gene;
@@ -21,7 +28,15 @@ import ch.pschatzmann.stocks.utils.Range;
 /**
  * Optimizer which uses a genetic algorithm to optimize the parameters. 
  * https://en.wikipedia.org/wiki/Genetic_algorithm
-
+ * 
+ * The fitness of all new individuals of a generation is calculated
+ * concurrently before the selection. Each thread uses its own copy of the
+ * trading strategy and of the simulation account. The number of threads is
+ * defined by the property GeneticOptimizerParallelism (the default is the
+ * number of processors). The selection, crossover and mutation use a random
+ * number generator with a seed, so that an optimization with the same seed
+ * gives the same result independent of the number of threads. The seed can be
+ * defined with the property GeneticOptimizerSeed or with setSeed().
  * 
  * @author pschatzmann
  *
@@ -38,6 +53,11 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 	private int generations = 10;
 	private int populationSize = 50;
 	private DateRange optimizationPeriod;
+	private int parallelism = Integer.parseInt(Context.getProperty("GeneticOptimizerParallelism",
+			String.valueOf(Runtime.getRuntime().availableProcessors())));
+	private Long seed = Context.getProperty("GeneticOptimizerSeed", "").isEmpty() ? null
+			: Long.parseLong(Context.getProperty("GeneticOptimizerSeed", ""));
+	private long usedSeed;
 
 	/**
 	 * Default constructor
@@ -59,22 +79,24 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 		this.fitness.getTrader().getAccount().putStockData(ts.getStockData());
 		this.optimizationPeriod = period;
 		this.ts = ts;
-		// setup genes from inputParameters
-		Map<InputParameterName, ParameterValue<Number>> inputParameters = ts.getParameters().getInput().getParameters();
-		Range[] geneTemplate = new Range[inputParameters.size()];
-		String[] names = new String[inputParameters.size()];
-		int j=0;
-		for (Entry<InputParameterName, ParameterValue<Number>> e : inputParameters.entrySet()) {
-			names[j] = e.getKey().name();
-			geneTemplate[j] = e.getValue().getRange();
-			j++;
- 		}
-		
+		// setup genes from inputParameters in a stable sequence
+		List<InputParameterName> inputNames = ts.getParameters().input().names();
+		Collections.sort(inputNames);
+		Range[] geneTemplate = new Range[inputNames.size()];
+		String[] names = new String[inputNames.size()];
+		for (int j = 0; j < names.length; j++) {
+			names[j] = inputNames.get(j).name();
+			geneTemplate[j] = ts.getParameters().input().getParameterValue(inputNames.get(j)).getRange();
+		}
+		this.usedSeed = seed != null ? seed : new Random().nextLong();
+		LOG.info("Seed: {}", usedSeed);
+		Random random = new Random(usedSeed);
+
 		// setup Algorithm
-		Algorithm algorithm = new Algorithm(names, geneTemplate, this);
+		Algorithm algorithm = new Algorithm(names, geneTemplate, this, random);
 
 		// Create an initial population
-		Population myPop = new Population(this.getPopulationSize(), names, geneTemplate, true, this);
+		Population myPop = new Population(this.getPopulationSize(), names, geneTemplate, true, this, random);
 		
 		// we use the default values on the first individual
 		Individual first = myPop.getIndividual(0);
@@ -83,11 +105,27 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 			String name = gene.getName();
 			gene.setValue(ts.getParameters().getInput().getDouble(InputParameterName.valueOf(name)));
 		}
-		
-		// Evolve our population until we reach the indicated generation
-		for (int generationCount = 0; generationCount < this.getGenerations(); generationCount++) {
-			LOG.info("Generation: " + generationCount + " Fittest: " + myPop.getFittest());
-			myPop = algorithm.evolvePopulation(myPop);
+
+		FitnessWorkers workers = new FitnessWorkers(fitness, ts);
+		ExecutorService executor = parallelism > 1 && workers.isSupported()
+				? Executors.newFixedThreadPool(parallelism, r -> {
+					Thread t = new Thread(r, "GeneticOptimizer");
+					t.setDaemon(true);
+					return t;
+				})
+				: null;
+		try {
+			// Evolve our population until we reach the indicated generation
+			for (int generationCount = 0; generationCount < this.getGenerations(); generationCount++) {
+				evaluate(myPop, workers, executor);
+				LOG.info("Generation: " + generationCount + " Fittest: " + myPop.getFittest());
+				myPop = algorithm.evolvePopulation(myPop);
+			}
+			evaluate(myPop, workers, executor);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 		}
 
 		Individual fittest = myPop.getFittest();
@@ -96,11 +134,51 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 		return result;
 	}
 
-	protected State getState(Individual indidual) {
+	/**
+	 * Calculates the fitness of all individuals of the population which have not
+	 * been evaluated yet with the help of the executor. Without executor the
+	 * fitness is calculated sequentially on demand.
+	 * 
+	 * @param population
+	 * @param workers
+	 * @param executor
+	 */
+	protected void evaluate(Population population, FitnessWorkers workers, ExecutorService executor) {
+		List<Individual> individuals = new ArrayList();
+		for (int j = 0; j < population.size(); j++) {
+			Individual individual = population.getIndividual(j);
+			if (individual != null && individual.getFitness() == null && !individuals.contains(individual)) {
+				individuals.add(individual);
+			}
+		}
+		if (executor == null || individuals.size() <= 1) {
+			return;
+		}
+		try {
+			List<Future<State>> futures = new ArrayList();
+			for (Individual individual : individuals) {
+				futures.add(executor.submit(() -> workers.getFitness(p -> setValues(individual, p), optimizationPeriod)));
+			}
+			for (int j = 0; j < futures.size(); j++) {
+				individuals.get(j).setFitness(getFitness(futures.get(j).get()));
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	protected void setValues(Individual indidual, Parameters<InputParameterName> parameters) {
 		for (int j = 0; j < indidual.getGeneLength();j++) {
 			Gene g = indidual.getGene(j);
-			ts.getParameters().getInput().setValue(InputParameterName.valueOf(g.getName()), g.getValue());			
+			parameters.setValue(InputParameterName.valueOf(g.getName()), g.getValue());			
 		}
+	}
+
+	protected State getState(Individual indidual) {
+		setValues(indidual, ts.getParameters().getInput());
 		ts.reset();
 		return fitness.getFitness(ts,optimizationPeriod);
 	}
@@ -113,12 +191,17 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 	public double getFitness(Individual indidual) {		
 		Double fitness = indidual.getFitness();
 		if (fitness==null) {
-			fitness = this.getState(indidual).result().getDouble(optimizationParameter);
+			fitness = getFitness(this.getState(indidual));
 			indidual.setFitness(fitness);
 		}
 		return fitness;
 	}
 
+	protected double getFitness(State state) {
+		// pruned individuals are the least fit
+		return state.isPruned() ? -Double.MAX_VALUE : state.result().getDouble(optimizationParameter);
+	}
+
 	/**
 	 * Determines the number of generations
 	 * @return
@@ -143,6 +226,43 @@ public class GeneticOptimizer implements IOptimizer, Serializable {
 		this.populationSize = populationSize;
 	}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the number of threads which calculate the fitness of a
+	 * generation. With 1 the individuals are evaluated sequentially.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public Long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Defines the seed of the random number generator. If it is not defined we
+	 * use a random seed.
+	 * 
+	 * @param seed
+	 */
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Seed which was used by the last optimization
+	 * 
+	 * @return
+	 */
+	public long getUsedSeed() {
+		return usedSeed;
+	}
+
 	@Override
 	public IFitness getFitness() {
 		return this.fitness;	
@@ -0,0 +1,133 @@
+package ch.pschatzmann.stocks.strategy.optimization;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import ch.pschatzmann.stocks.parameters.ParameterValue;
+import ch.pschatzmann.stocks.parameters.Parameters;
+
+/**
+ * Index space over all combinations of the values of the input parameters. The
+ * values of a parameter are enumerated from the minimum to the maximum of its
+ * range with the indicated step. The parameters are sorted in the sequence of
+ * InputParameterName and the last parameter changes fastest, like in nested
+ * loops. So each grid point can be determined from its index without the need
+ * to keep all combinations in memory.
+ *
+ * @author pschatzmann
+ *
+ */
+public class ParameterGrid implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private List<InputParameterName> names;
+	private double[][] values;
+	private double[] min;
+	private double[] max;
+	private long size = 1;
+
+	/**
+	 * Creates the grid for the indicated parameters
+	 *
+	 * @param parameters
+	 * @param step
+	 *            determines the increment for a parameter
+	 */
+	public ParameterGrid(Parameters<InputParameterName> parameters, ToDoubleFunction<ParameterValue> step) {
+		names = parameters.names();
+		Collections.sort(names);
+		values = new double[names.size()][];
+		min = new double[names.size()];
+		max = new double[names.size()];
+		for (int j = 0; j < values.length; j++) {
+			ParameterValue pv = parameters.getParameterValue(names.get(j));
+			min[j] = pv.getRange().getMin().doubleValue();
+			max[j] = pv.getRange().getMax().doubleValue();
+			double inc = step.applyAsDouble(pv);
+			if (!(inc > 0.0)) {
+				throw new IllegalArgumentException("The step for " + names.get(j) + " must be positive: " + inc);
+			}
+			List<Double> list = new ArrayList();
+			for (double d = min[j]; d <= max[j]; d += inc) {
+				list.add(d);
+			}
+			values[j] = list.stream().mapToDouble(d -> d).toArray();
+			size = Math.multiplyExact(size, values[j].length);
+		}
+	}
+
+	/**
+	 * Number of grid points
+	 *
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+
+	public List<InputParameterName> getNames() {
+		return names;
+	}
+
+	/**
+	 * Minimum of the range of the parameter with the indicated position in the
+	 * names
+	 *
+	 * @param j
+	 * @return
+	 */
+	public double getMin(int j) {
+		return min[j];
+	}
+
+	/**
+	 * Maximum of the range of the parameter with the indicated position in the
+	 * names
+	 *
+	 * @param j
+	 * @return
+	 */
+	public double getMax(int j) {
+		return max[j];
+	}
+
+	/**
+	 * Returns the parameter values of the grid point
+	 *
+	 * @param index
+	 * @return values in the sequence of the names
+	 */
+	public double[] getValues(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size);
+		}
+		double[] result = new double[values.length];
+		for (int j = values.length - 1; j >= 0; j--) {
+			int len = values[j].length;
+			result[j] = values[j][(int) (index % len)];
+			index = index / len;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the parameter values of the grid point
+	 *
+	 * @param index
+	 * @param parameters
+	 */
+	public void apply(long index, Parameters<InputParameterName> parameters) {
+		double[] point = getValues(index);
+		for (int j = 0; j < point.length; j++) {
+			parameters.setValue(names.get(j), point[j]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ParameterGrid " + names + ": " + size + " combinations";
+	}
+
+}
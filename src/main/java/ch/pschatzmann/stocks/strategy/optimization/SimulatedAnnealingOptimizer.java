@@ -1,11 +1,20 @@
 package ch.pschatzmann.stocks.strategy.optimization;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
 import ch.pschatzmann.stocks.parameters.ParameterValue;
 import ch.pschatzmann.stocks.parameters.StateComparator;
@@ -16,6 +25,17 @@ import ch.pschatzmann.stocks.strategy.selection.TopNSet;
 /**
  * Optimizer using SimulatedAnnealing https://en.wikipedia.org/wiki/Simulated_annealing
  * 
+ * With more then one chain (setChains() or the property
+ * SimulatedAnnealingOptimizerChains) we run independent annealing chains
+ * concurrently: the first chain starts with the actual parameters and the
+ * others with random parameters. Each chain uses a different temperature
+ * (doubled from chain to chain) and after each exchange interval the states of
+ * neighboring chains are exchanged like in parallel tempering, so that the
+ * good states move to the cold chains. The random numbers are determined from
+ * a seed, so that the result does not depend on the number of threads. The
+ * result is the best state of all chains and the convergence of each chain is
+ * available with getTraces().
+ * 
  * @author pschatzmann
  *
  */
@@ -30,6 +50,13 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 	private long count;
 	private KPI optimizationParameter;
 	private DateRange optimizationPeriod;
+	private int chains = Integer.parseInt(Context.getProperty("SimulatedAnnealingOptimizerChains", "1"));
+	private int parallelism = Integer.parseInt(Context.getProperty("SimulatedAnnealingOptimizerParallelism",
+			String.valueOf(Runtime.getRuntime().availableProcessors())));
+	private long exchangeInterval = 10;
+	private double temperature = 100.0;
+	private Long seed;
+	private List<List<Double>> traces = new ArrayList();
 
 	public SimulatedAnnealingOptimizer(IFitness fitness, KPI targetParameterName) {
 		this(fitness, 100, targetParameterName);
@@ -45,6 +72,13 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 	public synchronized ch.pschatzmann.stocks.parameters.State optimize(IOptimizableTradingStrategy ts, DateRange optimizationPeriod) {
 		TopNSet<ch.pschatzmann.stocks.parameters.State> bestValue = new TopNSet(1, new StateComparator(false, optimizationParameter));
 		this.fitness.getTrader().getAccount().putStockData(ts.getStockData());
+		if (chains > 1) {
+			FitnessWorkers workers = new FitnessWorkers(fitness, ts);
+			if (workers.isSupported()) {
+				return optimize(ts, optimizationPeriod, workers);
+			}
+			LOG.warn("The strategy can not be copied: we use only one chain");
+		}
 
 		bestValue.clear();
 		// set default parameters as baseline
@@ -55,6 +89,7 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 		Optimizer o = new Optimizer(new StockState(ts, bestValue));
 		StockState s = (StockState) o.search(count);
 		bestValue.add(s.getParameters());
+		this.traces = Collections.singletonList(o.getTrace());
 
 		// return best result that we might have ever found
 		ch.pschatzmann.stocks.parameters.State result = bestValue.first();
@@ -64,6 +99,126 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 		return result;
 	}
 
+	/**
+	 * Runs the annealing chains concurrently and exchanges the states after each
+	 * exchange interval
+	 * 
+	 * @param ts
+	 * @param optimizationPeriod
+	 * @param workers
+	 * @return
+	 */
+	protected ch.pschatzmann.stocks.parameters.State optimize(IOptimizableTradingStrategy ts,
+			DateRange optimizationPeriod, FitnessWorkers workers) {
+		this.optimizationPeriod = optimizationPeriod;
+		long usedSeed = seed != null ? seed : new Random().nextLong();
+		LOG.info("Seed: {}", usedSeed);
+		Random random = new Random(usedSeed);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chains)), r -> {
+			Thread t = new Thread(r, "SimulatedAnnealingOptimizer");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			// setup the chains from different starting states
+			List<TopNSet<ch.pschatzmann.stocks.parameters.State>> bestValues = new ArrayList();
+			List<Future<Optimizer>> futures = new ArrayList();
+			for (int k = 0; k < chains; k++) {
+				TopNSet<ch.pschatzmann.stocks.parameters.State> bestValue = new TopNSet(1,
+						new StateComparator(false, optimizationParameter));
+				bestValues.add(bestValue);
+				// the states are exchanged between the chains so they need their own random numbers
+				Random chainRandom = new Random(random.nextLong());
+				Random stateRandom = new Random(random.nextLong());
+				ch.pschatzmann.stocks.parameters.State start = ts.getParameters().clone();
+				if (k > 0) {
+					randomize(start, stateRandom);
+				}
+				double chainTemperature = temperature * Math.pow(2, k);
+				futures.add(executor.submit(() -> new Optimizer(new StockState(workers, start, bestValue, stateRandom),
+						chainRandom, chainTemperature)));
+			}
+			List<Optimizer> optimizers = get(futures);
+
+			// run the chains and exchange the states
+			for (long iteration = 0; iteration < count; iteration += exchangeInterval) {
+				long from = iteration;
+				long to = Math.min(count, from + exchangeInterval);
+				List<Future<Optimizer>> steps = new ArrayList();
+				for (Optimizer o : optimizers) {
+					steps.add(executor.submit(() -> {
+						o.search(from, to, count);
+						return o;
+					}));
+				}
+				get(steps);
+				exchange(optimizers, to, random);
+			}
+
+			// return best result of all chains
+			TopNSet<ch.pschatzmann.stocks.parameters.State> bestValue = new TopNSet(1,
+					new StateComparator(false, optimizationParameter));
+			bestValues.forEach(set -> bestValue.addAll(set));
+			this.traces = new ArrayList();
+			optimizers.forEach(o -> traces.add(o.getTrace()));
+
+			ch.pschatzmann.stocks.parameters.State result = bestValue.first();
+			ts.getParameters().input().setParameters(result.getInput().getParameters());
+			LOG.info("==> " + result.result().getDouble(optimizationParameter) + " " + result);
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Exchanges the states of neighboring chains with the probability of
+	 * parallel tempering. Better states are always moved to the colder chain.
+	 * 
+	 * @param optimizers
+	 * @param iteration
+	 * @param random
+	 */
+	protected void exchange(List<Optimizer> optimizers, long iteration, Random random) {
+		for (int k = 0; k < optimizers.size() - 1; k++) {
+			Optimizer cold = optimizers.get(k);
+			Optimizer hot = optimizers.get(k + 1);
+			double coldTemperature = cold.getTemperature(iteration, count);
+			double hotTemperature = hot.getTemperature(iteration, count);
+			if (coldTemperature > 0.0 && hotTemperature > 0.0) {
+				double delta = (hot.getResult() - cold.getResult()) * (1.0 / coldTemperature - 1.0 / hotTemperature);
+				if (delta >= 0.0 || random.nextDouble() < Math.exp(delta)) {
+					LOG.info("exchange chain {} and {}", k, k + 1);
+					cold.exchange(hot);
+				}
+			}
+		}
+	}
+
+	protected void randomize(ch.pschatzmann.stocks.parameters.State state, Random random) {
+		List<InputParameterName> names = state.input().names();
+		Collections.sort(names);
+		for (InputParameterName name : names) {
+			ParameterValue pv = state.input().getParameterValue(name);
+			pv.setValue(pv.random(random).doubleValue());
+		}
+	}
+
+	private static List<Optimizer> get(List<Future<Optimizer>> futures) {
+		try {
+			List<Optimizer> result = new ArrayList();
+			for (Future<Optimizer> future : futures) {
+				result.add(future.get());
+			}
+			return result;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
 	class StockState implements State {
 		/**
 		 * 
@@ -74,6 +229,8 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 		ch.pschatzmann.stocks.parameters.State actualVaules;
 		ch.pschatzmann.stocks.parameters.State priorValues;
 		int errorCount;
+		FitnessWorkers workers;
+		Random random;
 
 		StockState(IOptimizableTradingStrategy strategy, TopNSet<ch.pschatzmann.stocks.parameters.State> bestState) {
 			this.strategy = strategy;
@@ -82,19 +239,76 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 			this.priorValues = actualVaules.clone();
 		}
 
+		/**
+		 * State of a chain which is evaluated with the copies of the workers
+		 * 
+		 * @param workers
+		 * @param start
+		 * @param bestState
+		 * @param random
+		 */
+		StockState(FitnessWorkers workers, ch.pschatzmann.stocks.parameters.State start,
+				TopNSet<ch.pschatzmann.stocks.parameters.State> bestState, Random random) {
+			this.workers = workers;
+			this.bestValue = bestState;
+			this.random = random;
+			this.actualVaules = evaluate(start);
+			this.priorValues = actualVaules.clone();
+			if (!actualVaules.isPruned()) {
+				bestValue.add(actualVaules.clone());
+			}
+		}
+
+		private StockState(StockState source) {
+			this.strategy = source.strategy;
+			this.bestValue = source.bestValue;
+			this.workers = source.workers;
+			this.random = source.random;
+			this.actualVaules = source.actualVaules.clone();
+			this.priorValues = source.priorValues.clone();
+		}
+
+		private ch.pschatzmann.stocks.parameters.State evaluate(ch.pschatzmann.stocks.parameters.State values) {
+			return workers.getFitness(p -> p.setParameters(values.getInput().getParameters()), optimizationPeriod);
+		}
+
 		@Override
 		public void step() {
 			this.priorValues = this.actualVaules.clone();
-			for (ParameterValue pv : actualVaules.input().values()) {
-				double value = pv.random().doubleValue();
-				pv.setValue(value);
+			if (random != null) {
+				randomize(actualVaules, random);
+			} else {
+				for (ParameterValue pv : actualVaules.input().values()) {
+					double value = pv.random().doubleValue();
+					pv.setValue(value);
+				}
 			}
 			try {
+				if (workers != null) {
+					actualVaules = evaluate(actualVaules);
+					if (actualVaules.isPruned()) {
+						LOG.info("-->pruned "+actualVaules);
+						undo();
+					} else {
+						bestValue.add(actualVaules.clone());
+					}
+					errorCount = 0;
+					return;
+				}
 				strategy.reset();
 				strategy.getParameters().input().setParameters(actualVaules.getInput().getParameters());	
 				
 				actualVaules = fitness.getFitness(strategy,optimizationPeriod);
-				bestValue.add(actualVaules);
+				if (actualVaules.isPruned()) {
+					// we continue with the prior parameters
+					LOG.info("-->pruned "+actualVaules);
+					undo();
+					ch.pschatzmann.stocks.parameters.State prior = actualVaules.clone();
+					strategy.getParameters().input().setParameters(prior.getInput().getParameters());
+					strategy.getParameters().result().setParameters(prior.getResult().getParameters());
+				} else {
+					bestValue.add(actualVaules.clone());
+				}
 				errorCount = 0;
 			} catch (RuntimeException ex) {
 				errorCount++;
@@ -116,15 +330,15 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 
 		@Override
 		public double result() {
+			if (workers != null) {
+				return actualVaules.result().getDouble(optimizationParameter);
+			}
 			return strategy.getParameters().result().getDouble(optimizationParameter);
 		}
 		
 		@Override
 		public StockState clone() {
-			StockState s = new StockState(this.strategy, bestValue);
-			s.actualVaules = actualVaules.clone();
-			s.priorValues = priorValues.clone();
-			return s;
+			return new StockState(this);
 		}
 
 		@Override
@@ -134,6 +348,84 @@ public class SimulatedAnnealingOptimizer implements IOptimizer, Serializable {
 		
 	}
 
+	public int getChains() {
+		return chains;
+	}
+
+	/**
+	 * Defines the number of annealing chains. With 1 we run only one chain with
+	 * the actual parameters.
+	 * 
+	 * @param chains
+	 */
+	public void setChains(int chains) {
+		this.chains = Math.max(1, chains);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the maximum number of threads which execute the chains
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public long getExchangeInterval() {
+		return exchangeInterval;
+	}
+
+	/**
+	 * Defines the number of iterations after which the states of the chains
+	 * are exchanged
+	 * 
+	 * @param exchangeInterval
+	 */
+	public void setExchangeInterval(long exchangeInterval) {
+		this.exchangeInterval = Math.max(1, exchangeInterval);
+	}
+
+	public double getTemperature() {
+		return temperature;
+	}
+
+	/**
+	 * Defines the start temperature of the first chain
+	 * 
+	 * @param temperature
+	 */
+	public void setTemperature(double temperature) {
+		this.temperature = temperature;
+	}
+
+	public Long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Defines the seed of the random number generator for the chains. If it is
+	 * not defined we use a random seed.
+	 * 
+	 * @param seed
+	 */
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Results of the accepted states after each iteration for each chain of the
+	 * last optimization (ordered by the temperature)
+	 * 
+	 * @return
+	 */
+	public List<List<Double>> getTraces() {
+		return traces;
+	}
+
 	public long getCount() {
 		return count;
 	}
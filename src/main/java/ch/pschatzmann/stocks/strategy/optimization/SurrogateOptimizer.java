@@ -0,0 +1,528 @@
+package ch.pschatzmann.stocks.strategy.optimization;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.parameters.ParameterValue;
+import ch.pschatzmann.stocks.parameters.Parameters;
+import ch.pschatzmann.stocks.parameters.State;
+
+/**
+ * Sequential model based (Bayesian) optimization: we fit a Gaussian process
+ * to the evaluated parameters and use it as cheap surrogate of the fitness.
+ * The next batch of parameters is selected by the expected improvement. The
+ * further points of a batch are selected by assuming that the points which
+ * were already selected give the predicted result (kriging believer). The
+ * batches are evaluated concurrently (property SurrogateOptimizerParallelism)
+ * with copies of the strategy.
+ *
+ * We search the same grid as the BruteForceOptimizer (which can be limited
+ * with setMaxNumberOfSteps()), but we only need to evaluate a small part of
+ * it. The parameters are scaled to the range 0 to 1 and the length scale of
+ * the squared exponential kernel is selected by the maximum likelihood. The
+ * random numbers are determined from a seed so that the result is
+ * reproducible.
+ *
+ * @author pschatzmann
+ *
+ */
+public class SurrogateOptimizer implements IOptimizer, Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(SurrogateOptimizer.class);
+	private static final double[] LENGTH_SCALES = { 0.05, 0.1, 0.2, 0.4, 0.8 };
+	private static final double NOISE = 1e-4;
+	private IFitness fitness;
+	private KPI optimizationParameter;
+	private Integer maxNumberOfSteps;
+	private int maxEvaluations = 50;
+	private int initialPoints = 10;
+	private int batchSize = 4;
+	private int candidates = 2000;
+	private long seed = Long.parseLong(Context.getProperty("SurrogateOptimizerSeed", "1"));
+	private int parallelism = Integer.parseInt(Context.getProperty("SurrogateOptimizerParallelism",
+			String.valueOf(Runtime.getRuntime().availableProcessors())));
+	private int evaluations;
+
+	public SurrogateOptimizer(IFitness fitness, KPI optimizationParameter) throws IOException {
+		this.fitness = fitness;
+		this.optimizationParameter = optimizationParameter;
+	}
+
+	@Override
+	public State optimize(IOptimizableTradingStrategy ts, DateRange period) {
+		this.fitness.getTrader().getAccount().putStockData(ts.getStockData());
+		ParameterGrid grid = new ParameterGrid(ts.getParameters().input(), p -> getStep(p));
+		LOG.info("{}", grid);
+		Random random = new Random(seed);
+		List<double[]> points = new ArrayList();
+		List<State> states = new ArrayList();
+		Set<Long> evaluated = new HashSet();
+		this.evaluations = 0;
+
+		// use standard parameters
+		ts.reset();
+		State maxResult = fitness.getFitness(ts, period);
+		points.add(scale(grid, ts.getParameters().input()));
+		states.add(maxResult);
+		evaluations++;
+
+		FitnessWorkers workers = new FitnessWorkers(fitness, ts);
+		ExecutorService executor = parallelism > 1 && workers.isSupported()
+				? Executors.newFixedThreadPool(parallelism, r -> {
+					Thread t = new Thread(r, "SurrogateOptimizer");
+					t.setDaemon(true);
+					return t;
+				})
+				: null;
+		try {
+			while (evaluations < maxEvaluations && evaluated.size() < grid.size()) {
+				int size = Math.min(batchSize, maxEvaluations - evaluations);
+				List<Long> batch = evaluations < initialPoints
+						? getRandomPoints(grid, evaluated, Math.min(size, initialPoints - evaluations), random)
+						: getNextPoints(grid, evaluated, points, states, size, random);
+				if (batch.isEmpty()) {
+					break;
+				}
+				List<State> results = evaluate(ts, grid, batch, period, workers, executor);
+				for (int j = 0; j < batch.size(); j++) {
+					long index = batch.get(j);
+					State state = results.get(j);
+					LOG.info("{}", state);
+					evaluated.add(index);
+					points.add(scale(grid, grid.getValues(index)));
+					states.add(state);
+					evaluations++;
+					if (isBetter(state, maxResult)) {
+						maxResult = state;
+						LOG.info("*** New maximum after {} evaluations -> {}", evaluations,
+								maxResult.result().getDouble(optimizationParameter));
+					}
+				}
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+
+		ts.getParameters().input().setParameters(maxResult.getInput().getParameters());
+		return maxResult;
+	}
+
+	/**
+	 * Evaluates the grid points concurrently if possible
+	 *
+	 * @return the results in the sequence of the indexes
+	 */
+	protected List<State> evaluate(IOptimizableTradingStrategy ts, ParameterGrid grid, List<Long> indexes,
+			DateRange period, FitnessWorkers workers, ExecutorService executor) {
+		List<State> result = new ArrayList();
+		if (executor == null || indexes.size() <= 1) {
+			for (long index : indexes) {
+				grid.apply(index, ts.getParameters().input());
+				ts.reset();
+				result.add(fitness.getFitness(ts, period));
+			}
+			return result;
+		}
+		try {
+			List<Future<State>> futures = new ArrayList();
+			for (long index : indexes) {
+				futures.add(executor.submit(() -> workers.getFitness(p -> grid.apply(index, p), period)));
+			}
+			for (Future<State> future : futures) {
+				result.add(future.get());
+			}
+			return result;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Random points which have not been evaluated yet
+	 */
+	protected List<Long> getRandomPoints(ParameterGrid grid, Set<Long> evaluated, int size, Random random) {
+		List<Long> result = new ArrayList();
+		for (long index : getCandidates(grid, evaluated, random)) {
+			if (result.size() >= size) {
+				break;
+			}
+			result.add(index);
+		}
+		return result;
+	}
+
+	/**
+	 * Selects the points with the highest expected improvement
+	 */
+	protected List<Long> getNextPoints(ParameterGrid grid, Set<Long> evaluated, List<double[]> points,
+			List<State> states, int size, Random random) {
+		List<Long> candidateIndexes = getCandidates(grid, evaluated, random);
+		List<double[]> candidatePoints = new ArrayList();
+		for (long index : candidateIndexes) {
+			candidatePoints.add(scale(grid, grid.getValues(index)));
+		}
+
+		List<double[]> x = new ArrayList(points);
+		List<Double> y = getValues(states);
+		List<Long> result = new ArrayList();
+		while (result.size() < size && !candidateIndexes.isEmpty()) {
+			GaussianProcess gp = new GaussianProcess(x, y);
+			double best = y.stream().mapToDouble(v -> v).max().getAsDouble();
+			int bestCandidate = 0;
+			double maxImprovement = Double.NEGATIVE_INFINITY;
+			for (int j = 0; j < candidatePoints.size(); j++) {
+				double improvement = gp.getExpectedImprovement(candidatePoints.get(j), best);
+				if (improvement > maxImprovement) {
+					maxImprovement = improvement;
+					bestCandidate = j;
+				}
+			}
+			double[] point = candidatePoints.remove(bestCandidate);
+			result.add(candidateIndexes.remove(bestCandidate));
+			// we assume that the selected point gives the predicted result
+			x.add(point);
+			y.add(gp.getMean(point));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all grid points which have not been evaluated or a random sample
+	 * if the grid is too big
+	 */
+	protected List<Long> getCandidates(ParameterGrid grid, Set<Long> evaluated, Random random) {
+		List<Long> result = new ArrayList();
+		if (grid.size() - evaluated.size() <= candidates) {
+			for (long index = 0; index < grid.size(); index++) {
+				if (!evaluated.contains(index)) {
+					result.add(index);
+				}
+			}
+			// random sequence
+			for (int j = result.size() - 1; j > 0; j--) {
+				int k = random.nextInt(j + 1);
+				Long tmp = result.get(j);
+				result.set(j, result.get(k));
+				result.set(k, tmp);
+			}
+		} else {
+			Set<Long> selected = new HashSet();
+			while (result.size() < candidates) {
+				long index = (long) (random.nextDouble() * grid.size());
+				if (!evaluated.contains(index) && selected.add(index)) {
+					result.add(index);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Standardized results. Pruned and undefined results get the worst value.
+	 */
+	protected List<Double> getValues(List<State> states) {
+		double min = Double.POSITIVE_INFINITY;
+		for (State state : states) {
+			double value = state.result().getDouble(optimizationParameter);
+			if (!state.isPruned() && !Double.isNaN(value)) {
+				min = Math.min(min, value);
+			}
+		}
+		List<Double> values = new ArrayList();
+		for (State state : states) {
+			double value = state.result().getDouble(optimizationParameter);
+			values.add(state.isPruned() || Double.isNaN(value) ? min : value);
+		}
+		if (Double.isInfinite(min)) {
+			values.replaceAll(v -> 0.0);
+		}
+		double mean = values.stream().mapToDouble(v -> v).average().orElse(0.0);
+		double variance = values.stream().mapToDouble(v -> (v - mean) * (v - mean)).average().orElse(0.0);
+		double std = variance > 0.0 ? Math.sqrt(variance) : 1.0;
+		values.replaceAll(v -> (v - mean) / std);
+		return values;
+	}
+
+	/**
+	 * Compares the results: pruned results are only used if we do not have
+	 * anything better and undefined values are the worst.
+	 */
+	protected boolean isBetter(State state, State max) {
+		if (max == null) {
+			return true;
+		}
+		if (state.isPruned() || max.isPruned()) {
+			return max.isPruned() && !state.isPruned();
+		}
+		double value = state.result().getDouble(optimizationParameter);
+		double maxValue = max.result().getDouble(optimizationParameter);
+		return value > maxValue || (Double.isNaN(maxValue) && !Double.isNaN(value));
+	}
+
+	protected double[] scale(ParameterGrid grid, Parameters<InputParameterName> parameters) {
+		double[] values = new double[grid.getNames().size()];
+		for (int j = 0; j < values.length; j++) {
+			values[j] = parameters.getDouble(grid.getNames().get(j));
+		}
+		return scale(grid, values);
+	}
+
+	/**
+	 * Scales the parameter values to the range 0 to 1
+	 */
+	protected double[] scale(ParameterGrid grid, double[] values) {
+		double[] result = new double[values.length];
+		for (int j = 0; j < values.length; j++) {
+			double min = grid.getMin(j);
+			double range = grid.getMax(j) - min;
+			result[j] = range > 0.0 ? (values[j] - min) / range : 0.0;
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the increment like in the BruteForceOptimizer
+	 *
+	 * @param s
+	 * @return
+	 */
+	protected double getStep(ParameterValue s) {
+		double result = 1.0 / Math.pow(10, s.decimals());
+		if (this.getMaxNumberOfSteps() != null) {
+			result = Double.max(result, (s.getRange().getMax().doubleValue() - s.getRange().getMin().doubleValue())
+					/ maxNumberOfSteps.doubleValue());
+		}
+		return result;
+	}
+
+	public Integer getMaxNumberOfSteps() {
+		return maxNumberOfSteps;
+	}
+
+	/**
+	 * Limits the number of steps for each parameter
+	 *
+	 * @param maxNumberOfSteps
+	 */
+	public void setMaxNumberOfSteps(Integer maxNumberOfSteps) {
+		this.maxNumberOfSteps = maxNumberOfSteps;
+	}
+
+	public int getMaxEvaluations() {
+		return maxEvaluations;
+	}
+
+	/**
+	 * Defines the total number of fitness evaluations
+	 *
+	 * @param maxEvaluations
+	 */
+	public void setMaxEvaluations(int maxEvaluations) {
+		this.maxEvaluations = maxEvaluations;
+	}
+
+	public int getInitialPoints() {
+		return initialPoints;
+	}
+
+	/**
+	 * Defines the number of evaluations (including the standard parameters)
+	 * with random parameters before we use the surrogate model
+	 *
+	 * @param initialPoints
+	 */
+	public void setInitialPoints(int initialPoints) {
+		this.initialPoints = initialPoints;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Defines the number of points which are proposed and evaluated together
+	 *
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public int getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Defines the maximum number of grid points for which we determine the
+	 * expected improvement
+	 *
+	 * @param candidates
+	 */
+	public void setCandidates(int candidates) {
+		this.candidates = candidates;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the number of threads. With 1 the batches are evaluated
+	 * sequentially.
+	 *
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Number of fitness evaluations of the last optimization (including the
+	 * standard parameters)
+	 *
+	 * @return
+	 */
+	public int getNumberOfEvaluations() {
+		return evaluations;
+	}
+
+	@Override
+	public IFitness getFitness() {
+		return this.fitness;
+	}
+
+	@Override
+	public KPI getOptimizationParameter() {
+		return optimizationParameter;
+	}
+
+	/**
+	 * Gaussian process regression with a squared exponential kernel. The length
+	 * scale is selected by the maximum of the log marginal likelihood.
+	 */
+	static class GaussianProcess {
+		private static final NormalDistribution normal = new NormalDistribution();
+		private List<double[]> x;
+		private double lengthScale;
+		private DecompositionSolver solver;
+		private RealVector alpha;
+
+		GaussianProcess(List<double[]> x, List<Double> y) {
+			this.x = new ArrayList(x);
+			RealVector values = new ArrayRealVector(y.stream().mapToDouble(v -> v).toArray());
+			double maxLikelihood = Double.NEGATIVE_INFINITY;
+			for (double scale : LENGTH_SCALES) {
+				try {
+					CholeskyDecomposition cholesky = new CholeskyDecomposition(getCovariance(x, scale));
+					DecompositionSolver s = cholesky.getSolver();
+					RealVector a = s.solve(values);
+					double logDet = 0.0;
+					for (int j = 0; j < x.size(); j++) {
+						logDet += Math.log(cholesky.getL().getEntry(j, j));
+					}
+					double likelihood = -0.5 * values.dotProduct(a) - logDet;
+					if (likelihood > maxLikelihood) {
+						maxLikelihood = likelihood;
+						this.lengthScale = scale;
+						this.solver = s;
+						this.alpha = a;
+					}
+				} catch (RuntimeException ex) {
+					// the matrix is not positive definite
+				}
+			}
+		}
+
+		double getMean(double[] point) {
+			return alpha == null ? 0.0 : getCovariance(point).dotProduct(alpha);
+		}
+
+		double getVariance(double[] point) {
+			if (solver == null) {
+				return 1.0;
+			}
+			RealVector k = getCovariance(point);
+			return Math.max(0.0, 1.0 + NOISE - k.dotProduct(solver.solve(k)));
+		}
+
+		/**
+		 * Expected improvement over the indicated best value
+		 *
+		 * @param point
+		 * @param best
+		 * @return
+		 */
+		double getExpectedImprovement(double[] point, double best) {
+			double mean = getMean(point);
+			double sigma = Math.sqrt(getVariance(point));
+			if (sigma <= 0.0) {
+				return Math.max(0.0, mean - best);
+			}
+			double z = (mean - best) / sigma;
+			return (mean - best) * normal.cumulativeProbability(z) + sigma * normal.density(z);
+		}
+
+		private RealVector getCovariance(double[] point) {
+			RealVector result = new ArrayRealVector(x.size());
+			for (int j = 0; j < x.size(); j++) {
+				result.setEntry(j, kernel(point, x.get(j), lengthScale));
+			}
+			return result;
+		}
+
+		private static RealMatrix getCovariance(List<double[]> x, double scale) {
+			RealMatrix result = new Array2DRowRealMatrix(x.size(), x.size());
+			for (int i = 0; i < x.size(); i++) {
+				for (int j = 0; j < x.size(); j++) {
+					result.setEntry(i, j, kernel(x.get(i), x.get(j), scale) + (i == j ? NOISE : 0.0));
+				}
+			}
+			return result;
+		}
+
+		private static double kernel(double[] a, double[] b, double scale) {
+			double sum = 0.0;
+			for (int j = 0; j < a.length; j++) {
+				double d = a[j] - b[j];
+				sum += d * d;
+			}
+			return Math.exp(-0.5 * sum / (scale * scale));
+		}
+	}
+
+}
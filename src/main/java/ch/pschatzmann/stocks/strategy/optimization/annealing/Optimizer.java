@@ -1,31 +1,64 @@
 package ch.pschatzmann.stocks.strategy.optimization.annealing;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Optimizer implements Serializable {
 	/**
-	 * 
+	 *
 	 */
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOG = LoggerFactory.getLogger(Optimizer.class);
 	private State state;
 	private State optState;
 	private double optResult = Double.MIN_VALUE;
+	private double temperature = 100.0;
+	private Random random;
+	private List<Double> trace = new ArrayList();
 
 	public Optimizer(State initState) {
+		this(initState, new Random(), 100.0);
+	}
+
+	/**
+	 * Constructor with the random number generator which is used for the
+	 * acceptance and the start temperature
+	 *
+	 * @param initState
+	 * @param random
+	 * @param temperature
+	 */
+	public Optimizer(State initState, Random random, double temperature) {
 		// get initial state and the related result
 		state = initState;
 		optResult = state.result();
 		optState = (State) state.clone();
+		this.random = random;
+		this.temperature = temperature;
 	}
 
 	public State search(long iterations) {
-		
-		for (long i = 0; i < iterations; i++) {
-			double temp = (1.0 - ((double) i / (double) iterations)) * 100.0;
+		return search(0, iterations, iterations);
+	}
+
+	/**
+	 * Executes the iterations from - to (exclusive) of a search with the
+	 * indicated total number of iterations. So the search can be interrupted
+	 * e.g. to exchange the states with other optimizers.
+	 *
+	 * @param from
+	 * @param to
+	 * @param iterations
+	 * @return
+	 */
+	public State search(long from, long to, long iterations) {
+		for (long i = from; i < to; i++) {
+			double temp = getTemperature(i, iterations);
 			state.step();
 			LOG.info("{}",state);
 			double nextResult = state.result();
@@ -37,18 +70,70 @@ public class Optimizer implements Serializable {
 				LOG.info("-->undo "+nextResult);
 				state.undo();
 			}
+			trace.add(optResult);
 		}
 		return optState;
 	}
 
+	/**
+	 * The temperature is decreasing linearly to 0
+	 *
+	 * @param i
+	 * @param iterations
+	 * @return
+	 */
+	public double getTemperature(long i, long iterations) {
+		return (1.0 - ((double) i / (double) iterations)) * temperature;
+	}
+
 	boolean accept(double current, double proposal, double temperature) {
 		double prob;
 		if (proposal > current)
 			return true;
 		if (temperature == 0.0)
 			return false;
-		prob = Math.exp(-(proposal - current) / temperature);
-		return Math.random() < prob;
+		prob = Math.exp((proposal - current) / temperature);
+		return random.nextDouble() < prob;
+	}
+
+	/**
+	 * Exchanges the actual states with the other optimizer. The temperatures
+	 * are not changed.
+	 *
+	 * @param other
+	 */
+	public void exchange(Optimizer other) {
+		State tmpState = state;
+		State tmpOptState = optState;
+		double tmpOptResult = optResult;
+		state = other.state;
+		optState = other.optState;
+		optResult = other.optResult;
+		other.state = tmpState;
+		other.optState = tmpOptState;
+		other.optResult = tmpOptResult;
+	}
+
+	/**
+	 * Result of the accepted state
+	 *
+	 * @return
+	 */
+	public double getResult() {
+		return optResult;
+	}
+
+	public State getState() {
+		return optState;
+	}
+
+	/**
+	 * Results of the accepted states after each iteration
+	 *
+	 * @return
+	 */
+	public List<Double> getTrace() {
+		return trace;
 	}
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package ch.pschatzmann.stocks.strategy.optimization.genetics;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import ch.pschatzmann.stocks.strategy.optimization.GeneticOptimizer;
 import ch.pschatzmann.stocks.utils.Range;
@@ -18,17 +19,33 @@ public class Algorithm implements Serializable {
 	private Range[] geneTemplate;
 	private String names[];
 	private GeneticOptimizer fitnessCalc;
+	private Random random;
 
 	/* Public methods */
 	public Algorithm(String names[], Range geneTemplate[], GeneticOptimizer optimizer) {
+		this(names, geneTemplate, optimizer, new Random());
+	}
+
+	/**
+	 * Constructor with the random number generator which is used for the
+	 * selection, crossover and mutation. With the same seed the evolution is
+	 * reproducible.
+	 * 
+	 * @param names
+	 * @param geneTemplate
+	 * @param optimizer
+	 * @param random
+	 */
+	public Algorithm(String names[], Range geneTemplate[], GeneticOptimizer optimizer, Random random) {
 		this.geneTemplate = geneTemplate;
 		this.fitnessCalc = optimizer;
 		this.names = names;
+		this.random = random;
 	}
 
 	// Evolve a population
 	public Population evolvePopulation(Population pop) {
-		Population newPopulation = new Population(pop.size(), names, this.geneTemplate, false, fitnessCalc);
+		Population newPopulation = new Population(pop.size(), names, this.geneTemplate, false, fitnessCalc, random);
 
 		// Keep our best individual
 		if (elitism) {
@@ -65,7 +82,7 @@ public class Algorithm implements Serializable {
 		// Loop through genes
 		for (int i = 0; i < indiv1.size(); i++) {
 			// Crossover
-			if (Math.random() <= uniformRate) {
+			if (random.nextDouble() <= uniformRate) {
 				newSol.setGene(i, indiv1.getGene(i));
 			} else {
 				newSol.setGene(i, indiv2.getGene(i));
@@ -75,15 +92,15 @@ public class Algorithm implements Serializable {
 	}
 
 	// Mutate an individual
-	private static void mutate(Individual indiv) {
+	private void mutate(Individual indiv) {
 		// Loop through genes
 		for (int i = 0; i < indiv.size(); i++) {
-			if (Math.random() <= mutationRate) {
+			if (random.nextDouble() <= mutationRate) {
 				// Create random gene
 				Gene randomGene = indiv.getGene(i);
 				Range r = randomGene.getRange();
 				String name = randomGene.getName();
-				Gene gene = new Gene(name, r);
+				Gene gene = new Gene(name, r, random);
 				indiv.setGene(i, gene);
 			}
 		}
@@ -92,10 +109,10 @@ public class Algorithm implements Serializable {
 	// Select individuals for crossover
 	private Individual tournamentSelection(Population pop) {
 		// Create a tournament population
-		Population tournament = new Population(tournamentSize, names, geneTemplate, false, fitnessCalc);
+		Population tournament = new Population(tournamentSize, names, geneTemplate, false, fitnessCalc, random);
 		// For each place in the tournament get a random individual
 		for (int i = 0; i < tournamentSize; i++) {
-			int randomId = (int) (Math.random() * pop.size());
+			int randomId = (int) (random.nextDouble() * pop.size());
 			tournament.saveIndividual(i, pop.getIndividual(randomId));
 		}
 		// Get the fittest
@@ -1,6 +1,7 @@
 package ch.pschatzmann.stocks.strategy.optimization.genetics;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import ch.pschatzmann.stocks.utils.Range;
 
@@ -20,9 +21,13 @@ public class Gene implements Serializable {
 	}
 
 	Gene(String name, Range<Number> range) {
+		this(name, range, new Random());
+	}
+
+	Gene(String name, Range<Number> range, Random random) {
 		this.range = range;
 		this.name = name;
-		this.value = random(range.getMin().doubleValue(), range.getMax().doubleValue());
+		this.value = random(random, range.getMin().doubleValue(), range.getMax().doubleValue());
 	}
 
 
@@ -39,11 +44,24 @@ public class Gene implements Serializable {
 	}
 
 	public static double random(double min, double max) {
-		double r = Math.random();
+		return random(new Random(), min, max);
+	}
+
+	/**
+	 * Determines a random value between min and max with the indicated random
+	 * number generator
+	 * 
+	 * @param random
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public static double random(Random random, double min, double max) {
+		double r = random.nextDouble();
 		if (r < 0.5) {
-			return ((1 - Math.random()) * (max - min) + min);
+			return ((1 - random.nextDouble()) * (max - min) + min);
 		}
-		return (Math.random() * (max - min) + min);
+		return (random.nextDouble() * (max - min) + min);
 	}
 	
 	@Override
@@ -1,6 +1,7 @@
 package ch.pschatzmann.stocks.strategy.optimization.genetics;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import ch.pschatzmann.stocks.utils.Range;
 
@@ -20,8 +21,13 @@ public class Individual implements Serializable {
 
 	// Create a random individual
 	public void generateIndividual(String[] name, Range[] geneTemplate) {
+		generateIndividual(name, geneTemplate, new Random());
+	}
+
+	// Create a random individual with the indicated random number generator
+	public void generateIndividual(String[] name, Range[] geneTemplate, Random random) {
 		for (int i = 0; i < size(); i++) {
-			Gene gene = new Gene(name[i],geneTemplate[i]);
+			Gene gene = new Gene(name[i],geneTemplate[i], random);
 			genes[i] = gene;
 		}
 	}
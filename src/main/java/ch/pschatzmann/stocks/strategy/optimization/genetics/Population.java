@@ -1,6 +1,7 @@
 package ch.pschatzmann.stocks.strategy.optimization.genetics;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import ch.pschatzmann.stocks.strategy.optimization.GeneticOptimizer;
 import ch.pschatzmann.stocks.utils.Range;
@@ -19,6 +20,12 @@ public class Population implements Serializable {
 	// Create a population
 	public Population(int populationSize, String[] names, Range[] geneTemplate, boolean initialise,
 			GeneticOptimizer optimizer) {
+		this(populationSize, names, geneTemplate, initialise, optimizer, new Random());
+	}
+
+	// Create a population with the indicated random number generator
+	public Population(int populationSize, String[] names, Range[] geneTemplate, boolean initialise,
+			GeneticOptimizer optimizer, Random random) {
 		this.optimizer = optimizer;
 		individuals = new Individual[populationSize];
 		// Initialise population
@@ -26,7 +33,7 @@ public class Population implements Serializable {
 			// Loop and create individuals
 			for (int i = 0; i < size(); i++) {
 				Individual newIndividual = new Individual(geneTemplate.length);
-				newIndividual.generateIndividual(names, geneTemplate);
+				newIndividual.generateIndividual(names, geneTemplate, random);
 				saveIndividual(i, newIndividual);
 			}
 		}
@@ -54,7 +61,7 @@ public class Population implements Serializable {
 			Individual i = getIndividual(j);
 			if (i != null) {
 				double value = optimizer.getFitness(i);
-				if (value > max) {
+				if (result == null || value > max) {
 					result = i;
 					max = value;
 				}
@@ -4,7 +4,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +16,7 @@ import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.IStockID;
 import ch.pschatzmann.stocks.errors.UniverseException;
 import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.StockDataLoader;
 import ch.pschatzmann.stocks.parameters.StateComparator;
 
 /**
@@ -64,8 +67,9 @@ public class StockSelector implements Serializable {
 			throws UniverseException {
 		IReader readerX = reader !=null ? reader : Context.getDefaultReader();
 		TopNSet<SelectionState> top = setupTopN(number);
-		list.stream().filter(id -> !processed.contains(id)).map(id -> Context.getStockData(id, readerX))
-				.forEach(sd -> process(top, sd));
+		List<IStockID> open = list.stream().filter(id -> !processed.contains(id)).collect(Collectors.toList());
+		// the data is loaded in parallel and processed in the sequence of the list
+		new StockDataLoader(readerX).stream(open, true).forEach(sd -> process(top, sd));
 
 		saveRestartable(top);
 		return new SelectionResult(top);
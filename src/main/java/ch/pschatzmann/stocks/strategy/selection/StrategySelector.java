@@ -13,15 +13,18 @@ import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
 import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.MarketSnapshot;
 import ch.pschatzmann.stocks.accounting.Account;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.IBasicAccount;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.execution.BacktestRunner;
+import ch.pschatzmann.stocks.execution.BacktestScenario;
 import ch.pschatzmann.stocks.parameters.State;
 import ch.pschatzmann.stocks.parameters.StateComparator;
 import ch.pschatzmann.stocks.strategy.ITradingStrategy;
 import ch.pschatzmann.stocks.strategy.TradingStrategyFactory;
-import ch.pschatzmann.stocks.strategy.optimization.SimulatedFitness;
+import ch.pschatzmann.stocks.strategy.optimization.Fitness;
 
 /*
  *  We determine the best strategy for the indicated stock. We use the evaluation of the non optimized
@@ -62,22 +65,40 @@ public class StrategySelector implements IStategySelector, Serializable {
 
 	public Stream<SelectionState> evaluate(IStockData stockData) {
 		List<SelectionState> result = new ArrayList();
-		for (String strategyName : strategies) {
-			try {
-				ITradingStrategy strategy = TradingStrategyFactory.create(strategyName, stockData);
-				if (stockData.getHistory().size() > 1) {
-					State state = new SimulatedFitness(account).getFitness(strategy, evaluationPeriod);
-					StrategySelector.updateAccount(account,stockData);
-					SelectionState resultState = new SelectionState(state, stockData.getStockID(), strategyName, false);
-					LOG.info(this.getValue(resultState) +" <- "+resultState);
-					if (predicate==null || predicate.test(resultState)) {
-						result.add(resultState);
-					} else {
-						LOG.info("ignored because of predicate");
-					}
+		List<String> names = new ArrayList();
+		List<ITradingStrategy> tradingStrategies = new ArrayList();
+		List<BacktestScenario> scenarios = new ArrayList();
+		if (stockData.getHistory().size() > 1) {
+			// all strategies are evaluated on the same copy of the stock data
+			MarketSnapshot snapshot = new MarketSnapshot(stockData);
+			for (String strategyName : strategies) {
+				try {
+					ITradingStrategy strategy = TradingStrategyFactory.create(strategyName,
+							snapshot.getStockData(stockData.getStockID()));
+					names.add(strategyName);
+					tradingStrategies.add(strategy);
+					scenarios.add(new BacktestScenario(account, strategy, evaluationPeriod));
+				} catch (Exception ex) {
+					LOG.error("Error for " + stockData.getStockID() + "/" + strategyName + ": " + ex.getMessage(), ex);
 				}
-			} catch (Exception ex) {
-				LOG.error("Error for " + stockData.getStockID() + "/" + strategyName + ": " + ex.getMessage(), ex);
+			}
+			new BacktestRunner(snapshot).run(scenarios);
+			StrategySelector.updateAccount(account,stockData);
+		}
+
+		for (int j = 0; j < scenarios.size(); j++) {
+			BacktestScenario scenario = scenarios.get(j);
+			if (scenario.getResult() == null) {
+				LOG.error("Error for " + stockData.getStockID() + "/" + names.get(j) + ": " + scenario.getError());
+				continue;
+			}
+			State state = Fitness.getState(tradingStrategies.get(j), scenario.getResult());
+			SelectionState resultState = new SelectionState(state, stockData.getStockID(), names.get(j), false);
+			LOG.info(this.getValue(resultState) +" <- "+resultState);
+			if (predicate==null || predicate.test(resultState)) {
+				result.add(resultState);
+			} else {
+				LOG.info("ignored because of predicate");
 			}
 		}
 
@@ -0,0 +1,391 @@
+package ch.pschatzmann.stocks.ta4j.indicator;
+
+import java.util.Arrays;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+
+/**
+ * Calculation of the values of some ta4j indicators and rules for a whole
+ * series at once with primitive double arrays. The calculations are done in the
+ * same sequence as in ta4j with DoubleNum, so that we get exactly the same
+ * values and signals. NaN is used for undefined values (e.g. a division by 0)
+ * and all comparisons with NaN are false.
+ *
+ * @author pschatzmann
+ *
+ */
+public class VectorIndicators {
+
+	public static double[] close(BarSeries series) {
+		double[] result = new double[series.getBarCount()];
+		for (int j = 0; j < result.length; j++) {
+			result[j] = series.getBar(series.getBeginIndex() + j).getClosePrice().doubleValue();
+		}
+		return result;
+	}
+
+	public static double[] high(BarSeries series) {
+		double[] result = new double[series.getBarCount()];
+		for (int j = 0; j < result.length; j++) {
+			result[j] = series.getBar(series.getBeginIndex() + j).getHighPrice().doubleValue();
+		}
+		return result;
+	}
+
+	public static double[] low(BarSeries series) {
+		double[] result = new double[series.getBarCount()];
+		for (int j = 0; j < result.length; j++) {
+			result[j] = series.getBar(series.getBeginIndex() + j).getLowPrice().doubleValue();
+		}
+		return result;
+	}
+
+	/**
+	 * Typical price: (high + low + close) / 3
+	 *
+	 * @param series
+	 * @return
+	 */
+	public static double[] typicalPrice(BarSeries series) {
+		double[] result = new double[series.getBarCount()];
+		for (int j = 0; j < result.length; j++) {
+			Bar bar = series.getBar(series.getBeginIndex() + j);
+			result[j] = (bar.getHighPrice().doubleValue() + bar.getLowPrice().doubleValue()
+					+ bar.getClosePrice().doubleValue()) / 3;
+		}
+		return result;
+	}
+
+	/**
+	 * Simple moving average (SMAIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] sma(double[] values, int barCount) {
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			double sum = 0.0;
+			for (int i = Math.max(0, index - barCount + 1); i <= index; i++) {
+				sum = sum + values[i];
+			}
+			result[index] = divide(sum, Math.min(barCount, index + 1));
+		}
+		return result;
+	}
+
+	/**
+	 * Exponential moving average (EMAIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] ema(double[] values, int barCount) {
+		return ema(values, 2.0 / (barCount + 1));
+	}
+
+	/**
+	 * Modified moving average (MMAIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] mma(double[] values, int barCount) {
+		return ema(values, 1.0 / barCount);
+	}
+
+	private static double[] ema(double[] values, double multiplier) {
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			if (index == 0) {
+				result[index] = values[index];
+			} else {
+				double prev = result[index - 1];
+				result[index] = ((values[index] - prev) * multiplier) + prev;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Relative strength index (RSIIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] rsi(double[] values, int barCount) {
+		double[] gain = new double[values.length];
+		double[] loss = new double[values.length];
+		for (int index = 1; index < values.length; index++) {
+			double actual = values[index];
+			double prior = values[index - 1];
+			gain[index] = actual > prior ? actual - prior : 0.0;
+			loss[index] = actual < prior ? prior - actual : 0.0;
+		}
+		double[] averageGain = mma(gain, barCount);
+		double[] averageLoss = mma(loss, barCount);
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			if (averageLoss[index] == 0.0) {
+				result[index] = averageGain[index] == 0.0 ? 0.0 : 100.0;
+			} else {
+				double relativeStrength = averageGain[index] / averageLoss[index];
+				result[index] = 100.0 - divide(100.0, 1.0 + relativeStrength);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Moving average convergence divergence (MACDIndicator)
+	 *
+	 * @param values
+	 * @param shortBarCount
+	 * @param longBarCount
+	 * @return
+	 */
+	public static double[] macd(double[] values, int shortBarCount, int longBarCount) {
+		double[] shortEma = ema(values, shortBarCount);
+		double[] longEma = ema(values, longBarCount);
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			result[index] = shortEma[index] - longEma[index];
+		}
+		return result;
+	}
+
+	/**
+	 * Highest value of the last barCount values (HighestValueIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] highest(double[] values, int barCount) {
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			double highest = values[index];
+			for (int i = index - 1; i >= Math.max(0, index - barCount + 1); i--) {
+				if (isLessThan(highest, values[i])) {
+					highest = values[i];
+				}
+			}
+			result[index] = highest;
+		}
+		return result;
+	}
+
+	/**
+	 * Lowest value of the last barCount values (LowestValueIndicator)
+	 *
+	 * @param values
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] lowest(double[] values, int barCount) {
+		double[] result = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			double lowest = values[index];
+			for (int i = index - 1; i >= Math.max(0, index - barCount + 1); i--) {
+				if (isGreaterThan(lowest, values[i])) {
+					lowest = values[i];
+				}
+			}
+			result[index] = lowest;
+		}
+		return result;
+	}
+
+	/**
+	 * Stochastic oscillator K (StochasticOscillatorKIndicator)
+	 *
+	 * @param series
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] stochasticOscillatorK(BarSeries series, int barCount) {
+		double[] close = close(series);
+		double[] highestHigh = highest(high(series), barCount);
+		double[] lowestLow = lowest(low(series), barCount);
+		double[] result = new double[close.length];
+		for (int index = 0; index < close.length; index++) {
+			double range = highestHigh[index] - lowestLow[index];
+			result[index] = divide(close[index] - lowestLow[index], range) * 100;
+		}
+		return result;
+	}
+
+	/**
+	 * Commodity channel index (CCIIndicator)
+	 *
+	 * @param series
+	 * @param barCount
+	 * @return
+	 */
+	public static double[] cci(BarSeries series, int barCount) {
+		double[] typicalPrice = typicalPrice(series);
+		double[] sma = sma(typicalPrice, barCount);
+		double[] result = new double[typicalPrice.length];
+		for (int index = 0; index < typicalPrice.length; index++) {
+			// mean deviation
+			double absoluteDeviations = 0.0;
+			int start = Math.max(0, index - barCount + 1);
+			for (int i = start; i <= index; i++) {
+				absoluteDeviations = absoluteDeviations + Math.abs(typicalPrice[i] - sma[index]);
+			}
+			double meanDeviation = divide(absoluteDeviations, index - start + 1);
+			if (meanDeviation == 0.0) {
+				result[index] = 0.0;
+			} else {
+				result[index] = divide(typicalPrice[index] - sma[index], meanDeviation * 0.015);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Array with the same value for all indexes (ConstantIndicator)
+	 *
+	 * @param value
+	 * @param size
+	 * @return
+	 */
+	public static double[] constant(double value, int size) {
+		double[] result = new double[size];
+		Arrays.fill(result, value);
+		return result;
+	}
+
+	/**
+	 * The first values are over the second values (OverIndicatorRule)
+	 *
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static boolean[] over(double[] first, double[] second) {
+		boolean[] result = new boolean[first.length];
+		for (int index = 0; index < result.length; index++) {
+			result[index] = isGreaterThan(first[index], second[index]);
+		}
+		return result;
+	}
+
+	/**
+	 * The first values are under the second values (UnderIndicatorRule)
+	 *
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static boolean[] under(double[] first, double[] second) {
+		boolean[] result = new boolean[first.length];
+		for (int index = 0; index < result.length; index++) {
+			result[index] = isLessThan(first[index], second[index]);
+		}
+		return result;
+	}
+
+	/**
+	 * The first values cross the second values downwards
+	 * (CrossedDownIndicatorRule)
+	 *
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static boolean[] crossedDown(double[] first, double[] second) {
+		return cross(first, second);
+	}
+
+	/**
+	 * The first values cross the second values upwards (CrossedUpIndicatorRule)
+	 *
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static boolean[] crossedUp(double[] first, double[] second) {
+		return cross(second, first);
+	}
+
+	/**
+	 * Same logic as the ta4j CrossIndicator: the up values were over the low
+	 * values and are now under the low values
+	 *
+	 * @param up
+	 * @param low
+	 * @return
+	 */
+	private static boolean[] cross(double[] up, double[] low) {
+		boolean[] result = new boolean[up.length];
+		for (int index = 0; index < result.length; index++) {
+			int i = index;
+			if (i == 0 || isGreaterThanOrEqual(up[i], low[i])) {
+				continue;
+			}
+			i--;
+			if (isGreaterThan(up[i], low[i])) {
+				result[index] = true;
+				continue;
+			}
+			while (i > 0 && up[i] == low[i]) {
+				i--;
+			}
+			result[index] = i != 0 && isGreaterThan(up[i], low[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Combines the rules with and
+	 *
+	 * @param rules
+	 * @return
+	 */
+	public static boolean[] and(boolean[]... rules) {
+		boolean[] result = rules[0].clone();
+		for (int j = 1; j < rules.length; j++) {
+			for (int index = 0; index < result.length; index++) {
+				result[index] = result[index] && rules[j][index];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The rule is not satisfied in the unstable period
+	 *
+	 * @param rule
+	 * @param unstablePeriod
+	 * @return
+	 */
+	public static boolean[] unstable(boolean[] rule, int unstablePeriod) {
+		boolean[] result = rule.clone();
+		Arrays.fill(result, 0, Math.min(Math.max(0, unstablePeriod), result.length), false);
+		return result;
+	}
+
+	// comparisons like DoubleNum
+	private static boolean isGreaterThan(double a, double b) {
+		return !Double.isNaN(a) && !Double.isNaN(b) && Double.compare(a, b) > 0;
+	}
+
+	private static boolean isGreaterThanOrEqual(double a, double b) {
+		return !Double.isNaN(a) && !Double.isNaN(b) && Double.compare(a, b) >= 0;
+	}
+
+	private static boolean isLessThan(double a, double b) {
+		return !Double.isNaN(a) && !Double.isNaN(b) && Double.compare(a, b) < 0;
+	}
+
+	private static double divide(double a, double b) {
+		return b == 0.0 || Double.isNaN(b) ? Double.NaN : a / b;
+	}
+
+}
@@ -39,7 +39,10 @@ public class Range<N extends Number> implements Serializable {
 	}
 
 	public Double random() {
-		Random r = new Random();
+		return random(new Random());
+	}
+
+	public Double random(Random r) {
 		double randomValue = min.doubleValue() + (max.doubleValue() - min.doubleValue()) * r.nextDouble();
 		return randomValue;
 	}
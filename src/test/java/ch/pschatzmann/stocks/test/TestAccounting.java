@@ -1,5 +1,10 @@
 package ch.pschatzmann.stocks.test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,9 +13,12 @@ import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.accounting.Account;
 import ch.pschatzmann.stocks.accounting.BasicAccount;
+import ch.pschatzmann.stocks.accounting.Ledger;
+import ch.pschatzmann.stocks.accounting.ManagedAccount;
 import ch.pschatzmann.stocks.accounting.Portfolio;
 import ch.pschatzmann.stocks.accounting.PortfolioStockInfo;
 import ch.pschatzmann.stocks.accounting.Transaction;
+import ch.pschatzmann.stocks.accounting.TransactionJournal;
 import ch.pschatzmann.stocks.errors.SystemException;
 import ch.pschatzmann.stocks.execution.ITrader;
 import ch.pschatzmann.stocks.execution.PaperTrader;
@@ -326,4 +334,131 @@ public class TestAccounting {
 	}
 
 
+	@Test
+	public void testLedger() throws Exception {
+		boolean check = Ledger.isConsistencyCheck();
+		Ledger.setConsistencyCheck(true);
+		try {
+			BasicAccount account = new BasicAccount("Simulation", "USD", 10000.00, Context.date("2000-01-01"), new PerTradeFees(10.0));
+			Account ta = new Account(account);
+			StockID apple = new StockID("TEST-AAPL", "NASDAQ");
+			StockID ibm = new StockID("TEST-IBM", "NYSE");
+
+			Transaction buy = new Transaction(Context.date("2010-01-01"), apple, 100);
+			account.addTransaction(buy);
+			// planned orders have no impact on the cash
+			Assert.assertEquals(10000.00, ta.getCash(), 0.001);
+			Assert.assertEquals(100L, ta.getQuantity(apple).longValue());
+
+			buy.fill(Context.date("2010-01-02"), 100, 20.0, 10.0);
+			Assert.assertEquals(10000.00 - 2000.0 - 10.0, ta.getCash(), 0.001);
+			Assert.assertEquals(2000.0, ta.getLedger().getCostBasis(apple), 0.001);
+
+			Transaction buy1 = new Transaction(Context.date("2010-01-03"), apple, 100);
+			account.addTransaction(buy1);
+			buy1.fill(Context.date("2010-01-03"), 100, 30.0, 10.0);
+			Transaction sell = new Transaction(Context.date("2010-01-05"), apple, -50);
+			account.addTransaction(sell);
+			sell.fill(Context.date("2010-01-05"), -50, 40.0, 10.0);
+			Assert.assertEquals(150L, ta.getQuantity(apple).longValue());
+			Assert.assertEquals(30.0, ta.getTotalFees(), 0.001);
+			// average price 25
+			Assert.assertEquals(750.0, ta.getLedger().getRealizedGains(apple), 0.001);
+			Assert.assertEquals(3750.0, ta.getLedger().getCostBasis(apple), 0.001);
+			// the account reads the same values from the ledger as from the portfolio
+			Assert.assertEquals(750.0, ta.getRealizedGain(), 0.001);
+			Assert.assertEquals(ta.getPortfolio().getRealizedGains(), ta.getRealizedGain(), 0.001);
+			Assert.assertEquals(3750.0, ta.getPurchasedValue(), 0.001);
+			Assert.assertEquals(ta.getPortfolio().getPurchasedValue(), ta.getPurchasedValue(), 0.001);
+
+			// a fill before the last considered transaction
+			Transaction ibmBuy = new Transaction(Context.date("2010-01-01"), ibm, 10);
+			account.addTransaction(ibmBuy);
+			ibmBuy.fill(Context.date("2010-01-01"), 10, 100.0, 10.0);
+			Assert.assertEquals(1000.0, ta.getLedger().getCostBasis(ibm), 0.001);
+			Assert.assertEquals(Arrays.asList(apple, ibm), ta.getStockIDs());
+
+			// cancelled orders do not count
+			Transaction cancelled = new Transaction(Context.date("2010-01-06"), ibm, 5);
+			account.addTransaction(cancelled);
+			Assert.assertEquals(15L, ta.getQuantity(ibm).longValue());
+			cancelled.cancel();
+			Assert.assertEquals(10L, ta.getQuantity(ibm).longValue());
+			Assert.assertEquals(10000.00 - 2000 - 3000 + 2000 - 1000 - 40, ta.getCash(), 0.001);
+
+			// changes of the transaction list are detected
+			account.getTransactions().remove(cancelled);
+			Assert.assertEquals(10L, ta.getQuantity(ibm).longValue());
+			account.reset();
+			Assert.assertEquals(10000.00, ta.getCash(), 0.001);
+			Assert.assertEquals(0L, ta.getQuantity(apple).longValue());
+			Assert.assertTrue(ta.getStockIDs().isEmpty());
+		} finally {
+			Ledger.setConsistencyCheck(check);
+		}
+	}
+
+	@Test
+	public void testManagedAccountJournal() throws Exception {
+		File snapshot = new File("accounts", "TestJournal.json");
+		File journalFile = new File("accounts", "TestJournal.journal");
+		snapshot.delete();
+		journalFile.delete();
+		try {
+			StockID apple = new StockID("TEST-AAPL", "NASDAQ");
+			ManagedAccount account = new ManagedAccount("TestJournal", "USD", 10000.00, Context.date("2000-01-01"), new PerTradeFees(10.0));
+			account.save();
+			Assert.assertTrue(snapshot.exists());
+			Assert.assertEquals(0, new TransactionJournal(journalFile).size());
+			long snapshotSize = snapshot.length();
+
+			// changes are appended to the journal
+			Transaction buy = new Transaction(Context.date("2010-01-01"), apple, 100);
+			account.addTransaction(buy);
+			account.save();
+			buy.fill(Context.date("2010-01-02"), 100, 20.0, 10.0);
+			account.addTransaction(new Transaction(Context.date("2010-01-05"), apple, -50));
+			account.save();
+			Assert.assertEquals(snapshotSize, snapshot.length());
+			Assert.assertEquals(3, new TransactionJournal(journalFile).size());
+
+			ManagedAccount loaded = new ManagedAccount("TestJournal");
+			Assert.assertEquals(3, loaded.getTransactions().size());
+			Assert.assertEquals(Transaction.Status.Filled, loaded.getTransactions().get(1).getStatus());
+			Assert.assertEquals(account.getCash(), loaded.getCash(), 0.001);
+			Assert.assertEquals(50L, loaded.getQuantity(apple).longValue());
+
+			// an incomplete record is ignored
+			long journalSize = journalFile.length();
+			Files.write(journalFile.toPath(), "{\"stockID\"".getBytes(), StandardOpenOption.APPEND);
+			loaded = new ManagedAccount("TestJournal");
+			Assert.assertEquals(3, loaded.getTransactions().size());
+			Assert.assertEquals(journalSize, journalFile.length());
+
+			// an invalid complete record is skipped but the following records are kept
+			Files.write(journalFile.toPath(), "no record\n".getBytes(), StandardOpenOption.APPEND);
+			loaded.addTransaction(new Transaction(Context.date("2010-01-06"), apple, -10));
+			loaded.save();
+			loaded = new ManagedAccount("TestJournal");
+			Assert.assertEquals(4, loaded.getTransactions().size());
+			Assert.assertTrue(new String(Files.readAllBytes(journalFile.toPath())).contains("no record\n"));
+
+			// we do not append to an incomplete record
+			Files.write(journalFile.toPath(), "{\"stockID\"".getBytes(), StandardOpenOption.APPEND);
+			try (TransactionJournal journal = new TransactionJournal(journalFile)) {
+				journal.append(new Transaction(Context.date("2010-01-07"), apple, -10));
+			}
+			Assert.assertEquals(5, new TransactionJournal(journalFile).read().size());
+
+			// a reset creates a new snapshot
+			loaded.reset();
+			loaded.save();
+			Assert.assertEquals(0, new TransactionJournal(journalFile).size());
+			Assert.assertEquals(1, new ManagedAccount("TestJournal").getTransactions().size());
+		} finally {
+			snapshot.delete();
+			journalFile.delete();
+		}
+	}
+
 }
@@ -1,5 +1,12 @@
 package ch.pschatzmann.stocks.test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -9,11 +16,17 @@ import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.StockData;
+import ch.pschatzmann.stocks.StockColumns;
 import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.cache.ICache;
 import ch.pschatzmann.stocks.cache.JcsCache;
+import ch.pschatzmann.stocks.cache.MemoryCache;
 import ch.pschatzmann.stocks.cache.RedisCache;
+import ch.pschatzmann.stocks.cache.StockHistoryCodec;
+import ch.pschatzmann.stocks.download.MarketArchiveConverter;
+import ch.pschatzmann.stocks.input.BinaryFileReader;
 import ch.pschatzmann.stocks.input.DefaultReader;
 
 public class TestCache {
@@ -79,6 +92,75 @@ public class TestCache {
 		
 	}
 
+	@Test
+	public void testCodec() throws Exception {
+		File directory = Files.createTempDirectory("codec").toFile();
+		StockID apple = new StockID("AAPL", "NASDAQ");
+		MarketArchiveConverter.convert(apple, new File("./src/test/resources/NASDAQ/AAPL.csv"), directory);
+		IStockData sd = new StockData(apple, new BinaryFileReader(directory));
+		List<IStockRecord> records = new ArrayList(sd.getHistory());
+		Assert.assertTrue(records.size() > 100);
+
+		byte[] data = StockHistoryCodec.encode(records);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(records);
+		}
+		LOG.info("codec: {} bytes - serialization: {} bytes", data.length, bos.size());
+		Assert.assertTrue(data.length * 5 < bos.size());
+
+		List<IStockRecord> result = StockHistoryCodec.decode(data);
+		Assert.assertEquals(records.size(), result.size());
+		for (int j = 0; j < records.size(); j++) {
+			IStockRecord expected = records.get(j);
+			IStockRecord actual = result.get(j);
+			Assert.assertEquals(expected.getDate(), actual.getDate());
+			Assert.assertEquals(expected.getOpen().doubleValue(), actual.getOpen().doubleValue(), 0.0);
+			Assert.assertEquals(expected.getClosing().doubleValue(), actual.getClosing().doubleValue(), 0.0);
+			Assert.assertEquals(expected.getVolume().doubleValue(), actual.getVolume().doubleValue(), 0.0);
+			Assert.assertEquals(expected.getStockID(), actual.getStockID());
+		}
+	}
+
+	@Test
+	public void testMemoryCache() {
+		StockColumns columns = new StockColumns(id);
+		for (int j = 0; j < 100; j++) {
+			columns.add(17000 + j, j, j, j, j, j, 1.0);
+		}
+		// space for 2 entries
+		MemoryCache cache = new MemoryCache(12000);
+		Assert.assertNull(cache.get("a"));
+		cache.put("a", columns.asList());
+		cache.put("b", columns.asList());
+		Assert.assertEquals(100, cache.get("a").size());
+		Assert.assertEquals(100, cache.get("a").size());
+		Assert.assertEquals(100, cache.get("b").size());
+
+		// the new entry is less popular than the existing entries
+		cache.put("c", columns.asList());
+		Assert.assertEquals(1, cache.getRejections());
+		Assert.assertNull(cache.get("c"));
+
+		// after additional requests c replaces the least recently used entry
+		cache.get("c");
+		cache.get("c");
+		cache.get("c");
+		cache.put("c", columns.asList());
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNotNull(cache.get("c"));
+		Assert.assertNotNull(cache.get("b"));
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(5, cache.getHits());
+		Assert.assertEquals(5.0 / 11, cache.getHitRatio(), 0.0001);
+
+		// changes of the result are not visible in the cache
+		List<IStockRecord> result = cache.get("b");
+		result.add(result.get(0));
+		Assert.assertEquals(100, cache.get("b").size());
+	}
+
 	private void startTimer() {
 		time = System.currentTimeMillis();		
 	}
@@ -1,5 +1,7 @@
 package ch.pschatzmann.stocks.test;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,8 +18,11 @@ import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.accounting.IHistoricValue;
 import ch.pschatzmann.stocks.accounting.kpi.DrawDown;
 import ch.pschatzmann.stocks.accounting.kpi.DrawDownValue;
+import ch.pschatzmann.stocks.accounting.kpi.KPI;
+import ch.pschatzmann.stocks.accounting.kpi.KPIAccumulator;
 import ch.pschatzmann.stocks.accounting.kpi.Return;
 import ch.pschatzmann.stocks.accounting.kpi.SharpeRatio;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
 import ch.pschatzmann.stocks.input.MarketArchiveHttpReader;
 import ch.pschatzmann.stocks.utils.Calculations;
 
@@ -127,6 +132,46 @@ public class TestCalculation {
 		Assert.assertEquals(0.588335, sharpRatio, delta);
 	}
 
+	@Test
+	public void testKPIAccumulator() throws Exception {
+		StockData sd = new StockData(new StockID("AAPL", "NASDAQ"),
+				new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+		List<IHistoricValue> prices = sd.toHistoryValuesClosingPrice().collect(Collectors.toList());
+		KPIAccumulator kpis = new KPIAccumulator(2.0);
+		for (int j = 0; j < prices.size(); j++) {
+			kpis.add(prices.get(j));
+			// the KPIs are available while we add the values
+			if (j == prices.size() / 2) {
+				List<IHistoricValue> half = new ArrayList(prices.subList(0, j + 1));
+				Assert.assertEquals(new Return(half).getPercent(), kpis.getReturnPercent(), delta);
+				Assert.assertEquals(new DrawDown(half).getMaxDrowDownPercent(), kpis.getMaxDrawDownPercent(), delta);
+			}
+		}
+
+		Return r = new Return(new ArrayList(prices));
+		Assert.assertEquals(r.getAbsolute(), kpis.getAbsoluteReturn(), delta);
+		Assert.assertEquals(r.getPercent(), kpis.getReturnPercent(), delta);
+		Assert.assertEquals(r.getPercentAnnulized(), kpis.getReturnPercentAnnulized(), delta);
+		Assert.assertEquals(r.getAvgOfAboluteProfit(), kpis.getAbsoluteReturnAveragePerDay(), delta);
+		Assert.assertEquals(r.getStdDevOfAbsolute(), kpis.getAbsoluteReturnStdDev(), delta);
+		Assert.assertEquals(r.getStdDevOfPercent(), kpis.getReturnPercentStdDev(), delta);
+		Assert.assertEquals(new SharpeRatio(new ArrayList(prices), 2.0).getValue(), kpis.getSharpeRatio(), delta);
+
+		DrawDownValue dv = new DrawDown(prices).getMaxDrowDown();
+		DrawDownValue dv1 = kpis.getMaxDrawDown();
+		Assert.assertEquals(dv.getPercent(), dv1.getPercent(), delta);
+		Assert.assertEquals(dv.getNumberOfDays(), dv1.getNumberOfDays());
+		Assert.assertEquals(dv.getRange().getStart(), dv1.getRange().getStart());
+		Assert.assertEquals(dv.getRange().getEnd(), dv1.getRange().getEnd());
+		Assert.assertEquals(dv.getValue(), kpis.getValue(KPI.MaxDrawDownAbsolute), delta);
+
+		try {
+			kpis.add(prices.get(0));
+			Assert.fail("The values must be sorted");
+		} catch (IllegalArgumentException ex) {
+		}
+	}
+
 	/**
 	 * Determine the AAPL stock data between 1980-12-12 - 2016-04-04
 	 * 
@@ -1,14 +1,20 @@
 package ch.pschatzmann.stocks.test;
 
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Date;
+
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.pschatzmann.dates.CalendarUtils;
 import ch.pschatzmann.dates.IDateRangeSource;
 import ch.pschatzmann.dates.MonthlyDateRangeSource;
 import ch.pschatzmann.dates.StandardDateRangeSource;
+import ch.pschatzmann.dates.TradingDay;
 import ch.pschatzmann.stocks.Context;
 
 public class TestDates {
@@ -34,4 +40,31 @@ public class TestDates {
 		Assert.assertEquals(13, dr.getDates().size());
 	}
 
+	@Test
+	public void testTradingDay() throws Exception {
+		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		for (LocalDate ld = LocalDate.of(1899, 12, 25); ld.getYear() < 2040; ld = ld.plusDays(13)) {
+			int day = (int) ld.toEpochDay();
+			Date date = df.parse(ld.toString());
+			Assert.assertEquals(day, TradingDay.of(ld.getYear(), ld.getMonthValue(), ld.getDayOfMonth()));
+			Assert.assertEquals(day, TradingDay.parse(ld.toString()));
+			Assert.assertEquals(day, TradingDay.of(date));
+			Assert.assertEquals(day, TradingDay.of(new Date(date.getTime() + 23 * 60 * 60 * 1000L - 1)));
+			Assert.assertEquals(date, TradingDay.toDate(day));
+			Assert.assertEquals(day, CalendarUtils.toEpochDay(date));
+			Assert.assertEquals(date, CalendarUtils.toDate(day));
+			Assert.assertEquals(ld.toString(), TradingDay.toString(day));
+			Assert.assertEquals(ld.getDayOfWeek().getValue(), TradingDay.dayOfWeek(day));
+		}
+		Assert.assertEquals(TradingDay.NONE, TradingDay.parse("2020-1-5"));
+		Assert.assertEquals(TradingDay.NONE, TradingDay.of((Date) null));
+
+		// the standardized dates are at midnight
+		Date date = new Date();
+		Assert.assertEquals(df.parse(df.format(date)), Context.date(date));
+		Assert.assertEquals(df.parse("2020-01-05"), Context.date("2020-1-5"));
+		Assert.assertEquals(df.parse("2020-03-01"), Context.date("2020-02-30"));
+		Assert.assertEquals("2020-02-29", Context.format(Context.date("2020-02-29")));
+	}
+
 }
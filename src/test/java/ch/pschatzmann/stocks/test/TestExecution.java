@@ -1,27 +1,65 @@
 package ch.pschatzmann.stocks.test;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.ta4j.core.Strategy;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockData;
+import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.MarketSnapshot;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockData;
+import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.accounting.Account;
 import ch.pschatzmann.stocks.accounting.IAccount;
 import ch.pschatzmann.stocks.accounting.ManagedAccount;
+import ch.pschatzmann.stocks.accounting.Portfolio;
+import ch.pschatzmann.stocks.accounting.PortfolioHistory;
 import ch.pschatzmann.stocks.accounting.Transaction;
 import ch.pschatzmann.stocks.accounting.kpi.KPI;
 import ch.pschatzmann.stocks.data.universe.EdgarUniverse;
+import ch.pschatzmann.stocks.execution.BacktestRunner;
+import ch.pschatzmann.stocks.execution.BacktestScenario;
+import ch.pschatzmann.stocks.execution.ITrader;
+import ch.pschatzmann.stocks.execution.ITradingDelayModel;
+import ch.pschatzmann.stocks.execution.NoDelay;
+import ch.pschatzmann.stocks.execution.OneDayDelay;
 import ch.pschatzmann.stocks.execution.PaperTrader;
 import ch.pschatzmann.stocks.execution.ScheduledExecutor;
 import ch.pschatzmann.stocks.execution.StrategyExecutor;
+import ch.pschatzmann.stocks.execution.VectorizedBacktest;
 import ch.pschatzmann.stocks.execution.fees.PerTradeFees;
+import ch.pschatzmann.stocks.execution.pruning.BestResultPruning;
+import ch.pschatzmann.stocks.execution.pruning.CompositePruningPolicy;
+import ch.pschatzmann.stocks.execution.pruning.MaxDrawDownPruning;
+import ch.pschatzmann.stocks.execution.pruning.MinTradesPruning;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
 import ch.pschatzmann.stocks.input.MarketArchiveHttpReader;
+import ch.pschatzmann.stocks.parameters.State;
+import ch.pschatzmann.stocks.strategy.CCICorrectionStrategy;
+import ch.pschatzmann.stocks.strategy.IVectorizedStrategy;
+import ch.pschatzmann.stocks.strategy.MovingMomentumStrategy;
+import ch.pschatzmann.stocks.strategy.ITradingStrategy;
+import ch.pschatzmann.stocks.strategy.RSI2Strategy;
+import ch.pschatzmann.stocks.strategy.Signals;
 import ch.pschatzmann.stocks.strategy.TradingStrategyFactory;
 import ch.pschatzmann.stocks.strategy.allocation.DistributedAllocationStrategy;
+import ch.pschatzmann.stocks.strategy.allocation.SimpleAllocationStrategy;
+import ch.pschatzmann.stocks.strategy.optimization.Fitness;
+import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
 import ch.pschatzmann.stocks.strategy.selection.SelectionResult;
 import ch.pschatzmann.stocks.strategy.selection.StockSelector;
 import ch.pschatzmann.stocks.strategy.selection.StrategySelector;
@@ -80,4 +118,468 @@ public class TestExecution {
 		
 	}
 
+	@Test
+	public void testExecutionPeriod() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			List history = apple.getHistory();
+			IStockData apple1 = new StockData(new StockID("AAPL1", "NASDAQ"), history.subList(100, history.size() - 100));
+			DateRange period = new DateRange(Context.date("2016-01-01"), Context.date("2017-01-01"));
+
+			List<String> result = execute(period, 1, apple, apple1);
+			System.out.println("transactions: " + result);
+			Assert.assertFalse(result.isEmpty());
+			Assert.assertEquals(result, execute(period, 1, apple, apple1));
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testExecutionEvents() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			List history = apple.getHistory();
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2017-01-01"));
+			Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+			List<Date> dates = new ArrayList();
+			int[] executions = new int[1];
+			PaperTrader trader = new PaperTrader(account) {
+				@Override
+				public synchronized void execute() {
+					executions[0]++;
+					super.execute();
+				}
+			};
+			SimpleAllocationStrategy allocation = new SimpleAllocationStrategy(trader) {
+				@Override
+				public void onEndOfDate(IAccount account, Date date) {
+					dates.add(date);
+					super.onEndOfDate(account, date);
+				}
+			};
+			StrategyExecutor executor = new StrategyExecutor(trader, allocation);
+			for (int j = 0; j < 4; j++) {
+				IStockData sd = new StockData(new StockID("AAPL" + j, "NASDAQ"),
+						history.subList(j * 50, history.size() - j * 30));
+				executor.addStrategy(j % 2 == 0 ? new RSI2Strategy(sd) : new MovingMomentumStrategy(sd));
+				if (j == 0) {
+					// a second strategy for the same stock is ignored
+					executor.addStrategy(new MovingMomentumStrategy(new StockData(new StockID("AAPL0", "NASDAQ"), history)));
+				}
+			}
+			executor.run(period);
+
+			// we get a date change for each date in the period and a final one
+			Assert.assertEquals(505, dates.size());
+			Assert.assertEquals(505, executions[0]);
+			Assert.assertEquals("2015-01-02", Context.format(dates.get(0)));
+			Assert.assertEquals("2016-12-30", Context.format(dates.get(dates.size() - 1)));
+			Assert.assertEquals(0, dates.stream().filter(d -> !period.isValid(d)).count());
+
+			// the transactions were determined with the executor which sorted all ticks in a TreeSet
+
+			List<String> expected = Arrays.asList("NASDAQ:AAPL0 2015-01-05 994 * 100.57881927490234 ",
+					"NASDAQ:AAPL2 2015-01-05 0 * 0.0 (not filled!) Cancelled because quantity was 0",
+					"NASDAQ:AAPL0 2015-10-22 -994 * 110.72403717041016 ",
+					"NASDAQ:AAPL1 2016-06-13 1161 * 94.79656982421875 ",
+					"NASDAQ:AAPL3 2016-06-13 0 * 0.0 (not filled!) Cancelled because quantity was 0",
+					"NASDAQ:AAPL1 2016-11-21 -1161 * 109.96170806884766 ",
+					"NASDAQ:AAPL0 2016-12-01 1184 * 107.75715637207031 ",
+					"NASDAQ:AAPL2 2016-12-01 0 * 0.0 (not filled!) Cancelled because quantity was 0");
+			Assert.assertEquals(expected, account.getTransactions().stream().filter(t -> !t.isCashTransfer())
+					.map(t -> t.toString()).collect(Collectors.toList()));
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testParallelExecution() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			List history = apple.getHistory();
+			IStockData[] stocks = new IStockData[8];
+			for (int j = 0; j < stocks.length; j++) {
+				stocks[j] = new StockData(new StockID("AAPL" + j, "NASDAQ"), history.subList(j * 50, history.size()));
+			}
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2017-01-01"));
+
+			List<String> serial = execute(period, 1, stocks);
+			Assert.assertFalse(serial.isEmpty());
+			Assert.assertEquals(serial, execute(period, 4, stocks));
+
+			// the threads of the executor are released at the end of the run
+			long threads = 0;
+			for (int j = 0; j < 50; j++) {
+				threads = Thread.getAllStackTraces().keySet().stream()
+						.filter(t -> t.getName().equals("StrategyExecutor") && t.isAlive()).count();
+				if (threads == 0) {
+					break;
+				}
+				Thread.sleep(100);
+			}
+			Assert.assertEquals(0, threads);
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testBacktestRunner() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			List history = apple.getHistory();
+			List<IStockData> stocks = new ArrayList();
+			for (int j = 0; j < 4; j++) {
+				stocks.add(new StockData(new StockID("AAPL" + j, "NASDAQ"), history.subList(j * 50, history.size())));
+			}
+			MarketSnapshot snapshot = new MarketSnapshot(stocks);
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2017-01-01"));
+			Account template = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+
+			List<BacktestScenario> scenarios = new ArrayList();
+			for (IStockData sd : snapshot.getStockData()) {
+				scenarios.add(new BacktestScenario(template, new RSI2Strategy(sd), period));
+				scenarios.add(new BacktestScenario(template, new MovingMomentumStrategy(sd), period));
+			}
+			// scenarios which share the same strategies on the original stock data
+			List<ITradingStrategy> strategies = new ArrayList();
+			stocks.forEach(sd -> strategies.add(new RSI2Strategy(sd)));
+			scenarios.add(new BacktestScenario(template, strategies, period));
+			scenarios.add(new BacktestScenario(template, strategies, period).setFeesModel(new PerTradeFees(20.0)));
+
+			List<ITradingStrategy> used = new ArrayList();
+			int[] groups = new int[1];
+			BacktestRunner runner = new BacktestRunner(snapshot, 4) {
+				@Override
+				protected Collection<List<Integer>> getGroups(List<List<ITradingStrategy>> strategies) {
+					strategies.forEach(list -> used.addAll(list));
+					Collection<List<Integer>> result = super.getGroups(strategies);
+					groups[0] = result.size();
+					return result;
+				}
+			};
+			List<Map<KPI, Double>> result = runner.run(scenarios);
+			Assert.assertEquals(scenarios.size(), result.size());
+			// each scenario is executed with its own copies of the strategies on the snapshot data
+			Assert.assertEquals(scenarios.size(), groups[0]);
+			Assert.assertEquals(scenarios.size() - 2 + 2 * strategies.size(), used.size());
+			for (ITradingStrategy strategy : used) {
+				Assert.assertTrue(strategies.stream().noneMatch(s -> s == strategy));
+				Assert.assertSame(snapshot.getStockData(strategy.getStockData().getStockID()), strategy.getStockData());
+			}
+			for (int j = 0; j < scenarios.size(); j++) {
+				Assert.assertNotNull(result.get(j));
+				Assert.assertEquals(result.get(j), new BacktestRunner(snapshot, 1).run(scenarios.get(j)));
+			}
+			Assert.assertTrue(result.get(result.size() - 1).get(KPI.TotalFees) > result.get(result.size() - 2).get(KPI.TotalFees));
+			// the scenarios have their own accounts
+			Assert.assertEquals(100000.00, template.getCash(), 0.001);
+			Assert.assertNotSame(scenarios.get(0).getAccount(), scenarios.get(1).getAccount());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testMarketSnapshot() throws Exception {
+		StockID id = new StockID("AAPL", "NASDAQ");
+		IStockData apple = new StockData(id, new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+		MarketSnapshot snapshot = new MarketSnapshot(apple);
+		IStockData sd = snapshot.getStockData(id);
+		Assert.assertEquals(apple.size(), sd.size());
+		((ColumnarStockData) sd).reset();
+		Assert.assertEquals(apple.size(), sd.size());
+		try {
+			((ColumnarStockData) sd).addRecord(apple.getHistory().get(0));
+			Assert.fail("The snapshot must not be changed");
+		} catch (UnsupportedOperationException ex) {
+		}
+
+		// changes of a columnar source are not visible in the snapshot
+		ColumnarStockData columnar = new ColumnarStockData(id, new StockColumns(id, apple.getHistory().subList(0, 100)));
+		snapshot = new MarketSnapshot(columnar);
+		columnar.addRecord(apple.getHistory().get(100));
+		Assert.assertEquals(101, columnar.size());
+		Assert.assertEquals(100, snapshot.getStockData(id).size());
+		Assert.assertEquals(apple.getHistory().get(99).getDate(), snapshot.getStockData(id).getHistory().get(99).getDate());
+	}
+
+	@Test
+	public void testPortfolioHistory() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			IStockData apple1 = new StockData(new StockID("AAPL1", "NASDAQ"), apple.getHistory().subList(100, apple.size()));
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2016-01-01"));
+			Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+			account.setCloseDate(period.getEnd());
+			PaperTrader trader = new PaperTrader(account);
+			StrategyExecutor executor = new StrategyExecutor(trader, new DistributedAllocationStrategy(trader));
+			executor.addStrategy(new RSI2Strategy(apple));
+			executor.addStrategy(new MovingMomentumStrategy(apple1));
+			executor.run(period);
+			Assert.assertTrue(account.getTransactions().stream().anyMatch(t -> !t.isCashTransfer()));
+
+			// compare the single pass with the portfolios which are calculated for each date
+			List<Date> dates = account.getAllDates();
+			PortfolioHistory history = account.getPortfolioValueHistory();
+			Assert.assertEquals(dates.size(), history.size());
+			Assert.assertTrue(history.size() > 200);
+			for (int j = 0; j < dates.size(); j++) {
+				Portfolio portfolio = account.getPortfolio(dates.get(j));
+				Assert.assertEquals(dates.get(j), history.getDate(j));
+				Assert.assertEquals(portfolio.getTotalValue(), history.getTotalValue(j), 0.0001);
+				Assert.assertEquals(portfolio.getActualValue(), history.getActualValue(j), 0.0001);
+				Assert.assertEquals(portfolio.getPurchasedValue(), history.getPurchasedValue(j), 0.0001);
+			}
+			List<Portfolio> portfolios = account.getPortfolioHistory().collect(Collectors.toList());
+			Assert.assertEquals(dates.size(), portfolios.size());
+			Portfolio last = portfolios.get(portfolios.size() - 1);
+			Assert.assertEquals(account.getPortfolio(last.getDate()).getRealizedGains(), last.getRealizedGains(), 0.0001);
+			Assert.assertEquals(history.getTotalValue(history.size() - 1), last.getTotalValue(), 0.0001);
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testPruning() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			MarketSnapshot snapshot = new MarketSnapshot(apple);
+			IStockData sd = snapshot.getStockData(apple.getStockID());
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2017-01-01"));
+			Account template = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+			BacktestRunner runner = new BacktestRunner(snapshot, 1);
+
+			BacktestScenario full = new BacktestScenario(template, new RSI2Strategy(sd), period);
+			Map<KPI, Double> result = runner.run(full);
+			Assert.assertFalse(full.isPruned());
+
+			// a policy which does not stop the execution does not change the result
+			BestResultPruning best = new BestResultPruning(KPI.AbsoluteReturn, 0.0, 0.5);
+			BacktestScenario notPruned = new BacktestScenario(template, new RSI2Strategy(sd), period)
+					.setPruningPolicy(new CompositePruningPolicy(new MaxDrawDownPruning(100.0), best));
+			Assert.assertEquals(result, runner.run(notPruned));
+			Assert.assertFalse(notPruned.isPruned());
+			Assert.assertEquals(result.get(KPI.AbsoluteReturn), best.getBestValue());
+
+			BacktestScenario drawDown = new BacktestScenario(template, new RSI2Strategy(sd), period)
+					.setPruningPolicy(new MaxDrawDownPruning(1.0));
+			Map<KPI, Double> prunedResult = runner.run(drawDown);
+			Assert.assertTrue(drawDown.isPruned());
+			Assert.assertTrue(prunedResult.get(KPI.MaxDrawDownPercent) > 1.0);
+			Date last = drawDown.getAccount().getTransactions().stream().map(t -> t.getDate()).max(Date::compareTo).get();
+			Assert.assertTrue(last.before(Context.date("2016-01-01")));
+
+			BacktestScenario trades = new BacktestScenario(template, new RSI2Strategy(sd), period)
+					.setPruningPolicy(new MinTradesPruning(1000, 0.25));
+			runner.run(trades);
+			Assert.assertTrue(trades.isPruned());
+
+			// the best result can not be reached
+			best.setBestValue(1000000.0);
+			BacktestScenario bestResult = new BacktestScenario(template, new RSI2Strategy(sd), period)
+					.setPruningPolicy(best);
+			runner.run(bestResult);
+			Assert.assertTrue(bestResult.isPruned());
+
+			PaperTrader trader = new PaperTrader(new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95)));
+			State state = new Fitness(trader, new MaxDrawDownPruning(1.0)).getFitness(new RSI2Strategy(sd), period);
+			Assert.assertTrue(state.isPruned());
+			Assert.assertTrue(state.clone().isPruned());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testPendingOrders() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			StockID id = (StockID) apple.getStockID();
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2016-01-01"));
+			Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+			account.setCloseDate(period.getEnd());
+			account.putStockData(apple);
+			PaperTrader trader = new PaperTrader(account);
+
+			// the limit is reached on the first date with the lowest closing price
+			IStockRecord low = apple.getHistory(Context.date("2015-06-01"), period.getEnd()).stream()
+					.min((a, b) -> Double.compare(a.getClosing().doubleValue(), b.getClosing().doubleValue())).get();
+			Transaction market = new Transaction(Context.date("2015-01-05"), id, 10);
+			Transaction limit = new Transaction(Context.date("2015-06-01"), id, 10, low.getClosing().doubleValue(),
+					Transaction.Type.Limit);
+			Transaction never = new Transaction(Context.date("2015-01-05"), id, 10, 1.0, Transaction.Type.Limit);
+			account.addTransaction(market);
+			account.addTransaction(limit);
+			account.addTransaction(never);
+			trader.execute();
+			Assert.assertTrue(market.isFilled());
+			Assert.assertTrue(limit.isFilled());
+			Assert.assertFalse(never.isFilled());
+			Assert.assertEquals(low.getDate(), limit.getDate());
+
+			// orders which are added later are picked up by the next execution
+			Transaction sell = new Transaction(Context.date("2015-10-01"), id, -20);
+			account.addTransaction(sell);
+			trader.execute();
+			trader.execute();
+			Assert.assertTrue(sell.isFilled());
+			Assert.assertFalse(never.isFilled());
+			// the quantity includes the planned order
+			Assert.assertEquals(10L, account.getQuantity(id).longValue());
+			Assert.assertEquals(3, account.getTransactions().stream().filter(t -> t.isFilled() && !t.isCashTransfer()).count());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testVectorizedBacktest() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			DateRange period = new DateRange(Context.date("2015-01-01"), Context.date("2017-01-01"));
+			RSI2Strategy rsi2 = new RSI2Strategy(apple);
+			rsi2.getParameters().input().setValue(InputParameterName.EntryLimit, 10);
+			rsi2.getParameters().input().setValue(InputParameterName.LongSMAPeriod, 100);
+			List<IVectorizedStrategy> strategies = Arrays.asList(new RSI2Strategy(apple), rsi2,
+					new MovingMomentumStrategy(apple), new CCICorrectionStrategy(apple));
+
+			int trades = 0;
+			for (IVectorizedStrategy strategy : strategies) {
+				// the signals are the same as with ta4j
+				Signals signals = strategy.getSignals();
+				Strategy ta4j = strategy.getStrategy();
+				for (int index = 0; index < signals.size(); index++) {
+					Assert.assertEquals(strategy + " " + index, ta4j.shouldEnter(index), signals.shouldEnter(index));
+					Assert.assertEquals(strategy + " " + index, ta4j.shouldExit(index), signals.shouldExit(index));
+				}
+
+				// the transactions and KPIs are the same as with the StrategyExecutor
+				for (ITradingDelayModel delay : Arrays.asList(new NoDelay(), new OneDayDelay())) {
+					Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+					PaperTrader trader = new PaperTrader(account, delay);
+					StrategyExecutor executor = new StrategyExecutor(trader, new SimpleAllocationStrategy(trader));
+					executor.addStrategy(strategy);
+					executor.run(period);
+
+					Account vectorizedAccount = new Account("test", "USD", 100000.00, period.getStart(),
+							new PerTradeFees(6.95));
+					new VectorizedBacktest(new PaperTrader(vectorizedAccount, delay)).run(strategy, period);
+
+					List<String> expected = account.getTransactions().stream().map(t -> t.toString() + " " + t.getFees())
+							.collect(Collectors.toList());
+					Assert.assertEquals(expected, vectorizedAccount.getTransactions().stream()
+							.map(t -> t.toString() + " " + t.getFees()).collect(Collectors.toList()));
+					Assert.assertEquals(account.getKPIValues().toString(), vectorizedAccount.getKPIValues().toString());
+					trades += expected.size() - 1;
+				}
+			}
+			Assert.assertTrue(trades > 10);
+
+			// limit orders are only filled if the price is reached
+			for (ITradingDelayModel delay : Arrays.asList(new NoDelay(), new OneDayDelay())) {
+				Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+				PaperTrader trader = new PaperTrader(account, delay);
+				StrategyExecutor executor = new StrategyExecutor(trader, new LimitOrderAllocationStrategy(trader));
+				executor.addStrategy(new RSI2Strategy(apple));
+				executor.run(period);
+
+				Account vectorizedAccount = new Account("test", "USD", 100000.00, period.getStart(),
+						new PerTradeFees(6.95));
+				PaperTrader vectorizedTrader = new PaperTrader(vectorizedAccount, delay);
+				new VectorizedBacktest(vectorizedTrader, new LimitOrderAllocationStrategy(vectorizedTrader))
+						.run(new RSI2Strategy(apple), period);
+
+				List<String> expected = account.getTransactions().stream().map(t -> t.toString() + " " + t.getFees())
+						.collect(Collectors.toList());
+				Assert.assertEquals(expected, vectorizedAccount.getTransactions().stream()
+						.map(t -> t.toString() + " " + t.getFees()).collect(Collectors.toList()));
+				Assert.assertEquals(account.getKPIValues().toString(), vectorizedAccount.getKPIValues().toString());
+				List<Transaction> limitOrders = vectorizedAccount.getTransactions().stream()
+						.filter(t -> t.getRequestedPriceType() == Transaction.Type.Limit && t.isFilled())
+						.collect(Collectors.toList());
+				Assert.assertFalse(limitOrders.isEmpty());
+				for (Transaction t : limitOrders) {
+					Assert.assertTrue(t.toString(), t.getFilledPrice() <= t.getRequestedPrice());
+				}
+			}
+
+			// execution with the BacktestRunner
+			Account template = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+			for (IVectorizedStrategy strategy : strategies) {
+				BacktestScenario scenario = new BacktestScenario(template, strategy, period);
+				Map<KPI, Double> expected = new BacktestRunner(null, 1).run(scenario);
+				Assert.assertEquals(expected, new BacktestRunner(null, 1).setVectorized(true).run(scenario));
+			}
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	private List<String> execute(DateRange period, int parallelism, IStockData... stockData) {
+		Account account = new Account("test", "USD", 100000.00, period.getStart(), new PerTradeFees(6.95));
+		PaperTrader trader = new PaperTrader(account);
+		StrategyExecutor executor = new StrategyExecutor(trader, new DistributedAllocationStrategy(trader));
+		executor.setParallelism(parallelism);
+		for (IStockData sd : stockData) {
+			executor.addStrategy(new RSI2Strategy(sd));
+			executor.addStrategy(new MovingMomentumStrategy(sd));
+		}
+		executor.run(period);
+		List<Transaction> transactions = account.getTransactions().stream().filter(t -> !t.isCashTransfer())
+				.collect(Collectors.toList());
+		for (Transaction t : transactions) {
+			Assert.assertTrue(period.isValid(t.getDate()));
+		}
+		return transactions.stream().map(t -> t.toString()).sorted().collect(Collectors.toList());
+	}
+
+	/**
+	 * Buys with a limit order 2% below the closing price of the signal
+	 */
+	private static class LimitOrderAllocationStrategy extends SimpleAllocationStrategy {
+		private static final long serialVersionUID = 1L;
+
+		LimitOrderAllocationStrategy(ITrader trader) {
+			super(trader);
+		}
+
+		@Override
+		public Long onBuy(IAccount account, IStockRecord sr, ITradingStrategy strategy) {
+			long qty = super.onBuy(account, sr, strategy);
+			if (qty != 0L) {
+				account.getAccount().addTransaction(new Transaction(sr.getDate(), (StockID) sr.getStockID(), qty,
+						sr.getClosing().doubleValue() * 0.98, Transaction.Type.Limit));
+			}
+			return 0L;
+		}
+	}
+
 }
@@ -1,6 +1,9 @@
 package ch.pschatzmann.stocks.test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -14,6 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.StockData;
@@ -27,19 +31,25 @@ import ch.pschatzmann.stocks.data.universe.MarketUniverse;
 import ch.pschatzmann.stocks.execution.ITrader;
 import ch.pschatzmann.stocks.execution.PaperTrader;
 import ch.pschatzmann.stocks.execution.fees.PerTradeFees;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
 import ch.pschatzmann.stocks.input.MarketArchiveHttpReader;
 import ch.pschatzmann.stocks.parameters.State;
+import ch.pschatzmann.stocks.strategy.CCICorrectionStrategy;
 import ch.pschatzmann.stocks.strategy.GlobalExtremaStrategy;
 import ch.pschatzmann.stocks.strategy.optimization.BinarySearchOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.BruteForceOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.Fitness;
+import ch.pschatzmann.stocks.strategy.optimization.FitnessMemo;
 import ch.pschatzmann.stocks.strategy.optimization.GeneticOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.IOptimizableTradingStrategy;
 import ch.pschatzmann.stocks.strategy.optimization.IOptimizer;
+import ch.pschatzmann.stocks.strategy.optimization.InputParameterName;
+import ch.pschatzmann.stocks.strategy.optimization.ParameterGrid;
 import ch.pschatzmann.stocks.strategy.optimization.PermutatedBinarySearchOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.SequenceOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.SimulatedAnnealingOptimizer;
 import ch.pschatzmann.stocks.strategy.optimization.SimulatedFitness;
+import ch.pschatzmann.stocks.strategy.optimization.SurrogateOptimizer;
 
 public class TestOptimization {
 	private static final Logger LOG = LoggerFactory.getLogger(TestOptimization.class);
@@ -153,6 +163,158 @@ public class TestOptimization {
 		Assert.assertTrue(state.result().getValue(KPI.AbsoluteReturn).doubleValue() >= baseline);
 	}
 
+	@Test
+	public void testParallelGeneticOptimizer() throws IOException {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+
+			GeneticOptimizer serial = new GeneticOptimizer(new SimulatedFitness(getAccount()), KPI.AbsoluteReturn);
+			serial.setPopulationSize(10);
+			serial.setGenerations(3);
+			serial.setSeed(123L);
+			serial.setParallelism(1);
+			State expected = serial.optimize(new CCICorrectionStrategy(apple), periods.get(0));
+
+			GeneticOptimizer parallel = new GeneticOptimizer(new SimulatedFitness(getAccount()), KPI.AbsoluteReturn);
+			parallel.setPopulationSize(10);
+			parallel.setGenerations(3);
+			parallel.setSeed(123L);
+			parallel.setParallelism(4);
+			CCICorrectionStrategy strategy = new CCICorrectionStrategy(apple);
+			State result = parallel.optimize(strategy, periods.get(0));
+
+			// the same seed gives the same result independent of the threads
+			Assert.assertEquals(123L, parallel.getUsedSeed());
+			Assert.assertEquals(expected.getInput().toString(), result.getInput().toString());
+			Assert.assertEquals(expected.result().getDouble(KPI.AbsoluteReturn),
+					result.result().getDouble(KPI.AbsoluteReturn), 0.0001);
+			Assert.assertEquals(result.getInput().toString(), strategy.getParameters().getInput().toString());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testSurrogateOptimizer() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			IAccount account = new Account("Simulation", "USD", 100000.00, periods.get(0).getStart(),
+					new PerTradeFees(10.0));
+
+			BruteForceOptimizer bruteForce = new BruteForceOptimizer(new SimulatedFitness(account), KPI.AbsoluteReturn);
+			bruteForce.setMaxNumberOfSteps(10);
+			State expected = bruteForce.optimize(new CCICorrectionStrategy(apple), periods.get(0));
+
+			// we give the surrogate model only a twentieth of the evaluations of the grid
+			int budget = (int) (bruteForce.getNumberOfEvaluations() / 20);
+			for (long seed = 1; seed <= 5; seed++) {
+				SurrogateOptimizer optimizer = new SurrogateOptimizer(new SimulatedFitness(account), KPI.AbsoluteReturn);
+				optimizer.setMaxNumberOfSteps(10);
+				optimizer.setMaxEvaluations(budget);
+				optimizer.setSeed(seed);
+				CCICorrectionStrategy strategy = new CCICorrectionStrategy(apple);
+				State result = optimizer.optimize(strategy, periods.get(0));
+				LOG.info("brute force: {} evaluations - surrogate with seed {}: {} evaluations",
+						bruteForce.getNumberOfEvaluations(), seed, optimizer.getNumberOfEvaluations());
+
+				// we find the same optimum with each seed
+				Assert.assertTrue(optimizer.getNumberOfEvaluations() <= budget);
+				Assert.assertEquals(expected.result().getDouble(KPI.AbsoluteReturn),
+						result.result().getDouble(KPI.AbsoluteReturn), 0.0001);
+				Assert.assertEquals(result.getInput().toString(), strategy.getParameters().getInput().toString());
+			}
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testFitnessMemo() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		File directory = Files.createTempDirectory("fitness").toFile();
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			SimulatedFitness fitness = new SimulatedFitness(getAccount());
+			FitnessMemo memo = new FitnessMemo(directory);
+			fitness.setMemo(memo);
+
+			State expected = fitness.getFitness(new CCICorrectionStrategy(apple), periods.get(0));
+			Assert.assertEquals(0, memo.getHits());
+			Assert.assertEquals(1, memo.size());
+
+			// the same evaluation is taken from the memory
+			State result = fitness.getFitness(new CCICorrectionStrategy(apple), periods.get(0));
+			Assert.assertEquals(1, memo.getHits());
+			Assert.assertEquals(expected.toString(), result.toString());
+
+			// other parameters are evaluated
+			CCICorrectionStrategy other = new CCICorrectionStrategy(apple);
+			other.getParameters().input().setValue(InputParameterName.ShortCCIPeriod, 10);
+			fitness.getFitness(other, periods.get(0));
+			Assert.assertEquals(1, memo.getHits());
+			Assert.assertEquals(2, memo.size());
+
+			// after a restart the result is taken from the disk
+			FitnessMemo restarted = new FitnessMemo(directory);
+			fitness.setMemo(restarted);
+			result = fitness.getFitness(new CCICorrectionStrategy(apple), periods.get(0));
+			Assert.assertEquals(1, restarted.getHits());
+			Assert.assertEquals(expected.toString(), result.toString());
+
+			// a changed history does not use the stored results but it keeps them
+			IStockData changed = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			changed.getHistory().remove(changed.getHistory().size() - 1);
+			Assert.assertNotEquals(apple.getFingerprint(), changed.getFingerprint());
+			fitness.getFitness(new CCICorrectionStrategy(changed), periods.get(0));
+			Assert.assertEquals(1, restarted.getHits());
+			Assert.assertEquals(2, directory.listFiles().length);
+			fitness.setMemo(new FitnessMemo(directory));
+			fitness.getFitness(new CCICorrectionStrategy(apple), periods.get(0));
+			fitness.getFitness(new CCICorrectionStrategy(changed), periods.get(0));
+			Assert.assertEquals(2, fitness.getMemo().getHits());
+
+			// we keep only the most recently used files of a stock
+			File appleFile = directory.listFiles((dir, name) -> name.contains(apple.getFingerprint()))[0];
+			appleFile.setLastModified(System.currentTimeMillis() - 60000);
+			IStockData changed2 = new StockData(new StockID("AAPL", "NASDAQ"), changed.getHistory().subList(0, 9000));
+			FitnessMemo limited = new FitnessMemo(directory);
+			limited.setMaxFiles(2);
+			fitness.setMemo(limited);
+			fitness.getFitness(new CCICorrectionStrategy(changed2), periods.get(0));
+			Assert.assertFalse(appleFile.exists());
+			Assert.assertEquals(2, directory.listFiles().length);
+
+			// the fingerprint does not depend on the representation of the history
+			Assert.assertEquals(apple.getFingerprint(), new ColumnarStockData(apple).getFingerprint());
+
+			// similar tickers do not delete the files of each other
+			IStockData brkB = new StockData(new StockID("BRK-B", "NYSE"), apple.getHistory());
+			IStockData brk_B = new StockData(new StockID("BRK_B", "NYSE"), apple.getHistory());
+			fitness.getFitness(new CCICorrectionStrategy(brkB), periods.get(0));
+			fitness.getFitness(new CCICorrectionStrategy(brk_B), periods.get(0));
+			fitness.setMemo(new FitnessMemo(directory));
+			fitness.getFitness(new CCICorrectionStrategy(brkB), periods.get(0));
+			fitness.getFitness(new CCICorrectionStrategy(brk_B), periods.get(0));
+			Assert.assertEquals(2, fitness.getMemo().getHits());
+			Assert.assertEquals(4, directory.listFiles().length);
+		} finally {
+			Context.setCacheActive(cacheActive);
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
 	@Test
 	public void testBinarySearchOptimizer() throws IOException {
 		IAccount account = getAccount();
@@ -181,6 +343,47 @@ public class TestOptimization {
 		Assert.assertTrue(result.result().getValue(KPI.AbsoluteReturn).doubleValue() >= baseline);
 	}
 
+	@Test
+	public void testMultiStartSimmulatedAnnealingOptimizer() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			SimulatedFitness fitness = new SimulatedFitness(getAccount());
+			double defaultResult = fitness.getFitness(new CCICorrectionStrategy(apple), periods.get(0)).result()
+					.getDouble(KPI.AbsoluteReturn);
+
+			SimulatedAnnealingOptimizer serial = new SimulatedAnnealingOptimizer(new SimulatedFitness(getAccount()), 20,
+					KPI.AbsoluteReturn);
+			serial.setChains(4);
+			serial.setExchangeInterval(5);
+			serial.setSeed(123L);
+			serial.setParallelism(1);
+			State expected = serial.optimize(new CCICorrectionStrategy(apple), periods.get(0));
+
+			SimulatedAnnealingOptimizer parallel = new SimulatedAnnealingOptimizer(new SimulatedFitness(getAccount()),
+					20, KPI.AbsoluteReturn);
+			parallel.setChains(4);
+			parallel.setExchangeInterval(5);
+			parallel.setSeed(123L);
+			parallel.setParallelism(4);
+			CCICorrectionStrategy strategy = new CCICorrectionStrategy(apple);
+			State result = parallel.optimize(strategy, periods.get(0));
+
+			// the same seed gives the same result independent of the threads
+			Assert.assertEquals(expected.getInput().toString(), result.getInput().toString());
+			Assert.assertEquals(expected.result().getDouble(KPI.AbsoluteReturn),
+					result.result().getDouble(KPI.AbsoluteReturn), 0.0001);
+			Assert.assertEquals(result.getInput().toString(), strategy.getParameters().getInput().toString());
+			Assert.assertTrue(result.result().getDouble(KPI.AbsoluteReturn) >= defaultResult);
+			Assert.assertEquals(4, parallel.getTraces().size());
+			parallel.getTraces().forEach(trace -> Assert.assertEquals(20, trace.size()));
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
 	@Test
 	@Ignore
 	public void testBruteForceOptimizer() throws Exception {
@@ -192,6 +395,43 @@ public class TestOptimization {
 		Assert.assertTrue(state.result().getValue(KPI.AbsoluteReturn).doubleValue() >= baseline);
 	}
 
+	@Test
+	public void testParallelBruteForceOptimizer() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			IStockData apple = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv")));
+			ParameterGrid grid = new ParameterGrid(new CCICorrectionStrategy(apple).getParameters().input(),
+					p -> (p.getRange().getMax().doubleValue() - p.getRange().getMin().doubleValue()) / 3);
+			Assert.assertTrue(grid.size() > 1);
+
+			BruteForceOptimizer serial = new BruteForceOptimizer(new SimulatedFitness(getAccount()), KPI.AbsoluteReturn);
+			serial.setMaxNumberOfSteps(3);
+			serial.setParallelism(1);
+			State expected = serial.optimize(new CCICorrectionStrategy(apple), periods.get(0));
+
+			BruteForceOptimizer parallel = new BruteForceOptimizer(new SimulatedFitness(getAccount()), KPI.AbsoluteReturn);
+			parallel.setMaxNumberOfSteps(3);
+			parallel.setParallelism(4);
+			CCICorrectionStrategy strategy = new CCICorrectionStrategy(apple);
+			State result = parallel.optimize(strategy, periods.get(0));
+
+			Assert.assertEquals(expected.getInput().toString(), result.getInput().toString());
+			Assert.assertEquals(expected.result().getDouble(KPI.AbsoluteReturn),
+					result.result().getDouble(KPI.AbsoluteReturn), 0.0001);
+			Assert.assertEquals(result.getInput().toString(), strategy.getParameters().getInput().toString());
+			// the grid and the standard parameters
+			Assert.assertEquals(grid.size() + 1, parallel.getGridSize());
+			Assert.assertEquals(grid.size() + 1, parallel.getNumberOfEvaluations());
+			Assert.assertTrue(parallel.getEvaluationsPerSecond() > 0);
+			LOG.info("serial: {} per second - parallel: {} per second", serial.getEvaluationsPerSecond(),
+					parallel.getEvaluationsPerSecond());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
 //	@Ignore
 	@Test
 	public void testPermutatedBinarySearchOptimizer() throws Exception {
@@ -1,30 +1,57 @@
 package ch.pschatzmann.stocks.test;
 
+import java.io.File;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
+import ch.pschatzmann.stocks.IStockID;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.IStockRecord;
+import ch.pschatzmann.stocks.StockColumns;
+import ch.pschatzmann.stocks.StockData;
 import ch.pschatzmann.stocks.StockData.DateMatching;
 import ch.pschatzmann.stocks.StockID;
+import ch.pschatzmann.stocks.StockRecord;
 //import ch.pschatzmann.stocks.cache.HazelcastCache;
+import ch.pschatzmann.stocks.download.MarketArchiveConverter;
 import ch.pschatzmann.stocks.input.AlphaVantageReader;
+import ch.pschatzmann.stocks.input.BinaryFileReader;
+import ch.pschatzmann.stocks.input.BinaryPriceStore;
 import ch.pschatzmann.stocks.input.FinancialContentReader;
+import ch.pschatzmann.stocks.input.IReader;
 import ch.pschatzmann.stocks.input.IEXReader;
 import ch.pschatzmann.stocks.input.InvestopiaReader;
 import ch.pschatzmann.stocks.input.MacroTrendsReader;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
 import ch.pschatzmann.stocks.input.MarketArchiveHttpReader;
 import ch.pschatzmann.stocks.input.QuandlBSEReader;
 import ch.pschatzmann.stocks.input.QuandlSixReader;
 import ch.pschatzmann.stocks.input.QuoteMediaReader;
+import ch.pschatzmann.stocks.input.StockDataLoader;
 import ch.pschatzmann.stocks.input.DefaultReader;
 import ch.pschatzmann.stocks.input.TiingoReader;
 import ch.pschatzmann.stocks.input.WallstreetJournalReader;
 import ch.pschatzmann.stocks.input.YahooReader;
+import ch.pschatzmann.stocks.input.parser.CsvLayout;
+import ch.pschatzmann.stocks.input.parser.CsvStreamReader;
+import ch.pschatzmann.stocks.input.parser.MarketArchiveParser;
 
 public class TestReaders {
 	private static final Logger LOG = LoggerFactory.getLogger(TestReaders.class);
@@ -194,4 +221,244 @@ public class TestReaders {
 		Assert.assertTrue(sd.getHistory().size()>100);
 	}
 
+	@Test
+	public void testBinaryFileReader() throws Exception {
+		File directory = Files.createTempDirectory("binary").toFile();
+		StockID apple = new StockID("AAPL", "NASDAQ");
+		int count = MarketArchiveConverter.convert(apple, new File("./src/test/resources/NASDAQ/AAPL.csv"), directory);
+		Assert.assertTrue(count>100);
+		// no new records
+		Assert.assertEquals(0, MarketArchiveConverter.convert(apple, new File("./src/test/resources/NASDAQ/AAPL.csv"), directory));
+
+		IStockData sd = new ColumnarStockData(apple, new BinaryFileReader(directory));
+		Assert.assertEquals(count, sd.size());
+		Assert.assertEquals("2018-01-19", Context.format(sd.getHistory().get(sd.size()-1).getDate()));
+		IStockData sd1 = new StockData(apple, new BinaryFileReader(directory));
+		Assert.assertEquals(count, sd1.size());
+	}
+
+	@Test
+	public void testBinaryPriceStoreChunks() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			StockID apple = new StockID("AAPL", "NASDAQ");
+			StockColumns all = new ColumnarStockData(apple,
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv"))).getColumns();
+			int count = all.size();
+
+			// map the file in chunks of 19 records with 2 segments
+			BinaryPriceStore store = new BinaryPriceStore(Files.createTempDirectory("binary").toFile(), "NASDAQ",
+					1000) {
+			};
+			store.append(apple, all.slice(0, count - 5));
+			store.append(new StockID("MSFT", "NASDAQ"), all.slice(0, 10));
+			store.append(apple, all);
+			Assert.assertEquals(count, store.size("AAPL"));
+
+			ColumnarStockData sd = new ColumnarStockData(apple, (IReader) null);
+			Assert.assertEquals(count, store.read("AAPL", Integer.MIN_VALUE, sd));
+			StockColumns result = sd.getColumns();
+			for (int j = 0; j < count; j++) {
+				Assert.assertEquals(all.getEpochDay(j), result.getEpochDay(j));
+				Assert.assertEquals(all.getClosing(j), result.getClosing(j), 0.000001);
+			}
+			Assert.assertEquals(10, store.read("MSFT", Integer.MIN_VALUE, new ColumnarStockData(apple, (IReader) null)));
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testRefresh() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			File directory = Files.createTempDirectory("binary").toFile();
+			StockID apple = new StockID("AAPL", "NASDAQ");
+			int count = MarketArchiveConverter.convert(apple, new File("./src/test/resources/NASDAQ/AAPL.csv"), directory);
+			StockColumns all = new ColumnarStockData(apple, new BinaryFileReader(directory)).getColumns();
+
+			// store w/o the last 5 days
+			File directory1 = Files.createTempDirectory("binary").toFile();
+			BinaryPriceStore store = BinaryPriceStore.getInstance(directory1, apple.getExchange());
+			store.append(apple, all.slice(0, count - 5));
+			ColumnarStockData sd = new ColumnarStockData(apple, new BinaryFileReader(directory1));
+			StockData sd1 = new StockData(apple, new BinaryFileReader(directory1));
+			Assert.assertEquals(count - 5, sd.size());
+			Assert.assertEquals(count - 5, sd1.size());
+
+			// add the missing days
+			store.append(apple, all);
+			Assert.assertEquals(5, sd.refresh());
+			Assert.assertEquals(5, sd1.refresh());
+			Assert.assertEquals(count, sd.size());
+			Assert.assertEquals(count, sd1.size());
+			Assert.assertEquals(sd.getValue().getDate(), sd1.getValue().getDate());
+			Assert.assertEquals(0, sd.refresh());
+
+			// a changed last record is replaced
+			double closing = all.getClosing(count - 1);
+			StockRecord partial = new StockRecord(sd1.getValue());
+			partial.setClosing(closing + 1.0);
+			sd1.getHistory().set(count - 1, partial);
+			sd.getColumns().set(count - 1, partial);
+			Assert.assertEquals(1, sd.refresh());
+			Assert.assertEquals(1, sd1.refresh());
+			Assert.assertEquals(count, sd.size());
+			Assert.assertEquals(count, sd1.size());
+			Assert.assertEquals(closing, sd.getValue().getClosing().doubleValue(), 0.000001);
+			Assert.assertEquals(closing, sd1.getValue().getClosing().doubleValue(), 0.000001);
+			Assert.assertEquals(0, sd.refresh());
+			Assert.assertEquals(0, sd1.refresh());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testStockDataLoader() throws Exception {
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		IReader reader = sd -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+				if (sd.getStockID().getTicker().equals("T3")) {
+					throw new RuntimeException("T3 is not available");
+				}
+				StockRecord rec = new StockRecord();
+				rec.setDate(Context.date("2018-01-02"));
+				rec.setClosing(1.0);
+				sd.addRecord(rec);
+				return 1;
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			} finally {
+				active.decrementAndGet();
+			}
+		};
+
+		List<IStockID> ids = new ArrayList();
+		for (int j = 0; j < 20; j++) {
+			ids.add(new StockID("T" + j, "TEST"));
+		}
+		StockDataLoader.setParallelism(reader.getClass(), 4);
+		AtomicInteger progress = new AtomicInteger();
+		StockDataLoader loader = new StockDataLoader(reader, (id, processed, total, error) -> progress.incrementAndGet());
+		Map<IStockID, IStockData> result = loader.load(ids);
+
+		Assert.assertEquals(19, result.size());
+		Assert.assertEquals(1, loader.getErrors().size());
+		Assert.assertEquals(20, progress.get());
+		Assert.assertEquals(4, maxActive.get());
+		Assert.assertEquals("T0", result.keySet().iterator().next().getTicker());
+
+		// concurrent loaders share the limit of the reader
+		maxActive.set(0);
+		Context.resetCache();
+		List<IStockID> ids1 = new ArrayList();
+		for (int j = 20; j < 40; j++) {
+			ids1.add(new StockID("T" + j, "TEST"));
+		}
+		CompletableFuture<Map<IStockID, IStockData>> other = CompletableFuture
+				.supplyAsync(() -> new StockDataLoader(reader).load(ids1));
+		List<String> tickers = new StockDataLoader(reader).stream(ids, true).map(sd -> sd.getTicker())
+				.collect(Collectors.toList());
+		Assert.assertEquals(20, other.get().size());
+		Assert.assertEquals(4, maxActive.get());
+
+		// the stream provides the stocks in the sequence of the ids
+		List<String> expected = ids.stream().map(id -> id.getTicker()).filter(t -> !t.equals("T3"))
+				.collect(Collectors.toList());
+		Assert.assertEquals(expected, tickers);
+	}
+
+	@Test
+	public void testCsvParser() throws Exception {
+		Path path = Paths.get("./src/test/resources/NASDAQ/AAPL.csv");
+		List<String> lines = Files.readAllLines(path);
+		MarketArchiveParser parser = new MarketArchiveParser("", true);
+		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+
+		// reference implementation with split, Double.valueOf and SimpleDateFormat
+		long start = System.nanoTime();
+		List<StockRecord> expected = new ArrayList();
+		for (String line : lines) {
+			String[] sa = line.split(",");
+			if (!line.startsWith("Date") && sa.length == 7) {
+				double factor = Double.valueOf(sa[5]) / Double.valueOf(sa[4]);
+				StockRecord sr = new StockRecord();
+				sr.setDate(df.parse(sa[0]));
+				sr.setOpen(Double.valueOf(sa[1]) * factor);
+				sr.setClosing(Double.valueOf(sa[4]) * factor);
+				sr.setVolume(Double.valueOf(sa[6]));
+				sr.setAdjustmentFactor(factor);
+				expected.add(sr);
+			}
+		}
+		long splitTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		StockColumns columns;
+		try (Reader in = Files.newBufferedReader(path)) {
+			columns = new CsvStreamReader(in).read(parser, new StockID("AAPL", "NASDAQ"));
+		}
+		long streamTime = System.nanoTime() - start;
+		LOG.info("split: {} ms - streaming: {} ms", splitTime / 1000000.0, streamTime / 1000000.0);
+
+		Assert.assertEquals(expected.size(), columns.size());
+		for (int j = 0; j < columns.size(); j++) {
+			StockRecord sr = expected.get(j);
+			Assert.assertEquals(sr.getDate(), columns.getDate(j));
+			Assert.assertEquals(sr.getOpen().doubleValue(), columns.getOpen(j), 0.0);
+			Assert.assertEquals(sr.getClosing().doubleValue(), columns.getClosing(j), 0.0);
+			Assert.assertEquals(sr.getVolume().doubleValue(), columns.getVolume(j), 0.0);
+			Assert.assertEquals(sr.getAdjustmentFactor().doubleValue(), columns.getAdjustmentFactor(j), 0.0);
+		}
+
+		// the legacy api provides the same values
+		StockRecord sr = parser.parse(lines.get(lines.size() - 1));
+		Assert.assertEquals(expected.get(expected.size() - 1).getDate(), sr.getDate());
+		Assert.assertEquals(expected.get(expected.size() - 1).getClosing(), sr.getClosing());
+
+		// the file is sorted from new to old
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			StockData sd = new StockData(new StockID("AAPL", "NASDAQ"), new MarketArchiveFileReader(path));
+			Assert.assertEquals(expected.size(), sd.size());
+			Assert.assertEquals("2018-01-19", Context.format(sd.getValue().getDate()));
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
+	@Test
+	public void testCsvLayout() throws Exception {
+		CsvLayout layout = new CsvLayout(4).setPrices(0, -1, -1, -1, 1, 3);
+		StockColumns columns = new StockColumns();
+		Assert.assertTrue(layout.parse("2020-02-29,1.25,,1e3", columns::add));
+		Assert.assertTrue(layout.parse("2020-03-01, -0.5 ,x,null", columns::add));
+		Assert.assertTrue(layout.parse("2020-3-2,123456789.123456789,x,7", columns::add));
+		Assert.assertFalse(layout.parse("Date,Close,x,Volume", columns::add));
+		Assert.assertFalse(layout.parse("2020-03-03,1,x", columns::add));
+		Assert.assertFalse(layout.parse("2020-03-03,1,x,5,6", columns::add));
+		Assert.assertTrue(layout.parse("2020-03-03,1,x,5,,", columns::add));
+
+		Assert.assertEquals(4, columns.size());
+		Assert.assertEquals("2020-02-29", Context.format(columns.getDate(0)));
+		Assert.assertEquals("2020-03-02", Context.format(columns.getDate(2)));
+		Assert.assertEquals(1.25, columns.getClosing(0), 0.0);
+		Assert.assertEquals(1000.0, columns.getVolume(0), 0.0);
+		Assert.assertEquals(-0.5, columns.getClosing(1), 0.0);
+		Assert.assertTrue(Double.isNaN(columns.getVolume(1)));
+		Assert.assertTrue(Double.isNaN(columns.getOpen(1)));
+		Assert.assertEquals(123456789.123456789, columns.getClosing(2), 0.0);
+		for (String number : new String[] { "0.1", "178.61000061035156", "0.4888392984867096", "1.7976931348623157E308", "4.9e-324", "123456789012345678" }) {
+			Assert.assertTrue(layout.parse("2020-03-04," + number + ",x,1", columns::add));
+			Assert.assertEquals(Double.parseDouble(number), columns.getClosing(columns.size() - 1), 0.0);
+		}
+	}
+
 }
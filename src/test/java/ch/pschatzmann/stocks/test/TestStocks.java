@@ -1,8 +1,14 @@
 package ch.pschatzmann.stocks.test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -11,14 +17,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.pschatzmann.dates.DateRange;
+import ch.pschatzmann.stocks.ColumnarStockData;
 import ch.pschatzmann.stocks.Context;
 import ch.pschatzmann.stocks.IStockData;
 import ch.pschatzmann.stocks.IStockRecord;
 import ch.pschatzmann.stocks.StockData;
+import ch.pschatzmann.stocks.StockData.DateMatching;
+import ch.pschatzmann.stocks.StockDataRegistry;
 import ch.pschatzmann.stocks.StockID;
 import ch.pschatzmann.stocks.data.universe.MarketUniverse;
 import ch.pschatzmann.stocks.input.CombinedReader;
 import ch.pschatzmann.stocks.input.IReader;
+import ch.pschatzmann.stocks.input.MarketArchiveFileReader;
 import ch.pschatzmann.stocks.input.MarketArchiveHttpReader;
 import ch.pschatzmann.stocks.input.QuandlWIKIReader;
 import ch.pschatzmann.stocks.input.YahooReader;
@@ -107,6 +117,33 @@ public class TestStocks {
 
 	}
 
+	@Test
+	public void testFilterDatesAfterAdd() throws Exception {
+		boolean cacheActive = Context.isCacheActive();
+		Context.setCacheActive(false);
+		try {
+			List<IStockRecord> records = new StockData(new StockID("AAPL", "NASDAQ"),
+					new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv"))).getHistory();
+			StockData sd = new StockData(new StockID("AAPL", "NASDAQ"), new ArrayList(records.subList(0, 100)));
+			DateRange range = new DateRange(records.get(10).getDate(), records.get(19).getDate());
+			List<IStockRecord> history = sd.getHistory(range.getStart(), range.getEnd());
+			StockData filtered = sd.filterDates(range);
+			StockData filtered2 = filtered.filterDates(new DateRange(records.get(15).getDate(), records.get(30).getDate()));
+
+			// the views are not affected by new records
+			sd.addRecord(records.get(100));
+			Assert.assertEquals(101, sd.size());
+			Assert.assertEquals(10, history.size());
+			Assert.assertEquals(records.get(10).getDate(), history.get(0).getDate());
+			Assert.assertEquals(10, filtered.size());
+			Assert.assertEquals(records.get(19).getDate(), filtered.getValue().getDate());
+			Assert.assertEquals(5, filtered2.size());
+			Assert.assertEquals(records.get(15).getDate(), filtered2.getHistory().get(0).getDate());
+		} finally {
+			Context.setCacheActive(cacheActive);
+		}
+	}
+
 	@Test
 	public void testCSV() throws Exception {
 		LOG.info("testFilterDates");
@@ -155,6 +192,92 @@ public class TestStocks {
 		Assert.assertTrue(sd.size() > sdMarketArchive.size());
 
 	}
-	
-	
+
+	@Test
+	public void testColumnarStockData() throws Exception {
+		LOG.info("testColumnarStockData");
+		StockData sd = new StockData(new StockID("AAPL", "NASDAQ"), new MarketArchiveHttpReader());
+		ColumnarStockData csd = new ColumnarStockData(new StockID("AAPL", "NASDAQ"), new MarketArchiveHttpReader());
+		Assert.assertFalse(csd.isEmpty());
+		Assert.assertEquals(sd.size(), csd.size());
+		Assert.assertEquals(sd.getValue().getDate(), csd.getValue().getDate());
+		Assert.assertEquals(sd.getValue().getClosing().doubleValue(), csd.getValue().getClosing().doubleValue(), 0.00001);
+
+		IStockRecord first = sd.getHistory().get(0);
+		Assert.assertEquals(first.getDate(), csd.getValue(first.getDate(), DateMatching.Exact).getDate());
+		Assert.assertEquals(sd.toTimeSeries().getBarCount(), csd.toTimeSeries().getBarCount());
+	}
+
+	@Test
+	public void testStockDataRegistry() throws Exception {
+		Context.resetCache();
+		StockDataRegistry registry = Context.getStockDataRegistry();
+		registry.resetStatistics();
+		IReader reader = new MarketArchiveFileReader(Paths.get("./src/test/resources/NASDAQ/AAPL.csv"));
+		StockID apple = new StockID("AAPL", "NASDAQ");
+
+		// by default each caller gets its own object
+		boolean registryActive = Context.isStockDataRegistryActive();
+		Context.setStockDataRegistryActive(false);
+		Assert.assertNotSame(Context.getStockData(apple, reader), Context.getStockData(apple, reader));
+		Context.setStockDataRegistryActive(true);
+		try {
+			List<IStockData> result = IntStream.range(0, 20).parallel()
+					.mapToObj(j -> Context.getStockData(apple, reader)).peek(sd -> sd.size())
+					.collect(Collectors.toList());
+			for (IStockData sd : result) {
+				Assert.assertSame(result.get(0), sd);
+			}
+			LOG.info("{}", registry);
+			Assert.assertEquals(1, registry.getMisses());
+			Assert.assertEquals(19, registry.getHits());
+			Assert.assertEquals(1, registry.getLoads());
+			Assert.assertTrue(registry.getUsedBytes() > 0);
+
+			// evict everything
+			registry.setMaxBytes(0);
+			Assert.assertEquals(1, registry.getEvictions());
+			Assert.assertEquals(0, registry.size());
+			Assert.assertNotSame(result.get(0), Context.getStockData(apple, reader));
+		} finally {
+			registry.setMaxBytes(512l * 1024 * 1024);
+			Context.setStockDataRegistryActive(registryActive);
+		}
+	}
+
+	@Test
+	public void testStockDataRegistryReaders() throws Exception {
+		Context.resetCache();
+		StockDataRegistry registry = Context.getStockDataRegistry();
+		Path source = Paths.get("./src/test/resources/NASDAQ/AAPL.csv");
+		Path file = Files.createTempFile("AAPL", ".csv");
+		boolean cacheActive = Context.isCacheActive();
+		boolean registryActive = Context.isStockDataRegistryActive();
+		Context.setCacheActive(false);
+		Context.setStockDataRegistryActive(true);
+		try {
+			// the same stock with a shorter history in a different file
+			Files.write(file, Files.readAllLines(source).subList(0, 101));
+			StockID apple = new StockID("AAPL", "NASDAQ");
+			IReader reader = new MarketArchiveFileReader(source);
+			IStockData full = Context.getStockData(apple, reader);
+			IStockData part = Context.getStockData(apple, new MarketArchiveFileReader(file));
+
+			Assert.assertNotSame(full, part);
+			Assert.assertSame(full, Context.getStockData(apple, reader));
+			Assert.assertTrue(full.size() > 9000);
+			Assert.assertEquals(100, part.size());
+			Assert.assertTrue(registry.getUsedBytes() > 0);
+
+			// the accounting is consistent after a clear
+			Context.resetCache();
+			Assert.assertEquals(0, registry.size());
+			Assert.assertEquals(0, registry.getUsedBytes());
+		} finally {
+			Context.setCacheActive(cacheActive);
+			Context.setStockDataRegistryActive(registryActive);
+			Files.deleteIfExists(file);
+		}
+	}
+
 }